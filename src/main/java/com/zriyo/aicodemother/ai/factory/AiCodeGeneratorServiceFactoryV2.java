@@ -8,6 +8,7 @@ import com.zriyo.aicodemother.ai.guardrail.PromptSafetyInputGuardrail;
 import com.zriyo.aicodemother.ai.tools.CodeReadTool;
 import com.zriyo.aicodemother.ai.tools.CodeWriteTool;
 import com.zriyo.aicodemother.ai.tools.RuntimeFixTool;
+import com.zriyo.aicodemother.core.context.ProjectContextCache;
 import com.zriyo.aicodemother.exception.BusinessException;
 import com.zriyo.aicodemother.exception.ErrorCode;
 import com.zriyo.aicodemother.model.enums.CodeGenTypeEnum;
@@ -34,6 +35,9 @@ public class AiCodeGeneratorServiceFactoryV2 {
     @Autowired
     private ChatHistoryService chatHistoryService;
 
+    @Autowired
+    private ProjectContextCache projectContextCache;
+
     @Autowired
     private ChatModel chatModel;
 
@@ -86,7 +90,7 @@ public class AiCodeGeneratorServiceFactoryV2 {
         return switch (codeGenType) {
             case VUE_PROJECT -> AiServices.builder(AiCodeGeneratorServiceV2.class)
                     .streamingChatModel(streamingChatModel)
-                    .tools(new CodeWriteTool(filePath))
+                    .tools(new CodeWriteTool(filePath, projectContextCache))
                     .chatMemory(chatMemory)
                     .maxSequentialToolsInvocations(20)
                     .hallucinatedToolNameStrategy(req ->
@@ -128,7 +132,7 @@ public class AiCodeGeneratorServiceFactoryV2 {
         return switch (codeGenType) {
             case VUE_PROJECT -> AiServices.builder(AiCodeGeneratorServiceV2.class)
                     .streamingChatModel(streamingChatModel)
-                    .tools(new RuntimeFixTool(appId))
+                    .tools(new RuntimeFixTool(appId, projectContextCache))
                     .chatMemory(chatMemory)
                     .maxSequentialToolsInvocations(20)
                     .inputGuardrails(new PromptSafetyInputGuardrail())
@@ -0,0 +1,221 @@
+package com.zriyo.aicodemother.ai.key;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * API Key 租约引擎
+ * 职责：把 "选 Key -> 过滤封禁 -> 扣减额度 -> 记录租约" 等操作各自合并为一段 Lua 脚本，
+ * 在 Redis 服务端原子执行，一次网络往返完成，不再依赖全局分布式锁
+ * <p>
+ * 数据结构（统一使用 StringCodec，保证 Lua 可以直接读写）：
+ * <ul>
+ *     <li>模型池 ZSET：member = apiKey，score = 剩余并发额度</li>
+ *     <li>租约 ZSET：member = leaseId，score = 过期时间戳(ms)，过期租约由脚本顺带清理</li>
+ *     <li>封禁 / 冷却 / 失败计数：普通 String，只关心是否存在与计数值</li>
+ * </ul>
+ * 注意：脚本内会按前缀拼接封禁、租约等 Key，仅适用于单机 / 主从部署（与 RedissonConfig 一致）
+ */
+class ApiKeyLeaseEngine {
+
+    static final String FAIL_COUNT_PREFIX = "ai:key:fail:count:";
+    static final String BAN_LABEL_PREFIX = "ai:key:ban:";
+    static final String SOFT_BAN_PREFIX = "ai:key:softban:";
+    static final String LEASE_PREFIX = "ai:key:lease:";
+    static final String POOL_PREFIX = "ai:key:pool:";
+
+    /**
+     * 获取结果状态码
+     */
+    static final long ACQUIRED = 1;
+    static final long ACQUIRED_LAST_RESORT = 2;
+    static final long EXHAUSTED = 0;
+    static final long EMPTY_POOL = -1;
+
+    /**
+     * KEYS[1] 模型池；ARGV: 封禁前缀, 冷却前缀, 租约前缀, leaseId, 当前时间(ms), 租约时长(ms)
+     * 按剩余额度从高到低挑选第一个未封禁、未冷却的 Key；全部冷却时退而使用第一个有额度的冷却 Key
+     */
+    private static final Script ACQUIRE = new Script("""
+            local entries = redis.call('ZREVRANGE', KEYS[1], 0, -1, 'WITHSCORES')
+            if #entries == 0 then
+                return {-1}
+            end
+            local fallback = nil
+            for i = 1, #entries, 2 do
+                local key = entries[i]
+                if tonumber(entries[i + 1]) > 0 and redis.call('EXISTS', ARGV[1] .. key) == 0 then
+                    if redis.call('EXISTS', ARGV[2] .. key) == 0 then
+                        redis.call('ZINCRBY', KEYS[1], -1, key)
+                        local leaseKey = ARGV[3] .. key
+                        redis.call('ZADD', leaseKey, tonumber(ARGV[5]) + tonumber(ARGV[6]), ARGV[4])
+                        redis.call('PEXPIRE', leaseKey, ARGV[6])
+                        return {1, key}
+                    end
+                    if fallback == nil then
+                        fallback = key
+                    end
+                end
+            end
+            if fallback == nil then
+                return {0}
+            end
+            redis.call('ZINCRBY', KEYS[1], -1, fallback)
+            local leaseKey = ARGV[3] .. fallback
+            redis.call('ZADD', leaseKey, tonumber(ARGV[5]) + tonumber(ARGV[6]), ARGV[4])
+            redis.call('PEXPIRE', leaseKey, ARGV[6])
+            return {2, fallback}
+            """);
+
+    /**
+     * KEYS[1] 模型池, KEYS[2] 租约；ARGV: apiKey, 单 Key 最大并发
+     * 移除最早到期的一条租约并返还一个额度（不超过上限）
+     */
+    private static final Script RELEASE = new Script("""
+            local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+            if not score then
+                return 0
+            end
+            redis.call('ZPOPMIN', KEYS[2])
+            if tonumber(score) < tonumber(ARGV[2]) then
+                redis.call('ZINCRBY', KEYS[1], 1, ARGV[1])
+            end
+            return 1
+            """);
+
+    /**
+     * KEYS[1] 失败计数, KEYS[2] 冷却标记, KEYS[3..n] 模型池；ARGV: apiKey, 单 Key 最大并发
+     * 清空失败计数与冷却，并把该 Key 在所有模型池中的额度重置为上限
+     */
+    private static final Script REPORT_SUCCESS = new Script("""
+            redis.call('DEL', KEYS[1], KEYS[2])
+            for i = 3, #KEYS do
+                if redis.call('ZSCORE', KEYS[i], ARGV[1]) then
+                    redis.call('ZADD', KEYS[i], ARGV[2], ARGV[1])
+                end
+            end
+            return 1
+            """);
+
+    /**
+     * KEYS[1] 冷却标记, KEYS[2] 失败计数, KEYS[3] 封禁标记；
+     * ARGV: 冷却秒数, 封禁阈值, 封禁秒数, 失败计数保留秒数
+     * 返回累计失败次数，达到阈值时同时写入封禁标记并清理计数 / 冷却
+     */
+    private static final Script REPORT_FAILURE = new Script("""
+            redis.call('SET', KEYS[1], 'COOLING', 'EX', ARGV[1])
+            local count = redis.call('INCR', KEYS[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[4])
+            if count >= tonumber(ARGV[2]) then
+                redis.call('SET', KEYS[3], 'BANNED', 'EX', ARGV[3])
+                redis.call('DEL', KEYS[2], KEYS[1])
+            end
+            return count
+            """);
+
+    /**
+     * KEYS[1] 模型池；ARGV: 租约前缀, 单 Key 最大并发, 当前时间(ms)
+     * 清理过期租约，并按 "上限 - 有效租约数" 校正每个 Key 的额度，返回被校正的 Key 数量
+     */
+    private static final Script AUDIT = new Script("""
+            local entries = redis.call('ZRANGE', KEYS[1], 0, -1, 'WITHSCORES')
+            local fixed = 0
+            for i = 1, #entries, 2 do
+                local key = entries[i]
+                local leaseKey = ARGV[1] .. key
+                redis.call('ZREMRANGEBYSCORE', leaseKey, '-inf', ARGV[3])
+                local target = tonumber(ARGV[2]) - redis.call('ZCARD', leaseKey)
+                if tonumber(entries[i + 1]) ~= target then
+                    redis.call('ZADD', KEYS[1], target, key)
+                    fixed = fixed + 1
+                end
+            end
+            return fixed
+            """);
+
+    private final RedissonClient client;
+
+    ApiKeyLeaseEngine(RedissonClient client) {
+        this.client = client;
+    }
+
+    /**
+     * 注册 Key：已存在的成员保持当前额度不变
+     */
+    void register(String poolKey, Collection<String> apiKeys, int maxPerKey) {
+        var zset = client.<String>getScoredSortedSet(poolKey, StringCodec.INSTANCE);
+        for (String key : apiKeys) {
+            zset.addIfAbsent(maxPerKey, key);
+        }
+    }
+
+    /**
+     * @return [状态码, apiKey]，状态码见 ACQUIRED / ACQUIRED_LAST_RESORT / EXHAUSTED / EMPTY_POOL
+     */
+    List<Object> acquire(String poolKey, String leaseId, long nowMillis, long leaseTtlMillis) {
+        return eval(ACQUIRE, RScript.ReturnType.MULTI, List.of(poolKey),
+                BAN_LABEL_PREFIX, SOFT_BAN_PREFIX, LEASE_PREFIX, leaseId,
+                String.valueOf(nowMillis), String.valueOf(leaseTtlMillis));
+    }
+
+    boolean release(String poolKey, String apiKey, int maxPerKey) {
+        Long result = eval(RELEASE, RScript.ReturnType.INTEGER, List.of(poolKey, LEASE_PREFIX + apiKey),
+                apiKey, String.valueOf(maxPerKey));
+        return result != null && result == 1L;
+    }
+
+    void reportSuccess(String apiKey, Collection<String> poolKeys, int maxPerKey) {
+        List<Object> keys = new ArrayList<>(poolKeys.size() + 2);
+        keys.add(FAIL_COUNT_PREFIX + apiKey);
+        keys.add(SOFT_BAN_PREFIX + apiKey);
+        keys.addAll(poolKeys);
+        eval(REPORT_SUCCESS, RScript.ReturnType.INTEGER, keys, apiKey, String.valueOf(maxPerKey));
+    }
+
+    long reportFailure(String apiKey, int softBanSec, int threshold, long banSec, long failCountTtlSec) {
+        Long count = eval(REPORT_FAILURE, RScript.ReturnType.INTEGER,
+                List.of(SOFT_BAN_PREFIX + apiKey, FAIL_COUNT_PREFIX + apiKey, BAN_LABEL_PREFIX + apiKey),
+                String.valueOf(softBanSec), String.valueOf(threshold),
+                String.valueOf(banSec), String.valueOf(failCountTtlSec));
+        return count == null ? 0 : count;
+    }
+
+    long audit(String poolKey, int maxPerKey, long nowMillis) {
+        Long fixed = eval(AUDIT, RScript.ReturnType.INTEGER, List.of(poolKey),
+                LEASE_PREFIX, String.valueOf(maxPerKey), String.valueOf(nowMillis));
+        return fixed == null ? 0 : fixed;
+    }
+
+    boolean remove(String poolKey, String apiKey) {
+        return client.<String>getScoredSortedSet(poolKey, StringCodec.INSTANCE).remove(apiKey);
+    }
+
+    /**
+     * 优先 EVALSHA 只传摘要；服务端脚本缓存被清空（重启 / SCRIPT FLUSH）时重新加载一次
+     */
+    private <R> R eval(Script script, RScript.ReturnType returnType, List<Object> keys, Object... args) {
+        RScript rScript = client.getScript(StringCodec.INSTANCE);
+        try {
+            return rScript.evalSha(RScript.Mode.READ_WRITE, script.sha(), returnType, keys, args);
+        } catch (RedisException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("NOSCRIPT")) {
+                throw e;
+            }
+            rScript.scriptLoad(script.body());
+            return rScript.evalSha(RScript.Mode.READ_WRITE, script.sha(), returnType, keys, args);
+        }
+    }
+
+    private record Script(String body, String sha) {
+        Script(String body) {
+            this(body, DigestUtil.sha1Hex(body));
+        }
+    }
+}
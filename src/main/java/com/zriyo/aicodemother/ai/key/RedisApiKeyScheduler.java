@@ -1,11 +1,11 @@
 package com.zriyo.aicodemother.ai.key;
 
+import com.zriyo.aicodemother.event.ApiKeyBannedEvent;
 import com.zriyo.aicodemother.model.enums.AiCodeGenStage;
 import com.zriyo.aicodemother.util.RedisUtils;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RMapCache;
-import org.redisson.api.RScoredSortedSet;
-import org.redisson.api.RedissonClient;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -13,27 +13,43 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class RedisApiKeyScheduler {
 
     private static final int MAX_PER_KEY = 3;
     private static final int FAILURE_THRESHOLD = 5;
-    private static final String FAIL_COUNT_PREFIX = "ai:key:fail:count:";
-    private static final String BAN_LABEL_PREFIX = "ai:key:ban:";
-    private static final String SOFT_BAN_PREFIX = "ai:key:softban:";
-    private static final String LEASE_CACHE_PREFIX = "ai:key:active_leases:";
     private static final int SOFT_BAN_DURATION_SEC = 60;
     private static final int LEASE_TTL_MIN = 10;
+    private static final long FAIL_COUNT_TTL_SEC = TimeUnit.HOURS.toSeconds(24);
 
     private final ConcurrentHashMap<AiCodeGenStage, String> stageModelMap = new ConcurrentHashMap<>();
+    private final ApplicationEventPublisher publisher;
 
-    private RedissonClient client() {
-        return RedisUtils.getClient();
+    private volatile ApiKeyLeaseEngine engine;
+
+    /**
+     * RedisUtils 的客户端在首次访问时才从容器中获取，这里同样延迟构建
+     */
+    private ApiKeyLeaseEngine engine() {
+        ApiKeyLeaseEngine current = engine;
+        if (current == null) {
+            synchronized (this) {
+                if (engine == null) {
+                    engine = new ApiKeyLeaseEngine(RedisUtils.getClient());
+                }
+                current = engine;
+            }
+        }
+        return current;
     }
 
     public void setStageModelMap(AiCodeGenStage stage, String modelName) {
@@ -42,142 +58,80 @@ public class RedisApiKeyScheduler {
 
     public void registerModelKeys(AiCodeGenStage stage, Collection<String> apiKeys) {
         String modelName = getModelName(stage);
-        String redisKey = poolKey(modelName);
-        RScoredSortedSet<String> zset = client().getScoredSortedSet(redisKey);
-
-        for (String key : apiKeys) {
-            if (!zset.contains(key)) {
-                zset.add(MAX_PER_KEY, key);
-            }
-        }
+        engine().register(poolKey(modelName), apiKeys, MAX_PER_KEY);
         log.info("[AI-KeyPool] {} 注册完成，Model: {}, 数量: {}", stage, modelName, apiKeys.size());
     }
 
+    /**
+     * 原子租用一个 Key：选 Key、过滤封禁、扣减额度、记录租约在同一段脚本中完成
+     */
     public String acquire(AiCodeGenStage stage) {
         String modelName = getModelName(stage);
-        String redisKey = poolKey(modelName);
-        RScoredSortedSet<String> zset = client().getScoredSortedSet(redisKey);
-
-        return RedisUtils.executeWithLockAndReturn(redisKey, 200, () -> {
-            String lastResortKey = null;
-
-            Collection<String> allKeys = zset.valueRangeReversed(0, -1);
-            if (allKeys.isEmpty()) {
-                throw new IllegalStateException("当前阶段 " + stage + " 模型池中没有任何注册的 API Key");
-            }
-
-            for (String key : allKeys) {
-                if (client().getBucket(BAN_LABEL_PREFIX + key).isExists()) {
-                    continue;
-                }
-
-                boolean isSoftBanned = client().getBucket(SOFT_BAN_PREFIX + key).isExists();
-
-                Double score = zset.getScore(key);
-                if (score != null && score > 0) {
-                    if (!isSoftBanned) {
-                        return consumeKey(zset, key, score);
-                    } else {
-                        if (lastResortKey == null) {
-                            lastResortKey = key;
-                        }
-                    }
-                }
-            }
-
-            if (lastResortKey != null) {
-                log.warn("[AI-KeyPool] {} 处于冷却期，但作为唯一可用 Key 被强制启用", mask(lastResortKey));
-                Double score = zset.getScore(lastResortKey);
-                return consumeKey(zset, lastResortKey, score);
-            }
+        List<Object> result = engine().acquire(poolKey(modelName), UUID.randomUUID().toString(),
+                System.currentTimeMillis(), TimeUnit.MINUTES.toMillis(LEASE_TTL_MIN));
 
+        long status = ((Number) result.get(0)).longValue();
+        if (status == ApiKeyLeaseEngine.EMPTY_POOL) {
+            throw new IllegalStateException("当前阶段 " + stage + " 模型池中没有任何注册的 API Key");
+        }
+        if (status == ApiKeyLeaseEngine.EXHAUSTED) {
             throw new RuntimeException("当前阶段 " + stage + " 无可用 API Key，所有 Key 已达并发上限或已被硬封禁");
-        });
-    }
+        }
 
-    private String consumeKey(RScoredSortedSet<String> zset, String key, Double currentScore) {
-        zset.add(currentScore - 1, key);
-        String leaseId = UUID.randomUUID().toString();
-        client().getMapCache(LEASE_CACHE_PREFIX + key)
-                .put(leaseId, 1, LEASE_TTL_MIN, TimeUnit.MINUTES);
+        String key = (String) result.get(1);
+        if (status == ApiKeyLeaseEngine.ACQUIRED_LAST_RESORT) {
+            log.warn("[AI-KeyPool] {} 处于冷却期，但作为唯一可用 Key 被强制启用", mask(key));
+        }
         return key;
     }
 
     public void release(AiCodeGenStage stage, String apiKey) {
         String modelName = getModelName(stage);
-        RScoredSortedSet<String> zset = client().getScoredSortedSet(poolKey(modelName));
-
-        if (zset.contains(apiKey)) {
-            RMapCache<String, Integer> leases = client().getMapCache(LEASE_CACHE_PREFIX + apiKey);
-            if (!leases.isEmpty()) {
-                leases.fastRemove(leases.keySet().iterator().next());
-            }
-
-            Double currentScore = zset.getScore(apiKey);
-            if (currentScore != null && currentScore < MAX_PER_KEY) {
-                zset.add(currentScore + 1, apiKey);
-            }
-        }
+        engine().release(poolKey(modelName), apiKey, MAX_PER_KEY);
     }
 
     /**
-     * 【增强版】成功汇报：
+     * 【增强版】成功汇报（单次脚本原子完成）：
      * 1. 清空失败计数
      * 2. 解除软封禁
-     * 3. 【新增】将该 Key 在所有已知模型池中的分数重置为 MAX_PER_KEY（即完全返还额度）
+     * 3. 将该 Key 在所有已知模型池中的分数重置为 MAX_PER_KEY（即完全返还额度）
      */
     public void reportSuccess(String apiKey) {
-        // 1. 清空失败计数
-        client().getAtomicLong(FAIL_COUNT_PREFIX + apiKey).delete();
-        // 2. 清除软封禁
-        client().getBucket(SOFT_BAN_PREFIX + apiKey).delete();
-
-        // 3. 【关键新增】重置该 Key 在所有模型池中的分数为 MAX_PER_KEY
-        if (!stageModelMap.isEmpty()) {
-            for (String modelName : stageModelMap.values()) {
-                String redisKey = poolKey(modelName);
-                RScoredSortedSet<String> zset = client().getScoredSortedSet(redisKey);
-                if (zset.contains(apiKey)) {
-                    // 直接设置分数为 MAX_PER_KEY（覆盖当前值）
-                    zset.add(MAX_PER_KEY, apiKey);
-                }
-            }
+        Set<String> poolKeys = new HashSet<>();
+        for (String modelName : stageModelMap.values()) {
+            poolKeys.add(poolKey(modelName));
         }
+        engine().reportSuccess(apiKey, poolKeys, MAX_PER_KEY);
 
         log.debug("[AI-KeyPool] Key {} 请求成功，已重置失败计数并完全返还额度", mask(apiKey));
     }
 
     public void reportFailure(String apiKey, AiCodeGenStage stage) {
-        client().getBucket(SOFT_BAN_PREFIX + apiKey).set("COOLING", SOFT_BAN_DURATION_SEC, TimeUnit.SECONDS);
-        log.warn("[AI-KeyPool] Key {} 进入 {} 秒冷却期", mask(apiKey), SOFT_BAN_DURATION_SEC);
-
-        String redisFailKey = FAIL_COUNT_PREFIX + apiKey;
-        long count = client().getAtomicLong(redisFailKey).incrementAndGet();
-        client().getAtomicLong(redisFailKey).expire(24, TimeUnit.HOURS);
+        long count = engine().reportFailure(apiKey, SOFT_BAN_DURATION_SEC, FAILURE_THRESHOLD,
+                secondsUntilSixAm(), FAIL_COUNT_TTL_SEC);
 
         if (count >= FAILURE_THRESHOLD) {
             log.error("[AI-KeyPool] Key {} 累计失败 {} 次，触发硬封禁", mask(apiKey), count);
-            banKeyUntilSixAm(apiKey);
-            client().getAtomicLong(redisFailKey).delete();
-            client().getBucket(SOFT_BAN_PREFIX + apiKey).delete();
+            publisher.publishEvent(new ApiKeyBannedEvent(this, apiKey));
         } else {
-            log.warn("[AI-KeyPool] Key {} 故障统计: {}/{}", mask(apiKey), count, FAILURE_THRESHOLD);
+            log.warn("[AI-KeyPool] Key {} 进入 {} 秒冷却期，故障统计: {}/{}",
+                    mask(apiKey), SOFT_BAN_DURATION_SEC, count, FAILURE_THRESHOLD);
         }
     }
 
-    private void banKeyUntilSixAm(String apiKey) {
+    private long secondsUntilSixAm() {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime target = now.with(LocalTime.of(6, 0, 0));
         if (now.isAfter(target)) {
             target = target.plusDays(1);
         }
-        long secondsUntilSix = Duration.between(now, target).getSeconds();
-        client().getBucket(BAN_LABEL_PREFIX + apiKey).set("BANNED", secondsUntilSix, TimeUnit.SECONDS);
+        return Math.max(1, Duration.between(now, target).getSeconds());
     }
 
     public void disable(AiCodeGenStage stage, String apiKey) {
         String modelName = getModelName(stage);
-        client().getScoredSortedSet(poolKey(modelName)).remove(apiKey);
+        engine().remove(poolKey(modelName), apiKey);
+        publisher.publishEvent(new ApiKeyBannedEvent(this, apiKey));
     }
 
     private String getModelName(AiCodeGenStage stage) {
@@ -189,22 +143,15 @@ public class RedisApiKeyScheduler {
     @Scheduled(fixedDelay = 60000)
     public void watchdogAuditKeys() {
         if (stageModelMap.isEmpty()) return;
-        for (String modelName : stageModelMap.values()) {
-            String redisKey = poolKey(modelName);
-            RScoredSortedSet<String> zset = client().getScoredSortedSet(redisKey);
-
-            for (String apiKey : zset.valueRange(0, -1)) {
-                int activeLeaseCount = client().getMapCache(LEASE_CACHE_PREFIX + apiKey).size();
-                int targetScore = MAX_PER_KEY - activeLeaseCount;
-                Double currentScore = zset.getScore(apiKey);
-
-                if (currentScore != null && currentScore.intValue() != targetScore) {
-                    zset.add(targetScore, apiKey);
-                }
+        long now = System.currentTimeMillis();
+        for (String modelName : new HashSet<>(stageModelMap.values())) {
+            long fixed = engine().audit(poolKey(modelName), MAX_PER_KEY, now);
+            if (fixed > 0) {
+                log.info("[AI-KeyPool] Model: {} 巡检校正 {} 个 Key 的并发额度", modelName, fixed);
             }
         }
     }
 
-    private String poolKey(String modelName) { return "ai:keypool:" + modelName; }
+    private String poolKey(String modelName) { return ApiKeyLeaseEngine.POOL_PREFIX + modelName; }
     private String mask(String k) { return k.length() > 8 ? k.substring(0, 8) + "****" : "****"; }
 }
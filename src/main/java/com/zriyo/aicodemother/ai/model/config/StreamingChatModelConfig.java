@@ -2,7 +2,9 @@ package com.zriyo.aicodemother.ai.model.config;
 
 import com.zriyo.aicodemother.ai.key.RedisApiKeyScheduler;
 import com.zriyo.aicodemother.ai.model.proxy.AiModelExecutor;
+import com.zriyo.aicodemother.ai.model.proxy.ModelRetryEngine;
 import com.zriyo.aicodemother.ai.model.proxy.StreamingChatModelProxy;
+import com.zriyo.aicodemother.ai.model.proxy.StreamingChatModelRegistry;
 import com.zriyo.aicodemother.ai.service.AiModelMonitorListener;
 import com.zriyo.aicodemother.model.enums.AiCodeGenStage;
 import dev.langchain4j.model.chat.StreamingChatModel;
@@ -31,6 +33,10 @@ public class StreamingChatModelConfig extends BaseAiConfig {
     private RedisApiKeyScheduler apiKeyScheduler;
     @Resource
     private AiModelExecutor aiModelExecutor;
+    @Resource
+    private StreamingChatModelRegistry streamingChatModelRegistry;
+    @Resource
+    private ModelRetryEngine modelRetryEngine;
 
     @PostConstruct
     public void registerKeys() {
@@ -39,6 +45,8 @@ public class StreamingChatModelConfig extends BaseAiConfig {
         // 2. 将配置文件中的 apiKeys 注册到 Redis 池中
         if (getApiKeys() != null && !getApiKeys().isEmpty()) {
             apiKeyScheduler.registerModelKeys(AiCodeGenStage.CODE_GENERATION, getApiKeys());
+            // 3. 预热流式客户端，避免首个请求承担客户端构建开销
+            streamingChatModelRegistry.warmUp(this);
         }
     }
 
@@ -51,6 +59,8 @@ public class StreamingChatModelConfig extends BaseAiConfig {
         return new StreamingChatModelProxy(
                 apiKeyScheduler,
                 this,
+                streamingChatModelRegistry,
+                modelRetryEngine,
                 AiCodeGenStage.CODE_GENERATION,
                 List.of(aiModelMonitorListener)
         );
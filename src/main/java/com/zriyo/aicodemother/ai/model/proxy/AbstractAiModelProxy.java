@@ -60,6 +60,7 @@ public abstract class AbstractAiModelProxy {
         if (listeners == null) return;
 
         attributes.putIfAbsent("modelName", Objects.toString(getModelName(), "unknown_model"));
+        attributes.putIfAbsent("stage", stage.getValue());
         syncContextToAttributes(request, attributes);
 
         ChatModelRequestContext ctx = new ChatModelRequestContext(request, ModelProvider.OPEN_AI, attributes);
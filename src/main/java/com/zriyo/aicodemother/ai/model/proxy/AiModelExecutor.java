@@ -7,43 +7,66 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.function.Predicate;
+
 @Component
 @Slf4j
 @Getter
 public class AiModelExecutor {
     @Resource
     private RedisApiKeyScheduler apiKeyScheduler;
+    @Resource
+    private ModelRetryEngine retryEngine;
 
     /**
      * 通用的执行模板
+     * 每次尝试重新选择 Key；失败后按失败类型与共享重试预算决定是否重试。
+     * ChatModel.chat 是阻塞调用，调用线程本来就要等待结果，因此退避直接在调用线程上等待，不切换到其他线程
+     *
      * @param stage 阶段
-     * @param maxRetries 最大换 Key 次数
+     * @param maxRetries 最大尝试次数（含首次）
      * @param action 执行的具体动作 (传入选中的 Key，返回是否成功)
      */
-    public void executeWithRetry(AiCodeGenStage stage, int maxRetries, java.util.function.Predicate<String> action) {
-        int attempts = 0;
-        while (attempts < maxRetries) {
-            String apiKey = apiKeyScheduler.acquire(stage);
+    public void executeWithRetry(AiCodeGenStage stage, int maxRetries, Predicate<String> action) {
+        retryEngine.onRequest();
+        for (int retry = 1; ; retry++) {
             try {
-                // 执行动作，如果返回 true 表示成功
-                if (action.test(apiKey)) {
-                    return;
-                }
-                // 如果返回 false，也上报失败并继续重试
-                apiKeyScheduler.reportFailure(apiKey, stage);
-            } catch (Exception e) {
-                log.error("[AI-Executor] Key {} 失败: {}", apiKey.substring(0,8), e.getMessage());
-                apiKeyScheduler.reportFailure(apiKey, stage);
-            } finally {
-                apiKeyScheduler.release(stage, apiKey); // 统一归还并发额度
+                attempt(stage, action);
+                return;
+            } catch (RuntimeException e) {
+                Duration delay = retryEngine.decide(e, false, retry, maxRetries - 1)
+                        .orElseThrow(() -> new RuntimeException("AI 执行耗尽重试次数", e));
+                backoff(delay);
             }
-            attempts++;
-            backoff(attempts);
         }
-        throw new RuntimeException("AI 执行耗尽重试次数");
     }
 
-    private void backoff(int attempt) {
-        try { Thread.sleep(Math.min(500L * attempt, 3000L)); } catch (InterruptedException ignored) {}
+    private static void backoff(Duration delay) {
+        if (delay.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("AI 执行重试等待被中断", e);
+        }
+    }
+
+    private void attempt(AiCodeGenStage stage, Predicate<String> action) {
+        String apiKey = apiKeyScheduler.acquire(stage);
+        try {
+            // 执行动作，如果返回 true 表示成功
+            if (!action.test(apiKey)) {
+                throw new IllegalStateException("AI 执行未成功");
+            }
+        } catch (RuntimeException e) {
+            log.error("[AI-Executor] Key {} 失败: {}", apiKey.substring(0, 8), e.getMessage());
+            apiKeyScheduler.reportFailure(apiKey, stage);
+            throw e;
+        } finally {
+            apiKeyScheduler.release(stage, apiKey); // 统一归还并发额度
+        }
     }
 }
@@ -0,0 +1,104 @@
+package com.zriyo.aicodemother.ai.model.proxy;
+
+import com.zriyo.aicodemother.config.ModelRetryConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 模型调用重试引擎
+ * 职责：按失败类型决定是否重试与退避时长，流式调用的退避通过 Reactor 定时器实现，等待期间不占用任何线程
+ * （同步调用由 AiModelExecutor 在本就阻塞等待结果的调用线程上退避）；
+ * 所有请求共享一个重试预算（令牌桶），上游大面积限流时整体重试量被限制在请求量的固定比例内，避免重试风暴
+ */
+@Slf4j
+@Component
+public class ModelRetryEngine {
+
+    private final ModelRetryConfig config;
+    private final Map<ModelRetryPolicy, Counter> retries = new EnumMap<>(ModelRetryPolicy.class);
+    private final Counter budgetExhausted;
+
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    public ModelRetryEngine(ModelRetryConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.tokens = config.getBudgetMaxTokens();
+        for (ModelRetryPolicy policy : ModelRetryPolicy.values()) {
+            retries.put(policy, Counter.builder("ai_model_retry_total")
+                    .description("模型调用重试次数")
+                    .tag("reason", policy.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.budgetExhausted = Counter.builder("ai_model_retry_budget_exhausted_total")
+                .description("因重试预算耗尽而放弃的重试次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录一次新的模型请求（不含重试），为重试预算存入额度
+     */
+    public synchronized void onRequest() {
+        refill();
+        tokens = Math.min(config.getBudgetMaxTokens(), tokens + config.getBudgetRatio());
+    }
+
+    /**
+     * 判断失败后是否重试
+     *
+     * @param retry 即将进行的是第几次重试（从 1 开始）
+     * @param maxRetries 调用方允许的最大重试次数
+     * @return 需要重试时返回退避时长
+     */
+    public Optional<Duration> decide(Throwable error, boolean dataProduced, int retry, int maxRetries) {
+        ModelRetryPolicy policy = ModelRetryPolicy.classify(error, dataProduced);
+        if (retry > Math.min(policy.getMaxRetries(), maxRetries)) {
+            return Optional.empty();
+        }
+        if (!tryWithdraw()) {
+            budgetExhausted.increment();
+            log.warn("[AI-Retry] 重试预算耗尽，放弃重试，失败类型: {}", policy);
+            return Optional.empty();
+        }
+        retries.get(policy).increment();
+        Duration delay = policy.backoff(retry);
+        log.warn("[AI-Retry] 失败类型: {}，第 {} 次重试，退避 {} ms", policy, retry, delay.toMillis());
+        return Optional.of(delay);
+    }
+
+    /**
+     * 退避后执行重试动作；等待由定时器完成，动作在 boundedElastic 上执行（获取 Key 可能阻塞）
+     */
+    public void schedule(Duration delay, Runnable action) {
+        if (delay.isZero()) {
+            Schedulers.boundedElastic().schedule(action);
+            return;
+        }
+        Mono.delay(delay, Schedulers.boundedElastic()).subscribe(tick -> action.run());
+    }
+
+    private synchronized boolean tryWithdraw() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double seconds = (now - lastRefillNanos) / 1_000_000_000.0;
+        lastRefillNanos = now;
+        tokens = Math.min(config.getBudgetMaxTokens(), tokens + seconds * config.getBudgetMinPerSecond());
+    }
+}
@@ -0,0 +1,122 @@
+package com.zriyo.aicodemother.ai.model.proxy;
+
+import dev.langchain4j.exception.AuthenticationException;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.NonRetriableException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.exception.TimeoutException;
+import lombok.Getter;
+
+import java.io.InterruptedIOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 模型调用失败的分类与对应的重试策略
+ * 退避为带抖动的指数退避：base * 2^(n-1)，在 ±jitter 范围内随机，且不超过 maxDelay
+ */
+@Getter
+public enum ModelRetryPolicy {
+
+    /**
+     * 限流（429）：退避要足够长，给服务端恢复的时间
+     */
+    RATE_LIMIT(4, Duration.ofSeconds(2), Duration.ofSeconds(30), 0.5),
+
+    /**
+     * 服务端错误（5xx）
+     */
+    SERVER_ERROR(3, Duration.ofMillis(500), Duration.ofSeconds(8), 0.5),
+
+    /**
+     * 连接 / 读取超时
+     */
+    TIMEOUT(2, Duration.ofSeconds(1), Duration.ofSeconds(8), 0.5),
+
+    /**
+     * Key 失效（401 / 403）：换一个 Key 立即重试
+     */
+    AUTH(4, Duration.ZERO, Duration.ZERO, 0),
+
+    /**
+     * 已经输出过内容后的传输中断：重试会重复输出，不重试，由调用方柔性收尾
+     */
+    STREAM_INTERRUPTED(0, Duration.ZERO, Duration.ZERO, 0),
+
+    /**
+     * 参数错误等其他 4xx：重试无意义
+     */
+    CLIENT_ERROR(0, Duration.ZERO, Duration.ZERO, 0),
+
+    /**
+     * 无法识别的异常（包括连接被拒绝等网络错误）
+     */
+    UNKNOWN(3, Duration.ofSeconds(1), Duration.ofSeconds(8), 0.5);
+
+    private final int maxRetries;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final double jitter;
+
+    ModelRetryPolicy(int maxRetries, Duration baseDelay, Duration maxDelay, double jitter) {
+        this.maxRetries = maxRetries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.jitter = jitter;
+    }
+
+    /**
+     * 第 retry 次重试（从 1 开始）前的等待时间
+     */
+    public Duration backoff(int retry) {
+        if (baseDelay.isZero()) {
+            return Duration.ZERO;
+        }
+        long exp = baseDelay.toMillis() << Math.min(retry - 1, 16);
+        long capped = Math.min(exp, maxDelay.toMillis());
+        double factor = 1 + jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+        return Duration.ofMillis(Math.min(maxDelay.toMillis(), Math.round(capped * factor)));
+    }
+
+    public static ModelRetryPolicy classify(Throwable error, boolean dataProduced) {
+        if (dataProduced) {
+            return STREAM_INTERRUPTED;
+        }
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof RateLimitException) {
+                return RATE_LIMIT;
+            }
+            if (t instanceof AuthenticationException) {
+                return AUTH;
+            }
+            if (t instanceof InternalServerException) {
+                return SERVER_ERROR;
+            }
+            if (t instanceof TimeoutException || t instanceof HttpTimeoutException
+                    || t instanceof java.util.concurrent.TimeoutException || t instanceof InterruptedIOException) {
+                return TIMEOUT;
+            }
+            if (t instanceof HttpException http) {
+                int status = http.statusCode();
+                if (status == 429) {
+                    return RATE_LIMIT;
+                }
+                if (status == 401 || status == 403) {
+                    return AUTH;
+                }
+                if (status >= 500) {
+                    return SERVER_ERROR;
+                }
+                if (status >= 400) {
+                    return CLIENT_ERROR;
+                }
+            }
+            if (t instanceof NonRetriableException) {
+                return CLIENT_ERROR;
+            }
+        }
+        return UNKNOWN;
+    }
+}
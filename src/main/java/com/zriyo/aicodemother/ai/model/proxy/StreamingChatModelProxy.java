@@ -2,6 +2,7 @@ package com.zriyo.aicodemother.ai.model.proxy;
 
 import com.zriyo.aicodemother.ai.key.RedisApiKeyScheduler;
 import com.zriyo.aicodemother.ai.model.config.StreamingChatModelConfig;
+import com.zriyo.aicodemother.ai.service.AiModelMonitorListener;
 import com.zriyo.aicodemother.core.handler.AiContextHolder;
 import com.zriyo.aicodemother.model.MonitorContext;
 import com.zriyo.aicodemother.model.enums.AiCodeGenStage;
@@ -12,23 +13,29 @@ import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
-import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 public class StreamingChatModelProxy extends AbstractAiModelProxy implements StreamingChatModel {
 
     private final StreamingChatModelConfig config;
-    private static final int MAX_RETRY = 5;
+    private final StreamingChatModelRegistry modelRegistry;
+    private final ModelRetryEngine retryEngine;
 
     public StreamingChatModelProxy(RedisApiKeyScheduler apiKeyScheduler, StreamingChatModelConfig config,
+                                   StreamingChatModelRegistry modelRegistry, ModelRetryEngine retryEngine,
                                    AiCodeGenStage stage, List<ChatModelListener> listeners) {
         super(apiKeyScheduler, stage, listeners);
         this.config = config;
+        this.modelRegistry = modelRegistry;
+        this.retryEngine = retryEngine;
     }
 
     @Override
@@ -46,35 +53,13 @@ public class StreamingChatModelProxy extends AbstractAiModelProxy implements Str
         }
 
         Map<Object, Object> attributes = initContext(chatRequest);
+        retryEngine.onRequest();
         attemptChatAsync(chatRequest, handler, 0, attributes);
     }
 
     private void attemptChatAsync(ChatRequest chatRequest, StreamingChatResponseHandler handler,
                                   int attemptCount, Map<Object, Object> attributes) {
 
-        if (attemptCount >= MAX_RETRY) {
-            Throwable lastError = (Throwable) attributes.get("LAST_ERROR");
-            log.error("API 重试耗尽，执行柔性结束。最后异常: {}", lastError != null ? lastError.getMessage() : "未知");
-
-            handler.onPartialResponse("\n[系统：AI 服务响应异常，已尽力恢复当前代码状态。] ");
-            handler.onCompleteResponse(ChatResponse.builder()
-                    .aiMessage(AiMessage.from("Retries exhausted, emergency stop."))
-                    .build());
-            return;
-        }
-
-        if (attemptCount > 0) {
-            long waitMillis = (long) Math.pow(2, attemptCount - 1) * 1000;
-            log.warn("准备进行第 {} 次退避重试，等待 {} ms...", attemptCount, waitMillis);
-            try {
-                Thread.sleep(waitMillis);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("Interrupted")).build());
-                return;
-            }
-        }
-
         String apiKey;
         try {
             apiKey = apiKeyScheduler.acquire(stage);
@@ -86,28 +71,31 @@ public class StreamingChatModelProxy extends AbstractAiModelProxy implements Str
 
         AtomicBoolean hasDataProduced = new AtomicBoolean(false);
 
-        StreamingChatModel delegate = OpenAiStreamingChatModel.builder()
-                .apiKey(apiKey)
-                .baseUrl(config.getBaseUrl())
-                .modelName(config.getModelName())
-                .timeout(config.parseDuration())
-                .build();
+        // 从注册表获取共享客户端，复用连接而不是每次重建
+        StreamingChatModel delegate = modelRegistry.get(config, apiKey);
 
         log.info("发起流式请求 [Attempt: {}], Model: {}, Key: {}", attemptCount, config.getModelName(), apiKey.substring(0, 8) + "...");
 
         delegate.chat(chatRequest, new StreamingChatResponseHandler() {
             @Override
             public void onPartialResponse(String s) {
-                hasDataProduced.set(true);
+                markFirstToken();
                 handler.onPartialResponse(s);
             }
 
             @Override
             public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
-                hasDataProduced.set(true);
+                markFirstToken();
                 handler.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
             }
 
+            private void markFirstToken() {
+                if (!hasDataProduced.getAndSet(true)) {
+                    // 只记录整个请求（含重试）的第一个输出片段，用于首 Token 延迟统计
+                    attributes.putIfAbsent(AiModelMonitorListener.FIRST_TOKEN_TIME_KEY, Instant.now());
+                }
+            }
+
             @Override
             public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
                 handler.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
@@ -131,9 +119,16 @@ public class StreamingChatModelProxy extends AbstractAiModelProxy implements Str
                 apiKeyScheduler.reportFailure(apiKey, stage);
                 apiKeyScheduler.release(stage, apiKey);
 
-                if (!hasDataProduced.get()) {
-                    // 连接期异常：内部指数退避重试
-                    attemptChatAsync(chatRequest, handler, attemptCount + 1, attributes);
+                Optional<Duration> backoff = retryEngine.decide(error, hasDataProduced.get(), attemptCount + 1, MAX_RETRY - 1);
+                if (backoff.isPresent()) {
+                    // 连接期异常：定时器退避后换 Key 重试，等待期间不占用线程
+                    retryEngine.schedule(backoff.get(), () -> attemptChatAsync(chatRequest, handler, attemptCount + 1, attributes));
+                } else if (!hasDataProduced.get()) {
+                    log.error("API 重试结束，执行柔性结束。最后异常: {}", error.getMessage());
+                    handler.onPartialResponse("\n[系统：AI 服务响应异常，已尽力恢复当前代码状态。] ");
+                    handler.onCompleteResponse(ChatResponse.builder()
+                            .aiMessage(AiMessage.from("Retries exhausted, emergency stop."))
+                            .build());
                 } else {
                     // 传输中异常：柔性结束，保护后续 Handler
                     log.warn("流传输中断，执行柔性收尾。原因: {}", error.getMessage());
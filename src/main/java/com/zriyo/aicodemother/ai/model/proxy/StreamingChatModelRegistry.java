@@ -0,0 +1,151 @@
+package com.zriyo.aicodemother.ai.model.proxy;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.zriyo.aicodemother.ai.model.config.BaseAiConfig;
+import com.zriyo.aicodemother.event.ApiKeyBannedEvent;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.spring.restclient.SpringRestClient;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 流式模型客户端注册表
+ * 职责：按 (baseUrl, apiKey, modelName, timeout) 复用 OpenAiStreamingChatModel，
+ * 同一超时档位的所有客户端共享一个底层 HTTP 客户端（连接池 + keep-alive），
+ * 避免每次请求 / 每次重试都重新构建客户端并重新握手 TLS
+ */
+@Slf4j
+@Component
+public class StreamingChatModelRegistry {
+
+    /**
+     * 流式读取线程：所有客户端共用虚拟线程，不再为每个客户端单独创建线程池
+     */
+    private final VirtualThreadTaskExecutor streamingExecutor = new VirtualThreadTaskExecutor("ai-stream-");
+
+    /**
+     * 超时档位 -> 共享 HTTP 客户端
+     */
+    private final Map<Duration, HttpClient> httpClients = new ConcurrentHashMap<>();
+
+    private final Cache<ClientKey, StreamingChatModel> models = Caffeine.newBuilder()
+            .maximumSize(500)
+            .expireAfterAccess(Duration.ofHours(2))
+            .recordStats()
+            .<ClientKey, StreamingChatModel>removalListener((key, value, cause) ->
+                    log.debug("[AI-ClientPool] 客户端被移除，model: {}, 原因: {}", key != null ? key.modelName() : null, cause))
+            .build();
+
+    public StreamingChatModelRegistry(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, models, "ai_streaming_client_pool");
+    }
+
+    /**
+     * 获取（或构建）指定 Key 的流式模型客户端
+     */
+    public StreamingChatModel get(BaseAiConfig config, String apiKey) {
+        return models.get(ClientKey.of(config, apiKey), this::create);
+    }
+
+    /**
+     * 启动预热：为配置中的所有 Key 提前构建客户端
+     */
+    public void warmUp(BaseAiConfig config) {
+        if (config.getApiKeys() == null) return;
+        config.getApiKeys().forEach(apiKey -> get(config, apiKey));
+        log.info("[AI-ClientPool] 预热完成，Model: {}, 客户端数量: {}", config.getModelName(), models.estimatedSize());
+    }
+
+    /**
+     * 回收某个 Key 对应的全部客户端
+     */
+    public void evict(String apiKey) {
+        models.asMap().keySet().removeIf(key -> key.apiKey().equals(apiKey));
+    }
+
+    @EventListener(classes = ApiKeyBannedEvent.class)
+    public void onApiKeyBanned(ApiKeyBannedEvent event) {
+        evict(event.getApiKey());
+        log.info("[AI-ClientPool] Key 已封禁，回收对应客户端");
+    }
+
+    /**
+     * 连接池统计信息
+     */
+    public PoolStats stats() {
+        CacheStats s = models.stats();
+        return new PoolStats(models.estimatedSize(), httpClients.size(),
+                s.hitCount(), s.missCount(), s.evictionCount());
+    }
+
+    private StreamingChatModel create(ClientKey key) {
+        log.info("[AI-ClientPool] 构建流式客户端，Model: {}, Timeout: {}", key.modelName(), key.timeout());
+        return OpenAiStreamingChatModel.builder()
+                .httpClientBuilder(new SharedHttpClientBuilder(sharedHttpClient(key.timeout())))
+                .apiKey(key.apiKey())
+                .baseUrl(key.baseUrl())
+                .modelName(key.modelName())
+                .timeout(key.timeout())
+                .build();
+    }
+
+    private HttpClient sharedHttpClient(Duration timeout) {
+        return httpClients.computeIfAbsent(timeout, t -> SpringRestClient.builder()
+                .connectTimeout(t)
+                .readTimeout(t)
+                .streamingRequestExecutor(streamingExecutor)
+                .build());
+    }
+
+    record ClientKey(String baseUrl, String apiKey, String modelName, Duration timeout) {
+        static ClientKey of(BaseAiConfig config, String apiKey) {
+            return new ClientKey(config.getBaseUrl(), apiKey, config.getModelName(), config.parseDuration());
+        }
+    }
+
+    public record PoolStats(long clients, int httpClients, long hits, long misses, long evictions) {
+    }
+
+    /**
+     * 直接返回已构建好的共享客户端，超时配置已在构建共享客户端时确定
+     */
+    private record SharedHttpClientBuilder(HttpClient shared) implements HttpClientBuilder {
+        @Override
+        public Duration connectTimeout() {
+            return null;
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration timeout) {
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return null;
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration timeout) {
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            return shared;
+        }
+    }
+}
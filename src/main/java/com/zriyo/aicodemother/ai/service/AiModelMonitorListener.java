@@ -1,7 +1,11 @@
 package com.zriyo.aicodemother.ai.service;
 
+import com.zriyo.aicodemother.ai.model.proxy.ModelRetryPolicy;
 import com.zriyo.aicodemother.core.handler.AiContextHolder;
 import com.zriyo.aicodemother.core.handler.AiModelMetricsCollector;
+import com.zriyo.aicodemother.core.trace.GenerationTrace;
+import com.zriyo.aicodemother.core.trace.SpanKind;
+import com.zriyo.aicodemother.core.trace.TraceSpan;
 import com.zriyo.aicodemother.model.MonitorContext;
 import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
@@ -14,18 +18,27 @@ import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 
 /**
  * AI 模型监控监听器
  * 修复点：采用“属性优先”策略，解决异步工具调用导致的 TTL 丢失及 NPE 问题
+ * 指标只按模型 / 阶段 / 结果聚合；用户、应用与原始错误信息写入采样事件日志
+ * 处于生成流程中时，每次模型调用在生成时间线上记为一个 LLM Span（含首 Token 延迟与 Token 数）
  */
 @Component
 @Slf4j
 public class AiModelMonitorListener implements ChatModelListener {
 
+    /**
+     * 第一个输出片段到达的时间，由流式代理写入
+     */
+    public static final String FIRST_TOKEN_TIME_KEY = "first_token_time";
+
     private static final String REQUEST_START_TIME_KEY = "request_start_time";
+    private static final String TRACE_SPAN_KEY = "trace_span";
     private static final String DEFAULT_ID = "0";
 
     @Resource
@@ -33,51 +46,74 @@ public class AiModelMonitorListener implements ChatModelListener {
 
     @Override
     public void onRequest(ChatModelRequestContext requestContext) {
-        String userId = getSafeAttribute(requestContext.attributes(), "userId");
-        String appId = getSafeAttribute(requestContext.attributes(), "appId");
-
         // 2. 存入开始时间
         requestContext.attributes().put(REQUEST_START_TIME_KEY, Instant.now());
 
-        String modelName = requestContext.chatRequest().modelName();
-        if (modelName == null){
-            modelName = requestContext.attributes().get("modelName").toString();
-        }
+        String modelName = resolveModelName(requestContext.chatRequest().modelName(), requestContext.attributes());
+        String stage = getStage(requestContext.attributes());
         // 3. 记录指标（这里的参数已确保非 null）
-        aiModelMetricsCollector.recordRequest(userId, appId, modelName, "started");
+        aiModelMetricsCollector.recordRequest(modelName, stage, "started");
+
+        TraceSpan span = GenerationTrace.startSpan("llm " + stage, SpanKind.LLM);
+        if (span != TraceSpan.NOOP) {
+            requestContext.attributes().put(TRACE_SPAN_KEY, span.attr("model", modelName).attr("stage", stage));
+        }
     }
 
     @Override
     public void onResponse(ChatModelResponseContext responseContext) {
-        String userId = getSafeAttribute(responseContext.attributes(), "userId");
-        String appId = getSafeAttribute(responseContext.attributes(), "appId");
-
         if (responseContext.chatResponse() == null) {
             return;
         }
-
-        String modelName = responseContext.chatRequest().modelName();
-        if (modelName == null){
-            modelName = responseContext.attributes().get("modelName").toString();
+        Map<Object, Object> attributes = responseContext.attributes();
+        String modelName = resolveModelName(responseContext.chatRequest().modelName(), attributes);
+        String stage = getStage(attributes);
+
+        aiModelMetricsCollector.recordRequest(modelName, stage, "success");
+        Duration duration = recordResponseTime(attributes, modelName, stage, "success");
+        Duration firstToken = recordTimeToFirstToken(attributes, modelName, stage);
+        Integer outputTokens = recordTokenUsage(responseContext, modelName, stage);
+        recordEvent(attributes, modelName, stage, "success", null, null, duration, firstToken, outputTokens);
+
+        if (attributes.get(TRACE_SPAN_KEY) instanceof TraceSpan span) {
+            if (firstToken != null) {
+                span.attr("first_token_ms", firstToken.toMillis());
+            }
+            if (outputTokens != null) {
+                span.attr("output_tokens", outputTokens);
+            }
+            span.end();
         }
-        aiModelMetricsCollector.recordRequest(userId, appId, modelName, "success");
-        recordResponseTime(responseContext.attributes(), userId, appId, modelName);
-        recordTokenUsage(responseContext, userId, appId, modelName);
     }
 
     @Override
     public void onError(ChatModelErrorContext errorContext) {
-        String userId = getSafeAttribute(errorContext.attributes(), "userId");
-        String appId = getSafeAttribute(errorContext.attributes(), "appId");
+        Map<Object, Object> attributes = errorContext.attributes();
+        String modelName = resolveModelName(errorContext.chatRequest().modelName(), attributes);
+        String stage = getStage(attributes);
+        String errorClass = ModelRetryPolicy.classify(errorContext.error(), false).name().toLowerCase(Locale.ROOT);
+        String errorMessage = errorContext.error() != null ? errorContext.error().getMessage() : "Unknown Error";
+
+        aiModelMetricsCollector.recordRequest(modelName, stage, "error");
+        aiModelMetricsCollector.recordError(modelName, stage, errorClass);
+        Duration duration = recordResponseTime(attributes, modelName, stage, "error");
+        recordEvent(attributes, modelName, stage, "error", errorClass, errorMessage, duration,
+                firstTokenLatency(attributes), null);
+
+        if (attributes.get(TRACE_SPAN_KEY) instanceof TraceSpan span) {
+            span.attr("error_class", errorClass).end(errorContext.error());
+        }
+    }
 
-        String modelName = errorContext.chatRequest().modelName();
-        if (modelName == null){
-            modelName = errorContext.attributes().get("modelName").toString();
-        }        String errorMessage = errorContext.error() != null ? errorContext.error().getMessage() : "Unknown Error";
+    private String resolveModelName(String modelName, Map<Object, Object> attributes) {
+        if (modelName != null) {
+            return modelName;
+        }
+        return Objects.toString(attributes.get("modelName"), "unknown_model");
+    }
 
-        aiModelMetricsCollector.recordRequest(userId, appId, modelName, "error");
-        aiModelMetricsCollector.recordError(userId, appId, modelName, errorMessage);
-        recordResponseTime(errorContext.attributes(), userId, appId, modelName);
+    private String getStage(Map<Object, Object> attributes) {
+        return Objects.toString(attributes.get("stage"), "unknown");
     }
 
     /**
@@ -108,28 +144,70 @@ public class AiModelMonitorListener implements ChatModelListener {
     /**
      * 记录响应耗时
      */
-    private void recordResponseTime(Map<Object, Object> attributes, String userId, String appId, String modelName) {
+    private Duration recordResponseTime(Map<Object, Object> attributes, String modelName, String stage, String outcome) {
         Instant startTime = (Instant) attributes.get(REQUEST_START_TIME_KEY);
-        if (startTime != null) {
-            Duration responseTime = Duration.between(startTime, Instant.now());
-            aiModelMetricsCollector.recordResponseTime(userId, appId, modelName, responseTime);
+        if (startTime == null) {
+            return null;
         }
+        Duration responseTime = Duration.between(startTime, Instant.now());
+        aiModelMetricsCollector.recordResponseTime(modelName, stage, outcome, responseTime);
+        return responseTime;
     }
 
     /**
-     * 记录 Token 消耗
+     * 记录首 Token 延迟，非流式请求没有首 Token 时间，不记录
      */
-    private void recordTokenUsage(ChatModelResponseContext responseContext, String userId, String appId, String modelName) {
-        if (responseContext.chatResponse().metadata() == null) return;
+    private Duration recordTimeToFirstToken(Map<Object, Object> attributes, String modelName, String stage) {
+        Duration latency = firstTokenLatency(attributes);
+        if (latency != null) {
+            aiModelMetricsCollector.recordTimeToFirstToken(modelName, stage, latency);
+        }
+        return latency;
+    }
+
+    private Duration firstTokenLatency(Map<Object, Object> attributes) {
+        Instant startTime = (Instant) attributes.get(REQUEST_START_TIME_KEY);
+        Instant firstToken = (Instant) attributes.get(FIRST_TOKEN_TIME_KEY);
+        return startTime != null && firstToken != null ? Duration.between(startTime, firstToken) : null;
+    }
+
+    /**
+     * 记录 Token 消耗与输出速度，返回输出 Token 数
+     */
+    private Integer recordTokenUsage(ChatModelResponseContext responseContext, String modelName, String stage) {
+        if (responseContext.chatResponse().metadata() == null) return null;
 
         TokenUsage tokenUsage = responseContext.chatResponse().metadata().tokenUsage();
-        if (tokenUsage != null) {
-            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "input",
-                    Objects.requireNonNullElse(tokenUsage.inputTokenCount(), 0));
-            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "output",
-                    Objects.requireNonNullElse(tokenUsage.outputTokenCount(), 0));
-            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "total",
-                    Objects.requireNonNullElse(tokenUsage.totalTokenCount(), 0));
+        if (tokenUsage == null) return null;
+
+        int output = Objects.requireNonNullElse(tokenUsage.outputTokenCount(), 0);
+        aiModelMetricsCollector.recordTokenUsage(modelName, stage, "input",
+                Objects.requireNonNullElse(tokenUsage.inputTokenCount(), 0));
+        aiModelMetricsCollector.recordTokenUsage(modelName, stage, "output", output);
+        aiModelMetricsCollector.recordTokenUsage(modelName, stage, "total",
+                Objects.requireNonNullElse(tokenUsage.totalTokenCount(), 0));
+
+        // 输出速度只统计首 Token 之后的生成阶段，排除排队与首包等待
+        Instant firstToken = (Instant) responseContext.attributes().get(FIRST_TOKEN_TIME_KEY);
+        if (firstToken != null && output > 0) {
+            long millis = Duration.between(firstToken, Instant.now()).toMillis();
+            if (millis > 0) {
+                aiModelMetricsCollector.recordTokensPerSecond(modelName, stage, output * 1000.0 / millis);
+            }
         }
+        return output;
+    }
+
+    private void recordEvent(Map<Object, Object> attributes, String modelName, String stage, String outcome,
+                             String errorClass, String errorMessage, Duration duration, Duration firstToken,
+                             Integer outputTokens) {
+        aiModelMetricsCollector.recordEvent(new AiModelMetricsCollector.ModelCallEvent(
+                Instant.now(),
+                getSafeAttribute(attributes, "userId"),
+                getSafeAttribute(attributes, "appId"),
+                modelName, stage, outcome, errorClass, errorMessage,
+                duration != null ? duration.toMillis() : null,
+                firstToken != null ? firstToken.toMillis() : null,
+                outputTokens));
     }
 }
@@ -0,0 +1,350 @@
+package com.zriyo.aicodemother.ai.simulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.zriyo.aicodemother.config.LlmSimulatorConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地模拟模型：根据 OpenAI 格式的请求生成确定性的回复计划与流式分片
+ * 1. 请求携带 writeFile / continueWriting / finishRepair 等工具时，按对话中已有的工具结果数量依次发起
+ *    writeFile → continueWriting → finishRepair（仅在工具存在时）的调用，全部完成后返回一段文本结束对话
+ * 2. 不带工具的请求优先按 replays 规则回放录制内容，否则生成一段包含 Vue 代码块的文本
+ * 3. 错误注入、抖动与生成内容由（种子 + 请求序号）决定，同一配置下重复压测的行为一致
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "codegen.llm-simulator", name = "enabled", havingValue = "true")
+public class LlmSimulator {
+
+    private static final Pattern PATH_PATTERN = Pattern.compile("(src/[\\w/.\\-]+\\.(?:vue|js|ts|css|html|json))");
+
+    private final LlmSimulatorConfig config;
+    private final ObjectMapper objectMapper;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public LlmSimulator(LlmSimulatorConfig config, ObjectMapper objectMapper) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 为一次请求生成回复计划，包括注入的错误与全部输出分片
+     */
+    public Plan plan(Map<String, Object> request) {
+        long requestNo = sequence.getAndIncrement();
+        SplittableRandom random = new SplittableRandom(config.getSeed() * 31 + requestNo);
+        String model = String.valueOf(request.getOrDefault("model", "simulated-model"));
+        String id = "chatcmpl-sim-" + requestNo;
+
+        double roll = random.nextDouble();
+        if (roll < config.getRateLimitRate()) {
+            return Plan.failure(429, "Rate limit exceeded (simulated)");
+        }
+        if (roll < config.getRateLimitRate() + config.getServerErrorRate()) {
+            return Plan.failure(503, "Service unavailable (simulated)");
+        }
+
+        List<Map<String, Object>> messages = listOf(request.get("messages"));
+        Reply reply = reply(messages, listOf(request.get("tools")), random);
+
+        int promptTokens = Math.max(1, String.valueOf(messages).length() / chars());
+        int completionTokens = Math.max(1, reply.length() / chars());
+        List<String> chunks = reply.toolName() != null
+                ? toolChunks(id, model, reply)
+                : textChunks(id, model, reply.text());
+
+        int cutAt = -1;
+        if (random.nextDouble() < config.getMidStreamCutRate() && chunks.size() > 2) {
+            cutAt = 1 + random.nextInt(chunks.size() - 1);
+        }
+        chunks.add(finishChunk(id, model, reply.toolName() != null ? "tool_calls" : "stop"));
+        chunks.add(usageChunk(id, model, promptTokens, completionTokens));
+
+        log.info("[LLM-Sim] 请求 #{} -> {}，分片: {}，{}", requestNo,
+                reply.toolName() != null ? "工具调用 " + reply.toolName() : "文本 " + reply.length() + " 字符",
+                chunks.size(), cutAt >= 0 ? "将在第 " + cutAt + " 片断开" : "正常结束");
+        return new Plan(0, null, chunks, cutAt, delays(chunks.size(), random),
+                completion(id, model, reply, promptTokens, completionTokens));
+    }
+
+    private Reply reply(List<Map<String, Object>> messages, List<Map<String, Object>> tools, SplittableRandom random) {
+        Map<String, Set<String>> toolParams = toolParams(tools);
+        if (toolParams.containsKey("writeFile")) {
+            List<String> steps = new ArrayList<>();
+            steps.add("writeFile");
+            if (toolParams.containsKey("continueWriting")) steps.add("continueWriting");
+            if (toolParams.containsKey("finishRepair")) steps.add("finishRepair");
+
+            int step = toolResultsSinceLastUser(messages);
+            if (step < steps.size()) {
+                String path = guessPath(messages);
+                String content = vueFile(path, new SplittableRandom(path.hashCode() ^ config.getSeed()));
+                int split = content.length() * 6 / 10;
+                String name = steps.get(step);
+                String part = "writeFile".equals(name) && toolParams.containsKey("continueWriting")
+                        ? content.substring(0, split)
+                        : "continueWriting".equals(name) ? content.substring(split) : content;
+                return new Reply(null, name, arguments(toolParams.get(name), path, part));
+            }
+            return new Reply("文件已全部写入完成。", null, null);
+        }
+
+        String joined = String.valueOf(messages);
+        for (LlmSimulatorConfig.Replay replay : config.getReplays()) {
+            if (replay.getMatch() != null && joined.contains(replay.getMatch())) {
+                try {
+                    return new Reply(Files.readString(Path.of(replay.getFile()), StandardCharsets.UTF_8), null, null);
+                } catch (IOException e) {
+                    log.warn("[LLM-Sim] 回放文件读取失败: {}", replay.getFile(), e);
+                }
+            }
+        }
+        String path = guessPath(messages);
+        return new Reply("好的，以下是 " + path + " 的实现：\n\n```vue\n" + vueFile(path, random) + "\n```\n", null, null);
+    }
+
+    private String arguments(Set<String> params, String path, String content) {
+        ObjectNode args = objectMapper.createObjectNode();
+        for (String param : params) {
+            switch (param) {
+                case "content" -> args.put(param, content);
+                case "description" -> args.put(param, "模拟生成 " + path);
+                case "summary" -> args.put(param, "模拟修复完成");
+                case "relativePath", "relativeFilePath" -> args.put(param, path);
+                default -> args.put(param, "");
+            }
+        }
+        return args.toString();
+    }
+
+    /**
+     * 生成确定性的 Vue 单文件组件，长度约为 generatedFileChars
+     */
+    private String vueFile(String path, SplittableRandom random) {
+        StringBuilder sb = new StringBuilder("<template>\n  <div class=\"page\">\n");
+        int row = 0;
+        while (sb.length() < config.getGeneratedFileChars() - 200) {
+            sb.append("    <div class=\"item-").append(row++).append("\" :data-seed=\"")
+                    .append(random.nextInt(100000)).append("\">{{ list[").append(row).append("] }}</div>\n");
+        }
+        return sb.append("  </div>\n</template>\n<script setup>\nimport { ref } from 'vue'\n// ")
+                .append(path).append("\nconst list = ref([])\n</script>\n").toString();
+    }
+
+    private List<String> textChunks(String id, String model, String text) {
+        List<String> chunks = new ArrayList<>();
+        int step = chars();
+        for (int i = 0; i < text.length(); i += step) {
+            ObjectNode delta = objectMapper.createObjectNode();
+            if (i == 0) delta.put("role", "assistant");
+            delta.put("content", text.substring(i, Math.min(text.length(), i + step)));
+            chunks.add(chunk(id, model, delta, null));
+        }
+        return chunks;
+    }
+
+    private List<String> toolChunks(String id, String model, Reply reply) {
+        List<String> chunks = new ArrayList<>();
+        ObjectNode head = objectMapper.createObjectNode();
+        head.put("role", "assistant");
+        ObjectNode call = toolCall(head);
+        call.put("id", "call_" + id);
+        call.put("type", "function");
+        ((ObjectNode) call.get("function")).put("name", reply.toolName()).put("arguments", "");
+        chunks.add(chunk(id, model, head, null));
+
+        String arguments = reply.toolArguments();
+        int step = chars();
+        for (int i = 0; i < arguments.length(); i += step) {
+            ObjectNode delta = objectMapper.createObjectNode();
+            ((ObjectNode) toolCall(delta).get("function"))
+                    .put("arguments", arguments.substring(i, Math.min(arguments.length(), i + step)));
+            chunks.add(chunk(id, model, delta, null));
+        }
+        return chunks;
+    }
+
+    private ObjectNode toolCall(ObjectNode delta) {
+        ObjectNode call = delta.putArray("tool_calls").addObject();
+        call.put("index", 0);
+        call.putObject("function");
+        return call;
+    }
+
+    private String finishChunk(String id, String model, String finishReason) {
+        return chunk(id, model, objectMapper.createObjectNode(), finishReason);
+    }
+
+    private String chunk(String id, String model, ObjectNode delta, String finishReason) {
+        ObjectNode root = envelope(id, model, "chat.completion.chunk");
+        ObjectNode choice = root.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.set("delta", delta);
+        choice.put("finish_reason", finishReason);
+        return root.toString();
+    }
+
+    private String usageChunk(String id, String model, int promptTokens, int completionTokens) {
+        ObjectNode root = envelope(id, model, "chat.completion.chunk");
+        root.putArray("choices");
+        usage(root, promptTokens, completionTokens);
+        return root.toString();
+    }
+
+    /**
+     * 非流式请求的完整响应
+     */
+    private String completion(String id, String model, Reply reply, int promptTokens, int completionTokens) {
+        ObjectNode root = envelope(id, model, "chat.completion");
+        ObjectNode choice = root.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        if (reply.toolName() != null) {
+            message.putNull("content");
+            ObjectNode call = message.putArray("tool_calls").addObject();
+            call.put("id", "call_" + id);
+            call.put("type", "function");
+            call.putObject("function").put("name", reply.toolName()).put("arguments", reply.toolArguments());
+            choice.put("finish_reason", "tool_calls");
+        } else {
+            message.put("content", reply.text());
+            choice.put("finish_reason", "stop");
+        }
+        usage(root, promptTokens, completionTokens);
+        return root.toString();
+    }
+
+    private ObjectNode envelope(String id, String model, String object) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("id", id);
+        root.put("object", object);
+        root.put("created", System.currentTimeMillis() / 1000);
+        root.put("model", model);
+        return root;
+    }
+
+    private void usage(ObjectNode root, int promptTokens, int completionTokens) {
+        root.putObject("usage")
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+    }
+
+    /**
+     * 每个分片的发送延迟：第一个分片为首 Token 延迟，之后按输出速度计算各分片的理论时间点，
+     * 再对齐到 tickMillis，同一个间隔内的分片一起推送
+     */
+    private List<Duration> delays(int chunkCount, SplittableRandom random) {
+        List<Duration> delays = new ArrayList<>(chunkCount);
+        long tick = Math.max(1, config.getTickMillis());
+        double millisPerChunk = 1000.0 / Math.max(0.001, config.getTokensPerSecond());
+        long previous = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            if (i == 0) {
+                delays.add(Duration.ofMillis(jitter(config.getFirstTokenMillis(), random)));
+                continue;
+            }
+            long due = (long) (i * millisPerChunk) / tick * tick;
+            delays.add(Duration.ofMillis(jitter(due - previous, random)));
+            previous = due;
+        }
+        return delays;
+    }
+
+    private long jitter(long millis, SplittableRandom random) {
+        if (millis <= 0 || config.getJitterRatio() <= 0) {
+            return Math.max(0, millis);
+        }
+        double factor = 1 + (random.nextDouble() * 2 - 1) * config.getJitterRatio();
+        return Math.max(0, Math.round(millis * factor));
+    }
+
+    private int chars() {
+        return Math.max(1, config.getCharsPerToken());
+    }
+
+    private static Map<String, Set<String>> toolParams(List<Map<String, Object>> tools) {
+        Map<String, Set<String>> result = new LinkedHashMap<>();
+        for (Map<String, Object> tool : tools) {
+            if (!(tool.get("function") instanceof Map<?, ?> function)) continue;
+            Set<String> params = new LinkedHashSet<>();
+            if (function.get("parameters") instanceof Map<?, ?> schema
+                    && schema.get("properties") instanceof Map<?, ?> properties) {
+                properties.keySet().forEach(key -> params.add(String.valueOf(key)));
+            }
+            result.put(String.valueOf(function.get("name")), params);
+        }
+        return result;
+    }
+
+    private static int toolResultsSinceLastUser(List<Map<String, Object>> messages) {
+        int count = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            Object role = messages.get(i).get("role");
+            if ("user".equals(role)) break;
+            if ("tool".equals(role)) count++;
+        }
+        return count;
+    }
+
+    private static String guessPath(List<Map<String, Object>> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            Matcher matcher = PATH_PATTERN.matcher(String.valueOf(messages.get(i).get("content")));
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+        }
+        return "src/App.vue";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> listOf(Object value) {
+        return value instanceof List<?> list ? (List<Map<String, Object>>) list : List.of();
+    }
+
+    private record Reply(String text, String toolName, String toolArguments) {
+        int length() {
+            return text != null ? text.length() : toolArguments.length();
+        }
+    }
+
+    /**
+     * 回复计划
+     *
+     * @param status      非 0 时直接返回该 HTTP 状态码
+     * @param chunks      流式分片（JSON），不含结尾的 [DONE]
+     * @param cutAt       >= 0 时发送完该下标之前的分片后断开连接
+     * @param delays      每个分片发送前的等待时间
+     * @param completion  非流式请求的完整响应
+     */
+    public record Plan(int status, String error, List<String> chunks, int cutAt, List<Duration> delays,
+                       String completion) {
+        static Plan failure(int status, String error) {
+            return new Plan(status, error, List.of(), -1, List.of(), null);
+        }
+
+        public Duration totalDelay() {
+            return delays.stream().reduce(Duration.ZERO, Duration::plus);
+        }
+    }
+}
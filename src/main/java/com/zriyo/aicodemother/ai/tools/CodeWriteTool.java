@@ -1,41 +1,66 @@
 package com.zriyo.aicodemother.ai.tools;
 
 import com.anji.captcha.util.StringUtils;
+import com.zriyo.aicodemother.core.context.ProjectContextCache;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.*;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * 单文件代码写入工具
+ * 首次写入先落到临时文件再原子重命名，读者不会看到写了一半的文件；续写只追加新内容，
+ * 重叠检测只依赖内存中保留的文件尾部窗口，不再整文件读回与重写
+ */
 @Slf4j
 public class CodeWriteTool {
 
     private final String fullRelativePath;
 
+    private final ProjectContextCache contextCache;
+
     private final AtomicInteger writeFileCount = new AtomicInteger(0);
     private final AtomicInteger continueWriteCount = new AtomicInteger(0);
     private static final int MAX_WRITE_FILE = 1;
     private static final int MAX_CONTINUE_WRITE = 1;
 
+    /**
+     * 续写重叠检测的尾部窗口（字符）
+     */
+    private static final int TAIL_WINDOW = 8000;
+
+    /**
+     * 误把整段 JSON 当作内容提交时，"content" 键只会出现在开头，只在这个范围内查找
+     */
+    private static final int ENVELOPE_HEAD = 256;
+
     private static final Pattern CONTENT_PATTERN =
             Pattern.compile("\"content\"\\s*:\\s*\"([\\s\\S]*?)\"", Pattern.DOTALL);
 
-    public CodeWriteTool(String fullRelativePath) {
+    /**
+     * 当前文件已写入内容的尾部，null 表示尚未加载（由磁盘文件末尾惰性读取）
+     */
+    private StringBuilder tail;
+
+    public CodeWriteTool(String fullRelativePath, ProjectContextCache contextCache) {
         if (StringUtils.isBlank(fullRelativePath)) {
             throw new IllegalArgumentException("文件路径不能为空");
         }
         this.fullRelativePath = fullRelativePath.startsWith("/")
                 ? fullRelativePath.substring(1)
                 : fullRelativePath;
+        this.contextCache = contextCache;
     }
 
     /**
@@ -67,15 +92,18 @@ public class CodeWriteTool {
             content = recoverIfTruncated(description, content);
             Path outputPath = getOutputPath();
 
-            String existing = readSafely(outputPath);
-            if (content.equals(existing)) {
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            if (sameContent(outputPath, bytes)) {
                 log.info("文件内容无变化，拒绝写入: {}", fullRelativePath);
                 writeFileCount.incrementAndGet();
                 return "{\"error\":\"NO_CHANGES\",\"message\":\"提交的内容与原文件一致。请检查修复逻辑（如引号转义、括号闭合等）并重新尝试。\"}";
             }
 
             createParentDirs(outputPath);
-            writeSafely(outputPath, content, false);
+            replaceAtomically(outputPath, bytes);
+            tail = new StringBuilder(TAIL_WINDOW * 2);
+            appendTail(content);
+            contextCache.invalidateFile(outputPath);
 
             writeFileCount.incrementAndGet();
             continueWriteCount.set(0);
@@ -110,10 +138,16 @@ public class CodeWriteTool {
             Path outputPath = getOutputPath();
             createParentDirs(outputPath);
 
-            String existing = readSafely(outputPath);
-            content = trimOverlap(existing, content);
+            if (tail == null) {
+                tail = readTail(outputPath);
+            }
+            content = trimOverlap(tail, content);
 
-            writeSafely(outputPath, content, true);
+            if (!content.isEmpty()) {
+                Files.write(outputPath, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                appendTail(content);
+            }
+            contextCache.invalidateFile(outputPath);
 
             continueWriteCount.incrementAndGet();
             log.info("文件续写成功: {}", outputPath);
@@ -125,22 +159,24 @@ public class CodeWriteTool {
         }
     }
 
-    // ========= 以下保持原有逻辑不变 =========
-
-    private String recoverIfTruncated(String description, String content) {
+    static String recoverIfTruncated(String description, String content) {
         if (StringUtils.isNotBlank(description)) {
             return content;
         }
+        int key = content.indexOf("\"content\"");
+        if (key < 0 || key > ENVELOPE_HEAD) {
+            return content;
+        }
         try {
             Matcher cm = CONTENT_PATTERN.matcher(content);
-            if (cm.find()) {
+            if (cm.find(key)) {
                 return unescapeJsonString(cm.group(1));
             }
         } catch (Exception ignore) {}
         return content;
     }
 
-    private String unescapeJsonString(String s) {
+    private static String unescapeJsonString(String s) {
         if (s == null) return null;
         return s.replace("\\n", "\n")
                 .replace("\\t", "\t")
@@ -148,35 +184,95 @@ public class CodeWriteTool {
                 .replace("\\\\", "\\");
     }
 
-    private String trimOverlap(String existing, String newContent) {
-        if (existing == null || existing.isEmpty() || newContent.isEmpty()) {
+    /**
+     * 去掉续写内容开头与已写入尾部重复的部分
+     * 求 "尾部的最长后缀 = 新内容的前缀"：以新内容为模式串做一次 KMP 匹配，扫完尾部时的匹配长度即为重叠长度，O(窗口 + 新内容)
+     */
+    static String trimOverlap(CharSequence tail, String newContent) {
+        if (tail == null || tail.isEmpty() || newContent.isEmpty()) {
             return newContent;
         }
-        int window = Math.min(existing.length(), 8000);
-        String tail = existing.substring(existing.length() - window);
-        int max = Math.min(tail.length(), newContent.length());
-        for (int i = max; i > 0; i--) {
-            if (newContent.startsWith(tail.substring(tail.length() - i))) {
-                return newContent.substring(i);
+        int m = Math.min(newContent.length(), Math.min(tail.length(), TAIL_WINDOW));
+        int[] next = new int[m];
+        for (int i = 1, k = 0; i < m; i++) {
+            while (k > 0 && newContent.charAt(i) != newContent.charAt(k)) {
+                k = next[k - 1];
+            }
+            if (newContent.charAt(i) == newContent.charAt(k)) {
+                k++;
+            }
+            next[i] = k;
+        }
+        int matched = 0;
+        for (int i = tail.length() - m; i < tail.length(); i++) {
+            char c = tail.charAt(i);
+            while (matched > 0 && (matched == m || newContent.charAt(matched) != c)) {
+                matched = next[matched - 1];
+            }
+            if (newContent.charAt(matched) == c) {
+                matched++;
+            }
+        }
+        return newContent.substring(matched);
+    }
+
+    private void appendTail(String content) {
+        tail.append(content);
+        if (tail.length() > TAIL_WINDOW * 2) {
+            tail.delete(0, tail.length() - TAIL_WINDOW);
+        }
+    }
+
+    /**
+     * 从磁盘文件末尾读取尾部窗口，用于本实例未做过首次写入时的续写
+     */
+    private static StringBuilder readTail(Path path) {
+        StringBuilder result = new StringBuilder(TAIL_WINDOW * 2);
+        try (SeekableByteChannel channel = Files.newByteChannel(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // UTF-8 单字符最多 4 字节，读取 4 倍窗口足以覆盖 TAIL_WINDOW 个字符
+            int length = (int) Math.min(size, TAIL_WINDOW * 4L);
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            channel.position(size - length);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
             }
+            byte[] bytes = buffer.array();
+            int start = 0;
+            // 跳过被截断的多字节字符的后续字节
+            while (start < bytes.length && (bytes[start] & 0xC0) == 0x80) {
+                start++;
+            }
+            String text = new String(bytes, start, bytes.length - start, StandardCharsets.UTF_8);
+            result.append(text, Math.max(0, text.length() - TAIL_WINDOW), text.length());
+        } catch (NoSuchFileException e) {
+            return result;
+        } catch (IOException e) {
+            log.warn("读取文件尾部失败，续写将不做重叠检测: {}", path, e);
         }
-        return newContent;
+        return result;
     }
 
-    private String readSafely(Path path) {
+    /**
+     * 先比较大小，只有大小一致时才读取全文比对
+     */
+    private static boolean sameContent(Path path, byte[] bytes) {
         try {
-            if (!Files.exists(path)) return "";
-            return Files.readString(path, StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            return "";
+            if (!Files.isRegularFile(path) || Files.size(path) != bytes.length) {
+                return false;
+            }
+            return Arrays.equals(Files.readAllBytes(path), bytes);
+        } catch (IOException e) {
+            return false;
         }
     }
 
-    private void writeSafely(Path path, String data, boolean append) throws IOException {
-        if (append) {
-            Files.write(path, data.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-        } else {
-            Files.write(path, data.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    private static void replaceAtomically(Path path, byte[] bytes) throws IOException {
+        Path temp = path.resolveSibling("." + path.getFileName() + ".tmp-" + UUID.randomUUID());
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
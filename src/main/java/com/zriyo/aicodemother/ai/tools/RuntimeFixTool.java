@@ -1,6 +1,7 @@
 package com.zriyo.aicodemother.ai.tools;
 
 import com.anji.captcha.util.StringUtils;
+import com.zriyo.aicodemother.core.context.ProjectContextCache;
 import com.zriyo.aicodemother.model.AppConstant;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
@@ -20,6 +21,7 @@ import java.util.regex.Pattern;
 public class RuntimeFixTool {
 
     private final Long appId;
+    private final ProjectContextCache contextCache;
     // 每一个 Tool 实例都是随 AI 服务创建的，任务结束随对象销毁，彻底解决内存泄露
     private final ConcurrentHashMap<String, Integer> writeFileCountMap = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Integer> continueWriteCountMap = new ConcurrentHashMap<>();
@@ -30,8 +32,9 @@ public class RuntimeFixTool {
     private static final Pattern CONTENT_PATTERN =
             Pattern.compile("\"content\"\\s*:\\s*\"([\\s\\S]*?)\"", Pattern.DOTALL);
 
-    public RuntimeFixTool(Long appId) {
+    public RuntimeFixTool(Long appId, ProjectContextCache contextCache) {
         this.appId = appId;
+        this.contextCache = contextCache;
     }
 
     private String getOutputPath() {
@@ -70,6 +73,7 @@ public class RuntimeFixTool {
                 createParentDirs(outputPath);
                 Files.writeString(outputPath, processedContent, StandardCharsets.UTF_8,
                         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                contextCache.invalidateFile(outputPath);
                 log.info("【writeFile 成功】AppId: {} | 路径: {} | 长度: {}", appId, cleanPath, processedContent.length());
             }
 
@@ -103,6 +107,7 @@ public class RuntimeFixTool {
                 String existing = Files.exists(outputPath) ? Files.readString(outputPath, StandardCharsets.UTF_8) : "";
                 String appendData = trimOverlap(existing, processedContent);
                 Files.writeString(outputPath, appendData, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+                contextCache.invalidateFile(outputPath);
                 log.info("【continueWriting 成功】AppId: {} | 路径: {} | 追加长度: {}", appId, cleanPath, appendData.length());
             }
             return "{\"status\":\"SUCCESS\"}";
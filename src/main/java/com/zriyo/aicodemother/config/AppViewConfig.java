@@ -19,4 +19,24 @@ public class AppViewConfig {
      */
     private String prefix;
 
+    /**
+     * 预览请求中应用存在性校验的本地缓存时间（秒），应用变更时会主动失效
+     */
+    private int metadataCacheSeconds = 300;
+
+    /**
+     * 预览资源内存缓存上限（字节），缓存改写后的 index.html、小文件内容及其 gzip 版本
+     */
+    private long assetCacheMaxBytes = 64L * 1024 * 1024;
+
+    /**
+     * 不超过该大小的文件整体缓存在内存中，更大的文件只缓存 ETag，直接零拷贝发送
+     */
+    private int inlineMaxBytes = 512 * 1024;
+
+    /**
+     * 小于该大小的文本资源不做 gzip
+     */
+    private int compressMinBytes = 1024;
+
 }
@@ -0,0 +1,38 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "browser.pool")
+public class BrowserPoolConfig {
+
+    /**
+     * 池中常驻的浏览器数量，也是同时进行的截图 / 运行时诊断的上限
+     */
+    private int size = 2;
+
+    /**
+     * 等待空闲浏览器的最长时间（秒）
+     */
+    private int acquireTimeoutSeconds = 120;
+
+    /**
+     * 是否在应用启动后预先拉起浏览器
+     */
+    private boolean warmUp = true;
+
+    /**
+     * Chromium 启动参数
+     */
+    private List<String> launchArgs = new ArrayList<>(List.of(
+            "--no-sandbox", "--disable-setuid-sandbox", "--disable-dev-shm-usage", "--disable-gpu"));
+
+}
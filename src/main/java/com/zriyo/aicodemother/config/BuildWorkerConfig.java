@@ -0,0 +1,40 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.build-worker")
+public class BuildWorkerConfig {
+
+    /**
+     * 是否使用常驻 Node 构建进程做静态诊断
+     * 关闭或构建进程不可用时回退为每次执行 npm run build
+     */
+    private boolean enabled = false;
+
+    /**
+     * 常驻构建进程数量，同一项目固定路由到同一进程以复用模块图缓存
+     */
+    private int workers = 2;
+
+    /**
+     * 单个构建进程最多常驻的项目数（超出后关闭最久未使用的项目）
+     */
+    private int maxProjectsPerWorker = 4;
+
+    /**
+     * 单次重建的超时时间（秒）
+     */
+    private int requestTimeoutSeconds = 120;
+
+    /**
+     * Node 可执行文件
+     */
+    private String nodeCommand = "node";
+
+}
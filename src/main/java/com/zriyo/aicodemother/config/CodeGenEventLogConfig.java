@@ -0,0 +1,45 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.event-log")
+public class CodeGenEventLogConfig {
+
+    /**
+     * 单个生成任务在内存中最多保留的事件条数（环形缓冲，超出后淘汰最早的事件）
+     */
+    private int maxEventsPerTask = 2000;
+
+    /**
+     * 单个生成任务在内存中最多保留的事件字节数（估算值）
+     */
+    private long maxBytesPerTask = 2 * 1024 * 1024;
+
+    /**
+     * 当前节点所有生成任务合计最多保留的事件字节数（估算值）
+     */
+    private long maxBytesGlobal = 64 * 1024 * 1024;
+
+    /**
+     * 是否把事件同步写入 Redis Stream
+     * 开启后断线的客户端可以在任意节点通过 Last-Event-ID 续传，内存中已淘汰的事件也能从 Stream 补齐
+     */
+    private boolean redisSpill = false;
+
+    /**
+     * Redis Stream 的近似最大长度
+     */
+    private int streamMaxLen = 10000;
+
+    /**
+     * 任务结束后 Redis Stream 保留的秒数，供结束前已接入的续传读完剩余事件与结束标记；任务结束后的新请求不再续传
+     */
+    private int retainAfterCompleteSeconds = 600;
+
+}
@@ -0,0 +1,30 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.parallel")
+public class CodeGenParallelConfig {
+
+    /**
+     * 是否开启首次构建的分波次并发生成
+     * 关闭时沿用原有的拓扑顺序串行生成
+     */
+    private boolean enabled = false;
+
+    /**
+     * 单个应用同一波次内最多同时生成的文件数
+     */
+    private int perAppConcurrency = 3;
+
+    /**
+     * 当前节点所有应用合计最多同时生成的文件数
+     */
+    private int perNodeConcurrency = 8;
+
+}
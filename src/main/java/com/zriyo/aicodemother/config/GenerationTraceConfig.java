@@ -0,0 +1,34 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.trace")
+public class GenerationTraceConfig {
+
+    /**
+     * 是否为每次生成记录 Span 时间线（阶段 / 模型调用 / 工具 / 构建 / 截图）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 内存中保留的最近已结束生成数，供后台时间线接口查看
+     */
+    private int maxTraces = 100;
+
+    /**
+     * 单次生成最多记录的 Span 数，超出后只计数不记录，防止异常循环撑爆内存
+     */
+    private int maxSpansPerTrace = 2000;
+
+    /**
+     * 已结束生成的 OTLP/JSON 导出目录，为空时不导出；每次生成一个文件
+     */
+    private String exportDir = "";
+
+}
@@ -0,0 +1,34 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.image-proxy")
+public class ImageProxyConfig {
+
+    /**
+     * 关键词 → 图片地址的本地缓存条数上限
+     */
+    private long maxEntries = 10000;
+
+    /**
+     * 成功结果的缓存时间（分钟）；私有桶返回的是 1 小时有效的预签名地址，不应超过该时长
+     */
+    private long hitTtlMinutes = 30;
+
+    /**
+     * 回源失败（返回占位图）的缓存时间（分钟），期间同一关键词不再重复回源
+     */
+    private long missTtlMinutes = 5;
+
+    /**
+     * 回源图片的最大字节数，超过则放弃上传并返回占位图
+     */
+    private long maxImageBytes = 10 * 1024 * 1024;
+
+}
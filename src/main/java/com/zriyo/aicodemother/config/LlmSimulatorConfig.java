@@ -0,0 +1,84 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.llm-simulator")
+public class LlmSimulatorConfig {
+
+    /**
+     * 是否启用本地模拟模型接口（/llm-sim/v1/chat/completions），仅用于压测与延迟测试
+     */
+    private boolean enabled = false;
+
+    /**
+     * 首 Token 延迟（毫秒）
+     */
+    private long firstTokenMillis = 500;
+
+    /**
+     * 输出速度（Token / 秒）
+     */
+    private double tokensPerSecond = 50;
+
+    /**
+     * 每个 Token 对应的字符数，用于切分输出与估算用量
+     */
+    private int charsPerToken = 4;
+
+    /**
+     * 两次推送之间的间隔（毫秒），每次推送该间隔内应产出的全部 Token
+     */
+    private long tickMillis = 50;
+
+    /**
+     * 延迟抖动比例，实际延迟在 [1 - jitter, 1 + jitter] 倍之间
+     */
+    private double jitterRatio = 0.2;
+
+    /**
+     * 返回 429 的概率
+     */
+    private double rateLimitRate = 0;
+
+    /**
+     * 返回 503 的概率
+     */
+    private double serverErrorRate = 0;
+
+    /**
+     * 输出过程中断开连接的概率
+     */
+    private double midStreamCutRate = 0;
+
+    /**
+     * 随机种子：同一种子下第 N 个请求的错误注入、抖动与生成内容完全相同
+     */
+    private long seed = 42;
+
+    /**
+     * 工具调用生成的文件长度（字符），前 60% 通过 writeFile 写入，其余通过 continueWriting 续写
+     */
+    private int generatedFileChars = 4000;
+
+    /**
+     * 录制回放：消息内容包含 match 时，以 file 的内容作为文本回复，按顺序匹配第一条
+     */
+    private List<Replay> replays = new ArrayList<>();
+
+    @Setter
+    @Getter
+    public static class Replay {
+        private String match;
+        private String file;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.model-metrics")
+public class ModelMetricsConfig {
+
+    /**
+     * 单个指标的单个标签最多允许的不同取值数，超出的取值统一记为 other
+     */
+    private int maxTagValues = 50;
+
+    /**
+     * 本地调用事件日志保留的条数（含用户 / 应用 / 错误信息等高基数字段，不进入指标标签）
+     */
+    private int eventLogSize = 500;
+
+    /**
+     * 成功调用写入事件日志的采样比例，失败调用总是记录
+     */
+    private double successSampleRate = 0.1;
+
+}
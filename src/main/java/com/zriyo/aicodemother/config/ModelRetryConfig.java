@@ -0,0 +1,29 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.model-retry")
+public class ModelRetryConfig {
+
+    /**
+     * 重试预算：每个模型请求为预算存入的额度，0.2 表示整体重试量最多约为请求量的 20%
+     */
+    private double budgetRatio = 0.2;
+
+    /**
+     * 每秒固定补充的重试额度，保证低流量时仍能重试
+     */
+    private double budgetMinPerSecond = 1.0;
+
+    /**
+     * 重试额度上限，限制空闲后突发重试的规模
+     */
+    private double budgetMaxTokens = 20;
+
+}
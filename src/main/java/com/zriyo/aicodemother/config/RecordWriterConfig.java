@@ -0,0 +1,34 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.record-writer")
+public class RecordWriterConfig {
+
+    /**
+     * 单次刷盘最多处理的记录数（每条记录只写其最新状态）
+     */
+    private int batchSize = 100;
+
+    /**
+     * 刷盘间隔（毫秒），同一记录在间隔内的多次状态变化合并为一次写入
+     */
+    private long flushIntervalMillis = 200;
+
+    /**
+     * 同一记录连续写库失败的最大重试次数，超过后丢弃并计入 ai_code_gen_record_dropped_total
+     */
+    private int maxRetries = 5;
+
+    /**
+     * 写库失败后的首次退避（毫秒），之后每次翻倍，最长 10 秒；写入成功后恢复
+     */
+    private long retryBackoffMillis = 500;
+
+}
@@ -0,0 +1,34 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.s3-upload")
+public class S3UploadConfig {
+
+    /**
+     * 超过该大小（字节）的对象使用分片上传
+     */
+    private long multipartThresholdBytes = 16L * 1024 * 1024;
+
+    /**
+     * 分片大小（字节），S3 要求除最后一片外不小于 5MB
+     */
+    private long partSizeBytes = 8L * 1024 * 1024;
+
+    /**
+     * 单个对象同时上传的分片数；输入流来源时也是内存中最多缓冲的分片数
+     */
+    private int parallelism = 4;
+
+    /**
+     * 是否随请求发送 CRC32 校验和，由服务端校验内容完整性
+     */
+    private boolean checksumEnabled = true;
+
+}
@@ -0,0 +1,37 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.source-export")
+public class SourceExportConfig {
+
+    /**
+     * ZIP 压缩级别 0-9，0 为仅存储，-1 为 JDK 默认
+     */
+    private int compressionLevel = 6;
+
+    /**
+     * 是否把打包结果按项目内容指纹缓存到磁盘，命中缓存时支持 Range 断点续传
+     */
+    private boolean cacheEnabled = true;
+
+    /**
+     * 打包时跳过的项目根目录下的子目录
+     */
+    private List<String> excludedDirs = new ArrayList<>(List.of("node_modules", "dist", ".vite-cache"));
+
+    /**
+     * 写出响应时的缓冲区大小（字节）
+     */
+    private int bufferSize = 64 * 1024;
+
+}
@@ -0,0 +1,34 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.storage-cache")
+public class StorageCacheConfig {
+
+    /**
+     * 对象元数据（是否存在 / ETag / 大小）缓存条数上限
+     */
+    private long maxEntries = 10000;
+
+    /**
+     * 已存在对象的元数据缓存时间（秒）
+     */
+    private long metadataTtlSeconds = 300;
+
+    /**
+     * 不存在对象的缓存时间（秒），较短以便其他实例上传后尽快可见
+     */
+    private long missingTtlSeconds = 30;
+
+    /**
+     * 预签名地址在到期前多少秒停止复用并重新签名
+     */
+    private long presignRefreshMarginSeconds = 300;
+
+}
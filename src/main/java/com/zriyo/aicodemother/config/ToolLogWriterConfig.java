@@ -0,0 +1,44 @@
+package com.zriyo.aicodemother.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "codegen.tool-log")
+public class ToolLogWriterConfig {
+
+    /**
+     * 待写入的工具调用记录队列容量
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 单次多行插入的最大条数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 队列中不足一批时的最长刷盘间隔（毫秒）
+     */
+    private long flushIntervalMillis = 500;
+
+    /**
+     * 队列已满时调用方最多等待的毫秒数，超时后退化为同步写库
+     */
+    private long offerTimeoutMillis = 1000;
+
+    /**
+     * 多行插入失败后的重试次数，仍失败则逐条插入；逐条插入也失败的记录计入 ai_tool_log_dropped_total
+     */
+    private int batchRetries = 3;
+
+    /**
+     * 首次重试前的等待毫秒数，之后每次翻倍
+     */
+    private long retryBackoffMillis = 200;
+
+}
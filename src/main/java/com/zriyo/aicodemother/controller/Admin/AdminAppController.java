@@ -101,7 +101,11 @@ public class AdminAppController {
     @PostMapping("/delete")
     public BaseResponse<Boolean> deleteApp(Long  id) {
         ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
+        App app = appService.getById(id);
         boolean result = appService.removeById(id);
+        if (result) {
+            appService.deleteDeployment(app);
+        }
         return ResultUtils.success(result);
     }
 }
@@ -0,0 +1,54 @@
+package com.zriyo.aicodemother.controller.Admin;
+
+import cn.dev33.satoken.annotation.SaCheckRole;
+import com.zriyo.aicodemother.common.BaseResponse;
+import com.zriyo.aicodemother.common.ResultUtils;
+import com.zriyo.aicodemother.constant.UserConstant;
+import com.zriyo.aicodemother.core.trace.GenerationTrace;
+import com.zriyo.aicodemother.core.trace.GenerationTraceRegistry;
+import com.zriyo.aicodemother.exception.BusinessException;
+import com.zriyo.aicodemother.exception.ErrorCode;
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 后台生成时间线：查看进行中与最近结束的生成，按 Span 展开各阶段、模型调用与工具调用耗时
+ */
+@RestController
+@RequestMapping("/admin/generation-traces")
+@SaCheckRole(UserConstant.ADMIN_ROLE)
+public class AdminGenerationTraceController {
+
+    @Resource
+    private GenerationTraceRegistry generationTraceRegistry;
+
+    @GetMapping
+    public BaseResponse<List<GenerationTrace.Summary>> recentTraces(@RequestParam(defaultValue = "20") int limit) {
+        return ResultUtils.success(generationTraceRegistry.recent(Math.max(1, Math.min(limit, 100))));
+    }
+
+    @GetMapping("/{traceId}")
+    public BaseResponse<List<GenerationTrace.SpanView>> timeline(@PathVariable String traceId) {
+        return ResultUtils.success(getTrace(traceId).timeline());
+    }
+
+    /**
+     * OTLP/JSON 格式，可保存后导入 Jaeger 等工具查看
+     */
+    @GetMapping("/{traceId}/otlp")
+    public Map<String, Object> otlp(@PathVariable String traceId) {
+        return getTrace(traceId).toOtlp();
+    }
+
+    private GenerationTrace getTrace(String traceId) {
+        return generationTraceRegistry.find(traceId)
+                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND_ERROR, "时间线不存在或已过期"));
+    }
+}
@@ -0,0 +1,32 @@
+package com.zriyo.aicodemother.controller.Admin;
+
+import cn.dev33.satoken.annotation.SaCheckRole;
+import com.zriyo.aicodemother.common.BaseResponse;
+import com.zriyo.aicodemother.common.ResultUtils;
+import com.zriyo.aicodemother.constant.UserConstant;
+import com.zriyo.aicodemother.core.handler.AiModelMetricsCollector;
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 后台模型调用监控：查看最近的模型调用事件（失败全量、成功采样），用于按用户 / 应用排查单次调用
+ */
+@RestController
+@RequestMapping("/admin/model-metrics")
+@SaCheckRole(UserConstant.ADMIN_ROLE)
+public class AdminModelMetricsController {
+
+    @Resource
+    private AiModelMetricsCollector aiModelMetricsCollector;
+
+    @GetMapping("/events")
+    public BaseResponse<List<AiModelMetricsCollector.ModelCallEvent>> recentEvents(
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResultUtils.success(aiModelMetricsCollector.recentEvents(Math.max(1, Math.min(limit, 500))));
+    }
+}
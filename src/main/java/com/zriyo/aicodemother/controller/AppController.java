@@ -6,6 +6,8 @@ import com.mybatisflex.core.query.QueryWrapper;
 import com.zriyo.aicodemother.common.BaseResponse;
 import com.zriyo.aicodemother.common.ResultUtils;
 import com.zriyo.aicodemother.config.AppViewConfig;
+import com.zriyo.aicodemother.core.export.SourceArchiveExporter;
+import com.zriyo.aicodemother.core.preview.PreviewAssetServer;
 import com.zriyo.aicodemother.exception.BusinessException;
 import com.zriyo.aicodemother.exception.ErrorCode;
 import com.zriyo.aicodemother.exception.ThrowUtils;
@@ -31,7 +33,9 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -40,17 +44,12 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Objects;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 /**
  * 应用接口
@@ -64,6 +63,10 @@ public class AppController {
     private final AppService appService;
     @Autowired
     private AppViewConfig appViewConfig;
+    @Autowired
+    private SourceArchiveExporter sourceArchiveExporter;
+    @Autowired
+    private PreviewAssetServer previewAssetServer;
 
     /**
      * 创建应用
@@ -201,7 +204,7 @@ public class AppController {
             return;
         }
 
-        appService.viewApp(appId, 0L);
+        previewAssetServer.ensureAppExists(appId);
         Path appDir = getAppOutputDir(appId);
         Path targetFile = appDir.resolve(relativePath).normalize();
 
@@ -210,29 +213,13 @@ public class AppController {
             return;
         }
 
-        if (!Files.exists(targetFile)) {
+        if (!Files.isRegularFile(targetFile)) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND, "资源不存在: " + relativePath);
             return;
         }
 
-        if (AppConstant.STATIC_ENTRY_FILE.equals(relativePath) || "index.htm".equals(relativePath)) {
-            response.setContentType("text/html;charset=utf-8");
-            String html = Files.readString(targetFile, java.nio.charset.StandardCharsets.UTF_8);
-
-            // 把所有 src="/... 和 href="/... 改成 src="./... 和 href="./...
-            html = html.replaceAll("src=\"/([^\"/])", "src=\"./$1")
-                    .replaceAll("href=\"/([^\"/])", "href=\"./$1");
-
-            response.getWriter().write(html);
-        } else {
-            // 非 HTML 文件：正常返回
-            String mimeType = URLConnection.guessContentTypeFromName(
-                    targetFile.getFileName().toString()
-            );
-            response.setContentType(mimeType != null ? mimeType : "application/octet-stream");
-            Files.copy(targetFile, response.getOutputStream());
-            response.getOutputStream().flush();
-        }
+        boolean entry = AppConstant.STATIC_ENTRY_FILE.equals(relativePath) || "index.htm".equals(relativePath);
+        previewAssetServer.serve(targetFile, entry, request, response);
     }
 
     /**
@@ -254,12 +241,13 @@ public class AppController {
      */
     @SaIgnore
     @PostMapping(value = "/chat/gen/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<ServerSentEvent<Object>> chatToGenCodeTest(@RequestBody ChatCodeRequest codeRequest) {
+    public Flux<ServerSentEvent<Object>> chatToGenCodeTest(@RequestBody ChatCodeRequest codeRequest,
+                                                           @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
         Long userId = UserAuthUtil.loginByRequestToken();
         // 参数校验
         ThrowUtils.throwIf(codeRequest.getAppId() == null || codeRequest.getAppId() <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
         // 调用服务生成代码（流式）
-        return appService.NewChatToGenCode(codeRequest.getAppId(), codeRequest.getMessage(), userId, codeRequest.getFeedback());
+        return appService.NewChatToGenCode(codeRequest.getAppId(), codeRequest.getMessage(), userId, codeRequest.getFeedback(), lastEventId);
     }
 
     /**
@@ -316,7 +304,9 @@ public class AppController {
     }
 
     @GetMapping("/download")
-    public ResponseEntity<InputStreamResource> downloadSourceCode(@RequestParam Long appId) throws IOException {
+    public ResponseEntity<Resource> downloadSourceCode(@RequestParam Long appId,
+                                                       HttpServletRequest request,
+                                                       HttpServletResponse response) throws IOException {
         // 🔒 1. 校验 appId 合法性
         if (appId == null || appId <= 0) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "无效的应用ID");
@@ -346,64 +336,34 @@ public class AppController {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "源码尚未生成，请稍后重试");
         }
 
-        // 📦 5. 压缩为 ZIP（内存中）
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (ZipOutputStream zipOut = new ZipOutputStream(baos)) {
-            zipDirectory(sourceDir, projectName, zipOut);
-        } // 自动 close zipOut
-
-        byte[] zipBytes = baos.toByteArray();
-        InputStreamResource resource = new InputStreamResource(new ByteArrayInputStream(zipBytes));
-
-        // 📥 6. 设置响应头（安全文件名）
+        // 📦 5. 同一版本已打包过：直接返回缓存文件，由 Spring 处理 Range / If-None-Match
+        String fingerprint = sourceArchiveExporter.fingerprint(sourceDir);
         String safeFilename = "source_" + appId + ".zip"; // 避免特殊字符
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentDispositionFormData("attachment", safeFilename); // 自动处理编码
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentLength(zipBytes.length);
-
-        return ResponseEntity.ok()
-                .headers(headers)
-                .contentLength(zipBytes.length)
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
-    }
+        Path archive = sourceArchiveExporter.cached(projectName, fingerprint).orElse(null);
+        if (archive == null && request.getHeader(HttpHeaders.RANGE) != null && sourceArchiveExporter.isCacheEnabled()) {
+            // 续传请求需要确定的字节偏移，先完整落盘再按区间返回
+            archive = sourceArchiveExporter.buildCache(sourceDir, projectName, fingerprint);
+        }
+        if (archive != null) {
+            return ResponseEntity.ok()
+                    .eTag(fingerprint)
+                    .lastModified(Files.getLastModifiedTime(archive).toMillis())
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            ContentDisposition.attachment().filename(safeFilename).build().toString())
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(new FileSystemResource(archive));
+        }
 
-    /**
-     * 安全地压缩目录，排除 dist / node_modules
-     */
-    private void zipDirectory(Path dir, String baseName, ZipOutputStream zipOut) throws IOException {
-        Files.walk(dir)
-                .filter(path -> {
-                    Path relPath = dir.relativize(path);
-                    String relStr = relPath.toString().replace('\\', '/'); // 统一为 /
-
-                    // 排除 dist 和 node_modules（根目录下）
-                    return !(relStr.startsWith("dist/") || relStr.equals("dist") ||
-                            relStr.startsWith("node_modules/") || relStr.equals("node_modules"));
-                })
-                .forEach(path -> {
-                    try {
-                        Path relPath = dir.relativize(path);
-                        String entryName = baseName + "/" + relPath.toString().replace('\\', '/');
-
-                        // 🔒 防 Zip Slip：确保 entryName 不以 ../ 开头
-                        if (entryName.contains("..")) {
-                            throw new RuntimeException("非法文件路径: " + entryName);
-                        }
-
-                        if (Files.isDirectory(path)) {
-                            zipOut.putNextEntry(new ZipEntry(entryName + "/"));
-                            zipOut.closeEntry();
-                        } else {
-                            zipOut.putNextEntry(new ZipEntry(entryName));
-                            Files.copy(path, zipOut);
-                            zipOut.closeEntry();
-                        }
-                    } catch (IOException e) {
-                        throw new RuntimeException("压缩失败: " + path, e);
-                    }
-                });
+        // 📥 6. 首次下载：边压缩边写入响应，不在内存中保留整个归档
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(safeFilename).build().toString());
+        response.setHeader(HttpHeaders.ETAG, "\"" + fingerprint + "\"");
+        sourceArchiveExporter.stream(sourceDir, projectName, fingerprint, response.getOutputStream());
+        response.flushBuffer();
+        return null;
     }
 
 }
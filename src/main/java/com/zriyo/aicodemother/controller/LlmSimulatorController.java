@@ -0,0 +1,64 @@
+package com.zriyo.aicodemother.controller;
+
+import cn.dev33.satoken.annotation.SaIgnore;
+import com.zriyo.aicodemother.ai.simulator.LlmSimulator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地模拟模型接口（OpenAI 兼容），用于在不调用真实模型的情况下压测生成链路
+ * 将 langchain4j.open-ai.*.base-url 指向 http://localhost:{port}{context-path}/llm-sim/v1 即可
+ */
+@SaIgnore
+@RestController
+@RequestMapping("/llm-sim/v1")
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "codegen.llm-simulator", name = "enabled", havingValue = "true")
+public class LlmSimulatorController {
+
+    private final LlmSimulator simulator;
+
+    @PostMapping("/chat/completions")
+    public ResponseEntity<?> chatCompletions(@RequestBody Map<String, Object> request) {
+        LlmSimulator.Plan plan = simulator.plan(request);
+        if (plan.status() != 0) {
+            return ResponseEntity.status(plan.status())
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error", Map.of("message", plan.error(), "type", "simulated_error")));
+        }
+
+        if (!Boolean.TRUE.equals(request.get("stream"))) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(plan.completion()).delayElement(plan.totalDelay()));
+        }
+
+        List<String> chunks = plan.chunks();
+        int end = plan.cutAt() >= 0 ? plan.cutAt() : chunks.size();
+        Flux<ServerSentEvent<String>> events = Flux.range(0, end)
+                .concatMap(i -> Mono.just(ServerSentEvent.builder(chunks.get(i)).build())
+                        .delayElement(plan.delays().get(i)));
+        events = plan.cutAt() >= 0
+                // 不发送结束标记，直接以异常终止响应，客户端看到的是连接中断
+                ? events.concatWith(Mono.error(new IOException("模拟传输中断")))
+                : events.concatWith(Mono.just(ServerSentEvent.builder("[DONE]").build()));
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(events);
+    }
+}
@@ -1,6 +1,5 @@
 package com.zriyo.aicodemother.core;
 
-import cn.hutool.json.JSONUtil;
 import com.zriyo.aicodemother.ai.AiCodeGeneratorService;
 import com.zriyo.aicodemother.ai.factory.AiCodeGeneratorServiceFactory;
 import com.zriyo.aicodemother.core.parser.CodeParserExecutor;
@@ -9,6 +8,7 @@ import com.zriyo.aicodemother.exception.BusinessException;
 import com.zriyo.aicodemother.exception.ErrorCode;
 import com.zriyo.aicodemother.model.enums.CodeGenTypeEnum;
 import com.zriyo.aicodemother.model.message.AiResponseMessage;
+import com.zriyo.aicodemother.model.message.StreamMessage;
 import com.zriyo.aicodemother.model.message.ToolExecutedMessage;
 import com.zriyo.aicodemother.model.message.ToolRequestMessage;
 import dev.langchain4j.model.chat.response.ChatResponse;
@@ -42,9 +42,9 @@ public class AiCodeGeneratorFacade {
      *
      * @param userMessage     用户提示词
      * @param codeGenTypeEnum 生成类型
-     * @return 保存的目录
+     * @return 类型化的流式消息，由 SSE 处理器直接消费，序列化只在写出响应时发生一次
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "生成类型不能为空");
         }
@@ -53,11 +53,11 @@ public class AiCodeGeneratorFacade {
         return switch (codeGenTypeEnum) {
             case HTML -> {
                 Flux<String> result = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
-                yield processCodeStream(result, CodeGenTypeEnum.HTML, appId);
+                yield processCodeStream(result, CodeGenTypeEnum.HTML, appId).map(AiResponseMessage::new);
             }
             case MULTI_FILE -> {
                 Flux<String> result = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
-                yield processCodeStream(result, CodeGenTypeEnum.MULTI_FILE, appId);
+                yield processCodeStream(result, CodeGenTypeEnum.MULTI_FILE, appId).map(AiResponseMessage::new);
             }
             case VUE_PROJECT -> {
                 TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeTokenStream(userMessage);
@@ -71,24 +71,22 @@ public class AiCodeGeneratorFacade {
     }
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
+     * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息
+     * 消息对象直接下发，不在进程内做 JSON 序列化 / 反序列化
      *
      * @param tokenStream TokenStream 对象
-     * @return Flux<String> 流式响应
+     * @return Flux<StreamMessage> 流式响应
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream) {
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream) {
         return Flux.create(sink -> {
             tokenStream.onPartialResponse((String partialResponse) -> {
-                        AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                        sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+                        sink.next(new AiResponseMessage(partialResponse));
                     })
                     .onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
-                        ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                        sink.next(new ToolRequestMessage(toolExecutionRequest));
                     })
                     .onToolExecuted((ToolExecution toolExecution) -> {
-                        ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                        sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                        sink.next(new ToolExecutedMessage(toolExecution));
                     })
                     .onCompleteResponse((ChatResponse response) -> {
                         sink.complete();
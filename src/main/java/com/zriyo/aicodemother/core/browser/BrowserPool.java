@@ -0,0 +1,232 @@
+package com.zriyo.aicodemother.core.browser;
+
+import com.microsoft.playwright.*;
+import com.zriyo.aicodemother.config.BrowserPoolConfig;
+import com.zriyo.aicodemother.exception.BusinessException;
+import com.zriyo.aicodemother.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 无头浏览器池
+ * 职责：常驻若干个已启动的 Chromium，按租约独占使用；每次租用新建 BrowserContext、归还时关闭，
+ * 不同应用之间不共享 Cookie / localStorage / IndexedDB / Service Worker；浏览器崩溃 / 断连时自动重新拉起。截图与运行时诊断统一从这里借用页面，避免每次冷启动浏览器
+ * 线程模型：Playwright 对象非线程安全，每个槽位同一时刻只会被一个租用者访问
+ */
+@Slf4j
+@Component
+public class BrowserPool {
+
+    private final BrowserPoolConfig config;
+    private final BlockingQueue<Slot> idle;
+    private final List<Slot> slots = new ArrayList<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final Timer waitTimer;
+    private final Counter launches;
+    private final Counter crashes;
+    private final Counter acquireTimeouts;
+
+    public BrowserPool(BrowserPoolConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        int size = Math.max(1, config.getSize());
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            Slot slot = new Slot(i);
+            slots.add(slot);
+            idle.offer(slot);
+        }
+
+        this.waitTimer = Timer.builder("browser_pool_wait")
+                .description("等待空闲浏览器的耗时")
+                .register(meterRegistry);
+        this.launches = Counter.builder("browser_pool_launches").register(meterRegistry);
+        this.crashes = Counter.builder("browser_pool_crashes").register(meterRegistry);
+        this.acquireTimeouts = Counter.builder("browser_pool_acquire_timeouts").register(meterRegistry);
+        Gauge.builder("browser_pool_waiting", waiting, AtomicInteger::get)
+                .description("排队等待浏览器的请求数")
+                .register(meterRegistry);
+        Gauge.builder("browser_pool_idle", idle, BlockingQueue::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动后在后台预热所有浏览器，不阻塞应用就绪
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!config.isWarmUp()) return;
+        Thread.ofVirtual().name("browser-pool-warmup").start(() -> {
+            for (int i = 0; i < slots.size(); i++) {
+                Slot slot = tryBorrow();
+                if (slot == null) break;
+                try {
+                    slot.ensureReady();
+                } catch (Exception e) {
+                    log.warn("[BrowserPool] 预热浏览器失败: {}", e.getMessage());
+                } finally {
+                    giveBack(slot);
+                }
+            }
+            log.info("[BrowserPool] 预热完成，浏览器数量: {}", slots.size());
+        });
+    }
+
+    /**
+     * 借用一个页面执行操作，页面位于本次租用独占的 BrowserContext 中，结束后关闭该 Context 并归还浏览器
+     */
+    public <T> T withPage(Function<Page, T> action) {
+        Slot slot = borrow();
+        try {
+            BrowserContext context = slot.newContext();
+            try {
+                return action.apply(context.newPage());
+            } finally {
+                // 关闭 Context 会一并关闭其中的页面与存储
+                closeQuietly(context);
+            }
+        } catch (PlaywrightException e) {
+            // 浏览器进程崩溃或断连：丢弃该槽位的全部资源，下次借用时重新拉起
+            if (!slot.isHealthy()) {
+                crashes.increment();
+                log.warn("[BrowserPool] 浏览器 #{} 异常断开，将在下次借用时重启: {}", slot.index, e.getMessage());
+                slot.destroy();
+            }
+            throw e;
+        } finally {
+            giveBack(slot);
+        }
+    }
+
+    /**
+     * 定时巡检空闲浏览器：断连的直接销毁，下次借用时重新拉起
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void healthCheck() {
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = tryBorrow();
+            if (slot == null) return;
+            try {
+                if (slot.browser != null && !slot.isHealthy()) {
+                    crashes.increment();
+                    log.warn("[BrowserPool] 巡检发现浏览器 #{} 已断开，销毁待重建", slot.index);
+                    slot.destroy();
+                }
+            } finally {
+                giveBack(slot);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        slots.forEach(Slot::destroy);
+    }
+
+    private Slot borrow() {
+        if (closed) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "浏览器池已关闭");
+        }
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            Slot slot = idle.poll(config.getAcquireTimeoutSeconds(), TimeUnit.SECONDS);
+            if (slot == null) {
+                acquireTimeouts.increment();
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待浏览器超时，请稍后重试");
+            }
+            return slot;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待浏览器被中断");
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Slot tryBorrow() {
+        return idle.poll();
+    }
+
+    private void giveBack(Slot slot) {
+        if (closed) {
+            slot.destroy();
+            return;
+        }
+        idle.offer(slot);
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * 池中的一个浏览器槽位：Playwright 驱动 + Chromium 进程
+     */
+    private final class Slot {
+        private final int index;
+        private Playwright playwright;
+        private Browser browser;
+
+        private Slot(int index) {
+            this.index = index;
+        }
+
+        void ensureReady() {
+            if (browser != null && isHealthy()) {
+                return;
+            }
+            destroy();
+            long start = System.currentTimeMillis();
+            playwright = Playwright.create();
+            browser = playwright.chromium().launch(new BrowserType.LaunchOptions()
+                    .setHeadless(true)
+                    .setArgs(config.getLaunchArgs()));
+            launches.increment();
+            log.info("[BrowserPool] 浏览器 #{} 启动完成，耗时 {} ms", index, System.currentTimeMillis() - start);
+        }
+
+        BrowserContext newContext() {
+            ensureReady();
+            return browser.newContext();
+        }
+
+        boolean isHealthy() {
+            try {
+                return browser != null && browser.isConnected();
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        void destroy() {
+            closeQuietly(browser);
+            closeQuietly(playwright);
+            browser = null;
+            playwright = null;
+        }
+    }
+}
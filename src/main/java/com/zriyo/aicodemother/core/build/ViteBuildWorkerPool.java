@@ -0,0 +1,274 @@
+package com.zriyo.aicodemother.core.build;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zriyo.aicodemother.config.BuildWorkerConfig;
+import com.zriyo.aicodemother.util.CodeOutputManager;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 常驻 Vite 构建进程池
+ * 职责：维护若干个长驻的 Node 构建进程（config/vite-build-worker.mjs），每个进程为其负责的项目保留
+ * Vite watch 构建与 Rollup 模块图缓存；同一项目目录固定路由到同一进程，自动修复循环中的重复构建只做增量编译
+ * 协议：stdin / stdout 逐行 JSON，返回结构化诊断（文件 / 行 / 列 / 信息）而非原始日志
+ * 降级：未开启、进程不可用、超时或内部异常时返回 empty，由调用方回退为 npm run build
+ * 隔离：单个项目构建超时只关闭该项目的 watcher（op: close），不影响同一进程中其他项目的构建；
+ * 只有进程退出、启动失败、管道断开或心跳（op: ping）无响应时才重启整个进程
+ */
+@Slf4j
+@Component
+public class ViteBuildWorkerPool {
+
+    private static final String WORKER_SCRIPT = "config/vite-build-worker.mjs";
+    private static final long START_TIMEOUT_SECONDS = 30;
+    private static final long PING_TIMEOUT_SECONDS = 5;
+
+    private final BuildWorkerConfig config;
+    private final ObjectMapper objectMapper;
+    private final Worker[] workers;
+    private final AtomicLong requestIds = new AtomicLong();
+
+    public ViteBuildWorkerPool(BuildWorkerConfig config, ObjectMapper objectMapper) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.workers = new Worker[Math.max(1, config.getWorkers())];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 请求重建指定项目并返回结构化诊断
+     *
+     * @return 构建进程不可用时返回 empty
+     */
+    public Optional<BuildResult> build(String projectRoot) {
+        if (!config.isEnabled()) {
+            return Optional.empty();
+        }
+        String root = Paths.get(projectRoot).toAbsolutePath().normalize().toString();
+        Worker worker = workers[Math.floorMod(root.hashCode(), workers.length)];
+        try {
+            JsonNode response = worker.call("build", root);
+            if (response.hasNonNull("fatal")) {
+                log.warn("[BuildWorker] #{} 构建内部异常，回退 npm 构建: {}", worker.index, response.get("fatal").asText());
+                return Optional.empty();
+            }
+            List<Diagnostic> diagnostics = new ArrayList<>();
+            for (JsonNode item : response.path("diagnostics")) {
+                diagnostics.add(new Diagnostic(
+                        item.path("file").isNull() ? null : item.path("file").asText(null),
+                        item.path("line").asInt(0),
+                        item.path("column").asInt(0),
+                        item.path("message").asText(""),
+                        item.path("frame").isNull() ? null : item.path("frame").asText(null),
+                        item.path("plugin").isNull() ? null : item.path("plugin").asText(null)));
+            }
+            BuildResult result = new BuildResult(response.path("ok").asBoolean(false), diagnostics,
+                    response.path("durationMs").asLong(0));
+            log.info("[BuildWorker] #{} 构建完成, 项目: {}, 成功: {}, 耗时: {} ms",
+                    worker.index, root, result.ok(), result.durationMs());
+            return Optional.of(result);
+        } catch (TimeoutException e) {
+            log.warn("[BuildWorker] #{} 构建超时，关闭该项目的 watcher 并回退 npm 构建, 项目: {}", worker.index, root);
+            worker.closeProject(root);
+            if (!worker.ping()) {
+                log.warn("[BuildWorker] #{} 心跳无响应，重启构建进程", worker.index);
+                worker.destroy();
+            }
+            return Optional.empty();
+        } catch (Exception e) {
+            log.warn("[BuildWorker] #{} 不可用，回退 npm 构建: {}", worker.index, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Worker worker : workers) {
+            worker.destroy();
+        }
+    }
+
+    /**
+     * 单条结构化诊断，file 为相对项目根目录的路径
+     */
+    public record Diagnostic(String file, int line, int column, String message, String frame, String plugin) {
+    }
+
+    public record BuildResult(boolean ok, List<Diagnostic> diagnostics, long durationMs) {
+    }
+
+    /**
+     * 一个常驻 Node 构建进程；进程退出后在下次请求时重新拉起
+     */
+    private final class Worker {
+        private final int index;
+        private final Map<Long, CompletableFuture<JsonNode>> pending = new ConcurrentHashMap<>();
+        private Process process;
+        private BufferedWriter writer;
+        private CompletableFuture<Void> ready;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        JsonNode call(String op, String root) throws Exception {
+            return call(op, root, config.getRequestTimeoutSeconds());
+        }
+
+        /**
+         * @throws TimeoutException 仅表示本次请求超时，进程本身可能仍在正常处理其他项目
+         */
+        private JsonNode call(String op, String root, long timeoutSeconds) throws Exception {
+            long id = requestIds.incrementAndGet();
+            CompletableFuture<JsonNode> future = new CompletableFuture<>();
+            pending.put(id, future);
+            try {
+                awaitStarted();
+                send(id, op, root);
+                return future.get(timeoutSeconds, TimeUnit.SECONDS);
+            } finally {
+                pending.remove(id);
+            }
+        }
+
+        /**
+         * 通知进程关闭指定项目的 watcher，不等待结果（卡住的构建可能迟迟无法关闭）
+         */
+        void closeProject(String root) {
+            try {
+                send(requestIds.incrementAndGet(), "close", root);
+            } catch (Exception e) {
+                log.debug("[BuildWorker] #{} 关闭项目失败: {}", index, e.getMessage());
+            }
+        }
+
+        /**
+         * 进程事件循环是否仍能响应请求
+         */
+        boolean ping() {
+            try {
+                return call("ping", "", PING_TIMEOUT_SECONDS).path("ok").asBoolean(false);
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        private void awaitStarted() throws Exception {
+            try {
+                ensureStarted().get(START_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                // 进程未能就绪属于进程级故障
+                destroy();
+                throw new IOException("构建进程启动超时");
+            }
+        }
+
+        private void send(long id, String op, String root) throws IOException {
+            String line = objectMapper.writeValueAsString(Map.of("id", id, "op", op, "root", root));
+            synchronized (this) {
+                if (writer == null) {
+                    throw new IOException("构建进程未启动");
+                }
+                try {
+                    writer.write(line);
+                    writer.newLine();
+                    writer.flush();
+                } catch (IOException e) {
+                    // 管道断开：进程已不可用，下次请求时重新拉起
+                    destroy();
+                    throw e;
+                }
+            }
+        }
+
+        private synchronized CompletableFuture<Void> ensureStarted() throws IOException {
+            if (process != null && process.isAlive()) {
+                return ready;
+            }
+            Path script = CodeOutputManager.getCodeOutputBaseDir().resolve(WORKER_SCRIPT);
+            if (!Files.exists(script)) {
+                throw new IOException("构建脚本不存在: " + script);
+            }
+            ProcessBuilder builder = new ProcessBuilder(config.getNodeCommand(), script.toString());
+            builder.directory(script.getParent().toFile());
+            builder.environment().put("BUILD_WORKER_MAX_PROJECTS", String.valueOf(config.getMaxProjectsPerWorker()));
+            builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+            Process started = builder.start();
+            process = started;
+            writer = new BufferedWriter(new OutputStreamWriter(started.getOutputStream(), StandardCharsets.UTF_8));
+            ready = new CompletableFuture<>();
+            CompletableFuture<Void> readySignal = ready;
+            Thread.ofVirtual().name("build-worker-" + index).start(() -> readLoop(started, readySignal));
+            log.info("[BuildWorker] #{} 构建进程已启动, pid: {}", index, started.pid());
+            return ready;
+        }
+
+        private void readLoop(Process owner, CompletableFuture<Void> readySignal) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(owner.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("{")) {
+                        // 插件直接打印到 stdout 的内容，不属于协议
+                        continue;
+                    }
+                    JsonNode node;
+                    try {
+                        node = objectMapper.readTree(line);
+                    } catch (Exception e) {
+                        continue;
+                    }
+                    if (node.path("ready").asBoolean(false)) {
+                        readySignal.complete(null);
+                    } else if (node.has("id")) {
+                        CompletableFuture<JsonNode> future = pending.get(node.get("id").asLong());
+                        if (future != null) {
+                            future.complete(node);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("[BuildWorker] #{} 读取输出中断: {}", index, e.getMessage());
+            }
+            IOException exited = new IOException("构建进程已退出");
+            readySignal.completeExceptionally(exited);
+            pending.values().forEach(future -> future.completeExceptionally(exited));
+            log.warn("[BuildWorker] #{} 构建进程已退出", index);
+        }
+
+        synchronized void destroy() {
+            if (process != null) {
+                process.destroyForcibly();
+                process = null;
+                writer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.zriyo.aicodemother.core.context;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 项目上下文快照缓存
+ * 职责：为按文件创建 AI 服务时注入的上下文（项目骨架 + 依赖文件）提供复用，避免同一次构建中每个文件都重复查库、读盘与脱水
+ * 1. 骨架按 appId 缓存其所在记录（skeletonId + 内容），骨架新增 / 更新 / 删除时失效
+ * 2. 依赖文件按路径缓存处理后的全量与脱水正文，用（大小 + 修改时间）校验，变化时按内容哈希判断是否需要重新处理；
+ *    CodeWriteTool / RuntimeFixTool 写文件后主动失效，不依赖文件系统时间戳精度
+ */
+@Slf4j
+@Component
+public class ProjectContextCache {
+
+    private static final Pattern SCRIPT_PATTERN =
+            Pattern.compile("<script.*?>[\\s\\S]*?</script>", Pattern.CASE_INSENSITIVE);
+
+    private final Cache<Long, Skeleton> skeletons = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .recordStats()
+            .build();
+
+    private final Cache<Path, FileSnapshot> files = Caffeine.newBuilder()
+            .maximumWeight(64L * 1024 * 1024)
+            .weigher((Path path, FileSnapshot snapshot) -> snapshot.weight())
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .recordStats()
+            .build();
+
+    public ProjectContextCache(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, skeletons, "project_context_skeleton");
+        CaffeineCacheMetrics.monitor(meterRegistry, files, "project_context_files");
+    }
+
+    /**
+     * 读取应用的骨架，未命中时通过 loader 查询
+     *
+     * @param loader 按 appId 查询骨架记录，返回 null 表示尚未生成骨架
+     */
+    public Skeleton getSkeleton(Long appId, Function<Long, Skeleton> loader) {
+        return skeletons.get(appId, id -> {
+            Skeleton loaded = loader.apply(id);
+            return loaded != null ? loaded : Skeleton.NONE;
+        });
+    }
+
+    public void invalidateSkeleton(Long appId) {
+        skeletons.invalidate(appId);
+    }
+
+    public void invalidateSkeletonById(Long skeletonId) {
+        if (skeletonId == null) {
+            return;
+        }
+        skeletons.asMap().values().removeIf(skeleton -> skeletonId.equals(skeleton.id()));
+    }
+
+    /**
+     * 读取依赖文件的快照
+     *
+     * @return 文件不存在时返回 null
+     */
+    public FileSnapshot getFile(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            files.invalidate(key);
+            return null;
+        }
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        FileSnapshot cached = files.getIfPresent(key);
+        if (cached != null && cached.size() == size && cached.lastModified() == lastModified) {
+            return cached;
+        }
+
+        String content = Files.readString(key, StandardCharsets.UTF_8);
+        String hash = DigestUtil.sha256Hex(content);
+        FileSnapshot snapshot = cached != null && cached.hash().equals(hash)
+                ? new FileSnapshot(size, lastModified, hash, cached.full(), cached.reduced())
+                : new FileSnapshot(size, lastModified, hash, escape(content), escape(reduce(key, content)));
+        files.put(key, snapshot);
+        return snapshot;
+    }
+
+    public void invalidateFile(Path path) {
+        files.invalidate(path.toAbsolutePath().normalize());
+    }
+
+    /**
+     * 非前排的依赖文件只保留关键内容：Vue 文件只保留 script，其他文件截断
+     */
+    private static String reduce(Path path, String content) {
+        if (path.getFileName().toString().endsWith(".vue")) {
+            log.info("对文件 [{}] 执行 Vue 脱水", path.getFileName());
+            return pruneVueContent(content);
+        }
+        return StrUtil.maxLength(content, 1000) + "\n... [Content truncated]";
+    }
+
+    static String pruneVueContent(String content) {
+        // 匹配 <script> ... </script> 或 <script setup> ... </script>
+        Matcher matcher = SCRIPT_PATTERN.matcher(content);
+        StringBuilder sb = new StringBuilder();
+        while (matcher.find()) {
+            sb.append(matcher.group()).append("\n");
+        }
+        String result = sb.toString().trim();
+        if (result.isEmpty()) {
+            return "// [Vue Template/Style pruned, no script found]";
+        }
+        return result + "\n// [Vue Template/Style pruned for context efficiency]";
+    }
+
+    /**
+     * 处理 Handlebars/Mustache 转义
+     */
+    private static String escape(String content) {
+        return content.replace("{{", "\\{\\{").replace("}}", "\\}\\}");
+    }
+
+    /**
+     * 骨架记录快照，id 为 ChatHistory 主键
+     */
+    public record Skeleton(Long id, String message) {
+        static final Skeleton NONE = new Skeleton(null, null);
+
+        public boolean isPresent() {
+            return id != null && StrUtil.isNotEmpty(message);
+        }
+    }
+
+    /**
+     * 依赖文件快照：full 为转义后的全文，reduced 为转义后的脱水 / 截断版本
+     */
+    public record FileSnapshot(long size, long lastModified, String hash, String full, String reduced) {
+        int weight() {
+            return 128 + (full.length() + reduced.length()) * 2;
+        }
+    }
+}
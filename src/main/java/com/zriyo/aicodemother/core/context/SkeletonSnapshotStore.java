@@ -0,0 +1,256 @@
+package com.zriyo.aicodemother.core.context;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zriyo.aicodemother.core.pipeline.FileGenerationOrder;
+import com.zriyo.aicodemother.model.RedisConstants;
+import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
+import com.zriyo.aicodemother.util.RedisUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * 带版本的项目骨架快照仓库
+ * 职责：修改流程加载骨架时不再每次查询对话历史并完整解析 JSON
+ * 1. Redis 中按 appId 维护递增的骨架版本号，骨架写入 / 删除时递增；本地缓存只在版本号一致时命中
+ * 2. 本地缓存保存解析后的骨架及预先计算的拓扑顺序；Redis 保存 JSON 快照，供其他节点免查库
+ * 3. 骨架生成与修改后写穿更新，调用方拿到的骨架是副本，可以就地修改
+ * Redis 不可用时退化为直接查库
+ */
+@Slf4j
+@Component
+public class SkeletonSnapshotStore {
+
+    private static final Duration SNAPSHOT_TTL = Duration.ofDays(1);
+
+    private final ObjectMapper objectMapper;
+
+    private final Cache<Long, Snapshot> snapshots = Caffeine.newBuilder()
+            .maximumSize(500)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .recordStats()
+            .build();
+
+    public SkeletonSnapshotStore(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots, "skeleton_snapshot");
+    }
+
+    /**
+     * 读取应用当前的骨架快照
+     *
+     * @param loader 缓存未命中时从数据库读取骨架记录，返回 null 表示没有骨架
+     * @return 没有骨架或不属于该用户时返回 null
+     */
+    public Snapshot load(Long appId, Long userId, Supplier<Stored> loader) throws JsonProcessingException {
+        Long version = currentVersion(appId);
+        if (version != null) {
+            Snapshot local = snapshots.getIfPresent(appId);
+            if (local != null && local.version() == version) {
+                return Objects.equals(local.userId(), userId) ? local : null;
+            }
+            Stored stored = readStored(appId);
+            if (stored != null && stored.getVersion() == version) {
+                Snapshot snapshot = toSnapshot(appId, stored);
+                snapshots.put(appId, snapshot);
+                return Objects.equals(snapshot.userId(), userId) ? snapshot : null;
+            }
+        }
+
+        Stored stored = loader.get();
+        if (stored == null) {
+            return null;
+        }
+        stored.setVersion(version != null ? version : -1);
+        Snapshot snapshot = toSnapshot(appId, stored);
+        if (version != null) {
+            snapshots.put(appId, snapshot);
+            writeStored(appId, stored);
+        }
+        return Objects.equals(snapshot.userId(), userId) ? snapshot : null;
+    }
+
+    /**
+     * 骨架写入数据库后写穿更新
+     *
+     * @param json 已序列化的骨架，与数据库中保存的内容一致
+     */
+    public void put(Long appId, Long userId, Long skeletonId, ProjectSkeletonDTO skeleton, String json) {
+        Long version = nextVersion(appId);
+        if (version == null) {
+            snapshots.invalidate(appId);
+            return;
+        }
+        Stored stored = new Stored(skeletonId, userId, version, json);
+        snapshots.put(appId, index(appId, stored, copyOf(skeleton)));
+        writeStored(appId, stored);
+    }
+
+    /**
+     * 按骨架记录 ID 查找本地快照，用于只知道记录 ID 的写穿更新
+     */
+    public Snapshot findBySkeletonId(Long skeletonId) {
+        if (skeletonId == null) {
+            return null;
+        }
+        for (Snapshot snapshot : snapshots.asMap().values()) {
+            if (skeletonId.equals(snapshot.skeletonId())) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 骨架被删除或即将被重新生成时调用，各节点的本地快照随版本号递增一并失效
+     */
+    public void invalidate(Long appId) {
+        snapshots.invalidate(appId);
+        nextVersion(appId);
+        try {
+            RedisUtils.deleteObject(RedisConstants.AI_CODE_SKELETON_SNAPSHOT + appId);
+        } catch (Exception e) {
+            log.warn("删除骨架快照失败, appId: {}", appId, e);
+        }
+    }
+
+    private Snapshot toSnapshot(Long appId, Stored stored) throws JsonProcessingException {
+        return index(appId, stored, objectMapper.readValue(stored.getJson(), ProjectSkeletonDTO.class));
+    }
+
+    private static Snapshot index(Long appId, Stored stored, ProjectSkeletonDTO skeleton) {
+        List<String> order = FileGenerationOrder.computeSafeOrder(skeleton);
+        Map<String, Integer> rank = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            rank.put(order.get(i), i);
+        }
+        return new Snapshot(appId, stored.getSkeletonId(), stored.getUserId(), stored.getVersion(), skeleton,
+                List.copyOf(order), Collections.unmodifiableMap(rank));
+    }
+
+    private static Long currentVersion(Long appId) {
+        try {
+            return RedisUtils.getClient().getAtomicLong(RedisConstants.AI_CODE_SKELETON_VERSION + appId).get();
+        } catch (Exception e) {
+            log.warn("读取骨架版本号失败，直接查库, appId: {}", appId, e);
+            return null;
+        }
+    }
+
+    private static Long nextVersion(Long appId) {
+        try {
+            return RedisUtils.getClient().getAtomicLong(RedisConstants.AI_CODE_SKELETON_VERSION + appId).incrementAndGet();
+        } catch (Exception e) {
+            log.warn("更新骨架版本号失败, appId: {}", appId, e);
+            return null;
+        }
+    }
+
+    private static Stored readStored(Long appId) {
+        try {
+            return RedisUtils.getCacheObject(RedisConstants.AI_CODE_SKELETON_SNAPSHOT + appId);
+        } catch (Exception e) {
+            log.warn("读取骨架快照失败, appId: {}", appId, e);
+            return null;
+        }
+    }
+
+    private static void writeStored(Long appId, Stored stored) {
+        try {
+            RedisUtils.setCacheObject(RedisConstants.AI_CODE_SKELETON_SNAPSHOT + appId, stored, SNAPSHOT_TTL);
+        } catch (Exception e) {
+            log.warn("写入骨架快照失败, appId: {}", appId, e);
+        }
+    }
+
+    /**
+     * 复制骨架，修改流程会就地更新文件表与文件描述，不能共享缓存中的实例
+     */
+    static ProjectSkeletonDTO copyOf(ProjectSkeletonDTO source) {
+        ProjectSkeletonDTO copy = new ProjectSkeletonDTO();
+        if (source.getFiles() != null) {
+            Map<String, ProjectSkeletonDTO.FileInfo> files = new LinkedHashMap<>();
+            source.getFiles().forEach((path, info) -> files.put(path, info == null ? null : copyOf(info)));
+            copy.setFiles(files);
+        }
+        ProjectSkeletonDTO.GlobalInfo global = source.getGlobal();
+        if (global != null) {
+            ProjectSkeletonDTO.GlobalInfo globalCopy = new ProjectSkeletonDTO.GlobalInfo();
+            globalCopy.setDescription(global.getDescription());
+            globalCopy.setDependencies(global.getDependencies() == null ? null : new LinkedHashMap<>(global.getDependencies()));
+            globalCopy.setStyleGuide(global.getStyleGuide() == null ? null : new LinkedHashMap<>(global.getStyleGuide()));
+            globalCopy.setExtra(new HashMap<>(global.getExtra()));
+            copy.setGlobal(globalCopy);
+        }
+        return copy;
+    }
+
+    private static ProjectSkeletonDTO.FileInfo copyOf(ProjectSkeletonDTO.FileInfo info) {
+        ProjectSkeletonDTO.FileInfo copy = new ProjectSkeletonDTO.FileInfo();
+        copy.setFilePath(info.getFilePath());
+        copy.setType(info.getType());
+        copy.setDescription(info.getDescription());
+        copy.setInterfaceDef(info.getInterfaceDef());
+        copy.setExports(copyList(info.getExports()));
+        copy.setDependencies(copyList(info.getDependencies()));
+        copy.setLocalDependencies(copyList(info.getLocalDependencies()));
+        copy.setImports(copyList(info.getImports()));
+        copy.setTemplateComponents(copyList(info.getTemplateComponents()));
+        copy.setExtra(new HashMap<>(info.getExtra()));
+        return copy;
+    }
+
+    private static <T> List<T> copyList(List<T> list) {
+        return list == null ? null : new ArrayList<>(list);
+    }
+
+    /**
+     * 本地骨架快照
+     *
+     * @param order 按依赖排好的文件顺序（与首次构建的生成顺序一致）
+     * @param rank  文件在 order 中的位置
+     */
+    public record Snapshot(Long appId, Long skeletonId, Long userId, long version, ProjectSkeletonDTO skeleton,
+                           List<String> order, Map<String, Integer> rank) {
+
+        /**
+         * 返回可修改的骨架副本
+         */
+        public ProjectSkeletonDTO copySkeleton() {
+            return copyOf(skeleton);
+        }
+    }
+
+    /**
+     * 写入 Redis 的骨架快照
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Stored implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private Long skeletonId;
+
+        private Long userId;
+
+        private long version;
+
+        private String json;
+    }
+}
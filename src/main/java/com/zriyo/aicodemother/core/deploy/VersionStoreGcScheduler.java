@@ -0,0 +1,24 @@
+package com.zriyo.aicodemother.core.deploy;
+
+import com.zriyo.aicodemother.util.VersionStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 版本仓库定期回收：兜底清理删除应用、删除版本之外遗留的无引用版本树与文件
+ * （如部署中途失败留下的树、管理端直接删库的应用）
+ */
+@Slf4j
+@Component
+public class VersionStoreGcScheduler {
+
+    @Scheduled(initialDelay = 600000, fixedDelay = 3600000)
+    public void gc() {
+        try {
+            VersionStore.gc();
+        } catch (Exception e) {
+            log.error("版本仓库定期回收失败", e);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.zriyo.aicodemother.core.export;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.zriyo.aicodemother.config.SourceExportConfig;
+import com.zriyo.aicodemother.util.CodeOutputManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 源码 ZIP 导出
+ * 职责：遍历项目目录（遍历时直接跳过排除目录）并把条目边压缩边写入输出流，内存占用只与缓冲区大小有关；
+ * 开启缓存时同时把结果写入 code_export/{项目名}-{指纹}.zip，同一版本的后续下载直接读文件并支持 Range 续传
+ */
+@Slf4j
+@Component
+public class SourceArchiveExporter {
+
+    private static final String EXPORT_SUBDIR = "code_export";
+
+    private final SourceExportConfig config;
+
+    public SourceArchiveExporter(SourceExportConfig config) {
+        this.config = config;
+    }
+
+    public boolean isCacheEnabled() {
+        return config.isCacheEnabled();
+    }
+
+    /**
+     * 计算项目内容指纹（路径 + 大小 + 修改时间 + 压缩级别），作为缓存键与 ETag
+     * 只读取文件元数据，不读取内容
+     */
+    public String fingerprint(Path sourceDir) throws IOException {
+        StringBuilder digest = new StringBuilder().append(config.getCompressionLevel()).append('\n');
+        for (Path file : listEntries(sourceDir)) {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            digest.append(relativeName(sourceDir, file)).append('\t')
+                    .append(attrs.isDirectory() ? -1 : attrs.size()).append('\t')
+                    .append(attrs.lastModifiedTime().toMillis()).append('\n');
+        }
+        return DigestUtil.sha256Hex(digest.toString().getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    /**
+     * 查找指定版本已缓存的归档
+     */
+    public Optional<Path> cached(String projectName, String fingerprint) {
+        if (!config.isCacheEnabled()) {
+            return Optional.empty();
+        }
+        Path archive = cachePath(projectName, fingerprint);
+        return Files.isRegularFile(archive) ? Optional.of(archive) : Optional.empty();
+    }
+
+    /**
+     * 生成并缓存归档（不写响应），用于首次请求就携带 Range 的续传客户端
+     */
+    public Path buildCache(Path sourceDir, String projectName, String fingerprint) throws IOException {
+        Path archive = cachePath(projectName, fingerprint);
+        Path temp = archive.resolveSibling(archive.getFileName() + ".tmp-" + UUID.randomUUID());
+        Files.createDirectories(archive.getParent());
+        try (OutputStream file = Files.newOutputStream(temp)) {
+            writeZip(sourceDir, projectName, file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        commit(temp, archive, projectName);
+        return archive;
+    }
+
+    /**
+     * 把归档直接写入响应流；开启缓存时同时写入缓存文件，只有完整写完才会落盘为该版本的缓存
+     */
+    public void stream(Path sourceDir, String projectName, String fingerprint, OutputStream out) throws IOException {
+        if (!config.isCacheEnabled()) {
+            writeZip(sourceDir, projectName, out);
+            return;
+        }
+        Path archive = cachePath(projectName, fingerprint);
+        Path temp = archive.resolveSibling(archive.getFileName() + ".tmp-" + UUID.randomUUID());
+        Files.createDirectories(archive.getParent());
+        try (OutputStream file = Files.newOutputStream(temp)) {
+            writeZip(sourceDir, projectName, new TeeOutputStream(out, file));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        commit(temp, archive, projectName);
+    }
+
+    private void writeZip(Path sourceDir, String baseName, OutputStream out) throws IOException {
+        ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(out, config.getBufferSize()));
+        zipOut.setLevel(config.getCompressionLevel());
+        for (Path path : listEntries(sourceDir)) {
+            String entryName = baseName + "/" + relativeName(sourceDir, path);
+
+            // 🔒 防 Zip Slip：确保 entryName 不以 ../ 开头
+            if (entryName.contains("..")) {
+                throw new IOException("非法文件路径: " + entryName);
+            }
+
+            if (Files.isDirectory(path)) {
+                zipOut.putNextEntry(new ZipEntry(entryName + "/"));
+            } else {
+                zipOut.putNextEntry(new ZipEntry(entryName));
+                Files.copy(path, zipOut);
+            }
+            zipOut.closeEntry();
+        }
+        // 只结束 ZIP 结构并刷出缓冲，不关闭底层的响应流
+        zipOut.finish();
+        zipOut.flush();
+    }
+
+    /**
+     * 按遍历顺序列出需要打包的目录与文件，排除目录整体跳过，不会进入其子树；
+     * 遍历不跟随链接，符号链接（如项目体检创建的 node_modules 链接）一律不打包，避免把项目外的内容带进归档
+     */
+    private List<Path> listEntries(Path sourceDir) throws IOException {
+        List<Path> entries = new ArrayList<>();
+        Files.walkFileTree(sourceDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(sourceDir)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (isExcluded(sourceDir, dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                entries.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isSymbolicLink() && !isExcluded(sourceDir, file)) {
+                    entries.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return entries;
+    }
+
+    private boolean isExcluded(Path sourceDir, Path path) {
+        return sourceDir.equals(path.getParent())
+                && config.getExcludedDirs().contains(path.getFileName().toString());
+    }
+
+    /**
+     * 缓存生效后删除同一项目的旧版本归档，每个项目只保留最新一份
+     */
+    private void commit(Path temp, Path archive, String projectName) throws IOException {
+        Files.move(temp, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        try (Stream<Path> siblings = Files.list(archive.getParent())) {
+            siblings.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(projectName + "-") && name.endsWith(".zip") && !p.equals(archive);
+                    })
+                    .forEach(p -> {
+                        try {
+                            Files.deleteIfExists(p);
+                        } catch (IOException e) {
+                            log.warn("删除过期源码归档失败: {}", p, e);
+                        }
+                    });
+        }
+    }
+
+    private Path cachePath(String projectName, String fingerprint) {
+        return CodeOutputManager.getCodeOutputBaseDir().resolve(EXPORT_SUBDIR)
+                .resolve(projectName + "-" + fingerprint + ".zip");
+    }
+
+    private static String relativeName(Path sourceDir, Path path) {
+        return sourceDir.relativize(path).toString().replace('\\', '/');
+    }
+
+    /**
+     * 同时写入响应流与缓存文件
+     */
+    private static final class TeeOutputStream extends OutputStream {
+        private final OutputStream primary;
+        private final OutputStream copy;
+
+        private TeeOutputStream(OutputStream primary, OutputStream copy) {
+            this.primary = primary;
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            primary.write(b);
+            copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            primary.write(b, off, len);
+            copy.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            primary.flush();
+            copy.flush();
+        }
+    }
+}
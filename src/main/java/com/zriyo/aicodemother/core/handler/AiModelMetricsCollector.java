@@ -1,93 +1,228 @@
 package com.zriyo.aicodemother.core.handler;
 
+import com.zriyo.aicodemother.config.ModelMetricsConfig;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
-import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * AI 模型调用指标
+ * 标签只包含固定维度（model / stage / outcome / error_class），且每个标签的取值数有上限，时间序列数量不随用户与应用增长；
+ * 用户、应用与原始错误信息只进入本地的采样事件日志，供排查单次调用使用
+ */
 @Component
 @Slf4j
 public class AiModelMetricsCollector {
 
-    @Resource
-    private MeterRegistry meterRegistry;
+    private static final String OTHER = "other";
 
-    private final ConcurrentMap<String, Counter> requestCountersCache = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, Counter> errorCountersCache = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, Counter> tokenCountersCache = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, Timer> responseTimersCache = new ConcurrentHashMap<>();
+    private static final Duration[] FIRST_TOKEN_BUCKETS = {
+            Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofSeconds(2),
+            Duration.ofSeconds(4), Duration.ofSeconds(8), Duration.ofSeconds(15), Duration.ofSeconds(30)};
+
+    private static final Duration[] RESPONSE_BUCKETS = {
+            Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(15), Duration.ofSeconds(30),
+            Duration.ofSeconds(60), Duration.ofSeconds(120), Duration.ofSeconds(300)};
+
+    private static final double[] TOKEN_RATE_BUCKETS = {5, 10, 20, 40, 80, 160, 320};
+
+    private final MeterRegistry meterRegistry;
+    private final ModelMetricsConfig config;
+
+    private final ConcurrentMap<String, Meter> meters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> tagValues = new ConcurrentHashMap<>();
+    // 已告警过取值超限的 指标|标签，每个只告警一次
+    private final Set<String> overflowWarned = ConcurrentHashMap.newKeySet();
+    private final ArrayDeque<ModelCallEvent> events = new ArrayDeque<>();
+
+    public AiModelMetricsCollector(MeterRegistry meterRegistry, ModelMetricsConfig config) {
+        this.meterRegistry = meterRegistry;
+        this.config = config;
+    }
 
     /**
      * 记录请求次数
      */
-    public void recordRequest(String userId, String appId, String modelName, String status) {
-        String key = String.format("%s_%s_%s_%s", userId, appId, modelName, status);
-        Counter counter = requestCountersCache.computeIfAbsent(key, k ->
+    public void recordRequest(String modelName, String stage, String outcome) {
+        String model = guard("ai_model_requests_total", "model", modelName);
+        String st = guard("ai_model_requests_total", "stage", stage);
+        Counter counter = meter("ai_model_requests_total|" + model + "|" + st + "|" + outcome, () ->
                 Counter.builder("ai_model_requests_total")
                         .description("AI模型总请求次数")
-                        .tag("user_id", userId)
-                        .tag("app_id", appId)
-                        .tag("model_name", modelName)
-                        .tag("status", status)
-                        .register(meterRegistry)
-        );
+                        .tag("model", model)
+                        .tag("stage", st)
+                        .tag("outcome", outcome)
+                        .register(meterRegistry));
         counter.increment();
     }
 
     /**
-     * 记录错误
+     * 记录错误，errorClass 为归一化后的错误类别（如 rate_limit / timeout），不含原始错误信息
      */
-    public void recordError(String userId, String appId, String modelName, String errorMessage) {
-        String key = String.format("%s_%s_%s_%s", userId, appId, modelName, errorMessage);
-        Counter counter = errorCountersCache.computeIfAbsent(key, k ->
+    public void recordError(String modelName, String stage, String errorClass) {
+        String model = guard("ai_model_errors_total", "model", modelName);
+        String st = guard("ai_model_errors_total", "stage", stage);
+        String error = guard("ai_model_errors_total", "error_class", errorClass);
+        Counter counter = meter("ai_model_errors_total|" + model + "|" + st + "|" + error, () ->
                 Counter.builder("ai_model_errors_total")
                         .description("AI模型错误次数")
-                        .tag("user_id", userId)
-                        .tag("app_id", appId)
-                        .tag("model_name", modelName)
-                        .tag("error_message", errorMessage)
-                        .register(meterRegistry)
-        );
+                        .tag("model", model)
+                        .tag("stage", st)
+                        .tag("error_class", error)
+                        .register(meterRegistry));
         counter.increment();
     }
 
     /**
      * 记录Token消耗
      */
-    public void recordTokenUsage(String userId, String appId, String modelName,
-                                 String tokenType, long tokenCount) {
-        String key = String.format("%s_%s_%s_%s", userId, appId, modelName, tokenType);
-        Counter counter = tokenCountersCache.computeIfAbsent(key, k ->
+    public void recordTokenUsage(String modelName, String stage, String tokenType, long tokenCount) {
+        String model = guard("ai_model_tokens_total", "model", modelName);
+        String st = guard("ai_model_tokens_total", "stage", stage);
+        Counter counter = meter("ai_model_tokens_total|" + model + "|" + st + "|" + tokenType, () ->
                 Counter.builder("ai_model_tokens_total")
                         .description("AI模型Token消耗总数")
-                        .tag("user_id", userId)
-                        .tag("app_id", appId)
-                        .tag("model_name", modelName)
+                        .tag("model", model)
+                        .tag("stage", st)
                         .tag("token_type", tokenType)
-                        .register(meterRegistry)
-        );
+                        .register(meterRegistry));
         counter.increment(tokenCount);
     }
 
     /**
      * 记录响应时间
      */
-    public void recordResponseTime(String userId, String appId, String modelName, Duration duration) {
-        String key = String.format("%s_%s_%s", userId, appId, modelName);
-        Timer timer = responseTimersCache.computeIfAbsent(key, k ->
+    public void recordResponseTime(String modelName, String stage, String outcome, Duration duration) {
+        String model = guard("ai_model_response_duration_seconds", "model", modelName);
+        String st = guard("ai_model_response_duration_seconds", "stage", stage);
+        Timer timer = meter("ai_model_response_duration_seconds|" + model + "|" + st + "|" + outcome, () ->
                 Timer.builder("ai_model_response_duration_seconds")
                         .description("AI模型响应时间")
-                        .tag("user_id", userId)
-                        .tag("app_id", appId)
-                        .tag("model_name", modelName)
-                        .register(meterRegistry)
-        );
+                        .tag("model", model)
+                        .tag("stage", st)
+                        .tag("outcome", outcome)
+                        .serviceLevelObjectives(RESPONSE_BUCKETS)
+                        .register(meterRegistry));
         timer.record(duration);
     }
+
+    /**
+     * 记录首 Token 延迟（流式请求从发起到第一个输出片段的时间）
+     */
+    public void recordTimeToFirstToken(String modelName, String stage, Duration duration) {
+        String model = guard("ai_model_time_to_first_token_seconds", "model", modelName);
+        String st = guard("ai_model_time_to_first_token_seconds", "stage", stage);
+        Timer timer = meter("ai_model_time_to_first_token_seconds|" + model + "|" + st, () ->
+                Timer.builder("ai_model_time_to_first_token_seconds")
+                        .description("AI模型首Token延迟")
+                        .tag("model", model)
+                        .tag("stage", st)
+                        .serviceLevelObjectives(FIRST_TOKEN_BUCKETS)
+                        .register(meterRegistry));
+        timer.record(duration);
+    }
+
+    /**
+     * 记录输出速度（输出 Token 数 / 首 Token 之后的生成时长）
+     */
+    public void recordTokensPerSecond(String modelName, String stage, double tokensPerSecond) {
+        String model = guard("ai_model_output_tokens_per_second", "model", modelName);
+        String st = guard("ai_model_output_tokens_per_second", "stage", stage);
+        DistributionSummary summary = meter("ai_model_output_tokens_per_second|" + model + "|" + st, () ->
+                DistributionSummary.builder("ai_model_output_tokens_per_second")
+                        .description("AI模型输出速度")
+                        .tag("model", model)
+                        .tag("stage", st)
+                        .serviceLevelObjectives(TOKEN_RATE_BUCKETS)
+                        .register(meterRegistry));
+        summary.record(tokensPerSecond);
+    }
+
+    /**
+     * 写入调用事件日志：失败调用总是记录，成功调用按比例采样
+     */
+    public void recordEvent(ModelCallEvent event) {
+        if ("success".equals(event.outcome())
+                && ThreadLocalRandom.current().nextDouble() >= config.getSuccessSampleRate()) {
+            return;
+        }
+        synchronized (events) {
+            events.addLast(event);
+            while (events.size() > Math.max(1, config.getEventLogSize())) {
+                events.pollFirst();
+            }
+        }
+    }
+
+    /**
+     * 最近的调用事件，按时间倒序
+     */
+    public List<ModelCallEvent> recentEvents(int limit) {
+        List<ModelCallEvent> result = new ArrayList<>();
+        synchronized (events) {
+            var it = events.descendingIterator();
+            while (it.hasNext() && result.size() < limit) {
+                result.add(it.next());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 标签取值上限：同一指标的同一标签超过上限的新取值统一记为 other
+     * 超限发生在高基数负载下，每个 指标|标签 只告警一次，之后只累加 ai_model_metric_tag_overflow_total
+     */
+    private String guard(String meterName, String tagKey, String value) {
+        String normalized = value == null || value.isBlank() ? "unknown" : value;
+        String guardKey = meterName + "|" + tagKey;
+        Set<String> seen = tagValues.computeIfAbsent(guardKey, k -> ConcurrentHashMap.newKeySet());
+        if (seen.contains(normalized)) {
+            return normalized;
+        }
+        synchronized (seen) {
+            if (seen.size() < config.getMaxTagValues()) {
+                seen.add(normalized);
+                return normalized;
+            }
+        }
+        Counter overflow = meter("ai_model_metric_tag_overflow_total|" + guardKey, () ->
+                Counter.builder("ai_model_metric_tag_overflow_total")
+                        .description("因标签取值数超限被记为 other 的次数")
+                        .tag("metric", meterName)
+                        .tag("tag", tagKey)
+                        .register(meterRegistry));
+        overflow.increment();
+        if (overflowWarned.add(guardKey)) {
+            log.warn("[Metrics] 指标 {} 的标签 {} 取值数已达上限 {}，新取值（如 {}）记为 other，后续不再告警",
+                    meterName, tagKey, config.getMaxTagValues(), normalized);
+        }
+        return OTHER;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <M extends Meter> M meter(String key, java.util.function.Supplier<M> factory) {
+        return (M) meters.computeIfAbsent(key, k -> factory.get());
+    }
+
+    /**
+     * 单次模型调用事件
+     */
+    public record ModelCallEvent(Instant time, String userId, String appId, String model, String stage,
+                                 String outcome, String errorClass, String errorMessage,
+                                 Long durationMillis, Long firstTokenMillis, Integer outputTokens) {
+    }
 }
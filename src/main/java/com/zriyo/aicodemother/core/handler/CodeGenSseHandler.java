@@ -1,12 +1,13 @@
 package com.zriyo.aicodemother.core.handler;
 
 import com.zriyo.aicodemother.model.dto.chat.ChatMessage;
+import com.zriyo.aicodemother.model.message.StreamMessage;
 import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 
 public interface CodeGenSseHandler {
     /**
-     * 将原始 AI 流转换成 SSE 流
+     * 将类型化的 AI 消息流转换成 SSE 流，消息对象只在写出响应时序列化一次
      */
-    Flux<ServerSentEvent<Object>> handleStream(Flux<String> source, long appId, String codeGenType, Long userId, ChatMessage chatMessage);
+    Flux<ServerSentEvent<Object>> handleStream(Flux<StreamMessage> source, long appId, String codeGenType, Long userId, ChatMessage chatMessage);
 }
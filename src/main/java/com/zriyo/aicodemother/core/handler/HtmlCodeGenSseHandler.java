@@ -6,6 +6,7 @@ import com.zriyo.aicodemother.model.entity.AiToolLog;
 import com.zriyo.aicodemother.model.enums.ChatHistoryMessageTypeEnum;
 import com.zriyo.aicodemother.model.message.AiResponseMessage;
 import com.zriyo.aicodemother.model.message.MessageData;
+import com.zriyo.aicodemother.model.message.StreamMessage;
 import com.zriyo.aicodemother.model.message.StreamMessageTypeEnum;
 import com.zriyo.aicodemother.util.CodeBlockExtractor;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,13 +27,12 @@ public class HtmlCodeGenSseHandler implements CodeGenSseHandler {
 
 
     @Override
-    public Flux<ServerSentEvent<Object>> handleStream(Flux<String> source, long appId, String codeGenType, Long userId, ChatMessage chatMessage) {
+    public Flux<ServerSentEvent<Object>> handleStream(Flux<StreamMessage> source, long appId, String codeGenType, Long userId, ChatMessage chatMessage) {
         List<ChatMessage> chatMessages = new ArrayList<>();
         chatMessages.add(chatMessage);
         StringBuffer str = new StringBuffer();
-        return source.flatMap(full -> {
-            str.append(full);
-            AiResponseMessage data = new AiResponseMessage(full);
+        return source.ofType(AiResponseMessage.class).flatMap(data -> {
+            str.append(data.getMessageData().getData());
             return Mono.just(ServerSentEvent.builder()
                     .event(data.getType())
                     .data(data)
@@ -34,78 +34,72 @@ public class VueProjectSseHandler implements CodeGenSseHandler {
 
 
     @Override
-    public Flux<ServerSentEvent<Object>> handleStream(Flux<String> source, long appId, String codeGenType, Long userId, ChatMessage chatMessage) {
+    public Flux<ServerSentEvent<Object>> handleStream(Flux<StreamMessage> source, long appId, String codeGenType, Long userId, ChatMessage chatMessage) {
         Map<String, String> pendingTools = new HashMap<>();
         StringBuilder buffer = new StringBuilder();
         List<AiToolLog> aiToolLogs = new ArrayList<>();
         HashSet<String> toolIds = new HashSet<>();
         List<ChatMessage> chatMessages = new ArrayList<>();
         chatMessages.add(chatMessage);
+        // 消息在进程内以对象形式传递，按类型直接分派，序列化只在写出 SSE 时发生一次
         Flux<ServerSentEvent<Object>> mainFlux = source.concatMap(chunk -> {
             try {
-                StreamMessage base = JSONUtil.toBean(chunk, StreamMessage.class);
-                StreamMessageTypeEnum type = StreamMessageTypeEnum.getEnumByValue(base.getType());
-                switch (type) {
-                    case AI_RESPONSE -> {
-                        AiResponseMessage ai = JSONUtil.toBean(chunk, AiResponseMessage.class);
-                        buffer.append(ai.getMessageData().getData());
-                        return Mono.just(ServerSentEvent.builder()
-                                .event(StreamMessageTypeEnum.AI_RESPONSE.getValue())
-                                .data(ai.getMessageData())
-                                .build());
-                    }
-                    case TOOL_REQUEST -> {
-                        ToolRequestMessage req = JSONUtil.toBean(chunk, ToolRequestMessage.class);
-                        String toolId = req.getId();
-                        if (Objects.nonNull(toolId) && !toolIds.contains(toolId)) {
-                            toolIds.add(toolId);
-                            String requestLine = "🔧 [正在调用工具] " + req.getName();
-                            pendingTools.put(toolId, requestLine);
-                            buffer.append(requestLine).append("\n");
-                            return Mono.just(ServerSentEvent.builder()
-                                    .event(StreamMessageTypeEnum.TOOL_REQUEST.getValue())
-                                    .data(MessageData.builder()
-                                            .data(requestLine)
-                                            .type(StreamMessageTypeEnum.TOOL_REQUEST.getValue())
-                                            .build()
-                                    ).build());
-                        }
-                        return Mono.empty();
-                    }
-                    case TOOL_EXECUTED -> {
-                        ToolExecutedMessage exec = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
-                        String toolId = exec.getId();
-                        String toolName = exec.getName();
-                        JSONObject args = JSONUtil.parseObj(exec.getArguments());
-                        String path = args.getStr("relativeFilePath");
-                        String suffix = FileUtil.getSuffix(path);
-                        String content = args.getStr("content");
-                        String description = args.getStr("description");
-                        if (StringUtil.isNotBlank(path)) {
-                            AiToolLog aiToolLog = new AiToolLog();
-                            aiToolLog.setToolName(toolName);
-                            aiToolLog.setFilePath(path);
-                            aiToolLog.setAction(ToolAction.WRITE.getValue());
-                            aiToolLog.setSummary(description);
-                            aiToolLogs.add(aiToolLog);
-                        }
-
-                        String executedLine = String.format("[工具调用 ⚙️ ] 写入文件 %s\n```%s\n%s\n```", path, suffix, content);
-                        String replaced = CodeBlockExtractor.replaceCodeBlocks(executedLine, appId, codeGenType);
-                        String requestLine = pendingTools.getOrDefault(toolId, "[选择工具] " + toolName);
-                        String sseData = requestLine + "\n" + replaced;
-                        buffer.append(sseData).append("\n");
-                        pendingTools.remove(toolId);
-
+                if (chunk instanceof AiResponseMessage ai) {
+                    buffer.append(ai.getMessageData().getData());
+                    return Mono.just(ServerSentEvent.builder()
+                            .event(StreamMessageTypeEnum.AI_RESPONSE.getValue())
+                            .data(ai.getMessageData())
+                            .build());
+                }
+                if (chunk instanceof ToolRequestMessage req) {
+                    String toolId = req.getId();
+                    if (Objects.nonNull(toolId) && !toolIds.contains(toolId)) {
+                        toolIds.add(toolId);
+                        String requestLine = "🔧 [正在调用工具] " + req.getName();
+                        pendingTools.put(toolId, requestLine);
+                        buffer.append(requestLine).append("\n");
                         return Mono.just(ServerSentEvent.builder()
-                                .event(StreamMessageTypeEnum.TOOL_EXECUTED.getValue())
+                                .event(StreamMessageTypeEnum.TOOL_REQUEST.getValue())
                                 .data(MessageData.builder()
-                                        .data(sseData)
-                                        .type(StreamMessageTypeEnum.TOOL_EXECUTED.getValue())
+                                        .data(requestLine)
+                                        .type(StreamMessageTypeEnum.TOOL_REQUEST.getValue())
                                         .build()
                                 ).build());
                     }
-                    default -> Mono.empty();
+                    return Mono.empty();
+                }
+                if (chunk instanceof ToolExecutedMessage exec) {
+                    String toolId = exec.getId();
+                    String toolName = exec.getName();
+                    // 工具参数由模型以 JSON 字符串给出，这里是唯一一次解析
+                    JSONObject args = JSONUtil.parseObj(exec.getArguments());
+                    String path = args.getStr("relativeFilePath");
+                    String suffix = FileUtil.getSuffix(path);
+                    String content = args.getStr("content");
+                    String description = args.getStr("description");
+                    if (StringUtil.isNotBlank(path)) {
+                        AiToolLog aiToolLog = new AiToolLog();
+                        aiToolLog.setToolName(toolName);
+                        aiToolLog.setFilePath(path);
+                        aiToolLog.setAction(ToolAction.WRITE.getValue());
+                        aiToolLog.setSummary(description);
+                        aiToolLogs.add(aiToolLog);
+                    }
+
+                    String executedLine = String.format("[工具调用 ⚙️ ] 写入文件 %s\n```%s\n%s\n```", path, suffix, content);
+                    String replaced = CodeBlockExtractor.replaceCodeBlocks(executedLine, appId, codeGenType);
+                    String requestLine = pendingTools.getOrDefault(toolId, "[选择工具] " + toolName);
+                    String sseData = requestLine + "\n" + replaced;
+                    buffer.append(sseData).append("\n");
+                    pendingTools.remove(toolId);
+
+                    return Mono.just(ServerSentEvent.builder()
+                            .event(StreamMessageTypeEnum.TOOL_EXECUTED.getValue())
+                            .data(MessageData.builder()
+                                    .data(sseData)
+                                    .type(StreamMessageTypeEnum.TOOL_EXECUTED.getValue())
+                                    .build()
+                            ).build());
                 }
             } catch (Exception e) {
                 return Mono.empty();
@@ -1,6 +1,7 @@
 package com.zriyo.aicodemother.core.pipeline;
 
 import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
+import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
 
@@ -9,6 +10,7 @@ import java.util.*;
  * 策略：基于目录结构的权重排序 (Bottom-Up)
  * 目的：确保生成上层文件(如 Page)时，底层的依赖(如 Component/Store)已经在磁盘上
  */
+@Slf4j
 public class FileGenerationOrder {
 
     public static List<String> computeSafeOrder(ProjectSkeletonDTO skeleton) {
@@ -64,7 +66,7 @@ public class FileGenerationOrder {
 
         // 4. 环路检查与兜底
         if (result.size() != files.size()) {
-            System.err.println("警告: 生成顺序检查到循环依赖，执行兜底排序策略");
+            log.warn("生成顺序检查到循环依赖，执行兜底排序策略");
             // 找出漏掉的文件并按权重排序补全
             List<String> missing = new ArrayList<>(files.keySet());
             missing.removeAll(result);
@@ -75,6 +77,81 @@ public class FileGenerationOrder {
         return result;
     }
 
+    /**
+     * 按拓扑层级把骨架拆分为若干"波次" (Wave)
+     * 策略：同一波次内的文件互不依赖，可以并发生成；第 N 波只依赖前 N-1 波中的文件
+     * 顺序：波次内按权重比较器排序，保证 SSE 事件与 generatedFiles 的输出顺序确定
+     * 兜底：环路中的文件逐个成为独立波次，退化为原有的串行生成
+     */
+    public static List<List<String>> computeWaves(ProjectSkeletonDTO skeleton) {
+        if (skeleton == null || skeleton.getFiles() == null) {
+            return Collections.emptyList();
+        }
+
+        Map<String, ProjectSkeletonDTO.FileInfo> files = skeleton.getFiles();
+        List<List<String>> waves = new ArrayList<>();
+
+        // 1. 构建邻接表和入度表（与 computeSafeOrder 保持同一口径）
+        Map<String, List<String>> adj = new HashMap<>();
+        Map<String, Integer> inDegree = new HashMap<>();
+
+        for (String path : files.keySet()) {
+            inDegree.putIfAbsent(path, 0);
+            ProjectSkeletonDTO.FileInfo info = files.get(path);
+            if (info != null && info.getLocalDependencies() != null) {
+                // 去重，防止骨架中重复声明同一依赖导致入度无法归零
+                for (String dep : new LinkedHashSet<>(info.getLocalDependencies())) {
+                    if (files.containsKey(dep) && !dep.equals(path)) {
+                        adj.computeIfAbsent(dep, k -> new ArrayList<>()).add(path);
+                        inDegree.merge(path, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        // 2. 分层 Kahn 算法：每一轮把当前所有入度为 0 的节点作为一个波次
+        List<String> current = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : inDegree.entrySet()) {
+            if (entry.getValue() == 0) {
+                current.add(entry.getKey());
+            }
+        }
+
+        int visited = 0;
+        while (!current.isEmpty()) {
+            current.sort(new FilePriorityComparator());
+            waves.add(current);
+            visited += current.size();
+
+            List<String> next = new ArrayList<>();
+            for (String curr : current) {
+                List<String> neighbors = adj.get(curr);
+                if (neighbors == null) continue;
+                for (String neighbor : neighbors) {
+                    if (inDegree.merge(neighbor, -1, Integer::sum) == 0) {
+                        next.add(neighbor);
+                    }
+                }
+            }
+            current = next;
+        }
+
+        // 3. 环路兜底：剩余文件按权重逐个串行
+        if (visited != files.size()) {
+            log.warn("生成波次检查到循环依赖，剩余 {} 个文件退化为串行生成", files.size() - visited);
+            Set<String> scheduled = new HashSet<>();
+            waves.forEach(scheduled::addAll);
+            List<String> missing = new ArrayList<>(files.keySet());
+            missing.removeAll(scheduled);
+            missing.sort(new FilePriorityComparator());
+            for (String path : missing) {
+                waves.add(List.of(path));
+            }
+        }
+
+        return waves;
+    }
+
     /**
      * 核心排序逻辑比较器 (作为拓扑排序的二次筛选条件)
      */
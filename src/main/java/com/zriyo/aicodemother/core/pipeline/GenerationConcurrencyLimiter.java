@@ -0,0 +1,83 @@
+package com.zriyo.aicodemother.core.pipeline;
+
+import com.zriyo.aicodemother.config.CodeGenParallelConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 节点级文件生成并发闸门
+ * 职责：限制当前 JVM 内同时进行的单文件生成流数量，排队等待时不占用任何线程
+ */
+@Component
+@Slf4j
+public class GenerationConcurrencyLimiter {
+
+    private final Semaphore available;
+    private final Queue<MonoSink<Permit>> waiters = new ConcurrentLinkedQueue<>();
+
+    public GenerationConcurrencyLimiter(CodeGenParallelConfig config) {
+        this.available = new Semaphore(Math.max(1, config.getPerNodeConcurrency()));
+    }
+
+    /**
+     * 在持有许可期间执行 source，结束 / 异常 / 取消时自动归还
+     */
+    public <T> Flux<T> limit(Flux<T> source) {
+        return Flux.usingWhen(acquire(), permit -> source, permit -> Mono.fromRunnable(permit::release));
+    }
+
+    /**
+     * 当前排队等待许可的生成流数量
+     */
+    public int queued() {
+        return waiters.size();
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+                    if (available.tryAcquire()) {
+                        sink.success(new Permit());
+                        return;
+                    }
+                    waiters.offer(sink);
+                    sink.onCancel(() -> waiters.remove(sink));
+                    // 二次检查：防止入队前恰好有许可被归还而错过唤醒
+                    if (available.tryAcquire()) {
+                        if (waiters.remove(sink)) {
+                            sink.success(new Permit());
+                        } else {
+                            available.release();
+                        }
+                    }
+                })
+                // 许可在订阅取消后才送达时会被丢弃，此处保证归还
+                .doOnDiscard(Permit.class, Permit::release);
+    }
+
+    private void handOver() {
+        MonoSink<Permit> next = waiters.poll();
+        if (next != null) {
+            next.success(new Permit());
+        } else {
+            available.release();
+        }
+    }
+
+    private final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                handOver();
+            }
+        }
+    }
+}
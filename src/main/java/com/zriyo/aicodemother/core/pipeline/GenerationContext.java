@@ -1,5 +1,7 @@
 package com.zriyo.aicodemother.core.pipeline;
 
+import com.zriyo.aicodemother.core.context.SkeletonSnapshotStore;
+import com.zriyo.aicodemother.core.trace.GenerationTrace;
 import com.zriyo.aicodemother.model.dto.ModificationPlanDTO;
 import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
 import com.zriyo.aicodemother.model.dto.RuntimeFeedbackDTO;
@@ -27,6 +29,8 @@ public class GenerationContext {
     private String projectDir;
     private List<String> generatedFiles;
     private Long skeletonId;
+    // 骨架快照（含拓扑顺序与反向依赖索引），修改流程由 SkeletonLoadHandler 加载
+    private SkeletonSnapshotStore.Snapshot skeletonSnapshot;
     private Long toolMassageId;
     private String oosUrl;
     //修改产物
@@ -34,10 +38,13 @@ public class GenerationContext {
     // 运行时反馈（前端上报）
     private RuntimeFeedbackDTO runtimeFeedback;
     // ===== 控制标志 =====
-    private boolean terminated = false;
+    // 波次并发生成时由多个工作线程读写
+    private volatile boolean terminated = false;
     //是否报错
     private Boolean IsError = false;
     private CodeGenTypeEnum codeGenType;
+    // Span 时间线，未开启时为 null
+    private GenerationTrace trace;
 
 
 
@@ -1,14 +1,19 @@
 package com.zriyo.aicodemother.core.pipeline.handler;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zriyo.aicodemother.ai.AiCodeGeneratorServiceV2;
 import com.zriyo.aicodemother.ai.service.AiCodeGenTypeRoutingServiceImpl;
 import com.zriyo.aicodemother.core.handler.AiContextHolder;
 import com.zriyo.aicodemother.core.pipeline.CodeGenHandler;
 import com.zriyo.aicodemother.core.pipeline.GenerationContext;
+import com.zriyo.aicodemother.core.pipeline.service.AiToolLogWriter;
 import com.zriyo.aicodemother.core.pipeline.service.CodeGenRecordService;
+import com.zriyo.aicodemother.core.pipeline.service.PipelineStageMetrics;
+import com.zriyo.aicodemother.core.trace.SpanKind;
+import com.zriyo.aicodemother.core.trace.TraceSpan;
 import com.zriyo.aicodemother.event.AppEvent;
 import com.zriyo.aicodemother.model.AppConstant;
 import com.zriyo.aicodemother.model.MonitorContext;
@@ -30,10 +35,12 @@ import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
 import jodd.util.StringUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Objects;
@@ -48,6 +55,12 @@ public abstract class AbstractCodeGenHandler extends CodeGenHandler {
     protected final ObjectMapper objectMapper = new ObjectMapper();
     protected final AiCodeGenTypeRoutingServiceImpl aiCodeGenTypeRoutingService;
 
+    @Autowired
+    protected AiToolLogWriter aiToolLogWriter;
+
+    @Autowired
+    protected PipelineStageMetrics stageMetrics;
+
     protected static final String SKELETON = "skeleton";
     protected static final String UPDATE = "update";
     protected static final String CODE_FILE = "codeFile";
@@ -134,14 +147,35 @@ public abstract class AbstractCodeGenHandler extends CodeGenHandler {
     }
 
     /**
-     * 关键方法：设置上下文，方便代理类和监听器获取 ID
+     * 关键方法：设置上下文，方便代理类和监听器获取 ID；保留调用方已设置的当前 Span
      */
     private void setContextHolder(GenerationContext context) {
-        MonitorContext build = MonitorContext.builder()
+        MonitorContext current = AiContextHolder.get();
+        TraceSpan span = current != null && current.getTrace() == context.getTrace() ? current.getSpan() : null;
+        AiContextHolder.set(monitorContext(context, span));
+    }
+
+    protected static MonitorContext monitorContext(GenerationContext context) {
+        return monitorContext(context, null);
+    }
+
+    /**
+     * 构建线程上下文：身份信息 + 时间线，span 为该线程上新开 Span（如模型调用）的父节点
+     */
+    protected static MonitorContext monitorContext(GenerationContext context, TraceSpan span) {
+        return MonitorContext.builder()
                 .appId(String.valueOf(context.getAppId()))
                 .userId(String.valueOf(context.getUserId()))
+                .trace(context.getTrace())
+                .span(span)
                 .build();
-        AiContextHolder.set(build);
+    }
+
+    /**
+     * 在当前阶段下开启 Span，未开启时间线时返回 NOOP
+     */
+    protected static TraceSpan startSpan(GenerationContext context, String name, SpanKind kind) {
+        return context.getTrace() != null ? context.getTrace().start(name, kind) : TraceSpan.NOOP;
     }
 
     protected Long createMessage(GenerationContext context) {
@@ -162,18 +196,22 @@ public abstract class AbstractCodeGenHandler extends CodeGenHandler {
         aiToolLog.setFilePath(filePath);
         aiToolLog.setAction(value);
         aiToolLog.setCostTime((int) ((endTime - startTime) / 1000));
-        aiToolLogService.save(aiToolLog);
+        // 异步批量入库，不占用流式输出的时间
+        aiToolLogWriter.submit(aiToolLog);
     }
 
     protected void savaToolLog(GenerationContext context, String filePath, ToolExecution toolExecution, long startTime, ToolAction toolAction) {
         ToolExecutionRequest request = toolExecution.request();
         String toolName = request.name();
+        if (context.getTrace() != null) {
+            // 从文件（或修复）开始到该工具执行完成
+            context.getTrace().record("tool " + toolName, SpanKind.TOOL, startTime)
+                    .attr("file", filePath)
+                    .attr("action", toolAction.getValue());
+        }
         String description = null;
         try {
-            JsonNode args = objectMapper.readTree(request.arguments());
-            if (args.has("description")) {
-                description = args.get("description").asText(null);
-            }
+            description = readDescription(request.arguments());
         } catch (Exception e) {
             log.warn("解析工具参数失败，toolName: {}, arguments: {}", toolName, request.arguments(), e);
         }
@@ -188,6 +226,29 @@ public abstract class AbstractCodeGenHandler extends CodeGenHandler {
         }
     }
 
+    /**
+     * 只取工具参数中的 description：流式扫描顶层字段，跳过其余值（如整份文件内容）且不构建树
+     */
+    private String readDescription(String arguments) throws IOException {
+        if (StringUtil.isBlank(arguments)) {
+            return null;
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(arguments)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("description".equals(field)) {
+                    return value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
     private void cleanupOnTermination(GenerationContext context) {
         log.info(">>> 阶段清理: {}", getStage());
         if (getStage().equals(AiCodeGenStage.SKELETON)) {
@@ -230,7 +291,7 @@ public abstract class AbstractCodeGenHandler extends CodeGenHandler {
         log.info(">>> 阶段开始: {}", stageName);
         codeGenRecordService.start(context, stage);
 
-        Flux<ServerSentEvent<Object>> executionFlow = doExecute(context)
+        Flux<ServerSentEvent<Object>> executionFlow = stageMetrics.timed(stage, context, doExecute(context)
                 .onErrorResume(e -> {
                     RedisUtils.setCacheObject(RedisConstants.AI_CODE_GEN_TASK_RUNNING + context.getAppId(), false);
                     log.error(">>> 阶段彻底失败: {}", stageName, e);
@@ -238,7 +299,7 @@ public abstract class AbstractCodeGenHandler extends CodeGenHandler {
                     context.setTerminated(true);
                     context.setIsError(true);
                     return Flux.just(SseEventBuilder.of(StreamMessageTypeEnum.ERROR, e.getMessage()));
-                });
+                }));
 
         return Flux.concat(executionFlow)
                 .concatWith(Flux.defer(() -> {
@@ -8,12 +8,16 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.zriyo.aicodemother.ai.AiCodeGeneratorServiceV2;
 import com.zriyo.aicodemother.ai.factory.AiCodeGeneratorServiceFactoryV2;
 import com.zriyo.aicodemother.ai.service.AiCodeGenTypeRoutingServiceImpl;
+import com.zriyo.aicodemother.core.context.SkeletonSnapshotStore;
 import com.zriyo.aicodemother.core.handler.AiContextHolder;
+import com.zriyo.aicodemother.config.CodeGenParallelConfig;
 import com.zriyo.aicodemother.core.pipeline.FileGenerationOrder;
+import com.zriyo.aicodemother.core.pipeline.GenerationConcurrencyLimiter;
 import com.zriyo.aicodemother.core.pipeline.GenerationContext;
 import com.zriyo.aicodemother.core.pipeline.service.CodeGenRecordService;
+import com.zriyo.aicodemother.core.trace.SpanKind;
+import com.zriyo.aicodemother.core.trace.TraceSpan;
 import com.zriyo.aicodemother.model.AppConstant;
-import com.zriyo.aicodemother.model.MonitorContext;
 import com.zriyo.aicodemother.model.dto.ModificationPlanDTO;
 import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
 import com.zriyo.aicodemother.model.enums.AiCodeGenStage;
@@ -34,7 +38,9 @@ import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -50,8 +56,12 @@ public class CodeFileWriteHandler extends AbstractCodeGenHandler {
     private static final String FILE_PATH_IMPORT = "FILE_PATH_IMPORT:";
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final AiCodeGeneratorServiceFactoryV2 aiCodeGeneratorServiceFactory;
+    private final CodeGenParallelConfig parallelConfig;
+    private final GenerationConcurrencyLimiter concurrencyLimiter;
 
     public CodeFileWriteHandler(AiCodeGeneratorServiceFactoryV2 aiCodeGeneratorServiceFactory,
+                                CodeGenParallelConfig parallelConfig,
+                                GenerationConcurrencyLimiter concurrencyLimiter,
                                 CodeGenRecordService codeGenRecordService,
                                 ChatHistoryService chatHistoryService,
                                 AiToolLogService aiToolLogService,
@@ -59,6 +69,8 @@ public class CodeFileWriteHandler extends AbstractCodeGenHandler {
                                 AiCodeGenTypeRoutingServiceImpl aiCodeGenTypeRoutingService) {
         super(codeGenRecordService, chatHistoryService, aiToolLogService, publisher, aiCodeGenTypeRoutingService);
         this.aiCodeGeneratorServiceFactory = aiCodeGeneratorServiceFactory;
+        this.parallelConfig = parallelConfig;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     @Override
@@ -87,32 +99,72 @@ public class CodeFileWriteHandler extends AbstractCodeGenHandler {
 
         if (skeleton == null || skeleton.getFiles() == null) return Flux.empty();
 
+        if (parallelConfig.isEnabled()) {
+            return handleFirstBuildInWaves(context, skeleton, projectDirName);
+        }
+
         List<String> filePathsSafeOrder = FileGenerationOrder.computeSafeOrder(skeleton);
         context.setGeneratedFiles(filePathsSafeOrder);
 
         return Flux.fromIterable(filePathsSafeOrder)
-                .concatMap(filePath -> {
-                    if (stopGeneration(context)) return stopMessage();
-                    String newFilePath = projectDirName + "/" + filePath;
-                    ProjectSkeletonDTO.FileInfo fileInfo = skeleton.getFiles().get(filePath);
-
-                    // 1. 注入依赖上下文到 Redis
-                    List<String> deps = buildFileList(fileInfo);
-                    if (!deps.isEmpty()) RedisUtils.setCacheObject(FILE_PATH_IMPORT + newFilePath, deps);
-
-                    // 2. 准备 Prompt 与清除旧服务实例（确保重试时上下文干净）
-                    String fullPrompt = buildFilePrompt(context.getMessage(), fileInfo, skeleton, projectDirName);
-                    aiCodeGeneratorServiceFactory.invalidateService(newFilePath, context.getCodeGenType());
-
-                    AiCodeGeneratorServiceV2 aiService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(
-                            newFilePath, context.getCodeGenType(), projectDirName, appId);
+                .concatMap(filePath -> generateFirstBuildFile(context, skeleton, filePath, projectDirName));
+    }
 
-                    // 3. 执行生成并配置重试策略
-                    return generateSingleFileFlux(aiService, fullPrompt, context, filePath)
-                            .retryWhen(createRetrySpec(filePath));
+    /**
+     * 分支 1.1: 按依赖波次并发生成
+     * 波次之间严格串行（保证依赖已落盘），波次内部并发；
+     * flatMapSequential 保证 SSE 事件仍按波次内的确定顺序输出
+     */
+    private Flux<ServerSentEvent<Object>> handleFirstBuildInWaves(GenerationContext context,
+                                                                  ProjectSkeletonDTO skeleton,
+                                                                  String projectDirName) {
+        List<List<String>> waves = FileGenerationOrder.computeWaves(skeleton);
+        context.setGeneratedFiles(waves.stream().flatMap(List::stream).toList());
+        int perApp = Math.max(1, parallelConfig.getPerAppConcurrency());
+        log.info("首次构建按波次并发生成：appId={}, 文件数={}, 波次数={}, 单应用并发={}",
+                context.getAppId(), context.getGeneratedFiles().size(), waves.size(), perApp);
+
+        return Flux.fromIterable(waves)
+                .index()
+                .concatMap(wave -> {
+                    log.info("开始生成第 {} 波次，共 {} 个文件: {}", wave.getT1() + 1, wave.getT2().size(), wave.getT2());
+                    return Flux.fromIterable(wave.getT2())
+                            .flatMapSequential(filePath -> concurrencyLimiter.limit(
+                                            generateFirstBuildFile(context, skeleton, filePath, projectDirName)),
+                                    Math.min(perApp, wave.getT2().size()));
                 });
     }
 
+    /**
+     * 首次构建：单个文件的生成流（串行与波次模式共用）
+     */
+    private Flux<ServerSentEvent<Object>> generateFirstBuildFile(GenerationContext context,
+                                                                 ProjectSkeletonDTO skeleton,
+                                                                 String filePath,
+                                                                 String projectDirName) {
+        return Flux.defer(() -> {
+            if (context.isTerminated()) return Flux.empty();
+            if (stopGeneration(context)) return stopMessage();
+            String newFilePath = projectDirName + "/" + filePath;
+            ProjectSkeletonDTO.FileInfo fileInfo = skeleton.getFiles().get(filePath);
+
+            // 1. 注入依赖上下文到 Redis
+            List<String> deps = buildFileList(fileInfo);
+            if (!deps.isEmpty()) RedisUtils.setCacheObject(FILE_PATH_IMPORT + newFilePath, deps);
+
+            // 2. 准备 Prompt 与清除旧服务实例（确保重试时上下文干净）
+            String fullPrompt = buildFilePrompt(context.getMessage(), fileInfo, skeleton, projectDirName);
+            aiCodeGeneratorServiceFactory.invalidateService(newFilePath, context.getCodeGenType());
+
+            AiCodeGeneratorServiceV2 aiService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(
+                    newFilePath, context.getCodeGenType(), projectDirName, context.getAppId());
+
+            // 3. 执行生成并配置重试策略
+            return generateSingleFileFlux(aiService, fullPrompt, context, filePath)
+                    .retryWhen(createRetrySpec(filePath));
+        });
+    }
+
     /**
      * 分支 2: 修改/新增逻辑
      */
@@ -123,7 +175,7 @@ public class CodeFileWriteHandler extends AbstractCodeGenHandler {
 
         if (plan == null || plan.getTasks() == null) return Flux.empty();
 
-        return Flux.fromIterable(plan.getTasks())
+        return Flux.fromIterable(orderTasks(plan.getTasks(), context.getSkeletonSnapshot()))
                 .concatMap(task -> {
                     if (stopGeneration(context)) return stopMessage();
                     String filePath = task.getFilePath();
@@ -145,6 +197,22 @@ public class CodeFileWriteHandler extends AbstractCodeGenHandler {
                 });
     }
 
+    /**
+     * 按骨架快照中预先计算的拓扑顺序执行修改任务，被依赖的文件先落盘
+     * 新建文件不在原骨架中，排在最前面（通常是被现有文件引用的新组件）；多个新建文件之间保持计划原顺序，
+     * 无快照时完全保持计划原顺序
+     */
+    static List<ModificationPlanDTO.FileTask> orderTasks(List<ModificationPlanDTO.FileTask> tasks,
+                                                         SkeletonSnapshotStore.Snapshot snapshot) {
+        if (snapshot == null || tasks.size() < 2) {
+            return tasks;
+        }
+        List<ModificationPlanDTO.FileTask> ordered = new ArrayList<>(tasks);
+        ordered.sort(Comparator.comparingInt(task -> task == null || task.getFilePath() == null
+                ? -1 : snapshot.rank().getOrDefault(task.getFilePath(), -1)));
+        return ordered;
+    }
+
     /**
      * 核心逻辑：异步生成流处理，包含幻觉拦截
      */
@@ -155,10 +223,9 @@ public class CodeFileWriteHandler extends AbstractCodeGenHandler {
             String filePath) {
 
         return Flux.create(sink -> {
-            AiContextHolder.set(MonitorContext.builder()
-                    .userId(String.valueOf(context.getUserId()))
-                    .appId(String.valueOf(context.getAppId()))
-                    .build());
+            // 每次（重试）订阅各自一个文件 Span，模型调用与工具调用挂在其下
+            TraceSpan fileSpan = startSpan(context, "file " + filePath, SpanKind.FILE).attr("file", filePath);
+            AiContextHolder.set(monitorContext(context, fileSpan));
 
             long startTime = System.currentTimeMillis();
             // 获取 TokenStream
@@ -196,15 +263,19 @@ public class CodeFileWriteHandler extends AbstractCodeGenHandler {
                         // ❌ 判定幻觉：AI 输出了内容但没有调用 writeFile 相关的工具
                         if (!toolExecuted.get() && StrUtil.isNotBlank(aiText) && aiText.trim().length() > 5) {
                             log.error("检测到 AI 幻觉：直接输出文本而非调用工具。文件: [{}]", filePath);
-                            sink.error(new IllegalStateException("AI未调用工具内容"));
+                            IllegalStateException hallucination = new IllegalStateException("AI未调用工具内容");
+                            fileSpan.end(hallucination);
+                            sink.error(hallucination);
                             return;
                         }
 
+                        fileSpan.end();
                         sink.next(SseEventBuilder.of(StreamMessageTypeEnum.TOOL_DONE));
                         sink.complete();
                     })
                     .onError(err -> {
                         log.error("文件 [{}] 生成流异常: {}", filePath, err.getMessage());
+                        fileSpan.end(err);
                         sink.next(SseEventBuilder.of(StreamMessageTypeEnum.TOOL_ERROR, err.getMessage()));
                         sink.error(err); // 抛出异常触发重试
                     })
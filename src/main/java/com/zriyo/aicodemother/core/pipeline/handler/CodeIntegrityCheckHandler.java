@@ -3,19 +3,19 @@ package com.zriyo.aicodemother.core.pipeline.handler;
 import cn.hutool.core.io.FileUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.microsoft.playwright.Browser;
-import com.microsoft.playwright.BrowserType;
 import com.microsoft.playwright.Page;
-import com.microsoft.playwright.Playwright;
 import com.microsoft.playwright.options.WaitUntilState;
 import com.zriyo.aicodemother.ai.AiCodeGeneratorServiceV2;
 import com.zriyo.aicodemother.ai.factory.AiCodeGeneratorServiceFactoryV2;
 import com.zriyo.aicodemother.ai.service.AiCodeGenTypeRoutingServiceImpl;
+import com.zriyo.aicodemother.core.browser.BrowserPool;
+import com.zriyo.aicodemother.core.build.ViteBuildWorkerPool;
 import com.zriyo.aicodemother.core.handler.AiContextHolder;
 import com.zriyo.aicodemother.core.pipeline.GenerationContext;
 import com.zriyo.aicodemother.core.pipeline.service.CodeGenRecordService;
+import com.zriyo.aicodemother.core.trace.SpanKind;
+import com.zriyo.aicodemother.core.trace.TraceSpan;
 import com.zriyo.aicodemother.model.AppConstant;
-import com.zriyo.aicodemother.model.MonitorContext;
 import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
 import com.zriyo.aicodemother.model.enums.AiCodeGenStage;
 import com.zriyo.aicodemother.model.enums.ToolAction;
@@ -32,19 +32,14 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
 import reactor.core.scheduler.Schedulers;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
 import java.util.function.Supplier;
 
 /**
@@ -59,6 +54,8 @@ public class CodeIntegrityCheckHandler extends AbstractCodeGenHandler {
     private final AiCodeGeneratorServiceFactoryV2 aiCodeGeneratorServiceFactory;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final FileStorageService fileStorageService;
+    private final BrowserPool browserPool;
+    private final ViteBuildWorkerPool buildWorkerPool;
     private static final int MAX_RETRY = AppConstant.AUTO_FIX_MAX_RETRY;
     private static final String BUCKET_LOGICAL_NAME = "documents";
 
@@ -68,10 +65,14 @@ public class CodeIntegrityCheckHandler extends AbstractCodeGenHandler {
                                      AiToolLogService aiToolLogService,
                                      FileStorageService fileStorageService,
                                      ApplicationEventPublisher publisher,
-                                     AiCodeGenTypeRoutingServiceImpl aiCodeGenTypeRoutingService) {
+                                     AiCodeGenTypeRoutingServiceImpl aiCodeGenTypeRoutingService,
+                                     BrowserPool browserPool,
+                                     ViteBuildWorkerPool buildWorkerPool) {
         super(codeGenRecordService, chatHistoryService, aiToolLogService, publisher, aiCodeGenTypeRoutingService);
         this.aiCodeGeneratorServiceFactory = aiCodeGeneratorServiceFactory;
         this.fileStorageService = fileStorageService;
+        this.browserPool = browserPool;
+        this.buildWorkerPool = buildWorkerPool;
     }
 
     @Override
@@ -88,7 +89,7 @@ public class CodeIntegrityCheckHandler extends AbstractCodeGenHandler {
         if (stopGeneration(context)) return stopMessage();
 
         return Flux.<ServerSentEvent<Object>>create(emitter -> {
-            AiContextHolder.set(MonitorContext.builder().appId(String.valueOf(appId)).userId(String.valueOf(context.getUserId())).build());
+            AiContextHolder.set(monitorContext(context));
 
             String httpUrl = null;
             try {
@@ -97,7 +98,15 @@ public class CodeIntegrityCheckHandler extends AbstractCodeGenHandler {
 
                 // 1. 静态构建诊断循环 (修复语法、依赖、文件缺失)
                 boolean buildPass = runCheckLoop(emitter, context, projectRoot, projectDirName, "构建编译",
-                        () -> { cleanDist(projectRoot); return ProjectDoctor.runStaticDiagnosis(projectRoot); }, null);
+                        () -> {
+                            // 常驻构建进程只在文件变化时增量重建，提前清空 dist 会导致无变化时缺少产物
+                            if (!buildWorkerPool.isEnabled()) cleanDist(projectRoot);
+                            try (TraceSpan span = startSpan(context, "build", SpanKind.BUILD)) {
+                                ProjectDoctor.DiagnosisResult result = ProjectDoctor.runStaticDiagnosis(projectRoot);
+                                span.attr("success", result.success);
+                                return result;
+                            }
+                        }, null);
 
                 if (buildPass) {
                     Path distPath = Paths.get(projectRoot, AppConstant.BUILD_OUTPUT_DIR);
@@ -163,7 +172,8 @@ public class CodeIntegrityCheckHandler extends AbstractCodeGenHandler {
 
     private Flux<ServerSentEvent<Object>> handleAiFixStream(AiCodeGeneratorServiceV2 aiService, String prompt, GenerationContext context, String filePath) {
         return Flux.create(sink -> {
-            AiContextHolder.set(MonitorContext.builder().appId(String.valueOf(context.getAppId())).userId(String.valueOf(context.getUserId())).build());
+            TraceSpan fixSpan = startSpan(context, "fix " + filePath, SpanKind.FILE).attr("file", filePath);
+            AiContextHolder.set(monitorContext(context, fixSpan));
             long startTime = System.currentTimeMillis();
 
             TokenStream tokenStream = super.invokeTokenStream(aiService, context, prompt, FIX_BUG);
@@ -181,13 +191,19 @@ public class CodeIntegrityCheckHandler extends AbstractCodeGenHandler {
                     .onCompleteResponse(resp -> {
                         String aiText = resp.aiMessage() != null ? resp.aiMessage().text() : "";
                         if (!toolExecuted.get() && aiText != null && aiText.trim().length() > 5) {
-                            sink.error(new IllegalStateException("AI 未调用工具修复代码"));
+                            IllegalStateException hallucination = new IllegalStateException("AI 未调用工具修复代码");
+                            fixSpan.end(hallucination);
+                            sink.error(hallucination);
                             return;
                         }
+                        fixSpan.end();
                         sink.next(SseEventBuilder.of(StreamMessageTypeEnum.TOOL_DONE));
                         sink.complete();
                     })
-                    .onError(sink::error)
+                    .onError(e -> {
+                        fixSpan.end(e);
+                        sink.error(e);
+                    })
                     .start();
         });
     }
@@ -196,9 +212,16 @@ public class CodeIntegrityCheckHandler extends AbstractCodeGenHandler {
         File screenshot = null;
         try {
             emitter.next(SseEventBuilder.of(StreamMessageTypeEnum.DIAGNOSIS_PROCESS, "正在生成应用预览截图..."));
-            screenshot = captureScreenshot(httpUrl, projectDirName);
+            try (TraceSpan span = startSpan(context, "screenshot", SpanKind.SCREENSHOT)) {
+                screenshot = captureScreenshot(httpUrl, projectDirName);
+                span.attr("success", screenshot != null);
+            }
             if (screenshot != null && screenshot.exists() && !context.getIsOosUrl()) {
-                String ossUrl = fileStorageService.uploadFile(BUCKET_LOGICAL_NAME, new FileToMultipartFile(screenshot));
+                String ossUrl;
+                try (TraceSpan span = startSpan(context, "upload screenshot", SpanKind.UPLOAD)) {
+                    span.attr("bytes", screenshot.length());
+                    ossUrl = fileStorageService.uploadFile(BUCKET_LOGICAL_NAME, screenshot.toPath(), "image/png");
+                }
                 context.setOosUrl(ossUrl);
                 context.setIsOosUrl(true);
                 emitter.next(SseEventBuilder.of(StreamMessageTypeEnum.TOOL_EXECUTED, ossUrl));
@@ -211,17 +234,15 @@ public class CodeIntegrityCheckHandler extends AbstractCodeGenHandler {
     }
 
     private File captureScreenshot(String targetUrl, String projectDirName) {
-        try (Playwright playwright = Playwright.create()) {
-            Browser browser = playwright.chromium().launch(new BrowserType.LaunchOptions().setArgs(Arrays.asList(
-                    "--no-sandbox", "--disable-setuid-sandbox", "--disable-dev-shm-usage", "--disable-gpu"
-            )));
-            Page page = browser.newPage();
-            page.navigate(targetUrl, new Page.NavigateOptions().setWaitUntil(WaitUntilState.NETWORKIDLE).setTimeout(60000));
-            page.waitForSelector("#app", new Page.WaitForSelectorOptions().setTimeout(20000));
-
-            Path destPath = Paths.get(System.getProperty("java.io.tmpdir"), "snap_" + System.currentTimeMillis() + ".png");
-            page.screenshot(new Page.ScreenshotOptions().setPath(destPath).setFullPage(true));
-            return destPath.toFile();
+        try {
+            return browserPool.withPage(page -> {
+                page.navigate(targetUrl, new Page.NavigateOptions().setWaitUntil(WaitUntilState.NETWORKIDLE).setTimeout(60000));
+                page.waitForSelector("#app", new Page.WaitForSelectorOptions().setTimeout(20000));
+
+                Path destPath = Paths.get(System.getProperty("java.io.tmpdir"), "snap_" + System.currentTimeMillis() + ".png");
+                page.screenshot(new Page.ScreenshotOptions().setPath(destPath).setFullPage(true));
+                return destPath.toFile();
+            });
         } catch (Exception e) {
             log.error("Playwright 截图失败: {}", e.getMessage());
             return null;
@@ -257,17 +278,4 @@ public class CodeIntegrityCheckHandler extends AbstractCodeGenHandler {
         File dist = Paths.get(projectRoot, AppConstant.BUILD_OUTPUT_DIR).toFile();
         if (dist.exists()) FileUtil.del(dist);
     }
-
-    private static class FileToMultipartFile implements MultipartFile {
-        private final File file;
-        public FileToMultipartFile(File file) { this.file = file; }
-        @Override public String getName() { return "file"; }
-        @Override public String getOriginalFilename() { return file.getName(); }
-        @Override public String getContentType() { return "image/png"; }
-        @Override public boolean isEmpty() { return file.length() == 0; }
-        @Override public long getSize() { return file.length(); }
-        @Override public byte[] getBytes() throws IOException { return Files.readAllBytes(file.toPath()); }
-        @Override public InputStream getInputStream() throws IOException { return new FileInputStream(file); }
-        @Override public void transferTo(File dest) throws IOException { Files.copy(file.toPath(), dest.toPath()); }
-    }
 }
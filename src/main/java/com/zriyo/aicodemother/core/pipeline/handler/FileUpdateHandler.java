@@ -10,7 +10,6 @@ import com.zriyo.aicodemother.core.pipeline.service.CodeGenRecordService;
 import com.zriyo.aicodemother.exception.BusinessException;
 import com.zriyo.aicodemother.exception.ErrorCode;
 import com.zriyo.aicodemother.model.AppConstant;
-import com.zriyo.aicodemother.model.MonitorContext;
 import com.zriyo.aicodemother.model.dto.InvestigationResult;
 import com.zriyo.aicodemother.model.dto.ModificationPlanDTO;
 import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
@@ -59,10 +58,7 @@ public class FileUpdateHandler extends AbstractCodeGenHandler {
         String message = context.getMessage();
 
         return Flux.<ServerSentEvent<Object>>create(sink -> {
-            AiContextHolder.set(MonitorContext.builder()
-                    .appId(String.valueOf(context.getAppId()))
-                    .userId(String.valueOf(context.getUserId()))
-                    .build());
+            AiContextHolder.set(monitorContext(context));
 
             try {
                 StringBuilder sb = new StringBuilder();
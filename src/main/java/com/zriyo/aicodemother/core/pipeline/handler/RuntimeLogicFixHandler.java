@@ -7,8 +7,9 @@ import com.zriyo.aicodemother.ai.service.AiCodeGenTypeRoutingServiceImpl;
 import com.zriyo.aicodemother.core.handler.AiContextHolder;
 import com.zriyo.aicodemother.core.pipeline.GenerationContext;
 import com.zriyo.aicodemother.core.pipeline.service.CodeGenRecordService;
+import com.zriyo.aicodemother.core.trace.SpanKind;
+import com.zriyo.aicodemother.core.trace.TraceSpan;
 import com.zriyo.aicodemother.model.AppConstant;
-import com.zriyo.aicodemother.model.MonitorContext;
 import com.zriyo.aicodemother.model.dto.FaultyFileReportDTO;
 import com.zriyo.aicodemother.model.dto.RuntimeFeedbackDTO;
 import com.zriyo.aicodemother.model.enums.AiCodeGenStage;
@@ -67,7 +68,7 @@ public class RuntimeLogicFixHandler extends AbstractCodeGenHandler {
         String projectRoot = AppConstant.TMP_DIR + "/" + AppConstant.APP_GEN_FILE_PATH + "/" + projectDirName;
 
         return Flux.<ServerSentEvent<Object>>create(emitter -> {
-            AiContextHolder.set(MonitorContext.builder().appId(String.valueOf(appId)).userId(String.valueOf(context.getUserId())).build());
+            AiContextHolder.set(monitorContext(context));
             try {
                 emitter.next(SseEventBuilder.of(StreamMessageTypeEnum.DIAGNOSIS_PROCESS, "AI 专家正在分析故障全景图..."));
 
@@ -150,7 +151,8 @@ public class RuntimeLogicFixHandler extends AbstractCodeGenHandler {
 
     private Flux<ServerSentEvent<Object>> handleAiFixStream(AiCodeGeneratorServiceV2 aiService, String prompt, GenerationContext context) {
         return Flux.create(sink -> {
-            AiContextHolder.set(MonitorContext.builder().appId(String.valueOf(context.getAppId())).userId(String.valueOf(context.getUserId())).build());
+            TraceSpan fixSpan = startSpan(context, "runtime fix", SpanKind.FILE);
+            AiContextHolder.set(monitorContext(context, fixSpan));
             long startTime = System.currentTimeMillis();
             TokenStream tokenStream = super.invokeTokenStream(aiService, context, prompt, RUNTIME_FIX);
             AtomicBoolean toolExecuted = new AtomicBoolean(false);
@@ -164,14 +166,18 @@ public class RuntimeLogicFixHandler extends AbstractCodeGenHandler {
                     })
                     .onCompleteResponse(resp -> {
                         if (!toolExecuted.get()) {
-                            sink.error(new IllegalStateException("AI 未下发任何 writeFile 指令，请检查报错是否已在之前修复。"));
+                            IllegalStateException noTool = new IllegalStateException("AI 未下发任何 writeFile 指令，请检查报错是否已在之前修复。");
+                            fixSpan.end(noTool);
+                            sink.error(noTool);
                             return;
                         }
+                        fixSpan.end();
                         sink.next(SseEventBuilder.of(StreamMessageTypeEnum.TOOL_DONE));
                         sink.complete();
                     })
                     .onError(e -> {
                         log.error("Fix Stream Error: ", e);
+                        fixSpan.end(e);
                         sink.error(e);
                     })
                     .start();
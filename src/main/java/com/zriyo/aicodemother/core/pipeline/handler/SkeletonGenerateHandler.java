@@ -2,10 +2,10 @@ package com.zriyo.aicodemother.core.pipeline.handler;
 
 import cn.hutool.json.JSONUtil;
 import com.zriyo.aicodemother.ai.service.AiCodeGenTypeRoutingServiceImpl;
+import com.zriyo.aicodemother.core.context.SkeletonSnapshotStore;
 import com.zriyo.aicodemother.core.handler.AiContextHolder;
 import com.zriyo.aicodemother.core.pipeline.GenerationContext;
 import com.zriyo.aicodemother.core.pipeline.service.CodeGenRecordService;
-import com.zriyo.aicodemother.model.MonitorContext;
 import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
 import com.zriyo.aicodemother.model.dto.chat.ChatMessage;
 import com.zriyo.aicodemother.model.enums.AiCodeGenStage;
@@ -28,12 +28,16 @@ import reactor.core.scheduler.Schedulers;
 @Slf4j
 public class SkeletonGenerateHandler extends AbstractCodeGenHandler {
 
+    private final SkeletonSnapshotStore skeletonSnapshotStore;
+
     public SkeletonGenerateHandler(AiCodeGenTypeRoutingServiceImpl aiCodeGenTypeRoutingService,
                                    CodeGenRecordService codeGenRecordService,
                                    ChatHistoryService chatHistoryService,
                                    AiToolLogService aiToolLogService,
-                                   ApplicationEventPublisher publisher) {
+                                   ApplicationEventPublisher publisher,
+                                   SkeletonSnapshotStore skeletonSnapshotStore) {
         super(codeGenRecordService, chatHistoryService, aiToolLogService, publisher, aiCodeGenTypeRoutingService);
+        this.skeletonSnapshotStore = skeletonSnapshotStore;
     }
 
     @Override
@@ -56,28 +60,26 @@ public class SkeletonGenerateHandler extends AbstractCodeGenHandler {
                 Flux.just(SseEventBuilder.of(StreamMessageTypeEnum.TOOL_REQUEST, "🧠 分析需求并规划文件目录...")),
                 Mono.fromCallable(() -> {
 
-                            AiContextHolder.set(MonitorContext.builder()
-                                    .appId(String.valueOf(context.getAppId()))
-                                    .userId(String.valueOf(context.getUserId()))
-                                    .build());
+                            AiContextHolder.set(monitorContext(context));
 
                             return invokeCodeGenType(context, SKELETON, context.getMessage());
                         })
                         .subscribeOn(Schedulers.boundedElastic()) // 切换线程池
                         .doOnNext(skeleton -> {
 
-                            AiContextHolder.set(MonitorContext.builder()
-                                    .appId(String.valueOf(context.getAppId()))
-                                    .userId(String.valueOf(context.getUserId()))
-                                    .build());
+                            AiContextHolder.set(monitorContext(context));
 
                             context.setSkeleton((ProjectSkeletonDTO) skeleton);
+                            String json = JSONUtil.toJsonStr(skeleton);
                             ChatMessage chatMessage = new ChatMessage();
-                            chatMessage.setMessage(JSONUtil.toJsonStr(skeleton));
+                            chatMessage.setMessage(json);
                             chatMessage.setMessageType(ChatHistoryMessageTypeEnum.SKELETON.getValue());
                             chatMessage.setAppId(context.getAppId());
                             chatMessage.setUserVisible(0);
-                            chatHistoryService.addChatMessage(chatMessage, context.getUserId());
+                            Long skeletonId = chatHistoryService.addChatMessage(chatMessage, context.getUserId());
+                            // 写穿骨架快照，后续的修改请求无需查库解析
+                            skeletonSnapshotStore.put(context.getAppId(), context.getUserId(), skeletonId,
+                                    (ProjectSkeletonDTO) skeleton, json);
                         })
                         .flatMapMany(skeleton ->
                                 Flux.just(SseEventBuilder.of(StreamMessageTypeEnum.TOOL_EXECUTED, "📁 需求分析完毕!"))
@@ -0,0 +1,149 @@
+package com.zriyo.aicodemother.core.pipeline.service;
+
+import com.zriyo.aicodemother.config.ToolLogWriterConfig;
+import com.zriyo.aicodemother.mapper.AiToolLogMapper;
+import com.zriyo.aicodemother.model.entity.AiToolLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工具调用记录的异步批量写入
+ * 职责：流式生成过程中的每次工具调用只把记录放入有界队列，由单个后台线程按条数或时间间隔合并为一条多行 INSERT；
+ * 队列满时调用方短暂等待形成背压，仍无法入队则同步写库；应用关闭时写完队列中剩余的记录。
+ * 多行插入失败时按指数退避重试，仍失败则逐条插入，只丢弃逐条插入也失败的记录并计数
+ */
+@Slf4j
+@Component
+public class AiToolLogWriter {
+
+    private final ToolLogWriterConfig config;
+    private final AiToolLogMapper aiToolLogMapper;
+    private final BlockingQueue<AiToolLog> queue;
+    private final Counter dropped;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public AiToolLogWriter(ToolLogWriterConfig config, AiToolLogMapper aiToolLogMapper, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.aiToolLogMapper = aiToolLogMapper;
+        this.dropped = Counter.builder("ai_tool_log_dropped_total")
+                .description("重试与逐条插入后仍未能写入的工具调用记录数")
+                .register(meterRegistry);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+        this.flusher = new Thread(this::runLoop, "tool-log-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 提交一条工具调用记录，正常情况下立即返回
+     */
+    public void submit(AiToolLog aiToolLog) {
+        try {
+            if (running && queue.offer(aiToolLog, config.getOfferTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.warn("工具调用记录队列已满或已关闭，同步写入: {}", aiToolLog.getToolName());
+        aiToolLogMapper.insert(aiToolLog);
+    }
+
+    private void runLoop() {
+        int batchSize = Math.max(1, config.getBatchSize());
+        List<AiToolLog> batch = new ArrayList<>(batchSize);
+        long deadline = System.currentTimeMillis() + config.getFlushIntervalMillis();
+        while (running || !queue.isEmpty()) {
+            try {
+                long wait = Math.max(0, deadline - System.currentTimeMillis());
+                AiToolLog first = queue.poll(wait, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                if (batch.size() >= batchSize || (!batch.isEmpty() && System.currentTimeMillis() >= deadline)) {
+                    flush(batch);
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    deadline = System.currentTimeMillis() + config.getFlushIntervalMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        flush(batch);
+    }
+
+    private void flush(List<AiToolLog> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            if (!insertBatchWithRetry(batch)) {
+                insertEach(batch);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private boolean insertBatchWithRetry(List<AiToolLog> batch) {
+        long backoff = Math.max(0, config.getRetryBackoffMillis());
+        int retries = Math.max(0, config.getBatchRetries());
+        for (int attempt = 0; ; attempt++) {
+            try {
+                aiToolLogMapper.insertBatch(batch);
+                return true;
+            } catch (Exception e) {
+                if (attempt >= retries) {
+                    log.error("批量写入工具调用记录失败，改为逐条写入，条数: {}", batch.size(), e);
+                    return false;
+                }
+                log.warn("批量写入工具调用记录失败，{} ms 后第 {} 次重试: {}", backoff, attempt + 1, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                // 关闭阶段被中断时不再等待，直接逐条写入
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff *= 2;
+        }
+    }
+
+    /**
+     * 逐条写入，隔离批次中个别无法写入的记录
+     */
+    private void insertEach(List<AiToolLog> batch) {
+        for (AiToolLog aiToolLog : batch) {
+            try {
+                aiToolLogMapper.insert(aiToolLog);
+            } catch (Exception e) {
+                dropped.increment();
+                log.error("工具调用记录写入失败，已丢弃: tool={}", aiToolLog.getToolName(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // 不中断后台线程，避免打断进行中的 INSERT；单次等待不超过刷盘间隔，循环结束前会写完队列
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        if (!queue.isEmpty()) {
+            log.warn("工具调用记录未能在关闭前全部写入，剩余: {}", queue.size());
+        }
+    }
+}
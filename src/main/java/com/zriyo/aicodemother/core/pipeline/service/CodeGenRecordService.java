@@ -9,6 +9,7 @@ import lombok.AllArgsConstructor;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 @Service
@@ -20,6 +21,8 @@ public class CodeGenRecordService {
     public AiCodeGenRecord start(GenerationContext context, AiCodeGenStage stage) {
         AiCodeGenRecord build = build(context, stage, AiCodeGenStatus.RUNNING);
         context.setRecord(build);
+        // 写入器会与随后的成功 / 失败合并，短阶段通常只落一次库
+        publisher.publishEvent(new RecordLogEvent(this, build));
         return build;
     }
 
@@ -38,6 +41,7 @@ public class CodeGenRecordService {
         AiCodeGenRecord r = context.getRecord();
         r.setStatus(status.getValue());
         r.setEndTime(LocalDateTime.now());
+        r.setDurationMs(Duration.between(r.getStartTime(), r.getEndTime()).toMillis());
         return r;
     }
 
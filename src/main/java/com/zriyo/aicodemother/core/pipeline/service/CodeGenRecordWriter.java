@@ -0,0 +1,203 @@
+package com.zriyo.aicodemother.core.pipeline.service;
+
+import com.zriyo.aicodemother.config.RecordWriterConfig;
+import com.zriyo.aicodemother.mapper.AiCodeGenRecordMapper;
+import com.zriyo.aicodemother.model.entity.AiCodeGenRecord;
+import com.zriyo.aicodemother.util.BeanCopyUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成记录的异步合并写入
+ * 职责：每条记录（一次阶段执行，即 GenerationContext 上的 record 对象）只在内存中保留最新一次状态（开始 / 成功 / 失败），
+ * 由单个后台线程按间隔批量写入，同一记录在间隔内的多次状态变化合并为一次写入；单线程写入保证同一记录的写入顺序与状态变化顺序一致。
+ * 首次写入为 insert，生成的主键回写到上下文中的记录对象，之后的状态变化按主键更新；
+ * 写库失败的状态在没有更新状态时放回下一轮重试，写库失败期间后台线程按指数退避等待；同一记录连续失败超过 maxRetries 次后丢弃并计数。
+ * 应用正常关闭时写完剩余状态，关闭后提交的状态同步写库。
+ * 待写入状态只保存在内存中，进程被强制终止时尚未写入的状态会丢失
+ */
+@Slf4j
+@Component
+public class CodeGenRecordWriter {
+
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+
+    private final RecordWriterConfig config;
+    private final AiCodeGenRecordMapper aiCodeGenRecordMapper;
+    private final Counter dropped;
+    /**
+     * 上下文中的记录对象（按引用区分） -> 待写入的最新状态快照，访问时以自身加锁
+     */
+    private final Map<AiCodeGenRecord, AiCodeGenRecord> pending = new IdentityHashMap<>();
+    /**
+     * 存在待写入状态的记录，按首次提交的顺序排列，每条记录至多出现一次
+     */
+    private final BlockingQueue<AiCodeGenRecord> dirty = new LinkedBlockingQueue<>();
+    /**
+     * 记录 -> 连续写库失败次数，只在 flush 内访问
+     */
+    private final Map<AiCodeGenRecord, Integer> failures = new IdentityHashMap<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public CodeGenRecordWriter(RecordWriterConfig config, AiCodeGenRecordMapper aiCodeGenRecordMapper,
+                               MeterRegistry meterRegistry) {
+        this.config = config;
+        this.aiCodeGenRecordMapper = aiCodeGenRecordMapper;
+        this.dropped = Counter.builder("ai_code_gen_record_dropped_total")
+                .description("重试耗尽后仍未能写入而丢弃的生成记录状态数")
+                .register(meterRegistry);
+        this.flusher = new Thread(this::runLoop, "codegen-record-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 提交一次状态变化，立即返回；记录之后仍会被流水线修改，这里保存的是提交时的快照
+     */
+    public void submit(AiCodeGenRecord record) {
+        if (record == null || record.getAppId() == null) {
+            return;
+        }
+        AiCodeGenRecord snapshot = BeanCopyUtil.copy(record, AiCodeGenRecord.class);
+        boolean first;
+        synchronized (pending) {
+            first = pending.put(record, snapshot) == null;
+        }
+        if (first) {
+            dirty.offer(record);
+        }
+        if (!running) {
+            flush(List.of(record));
+        }
+    }
+
+    private void runLoop() {
+        int batchSize = Math.max(1, config.getBatchSize());
+        List<AiCodeGenRecord> records = new ArrayList<>(batchSize);
+        long backoff = Math.max(1, config.getRetryBackoffMillis());
+        while (running || !dirty.isEmpty()) {
+            try {
+                AiCodeGenRecord first = dirty.poll(config.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                if (running) {
+                    // 等待一个间隔，让紧随其后的状态变化（如短阶段的开始与结束）合并为一次写入
+                    Thread.sleep(config.getFlushIntervalMillis());
+                }
+                records.add(first);
+                dirty.drainTo(records, batchSize - 1);
+                if (flush(records)) {
+                    backoff = Math.max(1, config.getRetryBackoffMillis());
+                } else if (!running) {
+                    // 关闭阶段写库仍失败时不再重试，由 shutdown 做最后一次尝试
+                    break;
+                } else {
+                    // 数据库不可用时不按刷盘间隔空转重试
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                records.clear();
+            }
+        }
+    }
+
+    /**
+     * @return 本批是否全部写入成功
+     */
+    private synchronized boolean flush(List<AiCodeGenRecord> records) {
+        boolean success = true;
+        for (AiCodeGenRecord record : records) {
+            AiCodeGenRecord snapshot;
+            synchronized (pending) {
+                snapshot = pending.remove(record);
+            }
+            if (snapshot == null) {
+                continue;
+            }
+            try {
+                upsert(record, snapshot);
+                failures.remove(record);
+            } catch (Exception e) {
+                success = false;
+                int failed = failures.merge(record, 1, Integer::sum);
+                if (failed > config.getMaxRetries()) {
+                    failures.remove(record);
+                    dropped.increment();
+                    log.error("写入生成记录失败 {} 次，已丢弃: appId={}, stage={}, status={}",
+                            failed, snapshot.getAppId(), snapshot.getStage(), snapshot.getStatus(), e);
+                    continue;
+                }
+                log.warn("写入生成记录失败，稍后第 {} 次重试: appId={}, stage={}, 原因: {}",
+                        failed, snapshot.getAppId(), snapshot.getStage(), e.getMessage());
+                requeue(record, snapshot);
+            }
+        }
+        return success;
+    }
+
+    /**
+     * 已写入过的记录按主键更新，否则插入并把主键回写到上下文中的记录对象
+     */
+    private void upsert(AiCodeGenRecord record, AiCodeGenRecord snapshot) {
+        Long id = record.getId();
+        if (id != null) {
+            snapshot.setId(id);
+            if (aiCodeGenRecordMapper.update(snapshot) > 0) {
+                return;
+            }
+            // 记录行已被删除
+            snapshot.setId(null);
+        }
+        aiCodeGenRecordMapper.insert(snapshot);
+        record.setId(snapshot.getId());
+    }
+
+    /**
+     * 失败的状态放回队列；期间已有更新状态提交时以更新状态为准
+     */
+    private void requeue(AiCodeGenRecord record, AiCodeGenRecord snapshot) {
+        boolean first;
+        synchronized (pending) {
+            first = pending.putIfAbsent(record, snapshot) == null;
+        }
+        if (first) {
+            dirty.offer(record);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // 不中断后台线程，避免打断进行中的写入；关闭后跳过合并等待，循环结束前会写完队列
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        List<AiCodeGenRecord> remaining;
+        synchronized (pending) {
+            remaining = new ArrayList<>(pending.keySet());
+        }
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+        synchronized (pending) {
+            if (!pending.isEmpty()) {
+                log.warn("生成记录未能在关闭前全部写入，剩余: {}", pending.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.zriyo.aicodemother.core.pipeline.service;
+
+import com.zriyo.aicodemother.core.pipeline.GenerationContext;
+import com.zriyo.aicodemother.core.trace.TraceSpan;
+import com.zriyo.aicodemother.model.enums.AiCodeGenStage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 流水线阶段指标
+ * 职责：统计每个 Handler 自身执行（doExecute）的耗时与推送的 SSE 事件数，不包含其后续 Handler；
+ * 阶段集合固定，标签基数有限；开启时间线时同时为该阶段开启 STAGE Span，作为阶段内文件、模型调用等 Span 的父节点
+ */
+@Component
+public class PipelineStageMetrics {
+
+    private static final Duration[] STAGE_BUCKETS = {
+            Duration.ofMillis(100), Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofSeconds(5),
+            Duration.ofSeconds(15), Duration.ofSeconds(30), Duration.ofSeconds(60), Duration.ofSeconds(120),
+            Duration.ofSeconds(300)
+    };
+
+    private final MeterRegistry meterRegistry;
+    private final Map<AiCodeGenStage, Counter> eventCounters = new EnumMap<>(AiCodeGenStage.class);
+
+    public PipelineStageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (AiCodeGenStage stage : AiCodeGenStage.values()) {
+            eventCounters.put(stage, Counter.builder("codegen_stage_sse_events_total")
+                    .description("流水线阶段推送的 SSE 事件数")
+                    .tag("stage", stage.getValue())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 为阶段自身的事件流计时：从订阅开始到该阶段结束（完成 / 失败 / 取消）
+     */
+    public Flux<ServerSentEvent<Object>> timed(AiCodeGenStage stage, GenerationContext context,
+                                               Flux<ServerSentEvent<Object>> flow) {
+        Counter events = eventCounters.get(stage);
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            TraceSpan span = context.getTrace() != null ? context.getTrace().startStage(stage.getValue()) : TraceSpan.NOOP;
+            return flow.doOnNext(event -> events.increment())
+                    .doFinally(signal -> {
+                        String outcome = outcome(signal, context);
+                        stageTimer(stage, outcome).record(Duration.ofNanos(System.nanoTime() - start));
+                        span.attr("outcome", outcome).end();
+                    });
+        });
+    }
+
+    private Timer stageTimer(AiCodeGenStage stage, String outcome) {
+        return Timer.builder("codegen_stage_duration_seconds")
+                .description("流水线阶段执行耗时（不含后续阶段）")
+                .tag("stage", stage.getValue())
+                .tag("outcome", outcome)
+                .serviceLevelObjectives(STAGE_BUCKETS)
+                .register(meterRegistry);
+    }
+
+    private static String outcome(SignalType signal, GenerationContext context) {
+        if (signal == SignalType.CANCEL) {
+            return "cancel";
+        }
+        if (Boolean.TRUE.equals(context.getIsError())) {
+            return "error";
+        }
+        return context.isTerminated() ? "stopped" : "success";
+    }
+}
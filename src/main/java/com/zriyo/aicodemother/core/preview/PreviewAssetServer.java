@@ -0,0 +1,308 @@
+package com.zriyo.aicodemother.core.preview;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zriyo.aicodemother.config.AppViewConfig;
+import com.zriyo.aicodemother.event.AppChangedEvent;
+import com.zriyo.aicodemother.model.AppConstant;
+import com.zriyo.aicodemother.service.AppService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 预览资源服务（/app/view/**）
+ * 职责：
+ * 1. 缓存应用存在性校验，避免每个静态资源请求都查库，应用变更时通过 {@link AppChangedEvent} 失效
+ * 2. 按文件（大小 + 修改时间）缓存资源：改写后的 index.html、小文件内容、gzip 版本与基于内容的强 ETag
+ * 3. 处理 If-None-Match / If-Modified-Since 返回 304
+ * 4. 优先发送构建产物旁预压缩的 .br / .gz 文件，其次发送内存中的 gzip 版本
+ * 5. 大文件通过 Tomcat sendfile 零拷贝发送，不支持时退化为 FileChannel.transferTo
+ */
+@Slf4j
+@Component
+public class PreviewAssetServer {
+
+    private static final Pattern ABSOLUTE_SRC = Pattern.compile("src=\"/([^\"/])");
+    private static final Pattern ABSOLUTE_HREF = Pattern.compile("href=\"/([^\"/])");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Vite 产物 assets 目录下的文件名带内容哈希，可以长期缓存
+     */
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(
+            "html", "htm", "js", "mjs", "css", "json", "svg", "txt", "xml", "map", "wasm");
+
+    private final AppService appService;
+    private final AppViewConfig config;
+    private final Cache<Long, Boolean> knownApps;
+    private final Cache<Path, Asset> assets;
+
+    public PreviewAssetServer(AppService appService, AppViewConfig config, MeterRegistry meterRegistry) {
+        this.appService = appService;
+        this.config = config;
+        this.knownApps = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofSeconds(config.getMetadataCacheSeconds()))
+                .recordStats()
+                .build();
+        this.assets = Caffeine.newBuilder()
+                .maximumWeight(config.getAssetCacheMaxBytes())
+                .weigher((Path path, Asset asset) -> asset.weight())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, knownApps, "preview_app_metadata");
+        CaffeineCacheMetrics.monitor(meterRegistry, assets, "preview_assets");
+    }
+
+    /**
+     * 校验应用存在（不存在时由 AppService 抛出 NOT_FOUND），结果在本地缓存
+     */
+    public void ensureAppExists(Long appId) {
+        if (knownApps.getIfPresent(appId) != null) {
+            return;
+        }
+        appService.viewApp(appId, 0L);
+        knownApps.put(appId, Boolean.TRUE);
+    }
+
+    @EventListener(classes = AppChangedEvent.class)
+    public void onAppChanged(AppChangedEvent event) {
+        knownApps.invalidate(event.getAppId());
+    }
+
+    /**
+     * 发送预览资源
+     *
+     * @param entry 是否为入口 HTML（需要把绝对路径改写为相对路径）
+     */
+    public void serve(Path file, boolean entry, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        Asset asset = assets.getIfPresent(file);
+        if (asset == null || asset.size() != attrs.size() || asset.lastModified() != attrs.lastModifiedTime().toMillis()) {
+            asset = load(file, entry, attrs);
+            assets.put(file, asset);
+        }
+
+        Representation representation = negotiate(file, asset, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String relativeDir = file.getParent() == null ? "" : file.getParent().getFileName().toString();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, !entry && AppConstant.BUILD_ASSETS_DIR.equals(relativeDir)
+                ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ETAG, representation.etag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, asset.lastModified());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (notModified(request, representation.etag(), asset.lastModified())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(asset.contentType());
+        if (representation.encoding() != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, representation.encoding());
+        }
+        if ("HEAD".equals(request.getMethod())) {
+            response.setContentLengthLong(representation.length());
+            return;
+        }
+        if (representation.body() != null) {
+            response.setContentLength(representation.body().length);
+            response.getOutputStream().write(representation.body());
+        } else {
+            sendFile(representation.file(), representation.length(), request, response);
+        }
+    }
+
+    private Asset load(Path file, boolean entry, BasicFileAttributes attrs) throws IOException {
+        String contentType = entry ? "text/html;charset=utf-8" : guessContentType(file);
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        byte[] body = null;
+        String hash;
+        if (entry) {
+            String html = Files.readString(file, StandardCharsets.UTF_8);
+            // 把所有 src="/... 和 href="/... 改成 src="./... 和 href="./...
+            html = ABSOLUTE_SRC.matcher(html).replaceAll("src=\"./$1");
+            html = ABSOLUTE_HREF.matcher(html).replaceAll("href=\"./$1");
+            body = html.getBytes(StandardCharsets.UTF_8);
+            hash = DigestUtil.sha256Hex(body);
+        } else if (size <= config.getInlineMaxBytes()) {
+            body = Files.readAllBytes(file);
+            hash = DigestUtil.sha256Hex(body);
+        } else {
+            try (InputStream in = Files.newInputStream(file)) {
+                hash = DigestUtil.sha256Hex(in);
+            }
+        }
+
+        byte[] gzip = null;
+        if (body != null && body.length >= config.getCompressMinBytes() && isCompressible(file)) {
+            byte[] compressed = gzip(body);
+            if (compressed.length < body.length) {
+                gzip = compressed;
+            }
+        }
+        return new Asset(size, lastModified, "\"" + hash.substring(0, 32) + "\"", contentType, entry, body, gzip);
+    }
+
+    /**
+     * 内容协商：磁盘上的预压缩文件 > 内存 gzip > 原始内容
+     * 入口 HTML 经过改写，磁盘上的预压缩版本与其内容不一致，不参与协商
+     */
+    private Representation negotiate(Path file, Asset asset, String acceptEncoding) {
+        if (acceptEncoding != null && !asset.rewritten()) {
+            if (acceptEncoding.contains("br")) {
+                Path br = precompressed(file, ".br", asset.lastModified());
+                if (br != null) {
+                    return new Representation(withSuffix(asset.etag(), "br"), "br", null, br, br.toFile().length());
+                }
+            }
+            if (acceptEncoding.contains("gzip")) {
+                Path gz = precompressed(file, ".gz", asset.lastModified());
+                if (gz != null) {
+                    return new Representation(withSuffix(asset.etag(), "gzip"), "gzip", null, gz, gz.toFile().length());
+                }
+            }
+        }
+        if (acceptEncoding != null && acceptEncoding.contains("gzip") && asset.gzip() != null) {
+            return new Representation(withSuffix(asset.etag(), "gzip"), "gzip", asset.gzip(), null, asset.gzip().length);
+        }
+        if (asset.body() != null) {
+            return new Representation(asset.etag(), null, asset.body(), null, asset.body().length);
+        }
+        return new Representation(asset.etag(), null, null, file, asset.size());
+    }
+
+    private static Path precompressed(Path file, String suffix, long lastModified) {
+        Path candidate = file.resolveSibling(file.getFileName() + suffix);
+        try {
+            if (Files.isRegularFile(candidate)
+                    && Files.getLastModifiedTime(candidate).toMillis() >= lastModified) {
+                return candidate;
+            }
+        } catch (IOException ignored) {
+        }
+        return null;
+    }
+
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if ("*".equals(tag) || etag.equals(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            // HTTP 日期精度为秒
+            return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void sendFile(Path file, long length, HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(length);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 交给 Tomcat 在响应提交后用 sendfile 从页缓存直接写入 socket
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            var target = Channels.newChannel(out);
+            long position = 0;
+            while (position < length) {
+                position += channel.transferTo(position, length - position, target);
+            }
+            out.flush();
+        }
+    }
+
+    private static String guessContentType(Path file) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".js") || name.endsWith(".mjs")) {
+            return "text/javascript;charset=utf-8";
+        }
+        if (name.endsWith(".css")) {
+            return "text/css;charset=utf-8";
+        }
+        String mimeType = URLConnection.guessContentTypeFromName(name);
+        return mimeType != null ? mimeType : "application/octet-stream";
+    }
+
+    private static boolean isCompressible(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSIBLE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase());
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static String withSuffix(String etag, String encoding) {
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    /**
+     * 单个文件的缓存条目；body 为空表示大文件，只缓存 ETag 与元数据
+     */
+    private record Asset(long size, long lastModified, String etag, String contentType, boolean rewritten,
+                         byte[] body, byte[] gzip) {
+        int weight() {
+            return 256 + (body == null ? 0 : body.length) + (gzip == null ? 0 : gzip.length);
+        }
+    }
+
+    /**
+     * 协商后实际发送的表示：内存字节或磁盘文件二选一
+     */
+    private record Representation(String etag, String encoding, byte[] body, Path file, long length) {
+    }
+}
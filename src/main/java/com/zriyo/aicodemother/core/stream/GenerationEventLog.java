@@ -0,0 +1,195 @@
+package com.zriyo.aicodemother.core.stream;
+
+import com.zriyo.aicodemother.model.message.MessageData;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 单个生成任务的有界事件日志
+ * 职责：为每条 SSE 事件分配单调递增的 ID（格式 epoch-seq，与 Redis Stream ID 一致），
+ * 在环形缓冲中保留最近的事件供断线续传，并把新事件实时推送给所有在线订阅者
+ * 容量：同时受单任务条数 / 字节上限和节点全局字节上限约束，超出时淘汰最早的事件
+ */
+public class GenerationEventLog {
+
+    private final Long appId;
+    /**
+     * 任务启动时间戳，作为事件 ID 的高位，保证同一应用的新任务 ID 一定大于旧任务
+     */
+    private final long epoch;
+    private final GenerationEventLogRegistry registry;
+
+    private final ArrayDeque<Entry> buffer = new ArrayDeque<>();
+    private final List<Sinks.Many<Entry>> subscribers = new ArrayList<>();
+    private long nextSeq = 1;
+    private long bytes;
+    private boolean completed;
+
+    /**
+     * 待同步到 Redis Stream 的事件，由注册表按顺序批量写出
+     */
+    final Queue<Entry> pendingSpill = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean spilling = new AtomicBoolean(false);
+
+    GenerationEventLog(Long appId, long epoch, GenerationEventLogRegistry registry) {
+        this.appId = appId;
+        this.epoch = epoch;
+        this.registry = registry;
+    }
+
+    public Long getAppId() {
+        return appId;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * 追加一条事件：分配 ID、写入缓冲、推送给在线订阅者，并按需同步到 Redis Stream
+     */
+    public void append(ServerSentEvent<Object> raw) {
+        Entry entry;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            long seq = nextSeq++;
+            ServerSentEvent<Object> event = ServerSentEvent.builder(raw.data())
+                    .event(raw.event())
+                    .id(epoch + "-" + seq)
+                    .build();
+            entry = new Entry(seq, event, estimateSize(raw));
+            buffer.addLast(entry);
+            bytes += entry.size();
+            registry.onRetained(entry.size());
+            trim();
+            for (Sinks.Many<Entry> subscriber : subscribers) {
+                subscriber.tryEmitNext(entry);
+            }
+        }
+        registry.spill(this, entry);
+    }
+
+    /**
+     * 从指定序号之后开始订阅：先回放缓冲中的事件，再无缝衔接实时事件
+     *
+     * @param afterSeq 客户端最后收到的序号，0 表示从头开始
+     */
+    public Flux<ServerSentEvent<Object>> subscribe(long afterSeq) {
+        return Flux.defer(() -> {
+            Sinks.Many<Entry> live = Sinks.many().unicast().onBackpressureBuffer();
+            List<Entry> snapshot = new ArrayList<>();
+            synchronized (this) {
+                for (Entry entry : buffer) {
+                    if (entry.seq() > afterSeq) {
+                        snapshot.add(entry);
+                    }
+                }
+                if (completed) {
+                    live.tryEmitComplete();
+                } else {
+                    subscribers.add(live);
+                }
+            }
+            return Flux.fromIterable(snapshot)
+                    .concatWith(live.asFlux().doFinally(signal -> unsubscribe(live)))
+                    .map(Entry::event);
+        });
+    }
+
+    /**
+     * 缓冲中是否仍保留着指定序号之后的全部事件（否则需要从 Redis Stream 补齐）
+     */
+    public synchronized boolean covers(long afterSeq) {
+        Entry oldest = buffer.peekFirst();
+        return oldest == null ? afterSeq + 1 >= nextSeq : oldest.seq() <= afterSeq + 1;
+    }
+
+    /**
+     * 任务结束：通知所有订阅者完成，并归还占用的全局额度
+     *
+     * @return 结束标记使用的序号；重复调用时返回 -1
+     */
+    long complete() {
+        synchronized (this) {
+            if (completed) {
+                return -1;
+            }
+            completed = true;
+            // 订阅者完成时会回调 unsubscribe，先拷贝再通知，避免并发修改
+            List<Sinks.Many<Entry>> finished = new ArrayList<>(subscribers);
+            subscribers.clear();
+            finished.forEach(Sinks.Many::tryEmitComplete);
+            registry.onReleased(bytes);
+            buffer.clear();
+            bytes = 0;
+            return nextSeq;
+        }
+    }
+
+    /**
+     * 全局额度不足时由注册表调用，淘汰本任务最早的事件
+     *
+     * @return 实际释放的字节数
+     */
+    synchronized long evictOldest(long targetBytes) {
+        long freed = 0;
+        while (freed < targetBytes && buffer.size() > 1) {
+            freed += evictFirst();
+        }
+        return freed;
+    }
+
+    private void trim() {
+        while (buffer.size() > 1
+                && (buffer.size() > registry.maxEventsPerTask() || bytes > registry.maxBytesPerTask())) {
+            evictFirst();
+            registry.onEvicted(GenerationEventLogRegistry.EVICT_TASK);
+        }
+        registry.rebalance(this);
+    }
+
+    private long evictFirst() {
+        Entry removed = buffer.pollFirst();
+        if (removed == null) {
+            return 0;
+        }
+        bytes -= removed.size();
+        registry.onReleased(removed.size());
+        return removed.size();
+    }
+
+    private synchronized void unsubscribe(Sinks.Many<Entry> live) {
+        subscribers.remove(live);
+    }
+
+    private static int estimateSize(ServerSentEvent<Object> event) {
+        Object data = event.data();
+        int payload;
+        if (data instanceof MessageData message) {
+            payload = (message.getData() == null ? 0 : message.getData().length())
+                    + (message.getType() == null ? 0 : message.getType().length());
+        } else if (data instanceof CharSequence text) {
+            payload = text.length();
+        } else {
+            payload = 64;
+        }
+        // UTF-16 字符 + 事件 / 包装对象的固定开销
+        return payload * 2 + 96;
+    }
+
+    /**
+     * event 为 null 表示任务结束标记
+     */
+    record Entry(long seq, ServerSentEvent<Object> event, int size) {
+    }
+}
@@ -0,0 +1,363 @@
+package com.zriyo.aicodemother.core.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zriyo.aicodemother.config.CodeGenEventLogConfig;
+import com.zriyo.aicodemother.model.RedisConstants;
+import com.zriyo.aicodemother.model.message.StreamMessageTypeEnum;
+import com.zriyo.aicodemother.util.RedisUtils;
+import com.zriyo.aicodemother.util.SseEventBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RStream;
+import org.redisson.api.RStreamAsync;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.api.stream.StreamReadArgs;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 生成任务事件日志注册表
+ * 职责：管理本节点所有运行中任务的 GenerationEventLog，统一核算全局内存额度，
+ * 并在开启 redisSpill 时把事件按顺序批量写入 Redis Stream，使任意节点都能通过 Last-Event-ID 续传
+ */
+@Slf4j
+@Component
+public class GenerationEventLogRegistry {
+
+    static final String EVICT_TASK = "task";
+    static final String EVICT_GLOBAL = "global";
+
+    private static final String FIELD_EVENT = "event";
+    private static final String FIELD_DATA = "data";
+    private static final String FIELD_KIND = "kind";
+    private static final String FIELD_END = "end";
+    private static final String KIND_TEXT = "s";
+    private static final String KIND_JSON = "j";
+    private static final int READ_BATCH = 256;
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(5);
+    /**
+     * 运行中任务的 Stream 兜底过期时间，防止节点宕机后遗留
+     */
+    private static final Duration RUNNING_STREAM_TTL = Duration.ofHours(1);
+
+    private final Map<Long, GenerationEventLog> logs = new ConcurrentHashMap<>();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final CodeGenEventLogConfig config;
+    private final ObjectMapper objectMapper;
+    private final Counter taskEvictions;
+    private final Counter globalEvictions;
+    private final Counter spillFailures;
+
+    public GenerationEventLogRegistry(CodeGenEventLogConfig config, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.taskEvictions = Counter.builder("codegen_event_log_evictions")
+                .tag("reason", EVICT_TASK)
+                .description("单任务上限触发的事件淘汰次数")
+                .register(meterRegistry);
+        this.globalEvictions = Counter.builder("codegen_event_log_evictions")
+                .tag("reason", EVICT_GLOBAL)
+                .description("节点全局上限触发的事件淘汰次数")
+                .register(meterRegistry);
+        this.spillFailures = Counter.builder("codegen_event_log_spill_failures")
+                .description("写入 Redis Stream 失败的批次数")
+                .register(meterRegistry);
+        Gauge.builder("codegen_event_log_bytes", retainedBytes, AtomicLong::get)
+                .description("内存中保留的事件估算字节数")
+                .register(meterRegistry);
+        Gauge.builder("codegen_event_log_tasks", logs, Map::size)
+                .description("持有事件日志的运行中任务数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 为新任务创建事件日志；开启 redisSpill 时清空该应用上一轮任务遗留的 Stream
+     */
+    public GenerationEventLog open(Long appId) {
+        GenerationEventLog previous = logs.get(appId);
+        long epoch = System.currentTimeMillis();
+        if (previous != null && epoch <= previous.getEpoch()) {
+            epoch = previous.getEpoch() + 1;
+        }
+        if (config.isRedisSpill()) {
+            stream(appId).delete();
+        }
+        GenerationEventLog eventLog = new GenerationEventLog(appId, epoch, this);
+        logs.put(appId, eventLog);
+        return eventLog;
+    }
+
+    /**
+     * 任务结束：完成所有本地订阅，并在 Stream 中写入结束标记
+     */
+    public void close(GenerationEventLog eventLog) {
+        logs.remove(eventLog.getAppId(), eventLog);
+        long endSeq = eventLog.complete();
+        if (endSeq > 0) {
+            spill(eventLog, new GenerationEventLog.Entry(endSeq, null, 0));
+        }
+    }
+
+    /**
+     * 当前节点是否有该应用正在运行的任务
+     */
+    public boolean isRunning(Long appId) {
+        return logs.containsKey(appId);
+    }
+
+    /**
+     * 断线续传：优先使用本节点内存中的日志；本地缺失或已被淘汰时从 Redis Stream 读取。
+     * 调用方负责校验应用归属以及任务仍在运行；请求的事件已被淘汰时，先推送一条 EVENT_GAP 事件再接续剩余事件
+     *
+     * @param lastEventId 客户端最后收到的事件 ID（Last-Event-ID），无法解析时不续传
+     * @return 无可续传的任务时返回 empty
+     */
+    public Optional<Flux<ServerSentEvent<Object>>> resume(Long appId, String lastEventId) {
+        StreamMessageId last = parseEventId(lastEventId);
+        if (last == null) {
+            return Optional.empty();
+        }
+        GenerationEventLog local = logs.get(appId);
+        if (local != null) {
+            return Optional.of(fromLocal(local, last.getId0() == local.getEpoch() ? last.getId1() : 0));
+        }
+        if (config.isRedisSpill() && stream(appId).isExists()) {
+            return Optional.of(readStream(appId, last));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 无 Last-Event-ID 的重连（刷新页面、POST/fetch 形式的 SSE 客户端）：从第一条事件开始接入本节点的运行中任务，
+     * 早期事件已被淘汰时先推送一条 EVENT_GAP 事件
+     *
+     * @return 本节点没有该应用运行中的任务时返回 empty
+     */
+    public Optional<Flux<ServerSentEvent<Object>>> attach(Long appId) {
+        GenerationEventLog local = logs.get(appId);
+        return local == null ? Optional.empty() : Optional.of(fromLocal(local, 0));
+    }
+
+    private Flux<ServerSentEvent<Object>> fromLocal(GenerationEventLog local, long afterSeq) {
+        if (local.covers(afterSeq)) {
+            return local.subscribe(afterSeq);
+        }
+        if (!config.isRedisSpill()) {
+            return Flux.concat(Mono.just(gapEvent()), local.subscribe(afterSeq));
+        }
+        return readStream(local.getAppId(), new StreamMessageId(local.getEpoch(), afterSeq));
+    }
+
+    private static ServerSentEvent<Object> gapEvent() {
+        return SseEventBuilder.of(StreamMessageTypeEnum.EVENT_GAP, "部分早期事件已过期，请刷新以获取完整进度");
+    }
+
+    void spill(GenerationEventLog eventLog, GenerationEventLog.Entry entry) {
+        if (!config.isRedisSpill()) {
+            return;
+        }
+        eventLog.pendingSpill.offer(entry);
+        drain(eventLog);
+    }
+
+    /**
+     * 同一任务同一时刻只有一个批次在写，保证 Stream 中的 ID 严格递增；写入期间到达的事件合并到下一批
+     */
+    private void drain(GenerationEventLog eventLog) {
+        if (!eventLog.spilling.compareAndSet(false, true)) {
+            return;
+        }
+        List<GenerationEventLog.Entry> batch = new ArrayList<>();
+        GenerationEventLog.Entry next;
+        while ((next = eventLog.pendingSpill.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            eventLog.spilling.set(false);
+            if (!eventLog.pendingSpill.isEmpty()) {
+                drain(eventLog);
+            }
+            return;
+        }
+        batch.sort(Comparator.comparingLong(GenerationEventLog.Entry::seq));
+
+        RBatch rBatch = RedisUtils.getClient().createBatch();
+        RStreamAsync<String, String> stream = rBatch.getStream(streamKey(eventLog.getAppId()), StringCodec.INSTANCE);
+        boolean ended = false;
+        for (GenerationEventLog.Entry entry : batch) {
+            Map<String, String> fields = entry.event() == null ? Map.of(FIELD_END, "1") : encode(entry.event());
+            ended |= entry.event() == null;
+            stream.addAsync(new StreamMessageId(eventLog.getEpoch(), entry.seq()),
+                    StreamAddArgs.entries(fields).trimNonStrict().maxLen(config.getStreamMaxLen()).noLimit());
+        }
+        stream.expireAsync(ended ? Duration.ofSeconds(config.getRetainAfterCompleteSeconds()) : RUNNING_STREAM_TTL);
+
+        rBatch.executeAsync().whenComplete((result, error) -> {
+            if (error != null) {
+                spillFailures.increment();
+                log.warn("[EventLog] 事件写入 Redis Stream 失败, appId: {}, 条数: {}, 原因: {}",
+                        eventLog.getAppId(), batch.size(), error.getMessage());
+            }
+            eventLog.spilling.set(false);
+            if (!eventLog.pendingSpill.isEmpty()) {
+                drain(eventLog);
+            }
+        });
+    }
+
+    /**
+     * 轮询读取 Stream：每次阻塞最多 POLL_TIMEOUT，读到结束标记或 Stream 过期后完成
+     */
+    private Flux<ServerSentEvent<Object>> readStream(Long appId, StreamMessageId start) {
+        RStream<String, String> stream = stream(appId);
+        AtomicReference<StreamMessageId> cursor = new AtomicReference<>(start);
+        AtomicBoolean ended = new AtomicBoolean(false);
+        AtomicBoolean first = new AtomicBoolean(true);
+
+        return Mono.defer(() -> Mono.fromCompletionStage(stream.readAsync(StreamReadArgs.greaterThan(cursor.get())
+                                .count(READ_BATCH)
+                                .timeout(POLL_TIMEOUT))))
+                .defaultIfEmpty(Collections.emptyMap())
+                .flatMapMany(batch -> {
+                    if (batch.isEmpty()) {
+                        return Mono.fromCompletionStage(stream.isExistsAsync())
+                                .doOnNext(exists -> ended.set(!exists))
+                                .thenMany(Flux.<ServerSentEvent<Object>>empty());
+                    }
+                    TreeMap<StreamMessageId, Map<String, String>> ordered = new TreeMap<>(
+                            Comparator.comparingLong(StreamMessageId::getId0).thenComparingLong(StreamMessageId::getId1));
+                    ordered.putAll(batch);
+                    List<ServerSentEvent<Object>> events = new ArrayList<>(ordered.size() + 1);
+                    if (first.getAndSet(false) && !follows(start, ordered.firstKey())) {
+                        // Stream 按 maxLen 裁剪过，请求位置之后的部分事件已不存在
+                        events.add(gapEvent());
+                    }
+                    for (Map.Entry<StreamMessageId, Map<String, String>> entry : ordered.entrySet()) {
+                        cursor.set(entry.getKey());
+                        if (entry.getValue().containsKey(FIELD_END)) {
+                            ended.set(true);
+                            break;
+                        }
+                        events.add(decode(entry.getKey(), entry.getValue()));
+                    }
+                    return Flux.fromIterable(events);
+                })
+                .repeat(() -> !ended.get());
+    }
+
+    /**
+     * next 是否紧接在 start 之后：同一任务序号连续，或 start 属于更早的任务而 next 是本任务的第一条
+     */
+    private static boolean follows(StreamMessageId start, StreamMessageId next) {
+        if (start.getId0() == next.getId0()) {
+            return next.getId1() == start.getId1() + 1;
+        }
+        return next.getId1() == 1;
+    }
+
+    private Map<String, String> encode(ServerSentEvent<Object> event) {
+        Map<String, String> fields = new HashMap<>(4);
+        if (event.event() != null) {
+            fields.put(FIELD_EVENT, event.event());
+        }
+        Object data = event.data();
+        if (data instanceof CharSequence text) {
+            fields.put(FIELD_KIND, KIND_TEXT);
+            fields.put(FIELD_DATA, text.toString());
+        } else {
+            fields.put(FIELD_KIND, KIND_JSON);
+            try {
+                fields.put(FIELD_DATA, objectMapper.writeValueAsString(data));
+            } catch (Exception e) {
+                fields.put(FIELD_KIND, KIND_TEXT);
+                fields.put(FIELD_DATA, String.valueOf(data));
+            }
+        }
+        return fields;
+    }
+
+    private ServerSentEvent<Object> decode(StreamMessageId id, Map<String, String> fields) {
+        String raw = fields.get(FIELD_DATA);
+        Object data = raw;
+        if (KIND_JSON.equals(fields.get(FIELD_KIND)) && raw != null) {
+            try {
+                data = objectMapper.readValue(raw, JsonNode.class);
+            } catch (Exception e) {
+                log.debug("[EventLog] 事件反序列化失败，按原文输出: {}", e.getMessage());
+            }
+        }
+        return ServerSentEvent.builder(data)
+                .event(fields.get(FIELD_EVENT))
+                .id(id.getId0() + "-" + id.getId1())
+                .build();
+    }
+
+    private static StreamMessageId parseEventId(String eventId) {
+        if (eventId == null || eventId.isBlank()) {
+            return null;
+        }
+        int split = eventId.indexOf('-');
+        if (split <= 0) {
+            return null;
+        }
+        try {
+            return new StreamMessageId(Long.parseLong(eventId.substring(0, split).trim()),
+                    Long.parseLong(eventId.substring(split + 1).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    void onRetained(int size) {
+        retainedBytes.addAndGet(size);
+    }
+
+    void onReleased(long size) {
+        retainedBytes.addAndGet(-size);
+    }
+
+    void onEvicted(String reason) {
+        (EVICT_GLOBAL.equals(reason) ? globalEvictions : taskEvictions).increment();
+    }
+
+    /**
+     * 全局额度超限时，由正在追加事件的任务淘汰自己最早的事件，避免跨任务加锁
+     */
+    void rebalance(GenerationEventLog eventLog) {
+        long overflow = retainedBytes.get() - config.getMaxBytesGlobal();
+        if (overflow > 0 && eventLog.evictOldest(overflow) > 0) {
+            onEvicted(EVICT_GLOBAL);
+        }
+    }
+
+    int maxEventsPerTask() {
+        return config.getMaxEventsPerTask();
+    }
+
+    long maxBytesPerTask() {
+        return config.getMaxBytesPerTask();
+    }
+
+    private RStream<String, String> stream(Long appId) {
+        return RedisUtils.getClient().getStream(streamKey(appId), StringCodec.INSTANCE);
+    }
+
+    private static String streamKey(Long appId) {
+        return RedisConstants.AI_CODE_GEN_TASK_EVENTS + appId;
+    }
+}
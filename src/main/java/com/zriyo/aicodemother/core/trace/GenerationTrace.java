@@ -0,0 +1,221 @@
+package com.zriyo.aicodemother.core.trace;
+
+import com.zriyo.aicodemother.core.handler.AiContextHolder;
+import com.zriyo.aicodemother.model.MonitorContext;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单次生成的 Span 时间线
+ * 职责：记录一次生成中各阶段、模型调用、工具调用、构建与截图的起止时间及父子关系；
+ * 随 GenerationContext 传递，并经 MonitorContext 放入 AiContextHolder，供模型监听器等只能拿到线程上下文的位置使用
+ */
+@Getter
+public class GenerationTrace {
+
+    private final String traceId = UUID.randomUUID().toString().replace("-", "");
+    private final Long appId;
+    private final Long userId;
+    private final Instant startTime = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final int maxSpans;
+    private final TraceSpan root;
+    private final Queue<TraceSpan> spans = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger spanCount = new AtomicInteger();
+    private final AtomicInteger droppedSpans = new AtomicInteger();
+    /**
+     * 当前阶段，未显式指定父节点的 Span 挂在它下面（阶段串行执行）
+     */
+    private volatile TraceSpan stage;
+    private volatile String outcome;
+
+    GenerationTrace(Long appId, Long userId, int maxSpans) {
+        this.appId = appId;
+        this.userId = userId;
+        this.maxSpans = Math.max(1, maxSpans);
+        this.root = new TraceSpan(this, newSpanId(), null, "generation", SpanKind.GENERATION, 0);
+        spans.add(root);
+        spanCount.incrementAndGet();
+    }
+
+    /**
+     * 从线程上下文中取当前生成，在其当前 Span（没有则为当前阶段）下开启子 Span；不在生成流程中时返回 NOOP
+     */
+    public static TraceSpan startSpan(String name, SpanKind kind) {
+        MonitorContext context = AiContextHolder.get();
+        if (context == null || context.getTrace() == null) {
+            return TraceSpan.NOOP;
+        }
+        return context.getTrace().start(name, kind, context.getSpan());
+    }
+
+    public TraceSpan start(String name, SpanKind kind) {
+        return start(name, kind, null);
+    }
+
+    /**
+     * @param parent 为 null 时挂在当前阶段下，阶段已结束则挂在根节点
+     */
+    public TraceSpan start(String name, SpanKind kind, TraceSpan parent) {
+        return create(name, kind, parent, elapsedNanos());
+    }
+
+    public TraceSpan startStage(String name) {
+        TraceSpan span = start(name, SpanKind.STAGE, root);
+        stage = span;
+        return span;
+    }
+
+    /**
+     * 补记一段已经结束的耗时（开始时间由调用方以毫秒时间戳记录）
+     */
+    public TraceSpan record(String name, SpanKind kind, long startEpochMillis) {
+        long offset = (startEpochMillis - startTime.toEpochMilli()) * 1_000_000;
+        TraceSpan span = create(name, kind, null, Math.max(0, Math.min(offset, elapsedNanos())));
+        span.end();
+        return span;
+    }
+
+    /**
+     * 结束时间线；被取消或异常中断而未结束的 Span 一并以当前时间结束并标记
+     */
+    void finish(String outcome) {
+        for (TraceSpan span : spans) {
+            if (span != root && !span.isEnded()) {
+                span.attr("unfinished", true).end();
+            }
+        }
+        this.outcome = outcome;
+        root.attr("outcome", outcome);
+        root.end();
+    }
+
+    public boolean isFinished() {
+        return root.isEnded();
+    }
+
+    private TraceSpan create(String name, SpanKind kind, TraceSpan parent, long startOffsetNanos) {
+        if (spanCount.incrementAndGet() > maxSpans) {
+            spanCount.decrementAndGet();
+            droppedSpans.incrementAndGet();
+            return TraceSpan.NOOP;
+        }
+        TraceSpan span = new TraceSpan(this, newSpanId(), resolveParent(parent).getSpanId(), name, kind, startOffsetNanos);
+        spans.add(span);
+        return span;
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    private TraceSpan resolveParent(TraceSpan parent) {
+        if (parent != null && parent.getTrace() == this) {
+            return parent;
+        }
+        TraceSpan current = stage;
+        return current != null && !current.isEnded() ? current : root;
+    }
+
+    private static String newSpanId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * 摘要：总耗时与各阶段耗时
+     */
+    public Summary summary() {
+        Map<String, Long> stages = new LinkedHashMap<>();
+        for (TraceSpan span : sortedSpans()) {
+            if (span.getKind() == SpanKind.STAGE) {
+                stages.merge(span.getName(), Duration.ofNanos(span.durationNanos()).toMillis(), Long::sum);
+            }
+        }
+        return new Summary(traceId, appId, userId, startTime, Duration.ofNanos(root.durationNanos()).toMillis(),
+                isFinished() ? outcome : "running", spanCount.get(), droppedSpans.get(), stages);
+    }
+
+    /**
+     * 时间线视图：按开始时间排序，时间为相对生成开始的毫秒数
+     */
+    public List<SpanView> timeline() {
+        List<SpanView> views = new ArrayList<>();
+        for (TraceSpan span : sortedSpans()) {
+            views.add(new SpanView(span.getSpanId(), span.getParentId(), span.getName(), span.getKind(),
+                    span.getStartNanos() / 1_000_000.0, span.durationNanos() / 1_000_000.0, span.isEnded(),
+                    span.getError(), Map.copyOf(span.getAttributes())));
+        }
+        return views;
+    }
+
+    /**
+     * 导出为 OTLP/JSON（ExportTraceServiceRequest）结构，可直接导入支持 OTLP 文件的查看工具
+     */
+    public Map<String, Object> toOtlp() {
+        long baseNanos = startTime.getEpochSecond() * 1_000_000_000L + startTime.getNano();
+        List<Map<String, Object>> otlpSpans = new ArrayList<>();
+        for (TraceSpan span : sortedSpans()) {
+            Map<String, Object> otlp = new LinkedHashMap<>();
+            otlp.put("traceId", traceId);
+            otlp.put("spanId", span.getSpanId());
+            if (span.getParentId() != null) {
+                otlp.put("parentSpanId", span.getParentId());
+            }
+            otlp.put("name", span.getName());
+            otlp.put("kind", 1);
+            otlp.put("startTimeUnixNano", String.valueOf(baseNanos + span.getStartNanos()));
+            otlp.put("endTimeUnixNano", String.valueOf(baseNanos + span.getStartNanos() + span.durationNanos()));
+            List<Map<String, Object>> attributes = new ArrayList<>();
+            attributes.add(otlpAttribute("codegen.kind", span.getKind().name()));
+            span.getAttributes().forEach((key, value) -> attributes.add(otlpAttribute(key, value)));
+            otlp.put("attributes", attributes);
+            otlp.put("status", span.getError() != null
+                    ? Map.of("code", 2, "message", span.getError())
+                    : Map.of("code", 1));
+            otlpSpans.add(otlp);
+        }
+        Map<String, Object> resource = Map.of("attributes", List.of(
+                otlpAttribute("service.name", "zriyo-ai-code-mother"),
+                otlpAttribute("codegen.app_id", String.valueOf(appId)),
+                otlpAttribute("codegen.user_id", String.valueOf(userId))));
+        Map<String, Object> scopeSpans = Map.of("scope", Map.of("name", "codegen.pipeline"), "spans", otlpSpans);
+        return Map.of("resourceSpans", List.of(Map.of("resource", resource, "scopeSpans", List.of(scopeSpans))));
+    }
+
+    private List<TraceSpan> sortedSpans() {
+        List<TraceSpan> sorted = new ArrayList<>(spans);
+        sorted.sort(Comparator.comparingLong(TraceSpan::getStartNanos));
+        return sorted;
+    }
+
+    private static Map<String, Object> otlpAttribute(String key, Object value) {
+        Map<String, Object> otlpValue = switch (value) {
+            case Integer i -> Map.of("intValue", String.valueOf(i));
+            case Long l -> Map.of("intValue", String.valueOf(l));
+            case Double d -> Map.of("doubleValue", d);
+            case Boolean b -> Map.of("boolValue", b);
+            default -> Map.of("stringValue", String.valueOf(value));
+        };
+        return Map.of("key", key, "value", otlpValue);
+    }
+
+    public record Summary(String traceId, Long appId, Long userId, Instant startTime, long durationMillis,
+                          String outcome, int spanCount, int droppedSpans, Map<String, Long> stageMillis) {
+    }
+
+    public record SpanView(String spanId, String parentId, String name, SpanKind kind, double startMillis,
+                           double durationMillis, boolean ended, String error, Map<String, Object> attributes) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.zriyo.aicodemother.core.trace;
+
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zriyo.aicodemother.config.GenerationTraceConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * 生成时间线登记处
+ * 职责：为每次生成创建 GenerationTrace，保存进行中与最近结束的时间线供后台查看；
+ * 配置了导出目录时，生成结束后在虚拟线程中把时间线以 OTLP/JSON 写入文件
+ */
+@Slf4j
+@Component
+public class GenerationTraceRegistry {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+            .withZone(ZoneId.systemDefault());
+
+    private final GenerationTraceConfig config;
+    private final ObjectMapper objectMapper;
+    private final Map<String, GenerationTrace> active = new ConcurrentHashMap<>();
+    private final Deque<GenerationTrace> finished = new ConcurrentLinkedDeque<>();
+
+    public GenerationTraceRegistry(GenerationTraceConfig config, ObjectMapper objectMapper) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 开始记录一次生成，未开启时返回 null
+     */
+    public GenerationTrace begin(Long appId, Long userId) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        GenerationTrace trace = new GenerationTrace(appId, userId, config.getMaxSpansPerTrace());
+        active.put(trace.getTraceId(), trace);
+        return trace;
+    }
+
+    public void finish(GenerationTrace trace, String outcome) {
+        if (trace == null || active.remove(trace.getTraceId()) == null) {
+            return;
+        }
+        trace.finish(outcome);
+        finished.addFirst(trace);
+        while (finished.size() > Math.max(1, config.getMaxTraces())) {
+            finished.pollLast();
+        }
+        if (StrUtil.isNotBlank(config.getExportDir())) {
+            Thread.ofVirtual().name("trace-export").start(() -> export(trace));
+        }
+    }
+
+    /**
+     * 进行中的在前，其后为最近结束的
+     */
+    public List<GenerationTrace.Summary> recent(int limit) {
+        List<GenerationTrace.Summary> result = new ArrayList<>();
+        for (GenerationTrace trace : active.values()) {
+            if (result.size() >= limit) return result;
+            result.add(trace.summary());
+        }
+        for (GenerationTrace trace : finished) {
+            if (result.size() >= limit) return result;
+            result.add(trace.summary());
+        }
+        return result;
+    }
+
+    public Optional<GenerationTrace> find(String traceId) {
+        GenerationTrace trace = active.get(traceId);
+        if (trace != null) {
+            return Optional.of(trace);
+        }
+        return finished.stream().filter(t -> t.getTraceId().equals(traceId)).findFirst();
+    }
+
+    private void export(GenerationTrace trace) {
+        Path file = Paths.get(config.getExportDir(),
+                FILE_TIME.format(trace.getStartTime()) + "-" + trace.getAppId() + "-" + trace.getTraceId() + ".json");
+        try {
+            Files.createDirectories(file.getParent());
+            objectMapper.writeValue(file.toFile(), trace.toOtlp());
+        } catch (Exception e) {
+            log.warn("导出生成时间线失败: {}", file, e);
+        }
+    }
+}
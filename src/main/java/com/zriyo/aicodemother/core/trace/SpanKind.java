@@ -0,0 +1,39 @@
+package com.zriyo.aicodemother.core.trace;
+
+/**
+ * 生成时间线中 Span 的类别
+ */
+public enum SpanKind {
+    /**
+     * 一次完整生成（根 Span）
+     */
+    GENERATION,
+    /**
+     * 流水线阶段（Handler 自身执行部分）
+     */
+    STAGE,
+    /**
+     * 单个文件的生成 / 修复
+     */
+    FILE,
+    /**
+     * 模型调用
+     */
+    LLM,
+    /**
+     * 工具调用
+     */
+    TOOL,
+    /**
+     * 项目构建
+     */
+    BUILD,
+    /**
+     * 预览截图
+     */
+    SCREENSHOT,
+    /**
+     * 对象存储上传
+     */
+    UPLOAD
+}
@@ -0,0 +1,87 @@
+package com.zriyo.aicodemother.core.trace;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 时间线中的一段耗时
+ * 时间以相对所属生成开始的纳秒偏移记录；end 可重复调用，只有第一次生效。
+ * 没有所属生成（未开启或不在生成流程中）时使用 NOOP，所有操作为空，调用方无需判空
+ */
+@Getter
+public class TraceSpan implements AutoCloseable {
+
+    public static final TraceSpan NOOP = new TraceSpan(null, null, null, "noop", SpanKind.GENERATION, 0);
+
+    private final GenerationTrace trace;
+    private final String spanId;
+    private final String parentId;
+    private final String name;
+    private final SpanKind kind;
+    private final long startNanos;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final AtomicLong endNanos = new AtomicLong(-1);
+    private volatile String error;
+
+    TraceSpan(GenerationTrace trace, String spanId, String parentId, String name, SpanKind kind, long startNanos) {
+        this.trace = trace;
+        this.spanId = spanId;
+        this.parentId = parentId;
+        this.name = name;
+        this.kind = kind;
+        this.startNanos = startNanos;
+    }
+
+    public TraceSpan attr(String key, Object value) {
+        if (trace != null && value != null) {
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * 以当前 Span 为父节点开启子 Span
+     */
+    public TraceSpan child(String name, SpanKind kind) {
+        return trace == null ? NOOP : trace.start(name, kind, this);
+    }
+
+    public void end() {
+        if (trace != null) {
+            endNanos.compareAndSet(-1, trace.elapsedNanos());
+        }
+    }
+
+    /**
+     * 以失败结束，error 为 null 时等同于 end()
+     */
+    public void end(Throwable error) {
+        if (trace != null && error != null && endNanos.get() < 0) {
+            this.error = error.getClass().getSimpleName() + ": " + error.getMessage();
+        }
+        end();
+    }
+
+    @Override
+    public void close() {
+        end();
+    }
+
+    public boolean isEnded() {
+        return endNanos.get() >= 0;
+    }
+
+    /**
+     * 未结束的 Span 按当前时间计算
+     */
+    public long durationNanos() {
+        if (trace == null) {
+            return 0;
+        }
+        long end = endNanos.get();
+        return (end >= 0 ? end : trace.elapsedNanos()) - startNanos;
+    }
+}
@@ -0,0 +1,22 @@
+package com.zriyo.aicodemother.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.io.Serial;
+
+/**
+ * API Key 被硬封禁或移出模型池时发布，用于回收与该 Key 绑定的模型客户端
+ */
+@Getter
+public class ApiKeyBannedEvent extends ApplicationEvent {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final String apiKey;
+
+    public ApiKeyBannedEvent(Object source, String apiKey) {
+        super(source);
+        this.apiKey = apiKey;
+    }
+}
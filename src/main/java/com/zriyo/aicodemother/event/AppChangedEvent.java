@@ -0,0 +1,22 @@
+package com.zriyo.aicodemother.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.io.Serial;
+
+/**
+ * 应用被部署、回滚、修改或删除时发布，用于失效按 appId 缓存的应用信息
+ */
+@Getter
+public class AppChangedEvent extends ApplicationEvent {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final Long appId;
+
+    public AppChangedEvent(Object source, Long appId) {
+        super(source);
+        this.appId = appId;
+    }
+}
@@ -1,5 +1,7 @@
 package com.zriyo.aicodemother.model;
 
+import com.zriyo.aicodemother.core.trace.GenerationTrace;
+import com.zriyo.aicodemother.core.trace.TraceSpan;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,6 +22,13 @@ public class MonitorContext implements Serializable {
 
     private String appId;
 
+    /**
+     * 所属生成的 Span 时间线，以及当前线程上新开 Span 的父节点（为空时挂在当前阶段下）
+     */
+    private transient GenerationTrace trace;
+
+    private transient TraceSpan span;
+
     /**
      * 追踪任务交互步数（LLM与工具往返次数）
      * 使用 Atomic 确保在流式回调中的并发安全性
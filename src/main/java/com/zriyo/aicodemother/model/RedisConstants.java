@@ -13,6 +13,15 @@ public final class RedisConstants {
     /** 判断任务是否正在执行（存在即表示正在运行） */
     public static final String AI_CODE_GEN_TASK_RUNNING = "ai:code:task:running:";
 
+    /** 生成任务的 SSE 事件流（Redis Stream），用于跨节点断线续传 */
+    public static final String AI_CODE_GEN_TASK_EVENTS = "ai:code:task:events:";
+
+    /** 项目骨架版本号（每次写入 / 删除骨架时递增），用于校验各节点的本地骨架缓存 */
+    public static final String AI_CODE_SKELETON_VERSION = "ai:code:skeleton:version:";
+
+    /** 项目骨架快照（骨架记录 ID + 版本号 + JSON），数据库的跨节点前置缓存 */
+    public static final String AI_CODE_SKELETON_SNAPSHOT = "ai:code:skeleton:snapshot:";
+
 
 
 
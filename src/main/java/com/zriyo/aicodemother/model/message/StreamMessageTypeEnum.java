@@ -29,6 +29,8 @@ public enum StreamMessageTypeEnum {
     CODE_TOOL_EXECUTED("code_tool_executed", "代码工具执行结果"),
     //ping 心跳
     PING("ping", "心跳"),
+    //断线续传时请求的事件已被淘汰，之后的事件不连续，前端需重新加载当前进度
+    EVENT_GAP("event_gap", "部分事件已过期"),
 
     // --- 🏥 ProjectDoctor 诊断与修复相关 (新增) ---
     /**
@@ -1,25 +1,37 @@
 package com.zriyo.aicodemother.oos;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.zriyo.aicodemother.config.S3Config;
+import com.zriyo.aicodemother.config.StorageCacheConfig;
 import com.zriyo.aicodemother.exception.BusinessException;
 import com.zriyo.aicodemother.exception.ErrorCode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
@@ -27,6 +39,11 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
 
+/**
+ * 对象存储服务
+ * 对象元数据（是否存在 / ETag / 大小）与预签名地址在本地缓存：存在与不存在分别按不同时长过期，
+ * 预签名地址复用到临近过期为止；本实例的上传与删除会主动更新缓存，其他实例的变更在 TTL 内可见
+ */
 @Slf4j
 @Service
 public class FileStorageService {
@@ -34,6 +51,11 @@ public class FileStorageService {
     private final S3Client s3Client;
     private final S3Presigner s3Presigner;
     private final S3Config s3Config;
+    private final StorageCacheConfig cacheConfig;
+    private final S3StreamUploader streamUploader;
+
+    private final Cache<String, ObjectMeta> metadata;
+    private final Cache<String, PresignedUrl> presignedUrls;
 
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
     private static final Set<String> ALLOWED_CONTENT_TYPES = new HashSet<>(
@@ -42,10 +64,59 @@ public class FileStorageService {
 
     public FileStorageService(S3Client s3Client,
                               S3Presigner s3Presigner,
-                              S3Config s3Config) {
+                              S3Config s3Config,
+                              StorageCacheConfig cacheConfig,
+                              S3StreamUploader streamUploader,
+                              MeterRegistry meterRegistry) {
         this.s3Client = s3Client;
         this.s3Presigner = s3Presigner;
         this.s3Config = s3Config;
+        this.cacheConfig = cacheConfig;
+        this.streamUploader = streamUploader;
+        this.metadata = Caffeine.newBuilder()
+                .maximumSize(cacheConfig.getMaxEntries())
+                .expireAfter(new Expiry<String, ObjectMeta>() {
+                    @Override
+                    public long expireAfterCreate(String key, ObjectMeta meta, long currentTime) {
+                        long seconds = meta.exists() ? cacheConfig.getMetadataTtlSeconds() : cacheConfig.getMissingTtlSeconds();
+                        return Duration.ofSeconds(seconds).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, ObjectMeta meta, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, meta, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, ObjectMeta meta, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        this.presignedUrls = Caffeine.newBuilder()
+                .maximumSize(cacheConfig.getMaxEntries())
+                .expireAfter(new Expiry<String, PresignedUrl>() {
+                    @Override
+                    public long expireAfterCreate(String key, PresignedUrl url, long currentTime) {
+                        Instant reuseUntil = url.expiresAt().minusSeconds(cacheConfig.getPresignRefreshMarginSeconds());
+                        return Math.max(0, Duration.between(Instant.now(), reuseUntil).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, PresignedUrl url, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, url, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, PresignedUrl url, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, metadata, "s3_object_metadata");
+        CaffeineCacheMetrics.monitor(meterRegistry, presignedUrls, "s3_presigned_urls");
     }
 
     // =========================================================
@@ -72,15 +143,9 @@ public class FileStorageService {
 
         String actualBucketName = bucketSpec.getName();
 
-        try {
-            s3Client.putObject(
-                    PutObjectRequest.builder()
-                            .bucket(actualBucketName)
-                            .key(key)
-                            .contentType(contentType)
-                            .build(),
-                    RequestBody.fromBytes(file.getBytes())
-            );
+        try (InputStream content = file.getInputStream()) {
+            String eTag = streamUploader.upload(actualBucketName, key, contentType, content, file.getSize());
+            onUploaded(actualBucketName, key, eTag, file.getSize());
 
             log.info("✅ 文件上传成功 | bucket={}, key={}", actualBucketName, key);
 
@@ -91,6 +156,43 @@ public class FileStorageService {
         }
     }
 
+    // =========================================================
+    // ✅ 上传服务端生成的文件（截图等）：直接按文件流式 / 分片上传，不经过 MultipartFile 适配
+    // =========================================================
+    public String uploadFile(String bucketLogicalName, Path file, String contentType) {
+        if (!ALLOWED_CONTENT_TYPES.contains(contentType)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的文件类型: " + contentType);
+        }
+
+        S3Config.BucketSpec bucketSpec = s3Config.getBuckets().get(bucketLogicalName);
+        if (bucketSpec == null) {
+            throw new RuntimeException("未配置的存储桶: " + bucketLogicalName);
+        }
+
+        String fileExtension = getFileExtension(file.getFileName().toString());
+        String dateDir = LocalDate.now()
+                .format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+        String key = dateDir + "/"
+                + UUID.randomUUID()
+                + (StringUtils.hasText(fileExtension) ? "." + fileExtension : "");
+        String actualBucketName = bucketSpec.getName();
+
+        try {
+            long size = Files.size(file);
+            if (size == 0) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "文件不能为空");
+            }
+            String eTag = streamUploader.upload(actualBucketName, key, contentType, file);
+            onUploaded(actualBucketName, key, eTag, size);
+
+            log.info("✅ 文件上传成功 | bucket={}, key={}, size={}", actualBucketName, key, size);
+            return buildAccessUrl(bucketSpec, actualBucketName, key);
+
+        } catch (IOException e) {
+            throw new RuntimeException("文件读取失败", e);
+        }
+    }
+
     // =========================================================
     // ✅ 保持原有 getOrUploadByQuery (适配你的 ImageProxy 逻辑)
     // =========================================================
@@ -115,15 +217,9 @@ public class FileStorageService {
         }
 
         // 2️⃣ 不存在才上传
-        try {
-            s3Client.putObject(
-                    PutObjectRequest.builder()
-                            .bucket(actualBucketName)
-                            .key(key)
-                            .contentType(file.getContentType())
-                            .build(),
-                    RequestBody.fromBytes(file.getBytes())
-            );
+        try (InputStream content = file.getInputStream()) {
+            String eTag = streamUploader.upload(actualBucketName, key, file.getContentType(), content, file.getSize());
+            onUploaded(actualBucketName, key, eTag, file.getSize());
 
             log.info("⬆️ 新回源文件入桶 | bucket={}, key={}", actualBucketName, key);
             return buildAccessUrl(bucketSpec, actualBucketName, key);
@@ -133,6 +229,42 @@ public class FileStorageService {
         }
     }
 
+    // =========================================================
+    // ✅ 按关键词路径流式上传：内容直接从输入流写入 S3，不在内存中整体缓冲
+    // =========================================================
+    public String uploadStreamByQuery(String bucketLogicalName,
+                                      String query,
+                                      InputStream content,
+                                      long contentLength,
+                                      String contentType) {
+        if (contentLength <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "文件不能为空");
+        }
+        if (contentLength > MAX_FILE_SIZE) {
+            throw new BusinessException(
+                    ErrorCode.PARAMS_ERROR,
+                    "文件大小不能超过 " + (MAX_FILE_SIZE / 1024 / 1024) + "MB"
+            );
+        }
+        if (!ALLOWED_CONTENT_TYPES.contains(contentType)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的文件类型: " + contentType);
+        }
+
+        S3Config.BucketSpec bucketSpec = s3Config.getBuckets().get(bucketLogicalName);
+        if (bucketSpec == null) {
+            throw new RuntimeException("未配置的存储桶: " + bucketLogicalName);
+        }
+
+        String key = getSafeKeyByQuery(query);
+        String actualBucketName = bucketSpec.getName();
+
+        String eTag = streamUploader.upload(actualBucketName, key, contentType, content, contentLength);
+        onUploaded(actualBucketName, key, eTag, contentLength);
+
+        log.info("⬆️ 新回源文件入桶 | bucket={}, key={}, size={}", actualBucketName, key, contentLength);
+        return buildAccessUrl(bucketSpec, actualBucketName, key);
+    }
+
     // =========================================================
     // ✅ 追加方法：仅查询 URL 不触发下载
     // =========================================================
@@ -149,6 +281,24 @@ public class FileStorageService {
         return null;
     }
 
+    // =========================================================
+    // ✅ 按关键词路径删除对象，同时失效本地元数据与预签名缓存
+    // =========================================================
+    public void deleteByQuery(String bucketLogicalName, String query) {
+        S3Config.BucketSpec bucketSpec = s3Config.getBuckets().get(bucketLogicalName);
+        if (bucketSpec == null) {
+            throw new RuntimeException("未配置的存储桶: " + bucketLogicalName);
+        }
+
+        String key = getSafeKeyByQuery(query);
+        String actualBucketName = bucketSpec.getName();
+
+        s3Client.deleteObject(DeleteObjectRequest.builder().bucket(actualBucketName).key(key).build());
+        metadata.put(cacheKey(actualBucketName, key), ObjectMeta.MISSING);
+        invalidatePresigned(actualBucketName, key);
+        log.info("🗑️ 对象已删除 | bucket={}, key={}", actualBucketName, key);
+    }
+
     // =========================================================
     // ✅ 追加辅助方法：生成确定的本地桶路径 (去掉 MD5 和日期目录)
     // =========================================================
@@ -196,19 +346,50 @@ public class FileStorageService {
     // S3 辅助方法（你原来的，保留不动）
     // =========================================================
     private boolean exists(String bucket, String key) {
+        ObjectMeta meta = metadata.get(cacheKey(bucket, key), k -> headObject(bucket, key));
+        return meta != null && meta.exists();
+    }
+
+    /**
+     * 查询对象元数据；对象不存在时返回 MISSING（会被缓存），网络等其他异常返回 null（不缓存，按不存在处理）
+     */
+    private ObjectMeta headObject(String bucket, String key) {
         try {
-            s3Client.headObject(
+            HeadObjectResponse response = s3Client.headObject(
                     HeadObjectRequest.builder()
                             .bucket(bucket)
                             .key(key)
                             .build()
             );
-            return true;
+            return new ObjectMeta(true, response.eTag(), response.contentLength());
+        } catch (NoSuchKeyException e) {
+            return ObjectMeta.MISSING;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return ObjectMeta.MISSING;
+            }
+            log.warn("查询对象元数据失败 | bucket={}, key={}, status={}", bucket, key, e.statusCode());
+            return null;
         } catch (Exception e) {
-            return false;
+            log.warn("查询对象元数据失败 | bucket={}, key={}, 原因: {}", bucket, key, e.getMessage());
+            return null;
         }
     }
 
+    private void onUploaded(String bucket, String key, String eTag, long size) {
+        metadata.put(cacheKey(bucket, key), new ObjectMeta(true, eTag, size));
+        invalidatePresigned(bucket, key);
+    }
+
+    private void invalidatePresigned(String bucket, String key) {
+        String prefix = cacheKey(bucket, key) + "@";
+        presignedUrls.asMap().keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    private static String cacheKey(String bucket, String key) {
+        return bucket + "/" + key;
+    }
+
     private String buildAccessUrl(S3Config.BucketSpec spec, String bucket, String key) {
         if (S3Config.BucketSpec.BucketType.PUBLIC.equals(spec.getType())) {
             return buildPathStyleUrl(bucket, key);
@@ -225,6 +406,11 @@ public class FileStorageService {
     }
 
     private String generatePresignedUrl(String bucket, String key, Duration expiration) {
+        return presignedUrls.get(cacheKey(bucket, key) + "@" + expiration.toSeconds(),
+                k -> presign(bucket, key, expiration)).url();
+    }
+
+    private PresignedUrl presign(String bucket, String key, Duration expiration) {
         GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
                 .signatureDuration(expiration)
                 .getObjectRequest(req -> req.bucket(bucket).key(key))
@@ -233,7 +419,7 @@ public class FileStorageService {
         PresignedGetObjectRequest presignedRequest =
                 s3Presigner.presignGetObject(presignRequest);
 
-        return presignedRequest.url().toString();
+        return new PresignedUrl(presignedRequest.url().toString(), presignedRequest.expiration());
     }
 
     // =========================================================
@@ -261,4 +447,14 @@ public class FileStorageService {
         }
         return filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
     }
+
+    /**
+     * 对象元数据快照
+     */
+    private record ObjectMeta(boolean exists, String eTag, Long size) {
+        static final ObjectMeta MISSING = new ObjectMeta(false, null, null);
+    }
+
+    private record PresignedUrl(String url, Instant expiresAt) {
+    }
 }
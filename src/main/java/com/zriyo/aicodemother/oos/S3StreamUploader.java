@@ -0,0 +1,262 @@
+package com.zriyo.aicodemother.oos;
+
+import com.zriyo.aicodemother.config.S3UploadConfig;
+import com.zriyo.aicodemother.util.VirtualThreadUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * S3 流式上传
+ * 内容直接从文件或输入流写入请求体，不整体读入内存：
+ * 1. 小于阈值的对象单次 PUT；文件来源每次（含 SDK 重试）重新打开文件，输入流来源只能发送一次
+ * 2. 超过阈值的对象分片上传，多个分片并行发送；文件来源按偏移量读取各分片，输入流来源按顺序读取分片，
+ *    内存中最多同时缓冲 parallelism 个分片；任一分片失败即中止整个上传
+ */
+@Slf4j
+@Component
+public class S3StreamUploader {
+
+    private final S3Client s3Client;
+    private final S3UploadConfig config;
+
+    private final ExecutorService partExecutor = VirtualThreadUtils.newVirtualThreadExecutor();
+
+    public S3StreamUploader(S3Client s3Client, S3UploadConfig config) {
+        this.s3Client = s3Client;
+        this.config = config;
+    }
+
+    /**
+     * 上传文件，返回对象 ETag
+     */
+    public String upload(String bucket, String key, String contentType, Path file) throws IOException {
+        long size = Files.size(file);
+        if (size <= config.getMultipartThresholdBytes()) {
+            return putObject(bucket, key, contentType, size,
+                    RequestBody.fromContentProvider(new FileRangeProvider(file, 0, size), size, contentType));
+        }
+        return multipart(bucket, key, contentType, size, (partNumber, offset, length) ->
+                RequestBody.fromContentProvider(new FileRangeProvider(file, offset, length), length, contentType));
+    }
+
+    /**
+     * 上传长度已知的输入流，返回对象 ETag；调用方负责关闭输入流
+     */
+    public String upload(String bucket, String key, String contentType, InputStream content, long size) {
+        if (size <= config.getMultipartThresholdBytes()) {
+            return putObject(bucket, key, contentType, size, RequestBody.fromInputStream(content, size));
+        }
+        return multipart(bucket, key, contentType, size, (partNumber, offset, length) -> {
+            // 分片按顺序读取，读取发生在提交线程上；缓冲支持 reset，SDK 可以重试该分片
+            byte[] buffer = content.readNBytes((int) length);
+            if (buffer.length != length) {
+                throw new IOException("输入流长度不足: 期望 " + size + " 字节");
+            }
+            return RequestBody.fromContentProvider(() -> new ByteArrayInputStream(buffer), length, contentType);
+        });
+    }
+
+    private String putObject(String bucket, String key, String contentType, long size, RequestBody body) {
+        PutObjectRequest.Builder request = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(size);
+        if (config.isChecksumEnabled()) {
+            request.checksumAlgorithm(ChecksumAlgorithm.CRC32);
+        }
+        return s3Client.putObject(request.build(), body).eTag();
+    }
+
+    private String multipart(String bucket, String key, String contentType, long size, PartSource source) {
+        long partSize = Math.max(5L * 1024 * 1024, config.getPartSizeBytes());
+        int partCount = (int) ((size + partSize - 1) / partSize);
+
+        CreateMultipartUploadRequest.Builder create = CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType);
+        if (config.isChecksumEnabled()) {
+            create.checksumAlgorithm(ChecksumAlgorithm.CRC32);
+        }
+        String uploadId = s3Client.createMultipartUpload(create.build()).uploadId();
+
+        Semaphore inFlight = new Semaphore(Math.max(1, config.getParallelism()));
+        List<Future<CompletedPart>> parts = new ArrayList<>(partCount);
+        try {
+            for (int i = 0; i < partCount; i++) {
+                int partNumber = i + 1;
+                long offset = i * partSize;
+                long length = Math.min(partSize, size - offset);
+                inFlight.acquire();
+                RequestBody body;
+                try {
+                    body = source.body(partNumber, offset, length);
+                } catch (IOException | RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                parts.add(partExecutor.submit(() -> {
+                    try {
+                        return uploadPart(bucket, key, uploadId, partNumber, length, body);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+
+            List<CompletedPart> completed = new ArrayList<>(partCount);
+            for (Future<CompletedPart> part : parts) {
+                completed.add(part.get());
+            }
+            String eTag = s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                    .build()).eTag();
+            log.info("⬆️ 分片上传完成 | bucket={}, key={}, size={}, parts={}", bucket, key, size, partCount);
+            return eTag;
+        } catch (Exception e) {
+            parts.forEach(part -> part.cancel(true));
+            abort(bucket, key, uploadId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new UncheckedIOException(new IOException("分片上传失败: " + key, cause));
+        }
+    }
+
+    private CompletedPart uploadPart(String bucket, String key, String uploadId, int partNumber,
+                                     long length, RequestBody body) {
+        UploadPartRequest.Builder request = UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength(length);
+        if (config.isChecksumEnabled()) {
+            request.checksumAlgorithm(ChecksumAlgorithm.CRC32);
+        }
+        UploadPartResponse response = s3Client.uploadPart(request.build(), body);
+        return CompletedPart.builder()
+                .partNumber(partNumber)
+                .eTag(response.eTag())
+                .checksumCRC32(response.checksumCRC32())
+                .build();
+    }
+
+    private void abort(String bucket, String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (Exception e) {
+            log.warn("中止分片上传失败 | bucket={}, key={}, uploadId={}", bucket, key, uploadId, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        partExecutor.shutdown();
+    }
+
+    @FunctionalInterface
+    private interface PartSource {
+        RequestBody body(int partNumber, long offset, long length) throws IOException;
+    }
+
+    /**
+     * 文件的一段区间，每次 newStream 重新打开文件，SDK 重试时从区间起点重新发送
+     */
+    private record FileRangeProvider(Path file, long offset, long length) implements ContentStreamProvider {
+        @Override
+        public InputStream newStream() {
+            try {
+                return new RangeInputStream(FileChannel.open(file, StandardOpenOption.READ), offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        private RangeInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (n <= 0) {
+                return -1;
+            }
+            position += n;
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
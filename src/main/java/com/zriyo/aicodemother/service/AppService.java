@@ -22,6 +22,11 @@ public interface AppService  extends IService<App> {
 
     void deleteApp(Long appId, Long loginId);
 
+    /**
+     * 删除应用的线上部署与全部历史版本文件
+     */
+    void deleteDeployment(App app);
+
     AppWithLatestVersionVO getAppVO(Long app);
 
 
@@ -42,7 +47,7 @@ public interface AppService  extends IService<App> {
 
     void rollbackToHistory(RollbackRequest request);
 
-    Flux<ServerSentEvent<Object>> NewChatToGenCode(Long appId, String message, Long userId, RuntimeFeedbackDTO feedback);
+    Flux<ServerSentEvent<Object>> NewChatToGenCode(Long appId, String message, Long userId, RuntimeFeedbackDTO feedback, String lastEventId);
 
     void viewApp(Long appId, Long loginId);
 
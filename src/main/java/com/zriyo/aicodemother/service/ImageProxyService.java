@@ -1,37 +1,56 @@
 package com.zriyo.aicodemother.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.zriyo.aicodemother.config.ImageProxyConfig;
 import com.zriyo.aicodemother.oos.FileStorageService;
 import com.zriyo.aicodemother.util.SpringUtils;
-import lombok.RequiredArgsConstructor;
+import com.zriyo.aicodemother.util.VirtualThreadUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 关键词图片代理
+ * 1. 关键词 → 最终地址在本地缓存：成功结果与回源失败（占位图）分别按不同时长过期，命中时不再访问 S3
+ * 2. 同一关键词的并发请求合并为一次回源（single-flight），由第一个请求负责查询 / 下载 / 上传，其余请求等待同一结果
+ * 3. 回源图片边下载边上传，不在内存中整体缓冲，并限制最大字节数
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ImageProxyService {
 
     private final FileStorageService fileStorageService;
+    private final ImageProxyConfig config;
 
     // 默认占位图：建议放在 OOS 里的一个固定位置
     private static final String DEFAULT_PLACEHOLDER_URL = "https://io.zriyo.com/zriyo-code/default-placeholder.jpg";
 
+    private static final String BUCKET = "appImage";
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+
     @Value("${sogou.api.url}")
     private String SOGOU_API_URL;
 
@@ -41,40 +60,80 @@ public class ImageProxyService {
     @Value("${sogou.api.key}")
     private String API_KEY;
 
+    /**
+     * 回源在虚拟线程上执行，网络等待不占用平台线程
+     */
+    private final ExecutorService fetchExecutor = VirtualThreadUtils.newVirtualThreadExecutor();
+
+    private final AsyncCache<String, String> urls;
+
+    public ImageProxyService(FileStorageService fileStorageService, ImageProxyConfig config, MeterRegistry meterRegistry) {
+        this.fileStorageService = fileStorageService;
+        this.config = config;
+        this.urls = Caffeine.newBuilder()
+                .maximumSize(config.getMaxEntries())
+                .expireAfter(new Expiry<String, String>() {
+                    @Override
+                    public long expireAfterCreate(String key, String url, long currentTime) {
+                        long minutes = DEFAULT_PLACEHOLDER_URL.equals(url) ? config.getMissTtlMinutes() : config.getHitTtlMinutes();
+                        return Duration.ofMinutes(minutes).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, String url, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, url, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, String url, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, urls, "image_proxy_urls");
+    }
+
     private RestTemplate restTemplate() {
         return SpringUtils.getBean(RestTemplate.class);
     }
 
     /**
-     * ✅ 终极逻辑：Keyword 直连 + 异常降级
+     * ✅ 终极逻辑：本地缓存 + 并发合并 + 异常降级
      */
     public String getAndUploadImage(String keyword) {
         if (!StringUtils.hasText(keyword)) {
             return DEFAULT_PLACEHOLDER_URL;
         }
 
-        // 1️⃣ 第一步：清理 Keyword 防止文件名非法
+        // 1️⃣ 第一步：清理 Keyword 防止文件名非法；存储路径不区分大小写，缓存键与之保持一致
         String safeKeyword = keyword.replaceAll("[^a-zA-Z0-9\\u4e00-\\u9fa5]", "_");
+        String cacheKey = safeKeyword.trim().toLowerCase(Locale.ROOT);
 
         try {
-            // 2️⃣ 第二步：本地桶直接路径查询（最快，只发 HEAD 请求）
-            // 注意：这里调用的是新加的查询方法，不再触发下载逻辑
-            String existingUrl = fileStorageService.getFileUrlByQuery("appImage", safeKeyword);
+            return urls.get(cacheKey, (key, executor) ->
+                    CompletableFuture.supplyAsync(() -> resolve(safeKeyword), fetchExecutor)).join();
+        } catch (Exception e) {
+            log.error("❌ 图片获取链路异常 [keyword={}], 触发兜底降级. 原因: {}", safeKeyword, e.getMessage());
+            return DEFAULT_PLACEHOLDER_URL;
+        }
+    }
+
+    /**
+     * 缓存未命中时的完整链路，任何异常都降级为占位图（占位图按较短时长缓存）
+     */
+    private String resolve(String safeKeyword) {
+        try {
+            // 2️⃣ 第二步：本地桶直接路径查询（只发 HEAD 请求）
+            String existingUrl = fileStorageService.getFileUrlByQuery(BUCKET, safeKeyword);
             if (StringUtils.hasText(existingUrl)) {
                 log.debug("🎯 OOS 路径直接命中: {}", safeKeyword);
                 return existingUrl;
             }
 
-            // 3️⃣ 第三步：本地无缓存，回源抓取
+            // 3️⃣ 第三步：本地无缓存，回源抓取并直接流式上传至 OOS
             log.info("🌐 OOS 未命中，回源抓取: {}", safeKeyword);
-            MultipartFile imageFile = downloadFromSogou(safeKeyword);
-
-            // 4️⃣ 第四步：上传至 OOS 并返回最终访问 URL
-            return fileStorageService.getOrUploadByQuery(
-                    "appImage",
-                    safeKeyword,
-                    imageFile
-            );
+            return downloadAndUpload(safeKeyword);
 
         } catch (Exception e) {
             // ❌ 异常降级：不管是 API 挂了、网络超时还是 S3 异常，统一返回占位图
@@ -84,9 +143,9 @@ public class ImageProxyService {
     }
 
     /**
-     * 从搜狗回源下载二进制内容并封装为 MultipartFile
+     * 从搜狗查询图片地址，下载响应体直接作为上传请求体写入 OOS
      */
-    private MultipartFile downloadFromSogou(String keyword) {
+    private String downloadAndUpload(String keyword) {
         String encodedKeyword = URLEncoder.encode(keyword, StandardCharsets.UTF_8);
         String url = String.format("%s?id=%s&key=%s&words=%s&page=1&type=1",
                 SOGOU_API_URL, API_ID, API_KEY, encodedKeyword);
@@ -105,48 +164,46 @@ public class ImageProxyService {
 
         String targetUrl = imageUrls.get(0);
 
-        // 2. 模拟浏览器 User-Agent 下载图片
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
-
-        ResponseEntity<byte[]> resp = restTemplate().exchange(
-                targetUrl, HttpMethod.GET, new HttpEntity<>(headers), byte[].class
+        // 2. 模拟浏览器 User-Agent 下载图片，在响应回调中边读边传
+        return restTemplate().execute(
+                targetUrl,
+                HttpMethod.GET,
+                request -> request.getHeaders().set("User-Agent", USER_AGENT),
+                resp -> upload(keyword, resp)
         );
+    }
 
-        if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
+    private String upload(String keyword, ClientHttpResponse resp) throws IOException {
+        if (!resp.getStatusCode().is2xxSuccessful()) {
             throw new RuntimeException("源站文件下载失败, HTTP Status: " + resp.getStatusCode());
         }
 
-        // 3. 获取 ContentType，默认 image/jpeg
-        String contentType = resp.getHeaders().getContentType() != null
-                ? resp.getHeaders().getContentType().toString() : "image/jpeg";
+        // 3. 获取 ContentType（去掉参数部分），默认 image/jpeg
+        MediaType mediaType = resp.getHeaders().getContentType();
+        String contentType = mediaType != null ? mediaType.getType() + "/" + mediaType.getSubtype() : "image/jpeg";
 
-        return new ByteArrayMultipartFile(resp.getBody(), keyword + ".jpg", contentType);
-    }
+        long maxBytes = config.getMaxImageBytes();
+        long contentLength = resp.getHeaders().getContentLength();
+        if (contentLength > maxBytes) {
+            throw new RuntimeException("源站文件过大: " + contentLength + " bytes");
+        }
 
-    /**
-     * 内存 MultipartFile 实现类
-     */
-    static class ByteArrayMultipartFile implements MultipartFile {
-        private final byte[] content;
-        private final String filename;
-        private final String contentType;
-
-        ByteArrayMultipartFile(byte[] content, String filename, String contentType) {
-            this.content = content;
-            this.filename = filename;
-            this.contentType = contentType;
+        InputStream body = resp.getBody();
+        if (contentLength >= 0) {
+            return fileStorageService.uploadStreamByQuery(BUCKET, keyword, body, contentLength, contentType);
         }
 
-        @Override public String getName() { return "file"; }
-        @Override public String getOriginalFilename() { return filename; }
-        @Override public String getContentType() { return contentType; }
-        @Override public boolean isEmpty() { return content.length == 0; }
-        @Override public long getSize() { return content.length; }
-        @Override public byte[] getBytes() { return content; }
-        @Override public InputStream getInputStream() { return new ByteArrayInputStream(content); }
-        @Override public void transferTo(java.io.File dest) throws IOException {
-            java.nio.file.Files.write(dest.toPath(), content);
+        // 源站未声明长度（chunked）：最多读取上限 + 1 字节，超限即放弃
+        byte[] content = body.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxBytes + 1));
+        if (content.length > maxBytes) {
+            throw new RuntimeException("源站文件过大: 超过 " + maxBytes + " bytes");
         }
+        return fileStorageService.uploadStreamByQuery(BUCKET, keyword, new ByteArrayInputStream(content),
+                content.length, contentType);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdown();
     }
 }
@@ -17,6 +17,11 @@ import com.zriyo.aicodemother.core.handler.HtmlCodeGenSseHandler;
 import com.zriyo.aicodemother.core.handler.VueProjectSseHandler;
 import com.zriyo.aicodemother.core.pipeline.CodeGenPipelineBuilder;
 import com.zriyo.aicodemother.core.pipeline.GenerationContext;
+import com.zriyo.aicodemother.core.stream.GenerationEventLog;
+import com.zriyo.aicodemother.core.trace.GenerationTrace;
+import com.zriyo.aicodemother.core.trace.GenerationTraceRegistry;
+import com.zriyo.aicodemother.core.stream.GenerationEventLogRegistry;
+import com.zriyo.aicodemother.event.AppChangedEvent;
 import com.zriyo.aicodemother.exception.BusinessException;
 import com.zriyo.aicodemother.exception.ErrorCode;
 import com.zriyo.aicodemother.exception.ThrowUtils;
@@ -37,6 +42,7 @@ import com.zriyo.aicodemother.model.entity.DeploymentHistory;
 import com.zriyo.aicodemother.model.enums.ChatHistoryMessageTypeEnum;
 import com.zriyo.aicodemother.model.enums.CodeGenTypeEnum;
 import com.zriyo.aicodemother.model.enums.PointsReasonEnum;
+import com.zriyo.aicodemother.model.message.StreamMessage;
 import com.zriyo.aicodemother.model.message.StreamMessageTypeEnum;
 import com.zriyo.aicodemother.model.vo.*;
 import com.zriyo.aicodemother.service.AppService;
@@ -53,7 +59,7 @@ import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
+import reactor.core.publisher.SignalType;
 import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
@@ -64,7 +70,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -86,8 +92,9 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     protected final ApplicationEventPublisher publisher;
     private final AiCodeGenTypeRoutingServiceImpl aiCodeGenTypeRoutingServiceImpl;
     private final PointsAdjustService pointsAdjustService;
-    // 存放正在运行的任务槽。Key 是 appId
-    private static final Map<Long, Sinks.Many<ServerSentEvent<Object>>> taskSinks = new ConcurrentHashMap<>();
+    // 运行中任务的有界事件日志（替代原先按 appId 缓存全部消息的 replay Sink）
+    private final GenerationEventLogRegistry eventLogRegistry;
+    private final GenerationTraceRegistry traceRegistry;
 
 
     @Override
@@ -129,16 +136,19 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     public void deleteApp(Long appId, Long loginId) {
 
         Boolean appStatus = (Boolean) getAppStatus(appId);
-        if (appStatus != null && appStatus && taskSinks.containsKey(appId)) {
+        if (appStatus != null && appStatus && eventLogRegistry.isRunning(appId)) {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "应用正在运行中，请稍后再试");
         }
         RedisUtils.deleteObject(RedisConstants.AI_CODE_GEN_TASK_RUNNING + appId);
+        App app = getApp(appId, loginId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR);
         // 删除数据库中应用记录
         QueryWrapper eq = new QueryWrapper()
                 .eq(App::getId, appId)
                 .eq(App::getUserId, loginId);
         boolean remove = this.remove(eq);
         ThrowUtils.throwIf(!remove, ErrorCode.OPERATION_ERROR);
+        publisher.publishEvent(new AppChangedEvent(this, appId));
 
         // 删除关联的聊天记录
         boolean removeChat = chatHistoryService.deleteByAppId(appId);
@@ -160,7 +170,16 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
                 log.error("删除目录失败：" + e.getMessage());
             }
         });
+        deleteDeployment(app);
+    }
 
+    @Override
+    public void deleteDeployment(App app) {
+        if (app == null || StringUtil.isBlank(app.getDeployKey())) {
+            return;
+        }
+        // 删除部署链接与版本引用，并回收不再被引用的版本树
+        VirtualThreadUtils.runAsync(() -> CodeOutputManager.deleteAppDeployment(app.getDeployKey()));
     }
 
     /**
@@ -321,7 +340,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "应用生成类型异常");
         }
         ChatMessage chatMessage = getChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER);
-        Flux<String> source = aiCodeGeneratorFacade
+        Flux<StreamMessage> source = aiCodeGeneratorFacade
                 .generateAndSaveCodeStream(message, codeGenTypeEnum, appId)
                 .share(); // 单订阅即可触发
 
@@ -403,6 +422,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             throw new BusinessException(ErrorCode.SYSTEM_ERROR);
         }
 
+        publisher.publishEvent(new AppChangedEvent(this, appId));
         String url = "/" + deployKey;
         return url;
     }
@@ -423,21 +443,31 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         app.setLatestDeploymentId(rollbackId);
         int update = appMapper.update(app);
         ThrowUtils.throwIf(update <= 0, ErrorCode.SYSTEM_ERROR);
+        publisher.publishEvent(new AppChangedEvent(this, appId));
     }
 
     @Override
-    public Flux<ServerSentEvent<Object>> NewChatToGenCode(Long appId, String message, Long userId, RuntimeFeedbackDTO feedback) {
-        // --- 1. 重连逻辑：检查内存中是否已有运行中的任务 ---
-        if (taskSinks.containsKey(appId)) {
-            log.info("🔗 [重连] 检测到 appId: {} 任务正在运行，接入实时流并同步历史进度", appId);
-            // 使用 all() 的 Sink 会在这里自动把之前缓存的所有消息喷发给前端
-            return taskSinks.get(appId).asFlux().mergeWith(createPingFlux());
-        }
-        ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
-        // --- 2. 参数校验与基础数据准备 ---
+    public Flux<ServerSentEvent<Object>> NewChatToGenCode(Long appId, String message, Long userId, RuntimeFeedbackDTO feedback, String lastEventId) {
+        // --- 1. 参数校验与基础数据准备（续传同样只允许应用所有者） ---
         App app = getApp(appId, userId);
         ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR);
 
+        // --- 2. 重连逻辑：任务仍在运行（本节点或集群其它节点）时，携带 Last-Event-ID 则从该事件之后续传，
+        //        否则从第一条事件开始接入本节点的任务 ---
+        Boolean runningFlag = RedisUtils.getCacheObject(RedisConstants.AI_CODE_GEN_TASK_RUNNING + appId);
+        if (eventLogRegistry.isRunning(appId) || Boolean.TRUE.equals(runningFlag)) {
+            Optional<Flux<ServerSentEvent<Object>>> resumed = eventLogRegistry.resume(appId, lastEventId);
+            if (resumed.isEmpty()) {
+                resumed = eventLogRegistry.attach(appId);
+            }
+            if (resumed.isPresent()) {
+                log.info("🔗 [重连] 检测到 appId: {} 任务正在运行，从事件 {} 之后续传", appId, StrUtil.blankToDefault(lastEventId, "0"));
+                Flux<ServerSentEvent<Object>> events = resumed.get().publish().autoConnect(2);
+                return events.mergeWith(createPingFlux().takeUntilOther(events.then()));
+            }
+        }
+        ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
+
         String codeGenType = app.getCodeGenType();
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
         if (codeGenTypeEnum == null) {
@@ -445,8 +475,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         }
 
         // --- 3. 任务锁判定 (防止并发) ---
-        Boolean taskRunning = RedisUtils.getCacheObject(RedisConstants.AI_CODE_GEN_TASK_RUNNING + appId);
-        if (Boolean.TRUE.equals(taskRunning)) {
+        if (Boolean.TRUE.equals(runningFlag)) {
             // 内存没 Sink 但 Redis 有锁，说明是集群其它节点任务或异常残留
             throw new BusinessException(ErrorCode.EXECUTING);
         }
@@ -473,16 +502,20 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             pointsAdjustService.adjustPoints(userId, PointsReasonEnum.APP_GENERATE, appId,null);
         }
 
-        // --- 5. 创建消息分发中心 (Sink) ---
-        Sinks.Many<ServerSentEvent<Object>> sink = Sinks.many().replay().all();
-        taskSinks.put(appId, sink);
+        // --- 5. 创建有界事件日志 ---
+        GenerationEventLog eventLog = eventLogRegistry.open(appId);
         RedisUtils.setCacheObject(RedisConstants.AI_CODE_GEN_TASK_RUNNING + appId, true);
 
+        // 时间线只在 Pipeline 即将订阅时开启，由其 doFinally 统一结束，前面的扣点等步骤失败不会遗留进行中的时间线
+        GenerationTrace trace = traceRegistry.begin(appId, userId);
+        context.setTrace(trace);
+
         // --- 6. 异步开启 Pipeline 任务 (不随 HTTP 连接断开而停止) ---
         Flux.defer(() -> {
                     AiContextHolder.set(MonitorContext.builder()
                             .appId(String.valueOf(appId))
                             .userId(String.valueOf(userId))
+                            .trace(trace)
                             .build());
 
                     // A. 异步优化提示词 & 发送 SSE 状态
@@ -524,25 +557,27 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
                 })
                 .subscribeOn(Schedulers.boundedElastic()) // 在 IO 密集型线程池运行
                 .doOnNext(event -> {
-                    // 将 Pipeline 产生的每一条消息丢进 Sink
-                    sink.tryEmitNext(event);
+                    // 将 Pipeline 产生的每一条消息写入事件日志（分配事件 ID 并推送给在线订阅者）
+                    eventLog.append(event);
                 })
                 .doOnError(throwable -> {
                     log.error("代码生成过程中发生错误: appId={}", appId, throwable);
-                    sink.tryEmitNext(SseEventBuilder.of(StreamMessageTypeEnum.ERROR, "系统内部错误: " + throwable.getMessage()));
+                    eventLog.append(SseEventBuilder.of(StreamMessageTypeEnum.ERROR, "系统内部错误: " + throwable.getMessage()));
                 })
                 .doFinally(signalType -> {
                     AiContextHolder.remove();
+                    traceRegistry.finish(trace, signalType == SignalType.CANCEL ? "cancel"
+                            : signalType == SignalType.ON_ERROR || Boolean.TRUE.equals(context.getIsError()) ? "error" : "success");
                     RedisUtils.deleteObject(RedisConstants.AI_CODE_GEN_TASK_RUNNING + appId);
-                    taskSinks.remove(appId);
-                    sink.tryEmitComplete();
+                    eventLogRegistry.close(eventLog);
                     log.info("AI 代码生成任务完全终结，资源清理完毕: appId={}, signal={}", appId, signalType);
                 })
                 .subscribe();
 
-        // --- 7. 返回 Sink 的流给当前 HTTP 连接 ---
-        // 使用 takeUntilOther 确保心跳在 Sink 关闭时同步停止
-        return sink.asFlux().mergeWith(createPingFlux().takeUntilOther(sink.asFlux().then()));
+        // --- 7. 返回事件日志的流给当前 HTTP 连接 ---
+        // 使用 takeUntilOther 确保心跳在任务结束时同步停止
+        Flux<ServerSentEvent<Object>> events = eventLog.subscribe(0).publish().autoConnect(2);
+        return events.mergeWith(createPingFlux().takeUntilOther(events.then()));
     }
 
     /**
@@ -621,6 +656,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
 
         // 5. 执行更新
         appMapper.update(app);
+        publisher.publishEvent(new AppChangedEvent(this, appId));
     }
 
 
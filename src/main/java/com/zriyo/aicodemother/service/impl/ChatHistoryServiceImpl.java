@@ -7,6 +7,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.util.UpdateEntity;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.zriyo.aicodemother.core.context.ProjectContextCache;
+import com.zriyo.aicodemother.core.context.SkeletonSnapshotStore;
 import com.zriyo.aicodemother.core.pipeline.GenerationContext;
 import com.zriyo.aicodemother.exception.BusinessException;
 import com.zriyo.aicodemother.exception.ErrorCode;
@@ -50,6 +52,10 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
     private final ObjectMapper objectMapper;
 
+    private final ProjectContextCache projectContextCache;
+
+    private final SkeletonSnapshotStore skeletonSnapshotStore;
+
     @Override
     public Long addChatMessage(ChatMessage chatMessage, Long userId) {
         ChatHistory chatHistory = saveOneChatMessage(chatMessage, userId);
@@ -74,6 +80,10 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         if (!save) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR);
         }
+        if (messageTypeEnum == ChatHistoryMessageTypeEnum.SKELETON) {
+            projectContextCache.invalidateSkeleton(chatHistory.getAppId());
+            skeletonSnapshotStore.invalidate(chatHistory.getAppId());
+        }
         return chatHistory;
     }
 
@@ -205,22 +215,25 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
         // --- 1. 条件加载项目骨架（SKELETON） ---
         if (includeSkeleton) {
-            QueryWrapper eq = QueryWrapper.create()
-                    .eq(ChatHistory::getAppId, appid)
-                    .eq(ChatHistory::getMessageType, ChatHistoryMessageTypeEnum.SKELETON.getValue());
-            ChatHistory chatHistory = chatHistoryMapper.selectOneByQuery(eq);
-
-            if (Objects.nonNull(chatHistory) && StrUtil.isNotEmpty(chatHistory.getMessage())) {
+            ProjectContextCache.Skeleton skeleton = projectContextCache.getSkeleton(appid, id -> {
+                QueryWrapper eq = QueryWrapper.create()
+                        .eq(ChatHistory::getAppId, id)
+                        .eq(ChatHistory::getMessageType, ChatHistoryMessageTypeEnum.SKELETON.getValue());
+                ChatHistory chatHistory = chatHistoryMapper.selectOneByQuery(eq);
+                return chatHistory == null ? null : new ProjectContextCache.Skeleton(chatHistory.getId(), chatHistory.getMessage());
+            });
+
+            if (skeleton.isPresent()) {
                 String skeletonContext = "【当前项目文件快照 (Read-Only)】\n" +
                         "这是当前项目的骨架结构，请根据此结构生成文件，严禁虚构路径：\n" +
-                        chatHistory.getMessage();
+                        skeleton.message();
                 chatMemory.add(UserMessage.from(skeletonContext));
                 validCount++;
                 log.info("已注入项目骨架快照");
             }
         }
 
-        // --- 2. 加载依赖文件（逻辑保持不变） ---
+        // --- 2. 加载依赖文件（处理结果由快照缓存复用） ---
         StringBuilder contextBuilder = new StringBuilder();
         contextBuilder.append("[Reference Source Code Content]\n");
         boolean hasValidFile = false;
@@ -230,29 +243,15 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             if (StrUtil.isEmpty(relativePath)) continue;
             try {
                 Path fullPath = Paths.get(projectRoot, filePathProject, relativePath);
-                if (!Files.exists(fullPath)) {
+                ProjectContextCache.FileSnapshot snapshot = projectContextCache.getFile(fullPath);
+                if (snapshot == null) {
                     log.warn("参考文件不存在: {}", fullPath);
                     continue;
                 }
-
-                String content = Files.readString(fullPath);
                 fileIndex++;
 
-                String processedContent;
-                // 策略：前3个文件全量，后续文件脱水/截断
-                if (fileIndex <= 3) {
-                    processedContent = content;
-                } else {
-                    if (relativePath.endsWith(".vue")) {
-                        processedContent = pruneVueContent(content);
-                        log.info("对文件 [{}] 执行 Vue 脱水", relativePath);
-                    } else {
-                        processedContent = StrUtil.maxLength(content, 1000) + "\n... [Content truncated]";
-                    }
-                }
-
-                // 处理 Handlebars/Mustache 转义
-                processedContent = processedContent.replace("{{", "\\{\\{").replace("}}", "\\}\\}");
+                // 策略：前3个文件全量，后续文件脱水/截断（均已完成 Handlebars/Mustache 转义）
+                String processedContent = fileIndex <= 3 ? snapshot.full() : snapshot.reduced();
                 contextBuilder.append("\n--- File (Dependency Layer): ").append(relativePath).append(" ---\n")
                         .append(processedContent).append("\n");
 
@@ -271,21 +270,6 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         return validCount;
     }
 
-    private String pruneVueContent(String content) {
-        // 匹配 <script> ... </script> 或 <script setup> ... </script>
-        Pattern scriptPattern = Pattern.compile("<script.*?>[\\s\\S]*?</script>", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = scriptPattern.matcher(content);
-        StringBuilder sb = new StringBuilder();
-        while (matcher.find()) {
-            sb.append(matcher.group()).append("\n");
-        }
-        String result = sb.toString().trim();
-        if (result.isEmpty()) {
-            return "// [Vue Template/Style pruned, no script found]";
-        }
-        return result + "\n// [Vue Template/Style pruned for context efficiency]";
-    }
-
     private String extractRouteSummary(Path routerFilePath) {
         try {
             String content = Files.readString(routerFilePath);
@@ -327,25 +311,43 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
     @Override
     public ProjectSkeletonDTO getLastSkeletonByType(Long appId, Long userId, String value, GenerationContext context) {
-        ChatHistory chatHistory = chatHistoryMapper.selectOneByQuery(new QueryWrapper().eq(ChatHistory::getAppId, appId).eq(ChatHistory::getUserId, userId).eq(ChatHistory::getMessageType, value));
-        String message = chatHistory.getMessage();
-        ProjectSkeletonDTO skeleton = null;
+        SkeletonSnapshotStore.Snapshot snapshot;
         try {
-            skeleton = objectMapper.readValue(message, ProjectSkeletonDTO.class);
+            snapshot = skeletonSnapshotStore.load(appId, userId, () -> {
+                ChatHistory chatHistory = chatHistoryMapper.selectOneByQuery(new QueryWrapper().eq(ChatHistory::getAppId, appId).eq(ChatHistory::getUserId, userId).eq(ChatHistory::getMessageType, value));
+                return chatHistory == null ? null
+                        : new SkeletonSnapshotStore.Stored(chatHistory.getId(), chatHistory.getUserId(), 0, chatHistory.getMessage());
+            });
         } catch (JsonProcessingException e) {
             log.error("json序列化失败{}", e.getMessage());
             throw new BusinessException(ErrorCode.SYSTEM_ERROR);
         }
-        context.setSkeletonId(chatHistory.getId());
-        return skeleton;
+        if (snapshot == null) {
+            return null;
+        }
+        context.setSkeletonId(snapshot.skeletonId());
+        context.setSkeletonSnapshot(snapshot);
+        return snapshot.copySkeleton();
     }
 
     @Override
     public void updateSkeleton(ProjectSkeletonDTO skeleton, Long Id) {
         ChatHistory chatHistory = UpdateEntity.of(ChatHistory.class, Id);
         try {
-            chatHistory.setMessage(objectMapper.writeValueAsString(skeleton));
+            String json = objectMapper.writeValueAsString(skeleton);
+            chatHistory.setMessage(json);
             chatHistoryMapper.update(chatHistory);
+            projectContextCache.invalidateSkeletonById(Id);
+            // 写穿更新骨架快照，下次修改直接命中
+            SkeletonSnapshotStore.Snapshot cached = skeletonSnapshotStore.findBySkeletonId(Id);
+            if (cached != null) {
+                skeletonSnapshotStore.put(cached.appId(), cached.userId(), Id, skeleton, json);
+            } else {
+                ChatHistory owner = chatHistoryMapper.selectOneById(Id);
+                if (owner != null) {
+                    skeletonSnapshotStore.put(owner.getAppId(), owner.getUserId(), Id, skeleton, json);
+                }
+            }
         } catch (JsonProcessingException e) {
             log.error("json序列化失败{}", e.getMessage());
         }
@@ -356,6 +358,8 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     public void deleteSkeleton(Long appId, AiCodeGenStage aiCodeGenStage) {
         chatHistoryMapper.deleteByQuery(new QueryWrapper().eq(ChatHistory::getAppId, appId)
                 .eq(ChatHistory::getMessageType, aiCodeGenStage.getValue()));
+        projectContextCache.invalidateSkeleton(appId);
+        skeletonSnapshotStore.invalidate(appId);
     }
 
     public List<ChatHistory> builderChatHistory(List<ChatMessage> chatMessages, Long userId) {
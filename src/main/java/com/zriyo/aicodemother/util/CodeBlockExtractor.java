@@ -9,13 +9,28 @@ public class CodeBlockExtractor {
             "```([\\w\\-]*)\\s*([\\s\\S]*?)```"
     );
 
+    private static final String FENCE = "```";
+
+    /**
+     * 代码块前的文件标记，如 "[工具调用 ⚙️ ] 写入文件 src/App.vue"；有标记时占位符直接使用标记中的路径，不再按内容推断
+     */
+    private static final Pattern FILE_MARKER_PATTERN = Pattern.compile("写入文件\\s+([^\\s\\]]+)\\s*$");
+
     /**
      * 增量处理器，边写边替换代码块占位符
+     * <p>
+     * 流式状态机：只在新到达的字符上查找围栏（末尾保留两个字符处理跨 chunk 的 ```），
+     * 代码块闭合时才截取语言标记、代码与围栏前的文件标记，已输出的前缀随即丢弃，每个字符的摊还处理成本为 O(1)。
+     * 匹配语义与 {@link #CODE_BLOCK_PATTERN} 一致：未闭合的代码块及其之前的文本保留到后续 chunk 或 {@link #finish()}
      */
     public static class IncrementalProcessor {
         private final long appId;
         private final String codeGenType;
         private final StringBuilder buffer = new StringBuilder();  // 未处理 chunk 缓存
+        // 下一次查找围栏的起点（buffer 内偏移）
+        private int scanFrom;
+        // 当前未闭合代码块的起始围栏偏移，-1 表示处于代码块外
+        private int openAt = -1;
 
         public IncrementalProcessor(long appId, String codeGenType) {
             this.appId = appId;
@@ -28,30 +43,31 @@ public class CodeBlockExtractor {
         public String appendChunk(String chunk) {
             buffer.append(chunk);
 
-            String text = buffer.toString();
-            Matcher matcher = CODE_BLOCK_PATTERN.matcher(text);
             StringBuilder output = new StringBuilder();
-            int lastIndex = 0;
-
-            while (matcher.find()) {
-                output.append(text, lastIndex, matcher.start());
-
-                String language = matcher.group(1).trim();
-                String code = matcher.group(2).trim();
-
-                String sanitizedLang = sanitizeLanguage(language);
-                String filename = suggestFilename(sanitizedLang, code, codeGenType);
-                String fileKey = codeGenType + "_" + appId;
-
-                output.append("[/").append(fileKey).append("/").append(filename).append("]");
-
-                lastIndex = matcher.end();
+            int emitted = 0;
+            int fence;
+            while ((fence = buffer.indexOf(FENCE, scanFrom)) >= 0) {
+                if (openAt < 0) {
+                    openAt = fence;
+                } else {
+                    output.append(buffer, emitted, openAt);
+                    output.append(placeholder(openAt, fence));
+                    emitted = fence + FENCE.length();
+                    openAt = -1;
+                }
+                scanFrom = fence + FENCE.length();
+            }
+            // 末尾可能是半个围栏，下次从倒数两个字符处继续查找
+            scanFrom = Math.max(scanFrom, buffer.length() - (FENCE.length() - 1));
+
+            // 丢弃已输出的前缀；剩余部分都是本次 chunk 中闭合之后的内容，成本不超过 chunk 长度
+            if (emitted > 0) {
+                buffer.delete(0, emitted);
+                scanFrom -= emitted;
+                if (openAt >= 0) {
+                    openAt -= emitted;
+                }
             }
-
-            // 剩余未闭合部分保留在 buffer
-            buffer.setLength(0);
-            buffer.append(text.substring(lastIndex));
-
             return output.toString();
         }
 
@@ -61,12 +77,43 @@ public class CodeBlockExtractor {
         public String finish() {
             String remaining = buffer.toString();
             buffer.setLength(0);
+            scanFrom = 0;
+            openAt = -1;
 
             if (!remaining.isEmpty()) {
                 return replaceCodeBlocks(remaining, appId, codeGenType);
             }
             return "";
         }
+
+        private String placeholder(int open, int close) {
+            int cursor = open + FENCE.length();
+            int langEnd = cursor;
+            while (langEnd < close && isLanguageChar(buffer.charAt(langEnd))) {
+                langEnd++;
+            }
+            int codeStart = langEnd;
+            while (codeStart < close && isRegexWhitespace(buffer.charAt(codeStart))) {
+                codeStart++;
+            }
+            String language = buffer.substring(cursor, langEnd).trim();
+            String code = buffer.substring(codeStart, close).trim();
+
+            String marked = fileMarker(buffer, 0, open);
+            String filename = marked != null ? marked : suggestFilename(sanitizeLanguage(language), code, codeGenType);
+            String fileKey = codeGenType + "_" + appId;
+            return "[/" + fileKey + "/" + filename + "]";
+        }
+
+        private static boolean isLanguageChar(char c) {
+            // 与正则 [\w\-] 一致（非 Unicode 模式）
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+        }
+
+        private static boolean isRegexWhitespace(char c) {
+            // 与正则 \s 一致：[ \t\n\x0B\f\r]
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
     }
 
     /**
@@ -83,8 +130,8 @@ public class CodeBlockExtractor {
             String language = matcher.group(1).trim();
             String code = matcher.group(2).stripTrailing();
 
-            String sanitizedLang = sanitizeLanguage(language);
-            String filename = suggestFilename(sanitizedLang, code, codeGenType);
+            String marked = fileMarker(markdownText, lastIndex, matcher.start());
+            String filename = marked != null ? marked : suggestFilename(sanitizeLanguage(language), code, codeGenType);
 
             String fileKey = codeGenType + "_" + appId;
             replacedText.append("[/").append(fileKey).append("/").append(filename).append("]");
@@ -96,6 +143,31 @@ public class CodeBlockExtractor {
         return replacedText.toString();
     }
 
+    /**
+     * 读取围栏所在行（围栏前有文字时）或上一行（围栏位于行首时）的文件标记，
+     * 只在上一个代码块结束之后查找，增量处理与整段替换的结果一致
+     *
+     * @param floor 上一个代码块的结束偏移
+     * @param open  当前代码块起始围栏的偏移
+     * @return 标记中的文件路径，没有标记时为 null
+     */
+    private static String fileMarker(CharSequence text, int floor, int open) {
+        int lineEnd = open;
+        if (lineEnd == floor || text.charAt(lineEnd - 1) == '\n') {
+            // 围栏位于行首，标记在上一行
+            lineEnd--;
+        }
+        if (lineEnd <= floor) {
+            return null;
+        }
+        int lineStart = lineEnd;
+        while (lineStart > floor && text.charAt(lineStart - 1) != '\n') {
+            lineStart--;
+        }
+        Matcher matcher = FILE_MARKER_PATTERN.matcher(text.subSequence(lineStart, lineEnd));
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
     // ---------------- 语言与文件名逻辑 ----------------
     private static String sanitizeLanguage(String lang) {
         if (lang == null || lang.isEmpty()) return "text";
@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Stream;
 
@@ -45,8 +46,8 @@ public class CodeOutputManager {
     }
 
     /**
-     * 将整个目录复制到 code_deploy 下，并重命名为 targetName
-     * 注意：清空目标目录下的文件，但保留子目录（如版本目录）
+     * 将构建产物发布到 code_deploy/{targetName}
+     * 产物先写入内容寻址仓库（未变化的文件不会重复存储），再原子地把部署链接切换到新的版本树
      */
     public static Path copyHtmlDirToDeploy(String sourceName, String targetName, String path) {
         Path source = getSourceDirectory(sourceName);
@@ -63,23 +64,9 @@ public class CodeOutputManager {
         }
 
         try {
-            Files.createDirectories(deployParent);
-
-            if (Files.exists(target)) {
-                if (!Files.isDirectory(target)) {
-                    Files.delete(target);
-                    Files.createDirectories(target);
-                    log.warn("⚠️ 原目标为文件，已替换为目录: {}", target);
-                } else {
-                    log.info("🔄 清空部署目录内容（保留子目录）: {}", target);
-                    clearDirectoryFilesOnly(target);
-                }
-            } else {
-                Files.createDirectories(target);
-            }
-
-            copyDirectory(source, target);
-            log.info("✅ 部署成功: {} → {}", source, target);
+            String treeId = VersionStore.ingest(source, null);
+            VersionStore.publish(target, treeId);
+            log.info("✅ 部署成功: {} → {} ({})", source, target, treeId);
             return target;
 
         } catch (IOException e) {
@@ -191,11 +178,10 @@ public class CodeOutputManager {
     }
 
     /**
-     * 将当前部署实例目录的内容归档到独立的 code_version 目录下：
-     * 源: tmp/code_output/code_deploy/{deployInstanceName}
-     * 目标: tmp/code_output/code_version/{deployInstanceName}/{version}
+     * 将当前部署实例记录为一个历史版本：
+     * 部署链接当前指向的版本树即为该版本的内容，只需写入 refs/{deployInstanceName}/{version}，不复制任何文件
      * <p>
-     * 注意：跳过源目录中已有的版本子目录（如 v1.0.0），防止嵌套归档。
+     * 旧版部署实例是真实目录时，先导入仓库（跳过其中的版本子目录，如 v1.0.0）并迁移为版本链接
      */
     public static Path archiveAppVersion(String deployInstanceName, String version) {
         validateDirName(deployInstanceName, "部署实例名");
@@ -204,9 +190,6 @@ public class CodeOutputManager {
         Path deployBase = getCodeOutputBaseDir().resolve(DEPLOY_SUBDIR);
         Path source = deployBase.resolve(deployInstanceName);
 
-        Path archiveBase = getCodeOutputBaseDir().resolve(ARCHIVE_SUBDIR);
-        Path target = archiveBase.resolve(deployInstanceName).resolve(version);
-
         if (!Files.exists(source)) {
             log.error("❌ 部署实例目录不存在，无法归档: {}", source.toAbsolutePath());
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "部署实例目录不存在: " + source);
@@ -217,37 +200,21 @@ public class CodeOutputManager {
         }
 
         try {
-            Files.createDirectories(target.getParent());
-
-            if (Files.exists(target)) {
-                clearDirectory(target);
+            Optional<String> current = VersionStore.current(source);
+            String treeId;
+            if (current.isPresent()) {
+                treeId = current.get();
             } else {
-                Files.createDirectories(target);
-            }
-
-            try (Stream<Path> stream = Files.list(source)) {
-                stream.forEach(p -> {
+                treeId = VersionStore.ingest(source, p -> {
                     String fileName = p.getFileName().toString();
-                    if (fileName.startsWith("v") && fileName.matches("v\\d+\\.\\d+\\.\\d+(?:[-_.].*)?")) {
-                        log.debug("⏭️ 跳过版本目录，不归档: {}", fileName);
-                        return;
-                    }
-
-                    try {
-                        Path targetPath = target.resolve(p.getFileName());
-                        if (Files.isDirectory(p)) {
-                            copyDirectory(p, targetPath);
-                        } else {
-                            Files.copy(p, targetPath, StandardCopyOption.REPLACE_EXISTING);
-                        }
-                    } catch (IOException e) {
-                        throw new RuntimeException("复制失败: " + p, e);
-                    }
+                    return fileName.startsWith("v") && fileName.matches("v\\d+\\.\\d+\\.\\d+(?:[-_.].*)?");
                 });
+                VersionStore.publish(source, treeId);
             }
+            VersionStore.tag(deployInstanceName, version, treeId);
 
-            log.info("✅ 部署实例归档成功: {} → {}", source, target);
-            return target;
+            log.info("✅ 部署实例归档成功: {} → {} ({})", source, version, treeId);
+            return VersionStore.treePath(treeId);
 
         } catch (IOException e) {
             log.error("❌ 归档部署实例失败: {}", e.getMessage(), e);
@@ -256,98 +223,90 @@ public class CodeOutputManager {
     }
 
     /**
-     * 删除指定应用的某个历史版本（从 code_version 中删除）
+     * 删除指定应用的某个历史版本，并回收不再被引用的版本树与文件
+     * 同时兼容删除旧版 code_version 下的归档目录
      */
     public static void deleteAppHistoryVersion(String appName, String version) {
         validateDirName(appName, "应用名");
         validateDirName(version, "版本号");
 
-        Path archiveBase = getCodeOutputBaseDir().resolve(ARCHIVE_SUBDIR);
-        Path target = archiveBase.resolve(appName).resolve(version);
-
-        if (!Files.exists(target)) {
-            log.warn("⚠️ 历史版本目录不存在，无需删除: {}", target);
-            return;
-        }
+        Path legacy = getCodeOutputBaseDir().resolve(ARCHIVE_SUBDIR).resolve(appName).resolve(version);
 
         try {
-            deleteRecursively(target);
-            Path appDir = target.getParent();
-            try (Stream<Path> files = Files.list(appDir)) {
-                if (!files.findAny().isPresent()) {
-                    Files.delete(appDir);
-                    log.info("🧹 应用目录已空，一并删除: {}", appDir);
+            boolean existed = VersionStore.untag(appName, version);
+            if (Files.exists(legacy)) {
+                deleteRecursively(legacy);
+                Path appDir = legacy.getParent();
+                try (Stream<Path> files = Files.list(appDir)) {
+                    if (!files.findAny().isPresent()) {
+                        Files.delete(appDir);
+                        log.info("🧹 应用目录已空，一并删除: {}", appDir);
+                    }
                 }
+                existed = true;
+            }
+            if (!existed) {
+                log.warn("⚠️ 历史版本不存在，无需删除: {}/{}", appName, version);
+                return;
             }
-            log.info("✅ 应用历史版本删除成功: {}", target);
+            VersionStore.gc();
+            log.info("✅ 应用历史版本删除成功: {}/{}", appName, version);
         } catch (IOException e) {
-            log.error("❌ 删除应用历史版本失败: {}", target, e);
+            log.error("❌ 删除应用历史版本失败: {}/{}", appName, version, e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "删除失败: " + e.getMessage());
         }
     }
 
     /**
-     * 从历史归档（code_version）部署指定版本到 code_deploy/{appName} 目录
-     * （用于恢复、克隆或初始化一个应用实例）
+     * 删除应用的部署实例：移除部署链接 code_deploy/{deployInstanceName}、全部版本引用与旧版归档目录，
+     * 并回收不再被引用的版本树与文件
      */
-    public static void deployFromHistory(String appName, String version) {
-        validateDirName(appName, "应用名");
-        validateDirName(version, "版本号");
-
-        Path historyBase = getCodeOutputBaseDir().resolve(ARCHIVE_SUBDIR);
-        Path source = historyBase.resolve(appName).resolve(version);
-        Path deployParent = getDeployDirectory(null);
-        Path target = deployParent.resolve(appName); // ← 直接用 appName 作为目标目录
+    public static void deleteAppDeployment(String deployInstanceName) {
+        validateDirName(deployInstanceName, "部署实例名");
 
-        if (!Files.exists(source)) {
-            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "历史版本不存在: " + source);
-        }
+        Path link = getDeployDirectory(null).resolve(deployInstanceName);
+        Path legacy = getCodeOutputBaseDir().resolve(ARCHIVE_SUBDIR).resolve(deployInstanceName);
 
         try {
-            Files.createDirectories(deployParent);
-            if (Files.exists(target)) {
-                clearDirectory(target);
-            } else {
-                Files.createDirectories(target);
+            if (Files.isSymbolicLink(link)) {
+                // 只删除链接本身，不能跟随到共享的版本树
+                Files.delete(link);
+            } else if (Files.exists(link)) {
+                deleteRecursively(link);
+            }
+            int versions = VersionStore.untagAll(deployInstanceName);
+            if (Files.exists(legacy)) {
+                deleteRecursively(legacy);
             }
-            copyDirectory(source, target);
-            log.info("✅ 从历史版本部署成功: {} → {}", source, target);
+            VersionStore.gc();
+            log.info("✅ 应用部署已删除: {}，版本数: {}", deployInstanceName, versions);
         } catch (IOException e) {
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "部署失败: " + e.getMessage());
+            log.error("❌ 删除应用部署失败: {}", deployInstanceName, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "删除失败: " + e.getMessage());
         }
     }
 
     /**
-     * 将指定部署实例的某个历史版本（来自 code_version），部署（覆盖）到其当前运行目录（code_deploy/{instanceName}）
+     * 将历史版本部署到 code_deploy/{appName}（用于回滚、恢复或初始化一个应用实例）
+     * 只切换部署链接，耗时与项目大小无关
+     */
+    public static void deployFromHistory(String appName, String version) {
+        deployVersionToInstance(appName, version);
+    }
+
+    /**
+     * 将指定部署实例的某个历史版本原子地切换为其当前运行版本（code_deploy/{instanceName}）
      */
     public static void deployVersionToInstance(String instanceName, String version) {
         validateDirName(instanceName, "部署实例名");
         validateDirName(version, "版本号");
 
-        Path archiveBase = getCodeOutputBaseDir().resolve(ARCHIVE_SUBDIR);
-        Path source = archiveBase.resolve(instanceName).resolve(version);
         Path target = getCodeOutputBaseDir().resolve(DEPLOY_SUBDIR).resolve(instanceName);
 
-        if (!Files.exists(source)) {
-            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "历史版本不存在: " + source);
-        }
-        if (!Files.isDirectory(source)) {
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "历史版本路径无效: " + source);
-        }
-
         try {
-            if (!Files.exists(target)) {
-                Files.createDirectories(target);
-            } else if (!Files.isDirectory(target)) {
-                Files.delete(target);
-                Files.createDirectories(target);
-            }
-
-            log.info("🔄 正在将版本 {} 部署到实例 {}: 清空当前内容...", version, instanceName);
-            clearDirectory(target);
-
-            copyDirectory(source, target);
-            log.info("✅ 版本 {} 已成功部署到实例 {}", version, instanceName);
+            String treeId = resolveVersion(instanceName, version);
+            VersionStore.publish(target, treeId);
+            log.info("✅ 版本 {} 已成功部署到实例 {} ({})", version, instanceName, treeId);
 
         } catch (IOException e) {
             log.error("❌ 部署版本 {} 到实例 {} 失败: {}", version, instanceName, e.getMessage(), e);
@@ -355,6 +314,25 @@ public class CodeOutputManager {
         }
     }
 
+    /**
+     * 查找版本对应的树；仓库中没有、但存在旧版 code_version 归档目录时，一次性导入并登记
+     */
+    private static String resolveVersion(String instanceName, String version) throws IOException {
+        Optional<String> treeId = VersionStore.resolve(instanceName, version);
+        if (treeId.isPresent()) {
+            return treeId.get();
+        }
+        Path legacy = getCodeOutputBaseDir().resolve(ARCHIVE_SUBDIR).resolve(instanceName).resolve(version);
+        if (!Files.isDirectory(legacy)) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "历史版本不存在: " + instanceName + "/" + version);
+        }
+        String imported = VersionStore.ingest(legacy, null);
+        VersionStore.tag(instanceName, version, imported);
+        deleteRecursively(legacy);
+        log.info("🔀 旧版归档已导入版本仓库: {} → {}", legacy, imported);
+        return imported;
+    }
+
     // ===== 工具方法：校验目录名安全性 =====
     private static void validateDirName(String name, String fieldName) {
         if (StringUtil.isBlank(name)) {
@@ -1,9 +1,8 @@
 package com.zriyo.aicodemother.util;
 
-import com.microsoft.playwright.Browser;
-import com.microsoft.playwright.BrowserType;
 import com.microsoft.playwright.Page;
-import com.microsoft.playwright.Playwright;
+import com.zriyo.aicodemother.core.browser.BrowserPool;
+import com.zriyo.aicodemother.core.build.ViteBuildWorkerPool;
 import com.zriyo.aicodemother.model.AppConstant;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +16,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
@@ -30,13 +30,15 @@ public class ProjectDoctor {
     private static final String BUILD_OUTPUT_DIR = AppConstant.BUILD_OUTPUT_DIR;
     public static final String TMP_CODE_OUTPUT = AppConstant.TMP_DIR + "/" + AppConstant.APP_GEN_FILE_PATH + "/";
 
-    // Playwright 实例（单例）
-    private static final Playwright playwright;
-    private static final Browser browser;
+    /**
+     * 浏览器统一从池中借用，不再持有无并发控制的静态单例
+     */
+    private static BrowserPool browserPool() {
+        return SpringUtils.getBean(BrowserPool.class);
+    }
 
-    static {
-        playwright = Playwright.create();
-        browser = playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(true));
+    private static ViteBuildWorkerPool buildWorkerPool() {
+        return SpringUtils.getBean(ViteBuildWorkerPool.class);
     }
 
     /**
@@ -82,31 +84,68 @@ public class ProjectDoctor {
             return DiagnosisResult.fail("ENV_ERROR", "依赖挂载失败: " + e.getMessage(), "package.json", 0);
         }
 
+        // 优先使用常驻构建进程（增量编译 + 结构化诊断），不可用时回退为完整的 npm run build
+        Optional<ViteBuildWorkerPool.BuildResult> workerResult = buildWorkerPool().build(projectPath);
+        if (workerResult.isPresent()) {
+            return toDiagnosisResult(workerResult.get(), projectPath);
+        }
+
         String buildOutput = runCommand(projectPath, "npm", "run", "build");
 
         // 检查构建是否包含错误关键词
         if (buildOutput != null && (buildOutput.contains("Error:") || buildOutput.contains("failed") || buildOutput.contains("Build failed") || buildOutput.contains("error during build"))) {
-            String suspectedFile = extractFilePathFromLog(buildOutput);
-            String lowerOutput = buildOutput.toLowerCase();
-
-            // 🔥 增强逻辑：针对 Tailwind/PostCSS 的各种怪异报错，强制指向 global.css
-            // 如果提取出的文件是 unknown，或者是 index.html (通常是代理样式报错)，且包含样式关键词
-            boolean isStyleError = lowerOutput.contains("@apply") ||
-                    lowerOutput.contains("@tailwind") ||
-                    lowerOutput.contains("postcss") ||
-                    lowerOutput.contains("circular dependency");
-
-            if (isStyleError && ("unknown".equals(suspectedFile) || suspectedFile.endsWith("index.html"))) {
-                suspectedFile = "src/styles/global.css";
-                log.info("检测到样式构建错误，已强制修正目标文件为: {}", suspectedFile);
-            }
-
+            String suspectedFile = correctStyleErrorTarget(buildOutput, extractFilePathFromLog(buildOutput));
             log.warn("构建失败 - 提取文件: '{}' | 项目路径: {}", suspectedFile, projectPath);
             return DiagnosisResult.fail("BUILD_ERROR", buildOutput, suspectedFile, 0);
         }
         return DiagnosisResult.pass();
     }
 
+    private static DiagnosisResult toDiagnosisResult(ViteBuildWorkerPool.BuildResult result, String projectPath) {
+        if (result.ok() || result.diagnostics().isEmpty()) {
+            return result.ok() ? DiagnosisResult.pass()
+                    : DiagnosisResult.fail("BUILD_ERROR", "构建失败（未返回诊断信息）", "unknown", 0);
+        }
+        ViteBuildWorkerPool.Diagnostic first = result.diagnostics().get(0);
+        StringBuilder message = new StringBuilder();
+        if (first.file() != null) {
+            message.append(first.file()).append(':').append(first.line()).append(':').append(first.column()).append(' ');
+        }
+        if (first.plugin() != null) {
+            message.append('[').append(first.plugin()).append("] ");
+        }
+        message.append(first.message());
+        if (first.frame() != null) {
+            message.append('\n').append(first.frame());
+        }
+
+        String file = first.file();
+        if (file == null || file.isBlank() || file.startsWith("..") || file.contains("node_modules")) {
+            file = extractFilePathFromLog(first.message());
+        }
+        String suspectedFile = correctStyleErrorTarget(message.toString(), file);
+        log.warn("构建失败 - 诊断文件: '{}' 行: {} | 项目路径: {}", suspectedFile, first.line(), projectPath);
+        return DiagnosisResult.fail("BUILD_ERROR", message.toString(), suspectedFile, first.line());
+    }
+
+    /**
+     * 🔥 针对 Tailwind/PostCSS 的各种怪异报错，强制指向 global.css
+     * 如果提取出的文件是 unknown，或者是 index.html (通常是代理样式报错)，且包含样式关键词
+     */
+    private static String correctStyleErrorTarget(String buildOutput, String suspectedFile) {
+        String lowerOutput = buildOutput.toLowerCase();
+        boolean isStyleError = lowerOutput.contains("@apply") ||
+                lowerOutput.contains("@tailwind") ||
+                lowerOutput.contains("postcss") ||
+                lowerOutput.contains("circular dependency");
+
+        if (isStyleError && ("unknown".equals(suspectedFile) || suspectedFile.endsWith("index.html"))) {
+            log.info("检测到样式构建错误，已强制修正目标文件为: {}", "src/styles/global.css");
+            return "src/styles/global.css";
+        }
+        return suspectedFile;
+    }
+
     /**
      * 运行时诊断（分级处理）
      */
@@ -115,75 +154,78 @@ public class ProjectDoctor {
             return DiagnosisResult.fail("SYSTEM_ERROR", "无效的项目路径: " + projectPath, null, 0);
         }
 
-        try (Page page = browser.newPage()) {
-            List<DiagnosisResult> warnings = new ArrayList<>();
-            List<DiagnosisResult> errors = new ArrayList<>();
-
-            page.onConsoleMessage(msg -> {
-                String text = msg.text();
-                if (text.contains("favicon")) return;
-
-                // 忽略不可修复的网络/安全错误
-                if (text.contains("Failed to load resource")
-                        || text.contains("net::ERR_")
-                        || text.contains("CORS")
-                        || text.contains("tunnel connection failed")
-                        || text.contains("Fetch API cannot load")
-                        || text.contains("Blocked by Content Security Policy")
-                        || text.contains("ERR_CONNECTION_")
-                        || text.contains("ERR_CERT_")
-                        || text.contains("NS_ERROR_")) {
-                    log.debug("跳过不可修复的网络/安全错误: {}", text);
-                    return;
-                }
-
-                if ("error".equals(msg.type())) {
-                    LocationInfo loc = parseLocationString(msg.location());
-                    DiagnosisResult result = DiagnosisResult.fail("RUNTIME_ERROR", "❌ [Console] " + text, loc.filePath, loc.lineNumber);
-
-                    if (text.contains("is not defined") || text.contains("Cannot read properties")) {
-                        errors.add(result);
-                    } else {
-                        warnings.add(result);
-                    }
-                }
-            });
-
-            page.onPageError(e -> {
-                errors.add(DiagnosisResult.fail("PAGE_CRASH", "💥 " + e, "unknown", 0));
-            });
+        try {
+            return browserPool().withPage(page -> diagnosePage(page, projectPath, pageUrl));
+        } catch (Exception e) {
+            log.error("运行时诊断器异常", e);
+            return DiagnosisResult.fail("SYSTEM_ERROR", "诊断器内部异常: " + e.getMessage(), null, 0);
+        }
+    }
 
-            try {
-                log.info("诊断页面: {} | 项目路径: {}", pageUrl, projectPath);
-                page.navigate(pageUrl);
-                page.waitForLoadState(com.microsoft.playwright.options.LoadState.NETWORKIDLE,
-                        new Page.WaitForLoadStateOptions().setTimeout(AppConstant.PAGE_LOAD_TIMEOUT_MS));
-                Thread.sleep(AppConstant.POST_LOAD_SLEEP_MS);
-            } catch (Exception e) {
-                log.warn("页面加载异常（可能已捕获 JS 错误）", e);
+    private static DiagnosisResult diagnosePage(Page page, String projectPath, String pageUrl) {
+        List<DiagnosisResult> warnings = new ArrayList<>();
+        List<DiagnosisResult> errors = new ArrayList<>();
+
+        page.onConsoleMessage(msg -> {
+            String text = msg.text();
+            if (text.contains("favicon")) return;
+
+            // 忽略不可修复的网络/安全错误
+            if (text.contains("Failed to load resource")
+                    || text.contains("net::ERR_")
+                    || text.contains("CORS")
+                    || text.contains("tunnel connection failed")
+                    || text.contains("Fetch API cannot load")
+                    || text.contains("Blocked by Content Security Policy")
+                    || text.contains("ERR_CONNECTION_")
+                    || text.contains("ERR_CERT_")
+                    || text.contains("NS_ERROR_")) {
+                log.debug("跳过不可修复的网络/安全错误: {}", text);
+                return;
             }
 
-            if (!errors.isEmpty()) {
-                DiagnosisResult first = errors.get(0);
-                String enhancedFile = locateSourceFileByContext(projectPath, first.errorFilePath, first.message, null);
-                if (!"unknown".equals(enhancedFile)) {
-                    first.errorFilePath = enhancedFile;
-                    first.lineNumber = 0;
-                    first.message += "\n   👉 [AI定位] 源文件: " + enhancedFile;
-                }
-                return first;
-            }
+            if ("error".equals(msg.type())) {
+                LocationInfo loc = parseLocationString(msg.location());
+                DiagnosisResult result = DiagnosisResult.fail("RUNTIME_ERROR", "❌ [Console] " + text, loc.filePath, loc.lineNumber);
 
-            if (!warnings.isEmpty()) {
-                warnings.forEach(w -> log.warn("运行时警告: {}", w.message));
+                if (text.contains("is not defined") || text.contains("Cannot read properties")) {
+                    errors.add(result);
+                } else {
+                    warnings.add(result);
+                }
             }
+        });
 
-            return DiagnosisResult.pass();
+        page.onPageError(e -> {
+            errors.add(DiagnosisResult.fail("PAGE_CRASH", "💥 " + e, "unknown", 0));
+        });
 
+        try {
+            log.info("诊断页面: {} | 项目路径: {}", pageUrl, projectPath);
+            page.navigate(pageUrl);
+            page.waitForLoadState(com.microsoft.playwright.options.LoadState.NETWORKIDLE,
+                    new Page.WaitForLoadStateOptions().setTimeout(AppConstant.PAGE_LOAD_TIMEOUT_MS));
+            Thread.sleep(AppConstant.POST_LOAD_SLEEP_MS);
         } catch (Exception e) {
-            log.error("运行时诊断器异常", e);
-            return DiagnosisResult.fail("SYSTEM_ERROR", "诊断器内部异常: " + e.getMessage(), null, 0);
+            log.warn("页面加载异常（可能已捕获 JS 错误）", e);
         }
+
+        if (!errors.isEmpty()) {
+            DiagnosisResult first = errors.get(0);
+            String enhancedFile = locateSourceFileByContext(projectPath, first.errorFilePath, first.message, null);
+            if (!"unknown".equals(enhancedFile)) {
+                first.errorFilePath = enhancedFile;
+                first.lineNumber = 0;
+                first.message += "\n   👉 [AI定位] 源文件: " + enhancedFile;
+            }
+            return first;
+        }
+
+        if (!warnings.isEmpty()) {
+            warnings.forEach(w -> log.warn("运行时警告: {}", w.message));
+        }
+
+        return DiagnosisResult.pass();
     }
 
     // ==================== 核心工具方法 ====================
@@ -0,0 +1,350 @@
+package com.zriyo.aicodemother.util;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 内容寻址的部署版本仓库：tmp/code_output/code_store
+ * <pre>
+ * blobs/{hash 前两位}/{sha256}     文件内容，按哈希去重，只读
+ * manifests/{treeId}               清单：每行 "sha256 \t 相对路径"，treeId 为清单内容的 sha256
+ * trees/{treeId}/...               由硬链接物化出的完整目录，内容相同的部署共享同一棵树
+ * refs/{instance}/{version}        版本号 → treeId
+ * roots                            发布过部署链接的父目录（默认 code_deploy 及自定义部署路径），每行一个
+ * </pre>
+ * 部署目录 code_deploy/{instance} 是指向 trees/{treeId} 的符号链接，部署与回滚只是原子地切换链接；
+ * 不再被任何版本或部署引用的树与文件由 {@link #gc()} 回收
+ */
+@Slf4j
+public class VersionStore {
+
+    private static final String STORE_SUBDIR = "code_store";
+    private static final String ROOTS_FILE = "roots";
+
+    /**
+     * 刚写入的树 / 文件在宽限期内不会被回收，避免与进行中的部署竞争
+     */
+    private static final Duration GC_GRACE = Duration.ofMinutes(30);
+
+    private static final Object LOCK = new Object();
+
+    public static Path getStoreDir() {
+        return CodeOutputManager.getCodeOutputBaseDir().resolve(STORE_SUBDIR);
+    }
+
+    /**
+     * 将目录内容写入仓库并物化为树，返回 treeId；内容完全相同的目录得到相同的 treeId
+     *
+     * @param skip 需要跳过的顶层子项（如旧版部署目录中的版本子目录）
+     */
+    public static String ingest(Path sourceDir, Predicate<Path> skip) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(sourceDir)) {
+            files = stream.filter(Files::isRegularFile)
+                    .filter(p -> skip == null || !skip.test(sourceDir.relativize(p).getName(0)))
+                    .toList();
+        }
+
+        synchronized (LOCK) {
+            TreeMap<String, String> entries = new TreeMap<>();
+            for (Path file : files) {
+                String relative = sourceDir.relativize(file).toString().replace('\\', '/');
+                entries.put(relative, storeBlob(file));
+            }
+            StringBuilder manifest = new StringBuilder();
+            entries.forEach((relative, hash) -> manifest.append(hash).append('\t').append(relative).append('\n'));
+            byte[] manifestBytes = manifest.toString().getBytes(StandardCharsets.UTF_8);
+            String treeId = DigestUtil.sha256Hex(manifestBytes);
+
+            Path tree = treePath(treeId);
+            if (Files.isDirectory(tree)) {
+                touch(tree);
+                return treeId;
+            }
+
+            Path staging = getStoreDir().resolve("trees").resolve(".staging-" + UUID.randomUUID());
+            try {
+                Files.createDirectories(staging);
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    Path target = staging.resolve(entry.getKey());
+                    Files.createDirectories(target.getParent());
+                    linkOrCopy(blobPath(entry.getValue()), target);
+                }
+                Path manifestFile = getStoreDir().resolve("manifests").resolve(treeId);
+                Files.createDirectories(manifestFile.getParent());
+                Files.write(manifestFile, manifestBytes);
+                Files.move(staging, tree, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                if (Files.exists(staging)) {
+                    CodeOutputManager.deleteRecursively(staging);
+                }
+            }
+            log.info("📦 已写入版本树 {}，文件数: {}", treeId, entries.size());
+            return treeId;
+        }
+    }
+
+    /**
+     * 原子地将 linkPath 指向指定的树；linkPath 若是旧版的真实目录，会先被删除（仅首次迁移时发生）
+     */
+    public static void publish(Path linkPath, String treeId) throws IOException {
+        Path tree = treePath(treeId);
+        if (!Files.isDirectory(tree)) {
+            throw new NoSuchFileException(tree.toString());
+        }
+        Path parent = linkPath.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        registerRoot(parent);
+        Path temp = parent.resolve("." + linkPath.getFileName() + ".link-" + UUID.randomUUID());
+        Files.createSymbolicLink(temp, parent.relativize(tree.toAbsolutePath()));
+        try {
+            if (Files.exists(linkPath, LinkOption.NOFOLLOW_LINKS) && !Files.isSymbolicLink(linkPath)) {
+                CodeOutputManager.deleteRecursively(linkPath);
+                log.info("🔀 旧版部署目录已迁移为版本链接: {}", linkPath);
+            }
+            // rename(2) 覆盖已有的符号链接是原子的，nginx 不会读到半新半旧的目录
+            Files.move(temp, linkPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 读取部署链接当前指向的 treeId；不是版本链接时返回 empty
+     */
+    public static Optional<String> current(Path linkPath) {
+        if (!Files.isSymbolicLink(linkPath)) {
+            return Optional.empty();
+        }
+        try {
+            Path target = Files.readSymbolicLink(linkPath);
+            String treeId = target.getFileName().toString();
+            return Files.isDirectory(treePath(treeId)) ? Optional.of(treeId) : Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public static void tag(String instance, String version, String treeId) throws IOException {
+        Path ref = refPath(instance, version);
+        Files.createDirectories(ref.getParent());
+        Path temp = ref.resolveSibling("." + version + ".tmp-" + UUID.randomUUID());
+        Files.writeString(temp, treeId);
+        Files.move(temp, ref, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static Optional<String> resolve(String instance, String version) throws IOException {
+        Path ref = refPath(instance, version);
+        if (!Files.isRegularFile(ref)) {
+            return Optional.empty();
+        }
+        String treeId = Files.readString(ref).trim();
+        return Files.isDirectory(treePath(treeId)) ? Optional.of(treeId) : Optional.empty();
+    }
+
+    /**
+     * 删除版本引用，返回引用是否存在
+     */
+    public static boolean untag(String instance, String version) throws IOException {
+        Path ref = refPath(instance, version);
+        boolean existed = Files.deleteIfExists(ref);
+        Path instanceDir = ref.getParent();
+        if (Files.isDirectory(instanceDir)) {
+            try (Stream<Path> rest = Files.list(instanceDir)) {
+                if (rest.findAny().isEmpty()) {
+                    Files.deleteIfExists(instanceDir);
+                }
+            }
+        }
+        return existed;
+    }
+
+    /**
+     * 删除部署实例的全部版本引用，返回删除的版本数
+     */
+    public static int untagAll(String instance) throws IOException {
+        Path instanceDir = getStoreDir().resolve("refs").resolve(instance);
+        if (!Files.isDirectory(instanceDir)) {
+            return 0;
+        }
+        int count;
+        try (Stream<Path> stream = Files.list(instanceDir)) {
+            count = (int) stream.filter(Files::isRegularFile).count();
+        }
+        CodeOutputManager.deleteRecursively(instanceDir);
+        return count;
+    }
+
+    /**
+     * 回收不再被版本引用或部署链接引用的树、清单与文件；
+     * 默认部署目录与所有登记过的部署父目录下指向仓库的符号链接都视为存活引用
+     */
+    public static void gc() throws IOException {
+        synchronized (LOCK) {
+            Set<String> live = new HashSet<>();
+            Path refs = getStoreDir().resolve("refs");
+            if (Files.isDirectory(refs)) {
+                try (Stream<Path> stream = Files.walk(refs)) {
+                    for (Path ref : stream.filter(Files::isRegularFile).toList()) {
+                        live.add(Files.readString(ref).trim());
+                    }
+                }
+            }
+            Set<Path> roots = new LinkedHashSet<>(readRoots());
+            roots.add(CodeOutputManager.getDeployDirectory(null).toAbsolutePath().normalize());
+            for (Path root : roots) {
+                if (Files.isDirectory(root)) {
+                    try (Stream<Path> stream = Files.list(root)) {
+                        stream.forEach(link -> current(link).ifPresent(live::add));
+                    }
+                }
+            }
+
+            Instant cutoff = Instant.now().minus(GC_GRACE);
+            int removedTrees = 0;
+            Path trees = getStoreDir().resolve("trees");
+            if (Files.isDirectory(trees)) {
+                try (Stream<Path> stream = Files.list(trees)) {
+                    for (Path tree : stream.toList()) {
+                        String treeId = tree.getFileName().toString();
+                        if (live.contains(treeId) || isRecent(tree, cutoff)) {
+                            continue;
+                        }
+                        CodeOutputManager.deleteRecursively(tree);
+                        Files.deleteIfExists(getStoreDir().resolve("manifests").resolve(treeId));
+                        removedTrees++;
+                    }
+                }
+            }
+
+            Set<String> liveBlobs = new HashSet<>();
+            Path manifests = getStoreDir().resolve("manifests");
+            if (Files.isDirectory(manifests)) {
+                try (Stream<Path> stream = Files.list(manifests)) {
+                    for (Path manifest : stream.toList()) {
+                        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                            int tab = line.indexOf('\t');
+                            if (tab > 0) {
+                                liveBlobs.add(line.substring(0, tab));
+                            }
+                        }
+                    }
+                }
+            }
+            int removedBlobs = 0;
+            Path blobs = getStoreDir().resolve("blobs");
+            if (Files.isDirectory(blobs)) {
+                try (Stream<Path> stream = Files.walk(blobs)) {
+                    for (Path blob : stream.filter(Files::isRegularFile).toList()) {
+                        if (liveBlobs.contains(blob.getFileName().toString()) || isRecent(blob, cutoff)) {
+                            continue;
+                        }
+                        Files.deleteIfExists(blob);
+                        removedBlobs++;
+                    }
+                }
+            }
+            if (removedTrees > 0 || removedBlobs > 0) {
+                log.info("🧹 版本仓库回收完成，删除树: {}，删除文件: {}", removedTrees, removedBlobs);
+            }
+        }
+    }
+
+    public static Path treePath(String treeId) {
+        return getStoreDir().resolve("trees").resolve(treeId);
+    }
+
+    /**
+     * 登记部署父目录，gc 时扫描其中的部署链接
+     */
+    private static void registerRoot(Path parent) throws IOException {
+        Path root = parent.normalize();
+        synchronized (LOCK) {
+            Set<Path> roots = readRoots();
+            if (roots.contains(root)) {
+                return;
+            }
+            roots.add(root);
+            Path file = getStoreDir().resolve(ROOTS_FILE);
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling("." + ROOTS_FILE + ".tmp-" + UUID.randomUUID());
+            Files.write(temp, roots.stream().map(Path::toString).toList(), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Set<Path> readRoots() throws IOException {
+        Set<Path> roots = new LinkedHashSet<>();
+        Path file = getStoreDir().resolve(ROOTS_FILE);
+        if (Files.isRegularFile(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    roots.add(Paths.get(line.trim()));
+                }
+            }
+        }
+        return roots;
+    }
+
+    private static Path refPath(String instance, String version) {
+        return getStoreDir().resolve("refs").resolve(instance).resolve(version);
+    }
+
+    private static Path blobPath(String hash) {
+        return getStoreDir().resolve("blobs").resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String storeBlob(Path file) throws IOException {
+        String hash = DigestUtil.sha256Hex(file.toFile());
+        Path blob = blobPath(hash);
+        if (Files.exists(blob)) {
+            touch(blob);
+            return hash;
+        }
+        Files.createDirectories(blob.getParent());
+        Path temp = blob.resolveSibling(hash + ".tmp-" + UUID.randomUUID());
+        Files.copy(file, temp);
+        // 文件被多棵树以硬链接共享，设为只读防止原地修改污染其他版本
+        temp.toFile().setReadOnly();
+        try {
+            Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(temp);
+        }
+        return hash;
+    }
+
+    private static void linkOrCopy(Path blob, Path target) throws IOException {
+        try {
+            Files.createLink(target, blob);
+        } catch (UnsupportedOperationException | IOException e) {
+            // 文件系统不支持硬链接（或跨设备）时退化为复制
+            Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static boolean isRecent(Path path, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant().isAfter(cutoff);
+        } catch (IOException e) {
+            return true;
+        }
+    }
+}
@@ -56,21 +56,7 @@ public class VueTemplateSanitizer {
         try {
             String content = Files.readString(targetPath, StandardCharsets.UTF_8);
             String originalContent = content;
-
-            // Step 1: 移除所有孤立的 </tag>（无论是否跨行）
-            for (String tag : VOID_TAGS) {
-                // (?i) = 忽略大小写；\s* = 允许空格；全局替换
-                content = content.replaceAll("(?i)</" + Pattern.quote(tag) + "\\s*>", "");
-            }
-
-            // Step 2: 将未自闭合的 <tag ...> 转为 <tag ... />
-            // 注意：只处理那些不是以 /> 结尾的标签
-            for (String tag : VOID_TAGS) {
-                // 匹配：<tag ...> 但后面不是 />
-                // 使用负向先行断言确保不匹配已自闭合的
-                String regex = "(?i)<(" + Pattern.quote(tag) + ")([^>]*)>(?!\\s*/>)";
-                content = content.replaceAll(regex, "<$1$2 />");
-            }
+            content = sanitize(content);
 
             if (!content.equals(originalContent)) {
                 // 安全写回：先写临时文件，再原子替换
@@ -102,4 +88,25 @@ public class VueTemplateSanitizer {
             return false;
         }
     }
+
+    /**
+     * 对 SFC 内容执行修复，不涉及文件读写
+     */
+    static String sanitize(String content) {
+        // Step 1: 移除所有孤立的 </tag>（无论是否跨行）
+        for (String tag : VOID_TAGS) {
+            // (?i) = 忽略大小写；\s* = 允许空格；全局替换
+            content = content.replaceAll("(?i)</" + Pattern.quote(tag) + "\\s*>", "");
+        }
+
+        // Step 2: 将未自闭合的 <tag ...> 转为 <tag ... />
+        // 注意：只处理那些不是以 /> 结尾的标签
+        for (String tag : VOID_TAGS) {
+            // 匹配：<tag ...> 但后面不是 />
+            // 使用负向先行断言确保不匹配已自闭合的
+            String regex = "(?i)<(" + Pattern.quote(tag) + ")([^>]*)>(?!\\s*/>)";
+            content = content.replaceAll(regex, "<$1$2 />");
+        }
+        return content;
+    }
 }
@@ -0,0 +1,149 @@
+package com.zriyo.aicodemother.ai.key;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RLock;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.config.Config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Key 租约争用基准：多线程同时 acquire / release，对比 Lua 原子租约与原先 "全局锁 + 逐 Key 往返" 的吞吐
+ * <p>
+ * 需要一个可用的 Redis（默认 redis://127.0.0.1:6379，可通过 -Dbench.redis.address 指定），
+ * 例如本地执行 docker run -p 6379:6379 redis:7；连不上时自动跳过
+ */
+class ApiKeyLeaseContentionBenchmark {
+
+    private static final int KEY_COUNT = 20;
+    private static final int MAX_PER_KEY = 3;
+    private static final int THREADS = 32;
+    private static final int ROUNDS_PER_THREAD = 200;
+    private static final String POOL = ApiKeyLeaseEngine.POOL_PREFIX + "bench-" + UUID.randomUUID();
+    private static final String LEGACY_POOL = "ai:keypool:bench-" + UUID.randomUUID();
+
+    private static RedissonClient client;
+
+    @BeforeAll
+    static void connect() {
+        Config config = new Config();
+        config.useSingleServer()
+                .setAddress(System.getProperty("bench.redis.address", "redis://127.0.0.1:6379"))
+                .setConnectionPoolSize(THREADS * 2)
+                .setConnectionMinimumIdleSize(THREADS)
+                .setConnectTimeout(1000)
+                .setRetryAttempts(0);
+        try {
+            client = Redisson.create(config);
+        } catch (Exception e) {
+            Assumptions.abort("Redis 不可用，跳过基准: " + e.getMessage());
+        }
+    }
+
+    @AfterAll
+    static void cleanup() {
+        if (client == null) return;
+        client.getKeys().deleteByPattern(POOL + "*");
+        client.getKeys().deleteByPattern(LEGACY_POOL + "*");
+        client.getKeys().deleteByPattern(ApiKeyLeaseEngine.LEASE_PREFIX + "bench-key-*");
+        client.shutdown();
+    }
+
+    @Test
+    void luaLeaseUnderContention() throws Exception {
+        ApiKeyLeaseEngine engine = new ApiKeyLeaseEngine(client);
+        engine.register(POOL, keys(), MAX_PER_KEY);
+
+        long opsPerSec = run("lua", () -> {
+            List<Object> result = engine.acquire(POOL, UUID.randomUUID().toString(),
+                    System.currentTimeMillis(), TimeUnit.MINUTES.toMillis(10));
+            long status = ((Number) result.get(0)).longValue();
+            return status == ApiKeyLeaseEngine.ACQUIRED ? (String) result.get(1) : null;
+        }, key -> engine.release(POOL, key, MAX_PER_KEY));
+
+        // 全部归还后，每个 Key 的额度必须恢复到上限，不能出现超卖或泄漏
+        RScoredSortedSet<String> zset = client.getScoredSortedSet(POOL, StringCodec.INSTANCE);
+        for (String key : keys()) {
+            assertEquals(MAX_PER_KEY, zset.getScore(key).intValue(), key);
+        }
+        System.out.printf("[bench] lua lease: %d ops/s%n", opsPerSec);
+    }
+
+    @Test
+    void legacyLockedLeaseUnderContention() throws Exception {
+        RScoredSortedSet<String> zset = client.getScoredSortedSet(LEGACY_POOL);
+        keys().forEach(key -> zset.add(MAX_PER_KEY, key));
+        RLock lock = client.getLock("lock:" + LEGACY_POOL);
+
+        long opsPerSec = run("legacy", () -> {
+            lock.lock();
+            try {
+                for (String key : zset.valueRangeReversed(0, -1)) {
+                    if (client.getBucket(ApiKeyLeaseEngine.BAN_LABEL_PREFIX + key).isExists()) continue;
+                    client.getBucket(ApiKeyLeaseEngine.SOFT_BAN_PREFIX + key).isExists();
+                    Double score = zset.getScore(key);
+                    if (score != null && score > 0) {
+                        zset.add(score - 1, key);
+                        return key;
+                    }
+                }
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }, key -> zset.addScore(key, 1));
+        System.out.printf("[bench] legacy lock lease: %d ops/s%n", opsPerSec);
+    }
+
+    private long run(String name, Supplier<String> acquire, Consumer<String> release) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong ops = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ROUNDS_PER_THREAD; i++) {
+                    String key = acquire.get();
+                    if (key != null) {
+                        release.accept(key);
+                    }
+                    ops.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        pool.shutdown();
+        assertEquals((long) THREADS * ROUNDS_PER_THREAD, ops.get(), name);
+        return ops.get() * TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsedNanos);
+    }
+
+    private static Collection<String> keys() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys.add("bench-key-" + i);
+        }
+        return keys;
+    }
+}
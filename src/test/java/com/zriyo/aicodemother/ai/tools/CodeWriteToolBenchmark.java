@@ -0,0 +1,63 @@
+package com.zriyo.aicodemother.ai.tools;
+
+import com.zriyo.aicodemother.jmh.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 续写去重与截断恢复基准
+ * <p>
+ * trimOverlap：已写入尾部为一个 SFC 的末段，续写内容以 overlap 个字符的重复开头；
+ * recoverIfTruncated：模型把整个工具参数 JSON 塞进 content 字段的截断场景，需要从信封中取回正文。
+ * 运行：com.zriyo.aicodemother.jmh.BenchmarkSuite CodeWriteToolBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class CodeWriteToolBenchmark {
+
+    /**
+     * 续写内容开头与尾部重复的字符数
+     */
+    @Param({"0", "200", "4000"})
+    public int overlap;
+
+    /**
+     * 生成文件的模板行数（决定续写内容与信封正文的长度）
+     */
+    @Param({"60", "600"})
+    public int rows;
+
+    private StringBuilder tail;
+    private String continuation;
+    private String envelope;
+
+    @Setup
+    public void setUp() {
+        String file = BenchmarkFixtures.vueSfc(rows);
+        String written = file.substring(0, file.length() / 2);
+        String rest = file.substring(file.length() / 2);
+        tail = new StringBuilder(written.substring(Math.max(0, written.length() - 8000)));
+        int repeat = Math.min(overlap, written.length());
+        continuation = written.substring(written.length() - repeat) + rest;
+        if (!rest.equals(CodeWriteTool.trimOverlap(tail, continuation))) {
+            throw new IllegalStateException("重叠裁剪结果与预期不一致");
+        }
+        envelope = "{\"relativeFilePath\": \"src/views/HomeView.vue\", \"content\": \""
+                + file.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @Benchmark
+    public String trimOverlap() {
+        return CodeWriteTool.trimOverlap(tail, continuation);
+    }
+
+    @Benchmark
+    public String recoverIfTruncated() {
+        return CodeWriteTool.recoverIfTruncated(null, envelope);
+    }
+}
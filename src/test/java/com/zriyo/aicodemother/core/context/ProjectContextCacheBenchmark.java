@@ -0,0 +1,37 @@
+package com.zriyo.aicodemother.core.context;
+
+import com.zriyo.aicodemother.jmh.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 依赖文件 Vue 脱水基准：每个非前排依赖文件在注入上下文前都要执行一次
+ * 运行：com.zriyo.aicodemother.jmh.BenchmarkSuite ProjectContextCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ProjectContextCacheBenchmark {
+
+    /**
+     * SFC 模板行数
+     */
+    @Param({"40", "400", "4000"})
+    public int rows;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = BenchmarkFixtures.vueSfc(rows);
+    }
+
+    @Benchmark
+    public String pruneVueContent() {
+        return ProjectContextCache.pruneVueContent(content);
+    }
+}
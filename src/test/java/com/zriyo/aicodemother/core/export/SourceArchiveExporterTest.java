@@ -0,0 +1,53 @@
+package com.zriyo.aicodemother.core.export;
+
+import com.zriyo.aicodemother.config.SourceExportConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SourceArchiveExporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void symlinkedNodeModulesIsNotExported() throws IOException {
+        Path shared = Files.createDirectories(tempDir.resolve("shared/node_modules/vue"));
+        Files.writeString(shared.resolve("index.js"), "export default {}");
+        Path project = Files.createDirectories(tempDir.resolve("vue_project_1"));
+        Files.writeString(project.resolve("package.json"), "{}");
+        Files.createDirectories(project.resolve("src"));
+        Files.writeString(project.resolve("src/main.js"), "import 'vue'");
+        // 项目体检为复用依赖创建的链接：不跟随链接遍历时它以文件形式出现
+        Files.createSymbolicLink(project.resolve("node_modules"), tempDir.resolve("shared/node_modules"));
+
+        SourceExportConfig config = new SourceExportConfig();
+        config.setCacheEnabled(false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SourceArchiveExporter(config).stream(project, "demo", "0", out);
+
+        assertEquals(List.of("demo/package.json", "demo/src/", "demo/src/main.js"), entryNames(out.toByteArray()));
+    }
+
+    private static List<String> entryNames(byte[] zip) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        return names.stream().sorted().toList();
+    }
+}
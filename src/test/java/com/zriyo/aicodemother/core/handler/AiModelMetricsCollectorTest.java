@@ -0,0 +1,28 @@
+package com.zriyo.aicodemother.core.handler;
+
+import com.zriyo.aicodemother.config.ModelMetricsConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AiModelMetricsCollectorTest {
+
+    @Test
+    void valuesOverTheCapAreFoldedIntoOtherAndCounted() {
+        ModelMetricsConfig config = new ModelMetricsConfig();
+        config.setMaxTagValues(2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AiModelMetricsCollector collector = new AiModelMetricsCollector(registry, config);
+
+        for (int i = 0; i < 5; i++) {
+            collector.recordRequest("model-" + i, "CODE_GENERATION", "success");
+        }
+
+        assertEquals(1, registry.get("ai_model_requests_total").tag("model", "model-0").counter().count());
+        assertEquals(3, registry.get("ai_model_requests_total").tag("model", "other").counter().count());
+        assertEquals(3, registry.get("ai_model_metric_tag_overflow_total")
+                .tag("metric", "ai_model_requests_total").tag("tag", "model").counter().count());
+        assertEquals(3, registry.get("ai_model_requests_total").counters().size());
+    }
+}
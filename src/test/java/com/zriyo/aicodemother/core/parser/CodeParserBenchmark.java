@@ -0,0 +1,48 @@
+package com.zriyo.aicodemother.core.parser;
+
+import com.zriyo.aicodemother.ai.model.HtmlCodeResult;
+import com.zriyo.aicodemother.ai.model.MultiFileCodeResult;
+import com.zriyo.aicodemother.jmh.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单文件 / 多文件 HTML 响应解析基准：语料为说明文字 + 对应语言的代码块，覆盖小型页面到超长页面
+ * 运行：com.zriyo.aicodemother.jmh.BenchmarkSuite CodeParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class CodeParserBenchmark {
+
+    /**
+     * 响应总长度（字符）
+     */
+    @Param({"2048", "32768", "262144"})
+    public int responseSize;
+
+    private final HtmlCodeParser htmlParser = new HtmlCodeParser();
+    private final MultFileCodeParser multiFileParser = new MultFileCodeParser();
+    private String htmlResponse;
+    private String multiFileResponse;
+
+    @Setup
+    public void setUp() {
+        htmlResponse = BenchmarkFixtures.markdownResponse(responseSize, "html");
+        multiFileResponse = BenchmarkFixtures.markdownResponse(responseSize, "html", "css", "js");
+    }
+
+    @Benchmark
+    public HtmlCodeResult htmlCodeParser() {
+        return htmlParser.parseCode(htmlResponse);
+    }
+
+    @Benchmark
+    public MultiFileCodeResult multiFileCodeParser() {
+        return multiFileParser.parseCode(multiFileResponse);
+    }
+}
@@ -0,0 +1,44 @@
+package com.zriyo.aicodemother.core.pipeline;
+
+import com.zriyo.aicodemother.jmh.BenchmarkFixtures;
+import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 骨架拓扑排序基准：从小型页面到超大项目的分层骨架，分别计算串行顺序与并发波次
+ * 运行：com.zriyo.aicodemother.jmh.BenchmarkSuite FileGenerationOrderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class FileGenerationOrderBenchmark {
+
+    /**
+     * 骨架中的文件数
+     */
+    @Param({"12", "120", "1200"})
+    public int fileCount;
+
+    private ProjectSkeletonDTO skeleton;
+
+    @Setup
+    public void setUp() {
+        skeleton = BenchmarkFixtures.skeleton(fileCount);
+    }
+
+    @Benchmark
+    public List<String> computeSafeOrder() {
+        return FileGenerationOrder.computeSafeOrder(skeleton);
+    }
+
+    @Benchmark
+    public List<List<String>> computeWaves() {
+        return FileGenerationOrder.computeWaves(skeleton);
+    }
+}
@@ -0,0 +1,86 @@
+package com.zriyo.aicodemother.core.pipeline;
+
+import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileGenerationOrderTest {
+
+    @Test
+    void diamondSplitsIntoThreeWaves() {
+        // api 与 store 都依赖 utils，views 同时依赖两者
+        ProjectSkeletonDTO skeleton = skeleton(Map.of(
+                "src/utils/http.js", List.of(),
+                "src/api/user.js", List.of("src/utils/http.js"),
+                "src/store/user.js", List.of("src/utils/http.js"),
+                "src/views/Home.vue", List.of("src/api/user.js", "src/store/user.js")));
+
+        List<List<String>> waves = FileGenerationOrder.computeWaves(skeleton);
+
+        assertEquals(List.of(
+                List.of("src/utils/http.js"),
+                List.of("src/store/user.js", "src/api/user.js"),
+                List.of("src/views/Home.vue")), waves);
+    }
+
+    @Test
+    void cycleFallsBackToSerialWaves() {
+        ProjectSkeletonDTO skeleton = skeleton(Map.of(
+                "src/utils/format.js", List.of(),
+                "src/components/A.vue", List.of("src/components/B.vue", "src/utils/format.js"),
+                "src/components/B.vue", List.of("src/components/A.vue"),
+                "src/views/Home.vue", List.of("src/components/A.vue")));
+
+        List<List<String>> waves = FileGenerationOrder.computeWaves(skeleton);
+
+        assertEquals(List.of("src/utils/format.js"), waves.get(0));
+        // 环路中的文件及其下游逐个成为独立波次
+        assertEquals(List.of(
+                List.of("src/components/A.vue"),
+                List.of("src/components/B.vue"),
+                List.of("src/views/Home.vue")), waves.subList(1, waves.size()));
+        assertCoversEachFileOnce(skeleton, waves);
+    }
+
+    @Test
+    void missingDependencyIsIgnored() {
+        ProjectSkeletonDTO skeleton = skeleton(Map.of(
+                "src/api/user.js", List.of("src/utils/notInSkeleton.js"),
+                "src/views/Home.vue", List.of("src/api/user.js", "src/api/user.js")));
+
+        List<List<String>> waves = FileGenerationOrder.computeWaves(skeleton);
+
+        assertEquals(List.of(List.of("src/api/user.js"), List.of("src/views/Home.vue")), waves);
+    }
+
+    private static void assertCoversEachFileOnce(ProjectSkeletonDTO skeleton, List<List<String>> waves) {
+        Set<String> seen = new HashSet<>();
+        for (List<String> wave : waves) {
+            for (String path : wave) {
+                assertTrue(seen.add(path), "重复调度: " + path);
+            }
+        }
+        assertEquals(skeleton.getFiles().keySet(), seen);
+    }
+
+    private static ProjectSkeletonDTO skeleton(Map<String, List<String>> dependencies) {
+        Map<String, ProjectSkeletonDTO.FileInfo> files = new LinkedHashMap<>();
+        dependencies.forEach((path, deps) -> {
+            ProjectSkeletonDTO.FileInfo info = new ProjectSkeletonDTO.FileInfo();
+            info.setFilePath(path);
+            info.setLocalDependencies(deps);
+            files.put(path, info);
+        });
+        ProjectSkeletonDTO skeleton = new ProjectSkeletonDTO();
+        skeleton.setFiles(files);
+        return skeleton;
+    }
+}
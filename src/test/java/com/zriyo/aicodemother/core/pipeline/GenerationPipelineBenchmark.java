@@ -0,0 +1,221 @@
+package com.zriyo.aicodemother.core.pipeline;
+
+import com.zriyo.aicodemother.mapper.AppMapper;
+import com.zriyo.aicodemother.model.entity.App;
+import com.zriyo.aicodemother.model.enums.AiCodeGenStage;
+import com.zriyo.aicodemother.model.enums.CodeGenTypeEnum;
+import com.zriyo.aicodemother.model.message.StreamMessageTypeEnum;
+import com.zriyo.aicodemother.service.AppService;
+import com.zriyo.aicodemother.service.PointsAdjustService;
+import com.zriyo.aicodemother.util.CodeOutputManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * 端到端生成流水线基准：通过 NewChatToGenCode 驱动完整 Handler 链，模型由本地模拟接口（/llm-sim）提供
+ * <p>
+ * 输出各阶段自身耗时（codegen_stage_duration_seconds，不含后续阶段）、SSE 事件速率、每次生成的堆分配量，
+ * 以及并发 1 / 2 / 4 / 8 下的吞吐曲线，作为其他性能改动的基线。
+ * <p>
+ * 隔离：bench profile 使用内存 H2 与独立的 Redis 库（-Dbench.pipeline.redis-db，默认 15，仍需本地 Redis），
+ * 积分服务被替换为桩；生成目录按相对路径写入 tmp/code_output，因此只能通过 bench-pipeline Maven profile
+ * 在 target/bench-pipeline 工作目录下运行，结束后整体删除。模型地址会被覆盖为本进程的模拟接口。
+ * 运行：mvn test -Pbench-pipeline
+ * 可选参数：-Dbench.pipeline.generations（每个并发级别的生成次数，默认 8）、-Dbench.pipeline.port（默认 18123）
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "bench.pipeline", matches = "true")
+@ActiveProfiles("bench")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT, properties = {
+        "server.port=${bench.pipeline.port:18123}",
+        "codegen.llm-simulator.enabled=true",
+        "codegen.llm-simulator.first-token-millis=${bench.pipeline.first-token-millis:200}",
+        "codegen.llm-simulator.tokens-per-second=${bench.pipeline.tokens-per-second:400}",
+        "langchain4j.open-ai.chat-model.base-url=http://localhost:${server.port}${server.servlet.context-path:}/llm-sim/v1",
+        "langchain4j.open-ai.streaming-chat-model.base-url=http://localhost:${server.port}${server.servlet.context-path:}/llm-sim/v1"
+})
+class GenerationPipelineBenchmark {
+
+    private static final int[] CONCURRENCY = {1, 2, 4, 8};
+    private static final int GENERATIONS = Integer.getInteger("bench.pipeline.generations", 8);
+    private static final Long USER_ID = 1L;
+    private static final String PROMPT = "做一个个人博客网站，包含首页、文章列表、文章详情与关于页面";
+    private static final String[] STAGES = {
+            AiCodeGenStage.SKELETON.getValue(),
+            AiCodeGenStage.CODE_GENERATION.getValue(),
+            AiCodeGenStage.DIAGNOSIS.getValue()
+    };
+
+    @Autowired
+    private AppService appService;
+    @Autowired
+    private AppMapper appMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @MockitoBean
+    private PointsAdjustService pointsAdjustService;
+
+    /**
+     * 拒绝在源码目录下运行；生成依赖的构建配置（tmp/code_output/config）以符号链接引入工作目录
+     */
+    @BeforeAll
+    static void prepareWorkingDirectory() throws IOException {
+        Path projectDir = Paths.get(System.getProperty("bench.pipeline.project-dir", "")).toAbsolutePath().normalize();
+        Path workDir = Paths.get("").toAbsolutePath().normalize();
+        assertNotEquals(projectDir, workDir, "请通过 mvn test -Pbench-pipeline 运行，避免生成目录写入源码树");
+
+        Path config = CodeOutputManager.getCodeOutputBaseDir().resolve("config");
+        if (!Files.exists(config, LinkOption.NOFOLLOW_LINKS)) {
+            Files.createDirectories(config.getParent());
+            Files.createSymbolicLink(config, projectDir.resolve("tmp/code_output/config"));
+        }
+    }
+
+    @AfterAll
+    static void cleanWorkingDirectory() throws IOException {
+        Path tmp = CodeOutputManager.getCodeOutputBaseDir().getParent();
+        // 先删除指向源码树的链接，再删除生成目录，避免跟随链接删到项目中的配置
+        Files.deleteIfExists(CodeOutputManager.getCodeOutputBaseDir().resolve("config"));
+        if (Files.exists(tmp)) {
+            CodeOutputManager.deleteRecursively(tmp);
+        }
+    }
+
+    @Test
+    void concurrencyScaling() throws Exception {
+        // 预热：类加载、连接池、JIT
+        runOne(0);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        log.info(String.format("[bench] %-4s %10s %10s %10s %10s %12s %12s %14s",
+                "conc", "gen/min", "p50(ms)", "max(ms)", "events/s", "skeleton(ms)", "codeFile(ms)", "alloc/gen(MB)"));
+        for (int concurrency : CONCURRENCY) {
+            Map<String, Snapshot> before = snapshot();
+            long allocBefore = threads.getTotalThreadAllocatedBytes();
+            long start = System.nanoTime();
+
+            List<Generation> results = new ArrayList<>();
+            try (ExecutorService pool = Executors.newFixedThreadPool(concurrency)) {
+                List<Future<Generation>> futures = new ArrayList<>();
+                for (int i = 0; i < GENERATIONS; i++) {
+                    int seq = concurrency * 1000 + i;
+                    futures.add(pool.submit(() -> runOne(seq)));
+                }
+                for (Future<Generation> future : futures) {
+                    results.add(future.get(30, TimeUnit.MINUTES));
+                }
+            }
+
+            long wallNanos = System.nanoTime() - start;
+            long allocated = threads.getTotalThreadAllocatedBytes() - allocBefore;
+            Map<String, Snapshot> after = snapshot();
+            long[] latencies = results.stream().mapToLong(Generation::nanos).sorted().toArray();
+            long events = results.stream().mapToLong(Generation::events).sum();
+
+            log.info(String.format("[bench] %-4d %10.2f %10d %10d %10.1f %12.0f %12.0f %14.1f",
+                    concurrency,
+                    GENERATIONS / (wallNanos / 6e10),
+                    TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length / 2]),
+                    TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length - 1]),
+                    events / (wallNanos / 1e9),
+                    after.get(STAGES[0]).meanMillisSince(before.get(STAGES[0])),
+                    after.get(STAGES[1]).meanMillisSince(before.get(STAGES[1])),
+                    allocated / (double) GENERATIONS / (1024 * 1024)));
+            for (String stage : STAGES) {
+                Snapshot delta = after.get(stage).minus(before.get(stage));
+                log.info(String.format("[bench]      stage %-16s runs=%d mean=%.0fms events=%d",
+                        stage, delta.count(), delta.meanMillis(), delta.events()));
+            }
+            assertEquals(GENERATIONS, results.size());
+        }
+    }
+
+    /**
+     * 创建一个新应用并完整执行一次首次生成，结束后删除应用及其生成目录
+     */
+    private Generation runOne(int seq) {
+        App app = new App();
+        app.setUserId(USER_ID);
+        app.setAppName("bench-" + seq);
+        app.setInitPrompt(PROMPT);
+        app.setCodeGenType(CodeGenTypeEnum.VUE_PROJECT.getValue());
+        appMapper.insert(app);
+        try {
+            AtomicLong events = new AtomicLong();
+            long start = System.nanoTime();
+            appService.NewChatToGenCode(app.getId(), PROMPT, USER_ID, null, null)
+                    .filter(event -> !StreamMessageTypeEnum.PING.getValue().equals(event.event()))
+                    .doOnNext(event -> events.incrementAndGet())
+                    .blockLast(Duration.ofMinutes(30));
+            return new Generation(System.nanoTime() - start, events.get());
+        } finally {
+            try {
+                appService.deleteApp(app.getId(), USER_ID);
+            } catch (Exception e) {
+                appMapper.deleteById(app.getId());
+            }
+        }
+    }
+
+    private Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> result = new LinkedHashMap<>();
+        for (String stage : STAGES) {
+            long count = 0;
+            double totalMillis = 0;
+            for (Timer timer : meterRegistry.find("codegen_stage_duration_seconds").tag("stage", stage).timers()) {
+                count += timer.count();
+                totalMillis += timer.totalTime(TimeUnit.MILLISECONDS);
+            }
+            Counter counter = meterRegistry.find("codegen_stage_sse_events_total").tag("stage", stage).counter();
+            result.put(stage, new Snapshot(count, totalMillis, counter == null ? 0 : (long) counter.count()));
+        }
+        return result;
+    }
+
+    private record Generation(long nanos, long events) {
+    }
+
+    private record Snapshot(long count, double totalMillis, long events) {
+        Snapshot minus(Snapshot other) {
+            return new Snapshot(count - other.count, totalMillis - other.totalMillis, events - other.events);
+        }
+
+        double meanMillis() {
+            return count == 0 ? 0 : totalMillis / count;
+        }
+
+        double meanMillisSince(Snapshot other) {
+            return minus(other).meanMillis();
+        }
+    }
+}
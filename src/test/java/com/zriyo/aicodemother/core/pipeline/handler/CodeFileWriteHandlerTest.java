@@ -0,0 +1,58 @@
+package com.zriyo.aicodemother.core.pipeline.handler;
+
+import com.zriyo.aicodemother.core.context.SkeletonSnapshotStore;
+import com.zriyo.aicodemother.model.dto.ModificationPlanDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CodeFileWriteHandlerTest {
+
+    private static final SkeletonSnapshotStore.Snapshot SNAPSHOT = new SkeletonSnapshotStore.Snapshot(1L, 1L, 1L, 1L, null,
+            List.of("src/api/todo.js", "src/components/TodoItem.vue", "src/App.vue"),
+            Map.of("src/api/todo.js", 0, "src/components/TodoItem.vue", 1, "src/App.vue", 2));
+
+    @Test
+    void modificationsFollowSkeletonOrderAndNewFilesComeFirst() {
+        List<ModificationPlanDTO.FileTask> planned = List.of(
+                task("src/App.vue"),
+                created("src/components/NewBadge.vue"),
+                task("src/api/todo.js"),
+                created("src/components/Filter.vue"),
+                task("src/components/TodoItem.vue"));
+
+        List<ModificationPlanDTO.FileTask> ordered = CodeFileWriteHandler.orderTasks(planned, SNAPSHOT);
+
+        // 新建文件按计划顺序排在最前，已有文件按骨架拓扑顺序，被依赖的先写
+        assertEquals(List.of("src/components/NewBadge.vue", "src/components/Filter.vue",
+                        "src/api/todo.js", "src/components/TodoItem.vue", "src/App.vue"),
+                ordered.stream().map(ModificationPlanDTO.FileTask::getFilePath).toList());
+        assertEquals("src/App.vue", planned.get(0).getFilePath());
+    }
+
+    @Test
+    void plannedOrderIsKeptWithoutSnapshot() {
+        List<ModificationPlanDTO.FileTask> planned = List.of(task("src/App.vue"), task("src/api/todo.js"));
+
+        assertSame(planned, CodeFileWriteHandler.orderTasks(planned, null));
+    }
+
+    private static ModificationPlanDTO.FileTask task(String filePath) {
+        return task(filePath, ModificationPlanDTO.ActionType.MODIFY);
+    }
+
+    private static ModificationPlanDTO.FileTask created(String filePath) {
+        return task(filePath, ModificationPlanDTO.ActionType.CREATE);
+    }
+
+    private static ModificationPlanDTO.FileTask task(String filePath, ModificationPlanDTO.ActionType action) {
+        ModificationPlanDTO.FileTask task = new ModificationPlanDTO.FileTask();
+        task.setFilePath(filePath);
+        task.setAction(action);
+        return task;
+    }
+}
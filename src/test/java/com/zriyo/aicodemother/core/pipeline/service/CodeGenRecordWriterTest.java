@@ -0,0 +1,115 @@
+package com.zriyo.aicodemother.core.pipeline.service;
+
+import com.zriyo.aicodemother.config.RecordWriterConfig;
+import com.zriyo.aicodemother.mapper.AiCodeGenRecordMapper;
+import com.zriyo.aicodemother.model.entity.AiCodeGenRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CodeGenRecordWriterTest {
+
+    private final AtomicLong ids = new AtomicLong();
+    private final AiCodeGenRecordMapper mapper = mock(AiCodeGenRecordMapper.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    CodeGenRecordWriterTest() {
+        when(mapper.insert(any(AiCodeGenRecord.class))).thenAnswer(invocation -> {
+            invocation.<AiCodeGenRecord>getArgument(0).setId(ids.incrementAndGet());
+            return 1;
+        });
+        when(mapper.update(any(AiCodeGenRecord.class))).thenReturn(1);
+    }
+
+    @Test
+    void eachStageRunGetsItsOwnRow() throws InterruptedException {
+        CodeGenRecordWriter writer = new CodeGenRecordWriter(config(1_000), mapper, registry);
+        AiCodeGenRecord skeleton = record(1L, "SKELETON");
+        AiCodeGenRecord generation = record(1L, "CODE_GENERATION");
+
+        writer.submit(skeleton);
+        skeleton.setStatus("SUCCESS");
+        writer.submit(skeleton);
+        writer.submit(generation);
+        writer.shutdown();
+
+        ArgumentCaptor<AiCodeGenRecord> inserted = ArgumentCaptor.forClass(AiCodeGenRecord.class);
+        verify(mapper, times(2)).insert(inserted.capture());
+        // 同一记录的开始与成功合并为一次写入，同一应用的不同阶段各自一行
+        assertEquals("SUCCESS", inserted.getAllValues().get(0).getStatus());
+        assertEquals("CODE_GENERATION", inserted.getAllValues().get(1).getStage());
+        assertNotEquals(skeleton.getId(), generation.getId());
+        verify(mapper, never()).update(any(AiCodeGenRecord.class));
+    }
+
+    @Test
+    void laterStatesUpdateByPrimaryKey() throws InterruptedException {
+        CodeGenRecordWriter writer = new CodeGenRecordWriter(config(10), mapper, registry);
+        AiCodeGenRecord record = record(1L, "SKELETON");
+
+        writer.submit(record);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (record.getId() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        record.setStatus("FAILED");
+        writer.submit(record);
+        writer.shutdown();
+
+        ArgumentCaptor<AiCodeGenRecord> updated = ArgumentCaptor.forClass(AiCodeGenRecord.class);
+        verify(mapper, times(1)).insert(any(AiCodeGenRecord.class));
+        verify(mapper).update(updated.capture());
+        assertEquals(record.getId(), updated.getValue().getId());
+        assertEquals("FAILED", updated.getValue().getStatus());
+    }
+
+    @Test
+    void failingRecordIsDroppedAfterMaxRetries() throws InterruptedException {
+        AiCodeGenRecordMapper unavailable = mock(AiCodeGenRecordMapper.class);
+        when(unavailable.insert(any(AiCodeGenRecord.class))).thenThrow(new IllegalStateException("数据库不可用"));
+        RecordWriterConfig config = config(10);
+        config.setMaxRetries(2);
+        config.setRetryBackoffMillis(20);
+        CodeGenRecordWriter writer = new CodeGenRecordWriter(config, unavailable, registry);
+
+        writer.submit(record(1L, "SKELETON"));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (dropped() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        writer.shutdown();
+
+        // 首次写入 + 2 次重试后丢弃，之后不再尝试
+        assertEquals(1, dropped());
+        verify(unavailable, times(3)).insert(any(AiCodeGenRecord.class));
+    }
+
+    private double dropped() {
+        return registry.get("ai_code_gen_record_dropped_total").counter().count();
+    }
+
+    private static RecordWriterConfig config(long flushIntervalMillis) {
+        RecordWriterConfig config = new RecordWriterConfig();
+        config.setFlushIntervalMillis(flushIntervalMillis);
+        return config;
+    }
+
+    private static AiCodeGenRecord record(Long appId, String stage) {
+        AiCodeGenRecord record = new AiCodeGenRecord();
+        record.setAppId(appId);
+        record.setStage(stage);
+        record.setStatus("RUNNING");
+        return record;
+    }
+}
@@ -0,0 +1,156 @@
+package com.zriyo.aicodemother.jmh;
+
+import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 微基准语料：按模型真实输出的形态生成 Vue SFC、Markdown 响应、Vite 构建日志与项目骨架
+ * <p>
+ * 所有语料由固定种子生成，同一参数在不同机器、不同次运行之间完全一致，结果才能与基线对比
+ */
+public final class BenchmarkFixtures {
+
+    private static final String[] VOID_TAGS = {"img", "br", "input", "hr"};
+    private static final String[] DIRS = {"src/utils", "src/api", "src/stores", "src/components", "src/layouts", "src/views"};
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 生成一个 Vue 单文件组件，约 rows 行模板 + rows / 4 行脚本 + rows / 3 行样式；
+     * 模板中混有未自闭合的 void 标签与非法结束标签（如 </img>），与模型常见输出一致
+     */
+    public static String vueSfc(int rows) {
+        StringBuilder sb = new StringBuilder(rows * 96);
+        sb.append("<template>\n  <div class=\"page\">\n");
+        for (int i = 0; i < rows; i++) {
+            String tag = VOID_TAGS[i % VOID_TAGS.length];
+            switch (i % 5) {
+                case 0 -> sb.append("    <section class=\"card\" v-for=\"item in list").append(i)
+                        .append("\" :key=\"item.id\">{{ item.title }}</section>\n");
+                case 1 -> sb.append("    <").append(tag).append(" class=\"media-").append(i)
+                        .append("\" :src=\"item.cover\" alt=\"cover\">\n");
+                case 2 -> sb.append("    <").append(tag).append(" class=\"media-").append(i)
+                        .append("\" /></").append(tag).append(">\n");
+                case 3 -> sb.append("    <p class=\"desc\" @click=\"open(").append(i).append(")\">详情描述 ").append(i).append("</p>\n");
+                default -> sb.append("    <router-link :to=\"`/article/${item.id}`\" class=\"link\">阅读更多</router-link>\n");
+            }
+        }
+        sb.append("  </div>\n</template>\n\n<script setup>\nimport { ref, computed, onMounted } from 'vue'\n")
+                .append("import { useRouter } from 'vue-router'\n\nconst router = useRouter()\n");
+        for (int i = 0; i < rows / 4; i++) {
+            sb.append("const list").append(i).append(" = ref([])\n");
+        }
+        sb.append("const open = (id) => router.push(`/article/${id}`)\nonMounted(() => {\n  console.log('mounted')\n})\n</script>\n\n<style scoped>\n");
+        for (int i = 0; i < rows / 3; i++) {
+            sb.append(".media-").append(i).append(" { width: 100%; border-radius: 12px; margin-bottom: ").append(i % 24).append("px; }\n");
+        }
+        return sb.append("</style>\n").toString();
+    }
+
+    /**
+     * 生成一段带说明文字与代码块的 Markdown 响应，总长度约为 size 字符
+     *
+     * @param langs 依次输出的代码块语言，如 html / css / js
+     */
+    public static String markdownResponse(int size, String... langs) {
+        StringBuilder sb = new StringBuilder(size + 256);
+        sb.append("好的，下面是完整实现，包含页面结构、样式与交互逻辑：\n\n");
+        int perBlock = Math.max(64, size / Math.max(1, langs.length));
+        for (String lang : langs) {
+            sb.append("```").append(lang).append("\n");
+            int start = sb.length();
+            int row = 0;
+            while (sb.length() - start < perBlock) {
+                sb.append(codeLine(lang, row++)).append('\n');
+            }
+            sb.append("```\n\n");
+        }
+        return sb.append("以上即为全部代码，可直接保存运行。").toString();
+    }
+
+    private static String codeLine(String lang, int row) {
+        return switch (lang) {
+            case "css" -> ".item-" + row + " { color: #333; padding: " + (row % 16) + "px; }";
+            case "js", "javascript" -> "document.querySelector('.item-" + row + "')?.addEventListener('click', () => toggle(" + row + "));";
+            default -> "<div class=\"item-" + row + "\"><img src=\"https://picsum.photos/200?random=" + row + "\" alt=\"\"><span>第 " + row + " 项</span></div>";
+        };
+    }
+
+    /**
+     * 生成 Vite 构建日志：lines 行普通输出，末尾附上指定类型的错误
+     *
+     * @param kind vite（file: 行）、stack（src/...:行:列 堆栈）、module（依赖缺失）、unknown（无法定位）
+     */
+    public static String buildLog(String kind, int lines) {
+        StringBuilder sb = new StringBuilder(lines * 80);
+        sb.append("\u001B[36mvite v5.4.2 \u001B[32mbuilding for production...\u001B[39m\n");
+        for (int i = 0; i < lines; i++) {
+            sb.append("transforming (").append(i).append(") \u001B[2mnode_modules/.vite/deps/chunk-")
+                    .append(Integer.toHexString(i * 7919)).append(".js\u001B[22m\n");
+        }
+        switch (kind) {
+            case "vite" -> sb.append("\u001B[31merror during build:\u001B[39m\n")
+                    .append("[vite:vue] Element is missing end tag.\n")
+                    .append("file: /workspace/tmp/code_output/vue_project_1/src/views/HomeView.vue:42:7\n");
+            case "stack" -> sb.append("[vite]: Rollup failed to resolve import\n")
+                    .append("    at src/components/ArticleCard.vue?vue&type=script&setup=true&lang.js:18:9\n")
+                    .append("    at async ModuleLoader.fetchModule (node_modules/rollup/dist/es/shared/node-entry.js:19291:13)\n");
+            case "module" -> sb.append("Module not found: Error: Can't resolve 'axios' in '/workspace/src/api'\n");
+            default -> sb.append("\u001B[31merror during build:\u001B[39m\nRangeError: Maximum call stack size exceeded\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 生成一份分层的项目骨架：utils → api → stores → components → layouts → views，
+     * 每个文件依赖 0~3 个更底层的文件，另有少量未知依赖（骨架中不存在的路径）
+     */
+    public static ProjectSkeletonDTO skeleton(int fileCount) {
+        Random random = new Random(fileCount);
+        Map<String, ProjectSkeletonDTO.FileInfo> files = new LinkedHashMap<>();
+        List<String> lower = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int currentLayer = 0;
+        int perLayer = Math.max(1, fileCount / DIRS.length);
+        for (int i = 0; i < fileCount; i++) {
+            int layer = Math.min(DIRS.length - 1, i / perLayer);
+            if (layer != currentLayer) {
+                lower.addAll(current);
+                current.clear();
+                currentLayer = layer;
+            }
+            String ext = layer >= 3 ? ".vue" : ".js";
+            String path = DIRS[layer] + "/File" + i + ext;
+
+            List<String> deps = new ArrayList<>();
+            if (!lower.isEmpty()) {
+                int count = random.nextInt(4);
+                for (int d = 0; d < count; d++) {
+                    deps.add(lower.get(random.nextInt(lower.size())));
+                }
+            }
+            if (i % 17 == 0) {
+                deps.add("src/unknown/Missing" + i + ".js");
+            }
+
+            ProjectSkeletonDTO.FileInfo info = new ProjectSkeletonDTO.FileInfo();
+            info.setFilePath(path);
+            info.setType(layer >= 3 ? "component" : "module");
+            info.setDescription("第 " + i + " 个文件，负责 " + DIRS[layer] + " 层的功能");
+            info.setExports(List.of("default"));
+            info.setDependencies(List.of("vue"));
+            info.setLocalDependencies(deps);
+            files.put(path, info);
+            current.add(path);
+        }
+        ProjectSkeletonDTO skeleton = new ProjectSkeletonDTO();
+        skeleton.setFiles(files);
+        return skeleton;
+    }
+}
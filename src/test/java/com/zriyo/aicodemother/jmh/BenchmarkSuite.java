@@ -0,0 +1,146 @@
+package com.zriyo.aicodemother.jmh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 微基准统一入口：运行全部（或按正则筛选的）JMH 基准，附带 GC 分配统计（-prof gc），
+ * 结果以 JSON 写入 target/jmh/results.json，并与基线文件逐项对比耗时与每次操作的分配字节数
+ * <p>
+ * 运行：mvn test-compile 后以 test classpath 启动本类，参数为可选的基准名正则，例如 CodeWriteToolBenchmark
+ * <ul>
+ *     <li>-Djmh.baseline：基线文件，默认 src/test/resources/jmh/baseline.json</li>
+ *     <li>-Djmh.updateBaseline=true：以本次结果覆盖基线（首次运行或确认改动后执行）</li>
+ *     <li>-Djmh.threshold：判定回退的相对变化，默认 0.10</li>
+ *     <li>-Djmh.failOnRegression=true：存在回退或基线缺失时以非 0 退出码结束，便于在流水线中使用</li>
+ * </ul>
+ * 仓库中尚未提交基线：首次在基准机器上运行时加 -Djmh.updateBaseline=true 生成并提交 baseline.json
+ */
+public class BenchmarkSuite {
+
+    private static final String DEFAULT_INCLUDE = "com\\.zriyo\\.aicodemother\\..*Benchmark\\.";
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws Exception {
+        Path results = Paths.get(System.getProperty("jmh.results", "target/jmh/results.json"));
+        Path baseline = Paths.get(System.getProperty("jmh.baseline", "src/test/resources/jmh/baseline.json"));
+        double threshold = Double.parseDouble(System.getProperty("jmh.threshold", "0.10"));
+        Files.createDirectories(results.toAbsolutePath().getParent());
+
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : DEFAULT_INCLUDE)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results.toString())
+                .build();
+        new Runner(options).run();
+
+        boolean updateBaseline = Boolean.getBoolean("jmh.updateBaseline");
+        boolean missingBaseline = !Files.exists(baseline);
+        int regressions = 0;
+        if (!missingBaseline) {
+            regressions = compare(read(baseline), read(results), threshold);
+        } else if (!updateBaseline) {
+            System.err.printf("%n==================== 警告：未找到基线 ====================%n"
+                    + "%s 不存在，本次结果没有与任何基线对比，无法发现性能回退。%n"
+                    + "请在基准机器上加 -Djmh.updateBaseline=true 运行一次并提交生成的基线文件。%n"
+                    + "=========================================================%n%n", baseline.toAbsolutePath());
+        }
+        if (updateBaseline) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.printf("基线已更新: %s%n", baseline);
+        }
+        if ((regressions > 0 || (missingBaseline && !updateBaseline)) && Boolean.getBoolean("jmh.failOnRegression")) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 按（基准方法 + 参数）对齐两次结果，打印耗时与分配的变化，返回回退项数量
+     */
+    static int compare(Map<String, Score> baseline, Map<String, Score> current, double threshold) {
+        int regressions = 0;
+        System.out.printf("%n%-90s %14s %14s %9s %14s %14s %9s%n",
+                "benchmark", "base", "now", "Δtime", "base B/op", "now B/op", "Δalloc");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", now.score(), "new");
+                continue;
+            }
+            double timeDelta = now.relativeTo(base);
+            double allocDelta = base.allocPerOp() > 0 ? (now.allocPerOp() - base.allocPerOp()) / base.allocPerOp() : 0;
+            boolean regressed = timeDelta > threshold || allocDelta > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%% %14.0f %14.0f %+8.1f%%%s%n",
+                    entry.getKey(), base.score(), now.score(), timeDelta * 100,
+                    base.allocPerOp(), now.allocPerOp(), allocDelta * 100, regressed ? "  <-- REGRESSION" : "");
+        }
+        System.out.printf("共 %d 项，回退 %d 项（阈值 %.0f%%）%n", current.size(), regressions, threshold * 100);
+        return regressions;
+    }
+
+    /**
+     * 读取 JMH JSON 结果，key 为 "基准方法{参数}"
+     */
+    static Map<String, Score> read(Path file) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(file.toFile());
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode node : root) {
+            Map<String, String> params = new TreeMap<>();
+            JsonNode paramsNode = node.path("params");
+            for (Iterator<Map.Entry<String, JsonNode>> it = paramsNode.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            JsonNode primary = node.path("primaryMetric");
+            double alloc = -1;
+            for (Iterator<Map.Entry<String, JsonNode>> it = node.path("secondaryMetrics").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> metric = it.next();
+                // JMH 旧版本的指标名带有 "·" 前缀
+                if (metric.getKey().endsWith(ALLOC_NORM)) {
+                    alloc = metric.getValue().path("score").asDouble();
+                }
+            }
+            scores.put(node.path("benchmark").asText() + params,
+                    new Score(primary.path("score").asDouble(), primary.path("scoreUnit").asText(), alloc));
+        }
+        return scores;
+    }
+
+    /**
+     * @param allocPerOp 每次操作分配的字节数，未开启 GC 统计时为 -1
+     */
+    record Score(double score, String unit, double allocPerOp) {
+
+        /**
+         * 相对基线的变化，正数表示变差：AverageTime / SampleTime 越大越差，Throughput 越小越差
+         */
+        double relativeTo(Score base) {
+            if (base.score() == 0) {
+                return 0;
+            }
+            double delta = (score - base.score()) / base.score();
+            return unit.startsWith("ops/") ? -delta : delta;
+        }
+    }
+}
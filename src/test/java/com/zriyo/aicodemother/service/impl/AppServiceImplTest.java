@@ -0,0 +1,72 @@
+package com.zriyo.aicodemother.service.impl;
+
+import cn.hutool.extra.spring.SpringUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mybatisflex.core.query.QueryWrapper;
+import com.zriyo.aicodemother.config.GenerationTraceConfig;
+import com.zriyo.aicodemother.core.stream.GenerationEventLogRegistry;
+import com.zriyo.aicodemother.core.trace.GenerationTraceRegistry;
+import com.zriyo.aicodemother.exception.BusinessException;
+import com.zriyo.aicodemother.exception.ErrorCode;
+import com.zriyo.aicodemother.model.entity.App;
+import com.zriyo.aicodemother.model.enums.CodeGenTypeEnum;
+import com.zriyo.aicodemother.service.ChatHistoryService;
+import com.zriyo.aicodemother.service.PointsAdjustService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.springframework.context.ApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AppServiceImplTest {
+
+    private final PointsAdjustService pointsAdjustService = mock(PointsAdjustService.class);
+    private final GenerationEventLogRegistry eventLogRegistry = mock(GenerationEventLogRegistry.class);
+    private final GenerationTraceRegistry traceRegistry = new GenerationTraceRegistry(new GenerationTraceConfig(), new ObjectMapper());
+
+    @BeforeAll
+    static void stubRedis() {
+        // RedisUtils 在类加载时从 Spring 容器取 RedissonClient，这里换成不存在任何 Key 的桩
+        RedissonClient client = mock(RedissonClient.class);
+        RBucket<Object> bucket = mock();
+        when(client.getBucket(anyString())).thenReturn(bucket);
+        ApplicationContext context = mock(ApplicationContext.class);
+        when(context.getBean(RedissonClient.class)).thenReturn(client);
+        new SpringUtil().setApplicationContext(context);
+    }
+
+    @Test
+    void insufficientPointsLeavesNoRunningTrace() {
+        AppServiceImpl service = spy(new AppServiceImpl(null, null, null, null,
+                mock(ChatHistoryService.class), null, null, null, null, null, null, null,
+                pointsAdjustService, eventLogRegistry, traceRegistry));
+        App app = new App();
+        app.setId(1L);
+        app.setCodeGenType(CodeGenTypeEnum.VUE_PROJECT.getValue());
+        doReturn(app).when(service).getOne(any(QueryWrapper.class));
+        doThrow(new BusinessException(ErrorCode.INSUFFICIENT_POINTS))
+                .when(pointsAdjustService).adjustPoints(anyLong(), any(), anyLong(), any());
+
+        BusinessException error = assertThrows(BusinessException.class,
+                () -> service.NewChatToGenCode(1L, "做一个待办应用", 2L, null, null));
+
+        assertEquals(ErrorCode.INSUFFICIENT_POINTS.getCode(), error.getCode());
+        // 扣点失败时既不应打开事件日志，也不应留下进行中的时间线
+        verify(eventLogRegistry, never()).open(anyLong());
+        assertTrue(traceRegistry.recent(10).isEmpty());
+    }
+}
@@ -0,0 +1,65 @@
+package com.zriyo.aicodemother.util;
+
+import com.zriyo.aicodemother.jmh.BenchmarkFixtures;
+import com.zriyo.aicodemother.model.dto.ProjectSkeletonDTO;
+import com.zriyo.aicodemother.model.entity.App;
+import com.zriyo.aicodemother.model.vo.AppPageVO;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean 拷贝基准：应用分页列表转换（App → AppPageVO）与骨架深拷贝（嵌套 Map / List）
+ * 运行：com.zriyo.aicodemother.jmh.BenchmarkSuite BeanCopyUtilBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class BeanCopyUtilBenchmark {
+
+    /**
+     * 列表长度，同时作为骨架文件数
+     */
+    @Param({"1", "20", "200"})
+    public int size;
+
+    private List<App> apps;
+    private ProjectSkeletonDTO skeleton;
+
+    @Setup
+    public void setUp() {
+        apps = new ArrayList<>(size);
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 0, 0);
+        for (int i = 0; i < size; i++) {
+            App app = new App();
+            app.setId(1000L + i);
+            app.setAppName("应用 " + i);
+            app.setCover("https://cdn.example.com/app-images/" + i + ".png");
+            app.setInitPrompt("做一个个人博客网站，第 " + i + " 版");
+            app.setCodeGenType("vue_project");
+            app.setDeployKey("k" + Integer.toHexString(i * 31));
+            app.setPriority(i % 3);
+            app.setUserId(7L);
+            app.setCreateTime(now.plusMinutes(i));
+            app.setUpdateTime(now.plusMinutes(i));
+            apps.add(app);
+        }
+        skeleton = BenchmarkFixtures.skeleton(size);
+    }
+
+    @Benchmark
+    public List<AppPageVO> copyAppPage() {
+        return BeanCopyUtil.copyList(apps, AppPageVO.class);
+    }
+
+    @Benchmark
+    public ProjectSkeletonDTO deepCopySkeleton() {
+        return BeanCopyUtil.copy(skeleton, ProjectSkeletonDTO.class);
+    }
+}
@@ -0,0 +1,143 @@
+package com.zriyo.aicodemother.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 流式代码块提取基准：对比原先 "每个 chunk 对整个缓冲区重跑正则" 与当前状态机实现
+ * <p>
+ * 语料为一段说明文字 + 一个长 Vue 代码块 + 一个短 TS 代码块，按模型输出的典型粒度切成小 chunk 逐个喂入；
+ * 长代码块在闭合前一直处于未完成状态，正是原实现退化为平方复杂度的场景。
+ * 运行：在 IDE 中执行 main，或 mvn test-compile 后以 test classpath 启动 org.openjdk.jmh.Main CodeBlockExtractorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class CodeBlockExtractorBenchmark {
+
+    private static final long APP_ID = 1L;
+    private static final String CODE_GEN_TYPE = "vue_project";
+
+    /**
+     * 响应总长度（字符）
+     */
+    @Param({"10240", "51200", "204800"})
+    public int responseSize;
+
+    /**
+     * 单个流式 chunk 的长度（字符）
+     */
+    @Param({"32"})
+    public int chunkSize;
+
+    private List<String> chunks;
+
+    @Setup
+    public void setUp() {
+        String response = buildResponse(responseSize);
+        chunks = new ArrayList<>();
+        for (int i = 0; i < response.length(); i += chunkSize) {
+            chunks.add(response.substring(i, Math.min(response.length(), i + chunkSize)));
+        }
+        // 两种实现的输出必须一致，否则对比没有意义
+        String legacy = runLegacy();
+        String current = runCurrent();
+        if (!legacy.equals(current)) {
+            throw new IllegalStateException("新旧实现输出不一致");
+        }
+    }
+
+    @Benchmark
+    public void legacyRegexRescan(Blackhole blackhole) {
+        blackhole.consume(runLegacy());
+    }
+
+    @Benchmark
+    public void streamingStateMachine(Blackhole blackhole) {
+        blackhole.consume(runCurrent());
+    }
+
+    private String runLegacy() {
+        LegacyIncrementalProcessor processor = new LegacyIncrementalProcessor();
+        StringBuilder output = new StringBuilder();
+        for (String chunk : chunks) {
+            output.append(processor.appendChunk(chunk));
+        }
+        return output.append(processor.finish()).toString();
+    }
+
+    private String runCurrent() {
+        CodeBlockExtractor.IncrementalProcessor processor = new CodeBlockExtractor.IncrementalProcessor(APP_ID, CODE_GEN_TYPE);
+        StringBuilder output = new StringBuilder();
+        for (String chunk : chunks) {
+            output.append(processor.appendChunk(chunk));
+        }
+        return output.append(processor.finish()).toString();
+    }
+
+    private static String buildResponse(int size) {
+        StringBuilder sb = new StringBuilder()
+                .append("好的，下面是首页组件的完整实现，包含列表渲染与筛选逻辑：\n\n")
+                .append("[工具调用 ⚙️ ] 写入文件 src/views/HomeView.vue\n```vue\n<template>\n  <div class=\"home\">\n");
+        int row = 0;
+        while (sb.length() < size - 400) {
+            sb.append("    <div class=\"card\" v-for=\"item in list").append(row++)
+                    .append("\" :key=\"item.id\">{{ item.title }} - `${item.desc}`</div>\n");
+        }
+        sb.append("  </div>\n</template>\n<script setup>\nimport { ref } from 'vue'\nconst list = ref([])\n</script>\n```\n\n")
+                .append("路由注册：\n```ts\nimport { createRouter } from 'vue-router'\nexport default createRouter({ routes: [] })\n```\n")
+                .append("以上即为全部改动。");
+        return sb.toString();
+    }
+
+    /**
+     * 原实现：每个 chunk 追加后对整个未处理缓冲区重新执行正则
+     */
+    private static final class LegacyIncrementalProcessor {
+        private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```([\\w\\-]*)\\s*([\\s\\S]*?)```");
+        private final StringBuilder buffer = new StringBuilder();
+
+        String appendChunk(String chunk) {
+            buffer.append(chunk);
+            String text = buffer.toString();
+            Matcher matcher = CODE_BLOCK_PATTERN.matcher(text);
+            StringBuilder output = new StringBuilder();
+            int lastIndex = 0;
+            while (matcher.find()) {
+                output.append(text, lastIndex, matcher.start());
+                String replaced = CodeBlockExtractor.replaceCodeBlocks(matcher.group(), APP_ID, CODE_GEN_TYPE);
+                output.append(replaced);
+                lastIndex = matcher.end();
+            }
+            buffer.setLength(0);
+            buffer.append(text.substring(lastIndex));
+            return output.toString();
+        }
+
+        String finish() {
+            String remaining = buffer.toString();
+            buffer.setLength(0);
+            return remaining.isEmpty() ? "" : CodeBlockExtractor.replaceCodeBlocks(remaining, APP_ID, CODE_GEN_TYPE);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CodeBlockExtractorBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,125 @@
+package com.zriyo.aicodemother.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CodeBlockExtractorTest {
+
+    private static final long APP_ID = 123L;
+
+    /**
+     * 随机文本的组成片段：围栏及其残片、语言标记、文件标记、空白与会影响文件名推断的关键字
+     */
+    private static final String[] FRAGMENTS = {
+            "```", "```", "``", "`", "js", "ts", "vue", "json", "css", "-", "_",
+            "\n", "\n", " ", "\t", "\r\n", "a", "中文", "createApp", "mount", "main",
+            "<template>", "</template>", "router", "pinia", "body", "vite",
+            "写入文件 src/App.vue\n", "写入文件 ", "src/api/todo.js"
+    };
+
+    @Test
+    void matchesRegexProcessorOnRandomStreams() {
+        for (long seed = 1; seed <= 500; seed++) {
+            Random random = new Random(seed);
+            String codeGenType = random.nextBoolean() ? "vue_project" : "html";
+            String text = randomText(random);
+            List<String> chunks = randomChunks(random, text);
+
+            CodeBlockExtractor.IncrementalProcessor actual = new CodeBlockExtractor.IncrementalProcessor(APP_ID, codeGenType);
+            RegexProcessor expected = new RegexProcessor(codeGenType);
+            for (int i = 0; i < chunks.size(); i++) {
+                String chunk = chunks.get(i);
+                assertEquals(expected.appendChunk(chunk), actual.appendChunk(chunk),
+                        "seed=" + seed + " chunk=" + i);
+            }
+            assertEquals(expected.finish(), actual.finish(), "seed=" + seed + " finish");
+        }
+    }
+
+    @Test
+    void fenceSplitAcrossChunksIsRecognized() {
+        CodeBlockExtractor.IncrementalProcessor processor = new CodeBlockExtractor.IncrementalProcessor(APP_ID, "html");
+
+        assertEquals("", processor.appendChunk("说明 `"));
+        assertEquals("", processor.appendChunk("``css\nbody {}\n`"));
+        assertEquals("说明 [/html_123/style.css]", processor.appendChunk("``\n结尾"));
+        assertEquals("\n结尾", processor.finish());
+    }
+
+    @Test
+    void fileMarkerNamesThePlaceholder() {
+        String executedLine = "[工具调用 ⚙️ ] 写入文件 src/views/TodoView.vue\n```vue\n<template><div/></template>\n```";
+        assertEquals("[工具调用 ⚙️ ] 写入文件 src/views/TodoView.vue\n[/vue_project_123/src/views/TodoView.vue]",
+                CodeBlockExtractor.replaceCodeBlocks(executedLine, APP_ID, "vue_project"));
+
+        // 标记与围栏拆在不同 chunk 中；第二个代码块前没有标记，仍按内容推断
+        CodeBlockExtractor.IncrementalProcessor processor = new CodeBlockExtractor.IncrementalProcessor(APP_ID, "vue_project");
+        assertEquals("", processor.appendChunk("写入文件 src/api/"));
+        assertEquals("", processor.appendChunk("todo.js\n``"));
+        assertEquals("写入文件 src/api/todo.js\n[/vue_project_123/src/api/todo.js]",
+                processor.appendChunk("`js\nexport const list = []\n```"));
+        assertEquals("\n[/vue_project_123/src/assets/main.css]", processor.appendChunk("\n```css\nbody {}\n```"));
+        assertEquals("", processor.finish());
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int parts = 1 + random.nextInt(80);
+        for (int i = 0; i < parts; i++) {
+            text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static List<String> randomChunks(Random random, String text) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + 1 + random.nextInt(8));
+            chunks.add(text.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * 改为状态机之前的实现：每个 chunk 到达后对整个缓存重新执行正则，已匹配的前缀输出，剩余部分保留
+     */
+    private static final class RegexProcessor {
+        private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```([\\w\\-]*)\\s*([\\s\\S]*?)```");
+
+        private final String codeGenType;
+        private final StringBuilder buffer = new StringBuilder();
+
+        RegexProcessor(String codeGenType) {
+            this.codeGenType = codeGenType;
+        }
+
+        String appendChunk(String chunk) {
+            buffer.append(chunk);
+            String text = buffer.toString();
+            Matcher matcher = CODE_BLOCK_PATTERN.matcher(text);
+            int lastIndex = 0;
+            while (matcher.find()) {
+                lastIndex = matcher.end();
+            }
+            buffer.setLength(0);
+            buffer.append(text.substring(lastIndex));
+            // 截断到最后一个匹配结尾不会改变其前的匹配结果，占位符与文件名推断复用同一套替换逻辑
+            return CodeBlockExtractor.replaceCodeBlocks(text.substring(0, lastIndex), APP_ID, codeGenType);
+        }
+
+        String finish() {
+            String remaining = buffer.toString();
+            buffer.setLength(0);
+            return remaining.isEmpty() ? "" : CodeBlockExtractor.replaceCodeBlocks(remaining, APP_ID, codeGenType);
+        }
+    }
+}
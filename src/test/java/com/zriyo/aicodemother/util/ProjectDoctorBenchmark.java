@@ -0,0 +1,40 @@
+package com.zriyo.aicodemother.util;
+
+import com.zriyo.aicodemother.jmh.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 构建日志定位基准：不同错误类型（命中最早的分支 / 逐个规则回退到 unknown）与不同日志长度
+ * 运行：com.zriyo.aicodemother.jmh.BenchmarkSuite ProjectDoctorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ProjectDoctorBenchmark {
+
+    @Param({"vite", "stack", "module", "unknown"})
+    public String kind;
+
+    /**
+     * 错误前的普通输出行数
+     */
+    @Param({"20", "2000"})
+    public int lines;
+
+    private String log;
+
+    @Setup
+    public void setUp() {
+        log = BenchmarkFixtures.buildLog(kind, lines);
+    }
+
+    @Benchmark
+    public String extractFilePathFromLog() {
+        return ProjectDoctor.extractFilePathFromLog(log);
+    }
+}
@@ -0,0 +1,37 @@
+package com.zriyo.aicodemother.util;
+
+import com.zriyo.aicodemother.jmh.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * void 标签修复基准：只测内容替换部分（sanitize），不含文件读写
+ * 运行：com.zriyo.aicodemother.jmh.BenchmarkSuite VueTemplateSanitizerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class VueTemplateSanitizerBenchmark {
+
+    /**
+     * SFC 模板行数
+     */
+    @Param({"40", "400", "4000"})
+    public int rows;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = BenchmarkFixtures.vueSfc(rows);
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return VueTemplateSanitizer.sanitize(content);
+    }
+}
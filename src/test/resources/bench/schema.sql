@@ -0,0 +1,61 @@
+-- 端到端生成基准使用的最小表结构（H2 MySQL 模式），字段与 sql/zriyo_ai_code_mother.sql 保持一致
+
+CREATE TABLE IF NOT EXISTS app (
+    id                 BIGINT       NOT NULL PRIMARY KEY,
+    appName            VARCHAR(256),
+    cover              VARCHAR(512),
+    initPrompt         TEXT,
+    codeGenType        VARCHAR(64),
+    deployKey          VARCHAR(64) UNIQUE,
+    deployedTime       DATETIME,
+    priority           INT          NOT NULL DEFAULT 0,
+    userId             BIGINT       NOT NULL,
+    editTime           DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    createTime         DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updateTime         DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    isDelete           TINYINT      NOT NULL DEFAULT 0,
+    latestDeploymentId BIGINT,
+    is_published       TINYINT               DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS chat_history (
+    id           BIGINT      NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    message      TEXT        NOT NULL,
+    messageType  VARCHAR(32) NOT NULL,
+    appId        BIGINT      NOT NULL,
+    userId       BIGINT      NOT NULL,
+    createTime   DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updateTime   DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    isDelete     TINYINT     NOT NULL DEFAULT 0,
+    user_visible TINYINT     NOT NULL DEFAULT 1,
+    meta_data    TEXT
+);
+
+CREATE TABLE IF NOT EXISTS ai_code_gen_record (
+    id            BIGINT      NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    app_id        BIGINT      NOT NULL,
+    user_id       BIGINT      NOT NULL,
+    status        VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    stage         VARCHAR(50) NOT NULL DEFAULT 'INIT',
+    error_message TEXT,
+    project_dir   VARCHAR(255),
+    file_count    INT                  DEFAULT 0,
+    start_time    DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    end_time      DATETIME,
+    duration_ms   BIGINT,
+    created_at    DATETIME             DEFAULT CURRENT_TIMESTAMP,
+    updated_at    DATETIME             DEFAULT CURRENT_TIMESTAMP,
+    message_id    BIGINT
+);
+
+CREATE TABLE IF NOT EXISTS ai_tool_log (
+    id            BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    ai_message_id BIGINT       NOT NULL,
+    tool_name     VARCHAR(50)  NOT NULL,
+    file_path     VARCHAR(500) NOT NULL,
+    action        VARCHAR(50)  NOT NULL,
+    summary       TEXT,
+    created_at    TIMESTAMP NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at    TIMESTAMP NULL DEFAULT CURRENT_TIMESTAMP,
+    cost_time     BIGINT
+);
@@ -0,0 +1,198 @@
+// vite-build-worker.mjs
+// 常驻构建进程：为每个项目目录保留一个 Vite watch 构建（Rollup 模块图缓存常驻内存），
+// 通过 stdin / stdout 的逐行 JSON 协议接收重建请求并返回结构化诊断。
+//
+// 请求：{"id":1,"op":"build","root":"/abs/project"}  |  {"id":2,"op":"close","root":"/abs/project"}  |  {"id":3,"op":"ping"}
+// 响应：{"id":1,"ok":true,"durationMs":812,"diagnostics":[{"file","line","column","message","frame","plugin"}]}
+//       处理异常时返回 {"id":1,"fatal":"..."}，由 Java 侧回退到 npm run build
+import {build} from 'vite';
+import readline from 'node:readline';
+import {promises as fs} from 'node:fs';
+import path from 'node:path';
+
+const MAX_PROJECTS = Number(process.env.BUILD_WORKER_MAX_PROJECTS || 4);
+const IDLE_MS = Number(process.env.BUILD_WORKER_IDLE_MS || 10 * 60 * 1000);
+// 文件已修改但 watcher 迟迟没有开始重建时，判定为漏报并整体重启该项目的 watcher
+const SETTLE_TIMEOUT_MS = Number(process.env.BUILD_WORKER_SETTLE_MS || 3000);
+const IGNORED_DIRS = new Set(['node_modules', 'dist', '.vite-cache', '.git']);
+
+/** root -> 项目状态 */
+const projects = new Map();
+
+function send(message) {
+    process.stdout.write(JSON.stringify(message) + '\n');
+}
+
+function stripAnsi(text) {
+    return String(text ?? '').replace(/\u001b\[[0-9;]*m/g, '');
+}
+
+function toDiagnostic(error, root) {
+    const loc = error?.loc ?? {};
+    const rawFile = loc.file || error?.id || null;
+    const file = rawFile ? path.relative(root, rawFile.split('?')[0]).replace(/\\/g, '/') : null;
+    return {
+        file,
+        line: loc.line ?? 0,
+        column: loc.column ?? 0,
+        message: stripAnsi(error?.message ?? error),
+        frame: error?.frame ? stripAnsi(error.frame) : null,
+        plugin: error?.plugin ?? null,
+    };
+}
+
+async function latestMtime(dir) {
+    let latest = 0;
+    let entries;
+    try {
+        entries = await fs.readdir(dir, {withFileTypes: true});
+    } catch {
+        return 0;
+    }
+    for (const entry of entries) {
+        if (IGNORED_DIRS.has(entry.name)) continue;
+        const full = path.join(dir, entry.name);
+        if (entry.isDirectory()) {
+            latest = Math.max(latest, await latestMtime(full));
+        } else if (entry.isFile()) {
+            try {
+                latest = Math.max(latest, (await fs.stat(full)).mtimeMs);
+            } catch {
+                // 文件在遍历过程中被删除，忽略
+            }
+        }
+    }
+    return latest;
+}
+
+function settle(state, result) {
+    state.building = false;
+    state.last = {...result, startedAt: state.startedAt, finishedAt: Date.now()};
+    const pending = state.waiters;
+    state.waiters = [];
+    for (const waiter of pending) {
+        if (state.startedAt >= waiter.minStart) {
+            waiter.resolve(state.last);
+        } else {
+            state.waiters.push(waiter);
+        }
+    }
+}
+
+async function startProject(root) {
+    // 首次构建可能在监听器挂上之前就发出了 BUNDLE_START，开始时间按创建时刻计，保证晚于调用方读取的文件修改时间
+    const createdAt = Date.now();
+    const state = {root, watcher: null, building: true, startedAt: createdAt, last: null, waiters: [], lastUsed: createdAt};
+    projects.set(root, state);
+    try {
+        state.watcher = await build({
+            root,
+            logLevel: 'silent',
+            clearScreen: false,
+            build: {watch: {}},
+        });
+    } catch (error) {
+        // 配置错误等导致 watcher 未能创建：不留下永远处于构建中的项目状态
+        projects.delete(root);
+        throw error;
+    }
+    state.watcher.on('event', (event) => {
+        if (event.code === 'BUNDLE_START') {
+            state.building = true;
+            state.startedAt = Date.now();
+        } else if (event.code === 'BUNDLE_END') {
+            event.result?.close?.();
+            settle(state, {ok: true, diagnostics: []});
+        } else if (event.code === 'ERROR') {
+            event.result?.close?.();
+            settle(state, {ok: false, diagnostics: [toDiagnostic(event.error, root)]});
+        }
+    });
+    evictIfNeeded();
+    return state;
+}
+
+async function closeProject(root) {
+    const state = projects.get(root);
+    if (!state) return;
+    projects.delete(root);
+    for (const waiter of state.waiters) {
+        waiter.reject(new Error('project closed'));
+    }
+    state.waiters = [];
+    try {
+        await state.watcher?.close();
+    } catch {
+        // 关闭失败不影响后续重建
+    }
+}
+
+function evictIfNeeded() {
+    if (projects.size <= MAX_PROJECTS) return;
+    const oldest = [...projects.values()].sort((a, b) => a.lastUsed - b.lastUsed)[0];
+    closeProject(oldest.root);
+}
+
+function waitForBuild(state, minStart) {
+    if (state.last && !state.building && state.last.startedAt >= minStart) {
+        return Promise.resolve(state.last);
+    }
+    return new Promise((resolve, reject) => {
+        const waiter = {minStart, resolve, reject};
+        state.waiters.push(waiter);
+        setTimeout(() => {
+            if (!state.waiters.includes(waiter) || state.building) return;
+            state.waiters = state.waiters.filter((w) => w !== waiter);
+            // watcher 没有感知到变更：重启后做一次完整构建
+            closeProject(state.root)
+                .then(() => startProject(state.root))
+                .then((fresh) => waitForBuild(fresh, 0))
+                .then(resolve, reject);
+        }, SETTLE_TIMEOUT_MS);
+    });
+}
+
+async function rebuild(root) {
+    const begin = Date.now();
+    const changedAt = await latestMtime(root);
+    const state = projects.get(root) ?? await startProject(root);
+    state.lastUsed = Date.now();
+    const result = await waitForBuild(state, changedAt);
+    return {ok: result.ok, diagnostics: result.diagnostics, durationMs: Date.now() - begin};
+}
+
+async function handle(line) {
+    let request;
+    try {
+        request = JSON.parse(line);
+    } catch {
+        return;
+    }
+    const {id, op, root} = request;
+    try {
+        if (op === 'build') {
+            send({id, ...(await rebuild(path.resolve(root)))});
+        } else if (op === 'ping') {
+            send({id, ok: true, diagnostics: []});
+        } else if (op === 'close') {
+            await closeProject(path.resolve(root));
+            send({id, ok: true, diagnostics: []});
+        } else {
+            send({id, fatal: `unknown op: ${op}`});
+        }
+    } catch (error) {
+        send({id, fatal: stripAnsi(error?.stack ?? error)});
+    }
+}
+
+setInterval(() => {
+    const now = Date.now();
+    for (const state of projects.values()) {
+        if (!state.building && now - state.lastUsed > IDLE_MS) {
+            closeProject(state.root);
+        }
+    }
+}, 60 * 1000).unref();
+
+readline.createInterface({input: process.stdin}).on('line', handle).on('close', () => process.exit(0));
+send({ready: true});